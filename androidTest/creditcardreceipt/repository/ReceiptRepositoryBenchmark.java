@@ -0,0 +1,297 @@
+package com.myinappbilling.creditcardreceipt.repository;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
+import com.myinappbilling.financial.model.Money;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * ReceiptRepositoryBenchmark measures the throughput of {@link SQLiteReceiptRepository} against
+ * a database file: batch saves, duplicate-checked saves, lookups by ID, the searches, spend
+ * rollups and a full scan.
+ *
+ * <p>It needs the platform SQLite, so it runs as an instrumented test on a device or emulator
+ * and logs its report under the {@value #TAG} tag. The number of receipts defaults to
+ * {@value #DEFAULT_RECEIPT_COUNT} and can be set with the {@code receiptCount} instrumentation
+ * argument:</p>
+ * <pre>
+ * adb shell am instrument -w -e class com.myinappbilling.creditcardreceipt.repository.ReceiptRepositoryBenchmark \
+ *         -e receiptCount 10000 &lt;test package&gt;/androidx.test.runner.AndroidJUnitRunner
+ * </pre>
+ *
+ * <p>The receipts are generated from a fixed seed over one year, so runs are comparable. The
+ * database file is deleted before and after the run.</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReceiptRepositoryBenchmark {
+
+    public static final int DEFAULT_RECEIPT_COUNT = 100_000;
+
+    private static final String TAG = "ReceiptRepositoryBench";
+    private static final String RECEIPT_COUNT_ARGUMENT = "receiptCount";
+    private static final String DATABASE_FILE = "receipts-benchmark.db";
+
+    private static final int BATCH_SIZE = 1_000;
+    private static final int LOOKUP_COUNT = 10_000;
+    private static final int SEARCH_COUNT = 50;
+    private static final long SEED = 42;
+    private static final String CURRENCY = "USD";
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2024, 1);
+    private static final int MONTHS = 12;
+
+    private static final String[] MERCHANTS = {
+            "Corner Grocery", "City Pharmacy", "Blue Bottle Coffee", "Metro Fuel", "Book Nook",
+            "Green Market", "Pixel Electronics", "Harbor Diner", "Sunrise Bakery", "Urban Outfitters",
+            "Northside Hardware", "Pet Planet", "Cinema Central", "Fresh Mart", "Noodle House",
+            "Sports Depot", "Garden Center", "Tech Repair", "Ocean Seafood", "Main Street Deli"
+    };
+    private static final String[] CATEGORIES = {
+            "Groceries", "Health", "Dining", "Fuel", "Books", "Electronics", "Home", "Pets", "Entertainment", "Sports"
+    };
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Test
+    public void measureSQLiteReceiptRepository() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        int receiptCount = Integer.parseInt(InstrumentationRegistry.getArguments()
+                .getString(RECEIPT_COUNT_ARGUMENT, Integer.toString(DEFAULT_RECEIPT_COUNT)));
+        Report report = run(new File(context.getCacheDir(), DATABASE_FILE), receiptCount);
+        Log.i(TAG, report.toString());
+    }
+
+    /**
+     * Runs the benchmark on the calling thread.
+     *
+     * @param databaseFile the database file to benchmark against; it is deleted before and after the run
+     * @param receiptCount the number of receipts to store
+     * @return the throughput of each measured operation
+     */
+    public Report run(File databaseFile, int receiptCount) {
+        if (receiptCount < BATCH_SIZE) {
+            throw new IllegalArgumentException("Receipt count must be at least " + BATCH_SIZE);
+        }
+        SQLiteDatabase.deleteDatabase(databaseFile);
+        SQLiteReceiptRepository repository = new SQLiteReceiptRepository(
+                SQLiteDatabase.openOrCreateDatabase(databaseFile, null), SQLiteReceiptRepository.DEFAULT_HOT_CACHE_SIZE);
+        Report report = new Report(receiptCount);
+        Random random = new Random(SEED);
+        try {
+            long start = System.nanoTime();
+            for (int offset = 0; offset < receiptCount; offset += BATCH_SIZE) {
+                repository.saveReceipts(newReceipts(offset, Math.min(BATCH_SIZE, receiptCount - offset), random));
+            }
+            report.add("saveReceipts", receiptCount, System.nanoTime() - start);
+
+            List<Receipt> copies = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Receipt original = repository.getReceiptById(receiptId(random.nextInt(receiptCount)));
+                copies.add(new Receipt("copy-" + i, original.getTransactionDate(), original.getMerchantName(),
+                        original.getItems(), original.getTotalAmount(), original.getTransactionInfo(),
+                        original.getPaymentMethod()));
+            }
+            start = System.nanoTime();
+            List<Receipt> duplicates = repository.saveReceiptsIfAbsent(copies);
+            report.add("saveReceiptsIfAbsent (all duplicates)", BATCH_SIZE, System.nanoTime() - start);
+            assertFalse("A copied receipt was not detected as a duplicate", duplicates.contains(null));
+
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUP_COUNT; i++) {
+                repository.getReceiptById(receiptId(random.nextInt(receiptCount)));
+            }
+            report.add("getReceiptById (random)", LOOKUP_COUNT, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            long found = 0;
+            for (int i = 0; i < SEARCH_COUNT; i++) {
+                found += repository.searchReceiptsByMerchant(MERCHANTS[i % MERCHANTS.length]).size();
+            }
+            report.add("searchReceiptsByMerchant", SEARCH_COUNT, System.nanoTime() - start, found);
+
+            start = System.nanoTime();
+            found = 0;
+            for (int i = 0; i < SEARCH_COUNT; i++) {
+                found += repository.searchReceiptsByMerchantContaining("bakery").size();
+            }
+            report.add("searchReceiptsByMerchantContaining", SEARCH_COUNT, System.nanoTime() - start, found);
+
+            start = System.nanoTime();
+            found = 0;
+            for (int i = 0; i < SEARCH_COUNT; i++) {
+                Date from = new Date(monthStart(FIRST_MONTH) + TimeUnit.DAYS.toMillis(i % 358));
+                found += repository.getReceiptsByDateRange(from, new Date(from.getTime() + TimeUnit.DAYS.toMillis(7))).size();
+            }
+            report.add("getReceiptsByDateRange (one week)", SEARCH_COUNT, System.nanoTime() - start, found);
+
+            start = System.nanoTime();
+            found = 0;
+            for (int i = 0; i < SEARCH_COUNT; i++) {
+                long min = 1_000 + i * 100L;
+                found += repository.getReceiptsByAmountRange(Money.ofMinor(min, CURRENCY), Money.ofMinor(min + 500, CURRENCY)).size();
+            }
+            report.add("getReceiptsByAmountRange", SEARCH_COUNT, System.nanoTime() - start, found);
+
+            YearMonth lastMonth = FIRST_MONTH.plusMonths(MONTHS - 1);
+            start = System.nanoTime();
+            found = repository.getMonthlyMerchantSpend(FIRST_MONTH, lastMonth).size();
+            report.add("getMonthlyMerchantSpend (12 months)", 1, System.nanoTime() - start, found);
+
+            start = System.nanoTime();
+            found = repository.getTopCategories(FIRST_MONTH, lastMonth, CURRENCY, 5).size();
+            report.add("getTopCategories (12 months)", 1, System.nanoTime() - start, found);
+
+            start = System.nanoTime();
+            found = 0;
+            for (Receipt ignored : repository.getReceiptsView()) {
+                found++;
+            }
+            report.add("getReceiptsView (full scan)", found, System.nanoTime() - start);
+        } finally {
+            repository.close();
+            SQLiteDatabase.deleteDatabase(databaseFile);
+        }
+        return report;
+    }
+
+    private List<Receipt> newReceipts(int offset, int count, Random random) {
+        long firstDay = monthStart(FIRST_MONTH);
+        long yearMillis = monthStart(FIRST_MONTH.plusMonths(MONTHS)) - firstDay;
+        List<Receipt> receipts = new ArrayList<>(count);
+        for (int n = offset; n < offset + count; n++) {
+            Date date = new Date(firstDay + (long) (random.nextDouble() * yearMillis));
+            String merchant = MERCHANTS[random.nextInt(MERCHANTS.length)];
+            int itemCount = 1 + random.nextInt(3);
+            List<ReceiptItem> items = new ArrayList<>(itemCount);
+            long total = 0;
+            for (int i = 0; i < itemCount; i++) {
+                int quantity = 1 + random.nextInt(3);
+                long unitPrice = 100 + random.nextInt(5_000);
+                total += unitPrice * quantity;
+                items.add(new ReceiptItem(receiptId(n) + "-" + i, "Item " + random.nextInt(500), quantity,
+                        Money.ofMinor(unitPrice, CURRENCY), CATEGORIES[random.nextInt(CATEGORIES.length)]));
+            }
+            Money totalAmount = Money.ofMinor(total, CURRENCY);
+            TransactionInfo transaction = new TransactionInfo("txn-" + n,
+                    String.format(Locale.ROOT, "%04d", random.nextInt(10_000)), date, totalAmount, merchant,
+                    "PURCHASE", false, Integer.toHexString(random.nextInt()));
+            receipts.add(new Receipt(receiptId(n), date, merchant, items, totalAmount, transaction, "CARD"));
+        }
+        return receipts;
+    }
+
+    private long monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private static String receiptId(int n) {
+        return String.format(Locale.ROOT, "r%08d", n);
+    }
+
+    /**
+     * Throughput of each measured operation, in the order they ran.
+     */
+    public static class Report {
+        private final int receiptCount;
+        private final List<Measurement> measurements = new ArrayList<>();
+
+        Report(int receiptCount) {
+            this.receiptCount = receiptCount;
+        }
+
+        void add(String operation, long count, long elapsedNanos) {
+            add(operation, count, elapsedNanos, -1);
+        }
+
+        void add(String operation, long count, long elapsedNanos, long resultCount) {
+            measurements.add(new Measurement(operation, count, elapsedNanos, resultCount));
+        }
+
+        public int getReceiptCount() {
+            return receiptCount;
+        }
+
+        public List<Measurement> getMeasurements() {
+            return Collections.unmodifiableList(measurements);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder("ReceiptRepositoryBenchmark (")
+                    .append(receiptCount).append(" receipts)");
+            for (Measurement measurement : measurements) {
+                out.append('\n').append(measurement);
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * One measured operation: how often it ran and how long that took.
+     */
+    public static class Measurement {
+        private final String operation;
+        private final long count;
+        private final long elapsedNanos;
+        private final long resultCount;
+
+        Measurement(String operation, long count, long elapsedNanos, long resultCount) {
+            this.operation = operation;
+            this.count = count;
+            this.elapsedNanos = elapsedNanos;
+            this.resultCount = resultCount;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        public double getOperationsPerSecond() {
+            return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return the total number of receipts or rollups the operation returned, or -1 if not counted
+         */
+        public long getResultCount() {
+            return resultCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-40s %8d ops %8d ms %12.1f ops/s%s", operation, count,
+                    getElapsedMillis(), getOperationsPerSecond(),
+                    resultCount >= 0 ? "  (" + resultCount + " results)" : "");
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.myinappbilling.creditcardreceipt.model;
 
+import com.myinappbilling.financial.model.Money;
+
 import java.util.List;
 import java.util.Date;
 import java.util.Objects;
@@ -14,19 +16,17 @@ public class Receipt {
     private Date transactionDate;
     private String merchantName;
     private List<ReceiptItem> items;
-    private double totalAmount;
+    private Money totalAmount;
     private TransactionInfo transactionInfo;
-    private String currency;
     private String paymentMethod;
 
-    public Receipt(String receiptId, Date transactionDate, String merchantName, List<ReceiptItem> items, double totalAmount, TransactionInfo transactionInfo, String currency, String paymentMethod) {
+    public Receipt(String receiptId, Date transactionDate, String merchantName, List<ReceiptItem> items, Money totalAmount, TransactionInfo transactionInfo, String paymentMethod) {
         this.receiptId = receiptId;
         this.transactionDate = transactionDate;
         this.merchantName = merchantName;
         this.items = items;
         this.totalAmount = totalAmount;
         this.transactionInfo = transactionInfo;
-        this.currency = currency;
         this.paymentMethod = paymentMethod;
     }
 
@@ -62,11 +62,11 @@ public class Receipt {
         this.items = items;
     }
 
-    public double getTotalAmount() {
+    public Money getTotalAmount() {
         return totalAmount;
     }
 
-    public void setTotalAmount(double totalAmount) {
+    public void setTotalAmount(Money totalAmount) {
         this.totalAmount = totalAmount;
     }
 
@@ -79,11 +79,7 @@ public class Receipt {
     }
 
     public String getCurrency() {
-        return currency;
-    }
-
-    public void setCurrency(String currency) {
-        this.currency = currency;
+        return totalAmount != null ? totalAmount.getCurrencyCode() : null;
     }
 
     public String getPaymentMethod() {
@@ -94,16 +90,26 @@ public class Receipt {
         this.paymentMethod = paymentMethod;
     }
 
+    /**
+     * @return the number of items, not counting null entries
+     */
     public int getItemCount() {
-        return items != null ? items.size() : 0;
+        int count = 0;
+        if (items != null) {
+            for (ReceiptItem item : items) {
+                if (item != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
     }
 
     public boolean isValidReceipt() {
         return receiptId != null && !receiptId.isEmpty()
                 && merchantName != null && !merchantName.isEmpty()
                 && transactionDate != null
-                && totalAmount >= 0
-                && currency != null && !currency.isEmpty()
+                && totalAmount != null && !totalAmount.isNegative()
                 && paymentMethod != null && !paymentMethod.isEmpty();
     }
 
@@ -112,8 +118,8 @@ public class Receipt {
         return transactionDate != null ? formatter.format(transactionDate) : "N/A";
     }
 
-    public double calculateTax(double taxRate) {
-        return totalAmount * taxRate / 100;
+    public Money calculateTax(double taxRate) {
+        return totalAmount.percentage(taxRate);
     }
 
     @Override
@@ -125,7 +131,6 @@ public class Receipt {
                 ", items=" + items +
                 ", totalAmount=" + totalAmount +
                 ", transactionInfo=" + transactionInfo +
-                ", currency='" + currency + '\'' +
                 ", paymentMethod='" + paymentMethod + '\'' +
                 '}';
     }
@@ -0,0 +1,115 @@
+package com.myinappbilling.creditcardreceipt.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Represents the outcome of generating receipts for a batch of transactions.
+ * Successful items and duplicates of existing receipts are only counted; failed items are listed
+ * with the reason.
+ */
+public class ReceiptBatchResult {
+
+    private final long totalCount;
+    private final long generatedCount;
+    private final long duplicateCount;
+    private final List<ItemFailure> failures;
+    private final long elapsedMillis;
+
+    public ReceiptBatchResult(long totalCount, long generatedCount, long duplicateCount, List<ItemFailure> failures,
+                              long elapsedMillis) {
+        this.totalCount = totalCount;
+        this.generatedCount = generatedCount;
+        this.duplicateCount = duplicateCount;
+        this.failures = Collections.unmodifiableList(failures);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getGeneratedCount() {
+        return generatedCount;
+    }
+
+    /**
+     * @return the number of transactions that already had a receipt, which were not saved again
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    public List<ItemFailure> getFailures() {
+        return failures;
+    }
+
+    public boolean isFullySuccessful() {
+        return failures.isEmpty();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getReceiptsPerSecond() {
+        return elapsedMillis == 0 ? generatedCount : generatedCount * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiptBatchResult{" +
+                "total=" + totalCount +
+                ", generated=" + generatedCount +
+                ", duplicates=" + duplicateCount +
+                ", failed=" + failures.size() +
+                ", elapsedMillis=" + elapsedMillis +
+                ", receiptsPerSecond=" + String.format(Locale.ROOT, "%.1f", getReceiptsPerSecond()) +
+                '}';
+    }
+
+    /**
+     * A transaction for which no receipt could be generated.
+     */
+    public static class ItemFailure {
+
+        private final long position;
+        private final String transactionId;
+        private final String errorMessage;
+
+        public ItemFailure(long position, String transactionId, String errorMessage) {
+            this.position = position;
+            this.transactionId = transactionId;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * @return the zero-based position of the transaction in the input
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        @Override
+        public String toString() {
+            return "ItemFailure{" +
+                    "position=" + position +
+                    ", transactionId='" + transactionId + '\'' +
+                    ", errorMessage='" + errorMessage + '\'' +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.myinappbilling.creditcardreceipt.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the outcome of a sweep for duplicate receipts: the groups of receipts found to
+ * have the same transaction ID, items and total, and how many duplicates were removed.
+ */
+public class ReceiptDedupeReport {
+
+    private final List<DuplicateGroup> groups;
+    private final long removedCount;
+    private final long elapsedMillis;
+
+    public ReceiptDedupeReport(List<DuplicateGroup> groups, long removedCount, long elapsedMillis) {
+        this.groups = Collections.unmodifiableList(groups);
+        this.removedCount = removedCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<DuplicateGroup> getGroups() {
+        return groups;
+    }
+
+    public long getDuplicateCount() {
+        long count = 0;
+        for (DuplicateGroup group : groups) {
+            count += group.getDuplicateReceiptIds().size();
+        }
+        return count;
+    }
+
+    public long getRemovedCount() {
+        return removedCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiptDedupeReport{" +
+                "groups=" + groups.size() +
+                ", duplicates=" + getDuplicateCount() +
+                ", removed=" + removedCount +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+
+    /**
+     * Receipts with the same content: the one kept and the duplicates of it.
+     */
+    public static class DuplicateGroup {
+
+        private final String keptReceiptId;
+        private final List<String> duplicateReceiptIds;
+
+        public DuplicateGroup(String keptReceiptId, List<String> duplicateReceiptIds) {
+            this.keptReceiptId = keptReceiptId;
+            this.duplicateReceiptIds = Collections.unmodifiableList(duplicateReceiptIds);
+        }
+
+        public String getKeptReceiptId() {
+            return keptReceiptId;
+        }
+
+        public List<String> getDuplicateReceiptIds() {
+            return duplicateReceiptIds;
+        }
+
+        @Override
+        public String toString() {
+            return "DuplicateGroup{" +
+                    "kept='" + keptReceiptId + '\'' +
+                    ", duplicates=" + duplicateReceiptIds +
+                    '}';
+        }
+    }
+}
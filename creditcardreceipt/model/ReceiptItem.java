@@ -1,5 +1,7 @@
 package com.myinappbilling.creditcardreceipt.model;
 
+import com.myinappbilling.financial.model.Money;
+
 import java.util.Objects;
 
 /**
@@ -10,10 +12,10 @@ public class ReceiptItem {
     private String itemId;
     private String description;
     private int quantity;
-    private double unitPrice;
+    private Money unitPrice;
     private String category;
 
-    public ReceiptItem(String itemId, String description, int quantity, double unitPrice, String category) {
+    public ReceiptItem(String itemId, String description, int quantity, Money unitPrice, String category) {
         this.itemId = itemId;
         this.description = description;
         this.quantity = quantity;
@@ -45,11 +47,11 @@ public class ReceiptItem {
         this.quantity = quantity;
     }
 
-    public double getUnitPrice() {
+    public Money getUnitPrice() {
         return unitPrice;
     }
 
-    public void setUnitPrice(double unitPrice) {
+    public void setUnitPrice(Money unitPrice) {
         this.unitPrice = unitPrice;
     }
 
@@ -61,23 +63,24 @@ public class ReceiptItem {
         this.category = category;
     }
 
-    public double getTotalPrice() {
-        return quantity * unitPrice;
+    public Money getTotalPrice() {
+        return unitPrice != null ? unitPrice.times(quantity) : null;
     }
 
     public boolean isValidItem() {
         return itemId != null && !itemId.isEmpty()
                 && description != null && !description.isEmpty()
                 && quantity > 0
-                && unitPrice >= 0;
+                && unitPrice != null && !unitPrice.isNegative();
     }
 
     public boolean isDiscounted() {
-        return unitPrice < 1.0; // Example threshold for discount items
+        return unitPrice != null && unitPrice.getMinorUnits() < unitPrice.getScaleFactor(); // Example threshold: below one major unit
     }
 
-    public double calculateTax(double taxRate) {
-        return getTotalPrice() * taxRate / 100;
+    public Money calculateTax(double taxRate) {
+        Money totalPrice = getTotalPrice();
+        return totalPrice != null ? totalPrice.percentage(taxRate) : null;
     }
 
     @Override
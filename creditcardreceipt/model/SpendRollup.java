@@ -0,0 +1,59 @@
+package com.myinappbilling.creditcardreceipt.model;
+
+import com.myinappbilling.financial.model.Money;
+
+import java.time.YearMonth;
+import java.util.Locale;
+
+/**
+ * Model class representing the spend of one merchant or category over a range of months, in
+ * one currency.
+ */
+public class SpendRollup {
+
+    private final String name;
+    private final YearMonth fromMonth;
+    private final YearMonth toMonth;
+    private final Money total;
+    private final int count;
+
+    public SpendRollup(String name, YearMonth fromMonth, YearMonth toMonth, Money total, int count) {
+        this.name = name;
+        this.fromMonth = fromMonth;
+        this.toMonth = toMonth;
+        this.total = total;
+        this.count = count;
+    }
+
+    /**
+     * Returns the merchant name, trimmed and lower-cased, or the category.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public YearMonth getFromMonth() {
+        return fromMonth;
+    }
+
+    public YearMonth getToMonth() {
+        return toMonth;
+    }
+
+    public Money getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of receipts (for a merchant) or line items (for a category) in the total.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "SpendRollup{name='%s', from=%s, to=%s, total=%s, count=%d}",
+                name, fromMonth, toMonth, total, count);
+    }
+}
@@ -1,5 +1,7 @@
 package com.myinappbilling.creditcardreceipt.model;
 
+import com.myinappbilling.financial.model.Money;
+
 import java.util.Date;
 import java.util.Objects;
 
@@ -11,22 +13,20 @@ public class TransactionInfo {
     private String transactionId;
     private String cardLastFourDigits;
     private Date transactionDate;
-    private double transactionAmount;
+    private Money transactionAmount;
     private String merchantName;
     private String transactionType;
-    private String currency;
     private boolean isInternational;
     private String authorizationCode;
 
-    public TransactionInfo(String transactionId, String cardLastFourDigits, Date transactionDate, double transactionAmount,
-                            String merchantName, String transactionType, String currency, boolean isInternational, String authorizationCode) {
+    public TransactionInfo(String transactionId, String cardLastFourDigits, Date transactionDate, Money transactionAmount,
+                            String merchantName, String transactionType, boolean isInternational, String authorizationCode) {
         this.transactionId = transactionId;
         this.cardLastFourDigits = cardLastFourDigits;
         this.transactionDate = transactionDate;
         this.transactionAmount = transactionAmount;
         this.merchantName = merchantName;
         this.transactionType = transactionType;
-        this.currency = currency;
         this.isInternational = isInternational;
         this.authorizationCode = authorizationCode;
     }
@@ -55,11 +55,11 @@ public class TransactionInfo {
         this.transactionDate = transactionDate;
     }
 
-    public double getTransactionAmount() {
+    public Money getTransactionAmount() {
         return transactionAmount;
     }
 
-    public void setTransactionAmount(double transactionAmount) {
+    public void setTransactionAmount(Money transactionAmount) {
         this.transactionAmount = transactionAmount;
     }
 
@@ -80,11 +80,7 @@ public class TransactionInfo {
     }
 
     public String getCurrency() {
-        return currency;
-    }
-
-    public void setCurrency(String currency) {
-        this.currency = currency;
+        return transactionAmount != null ? transactionAmount.getCurrencyCode() : null;
     }
 
     public boolean isInternational() {
@@ -107,10 +103,9 @@ public class TransactionInfo {
         return transactionId != null && !transactionId.isEmpty()
                 && cardLastFourDigits != null && cardLastFourDigits.length() == 4
                 && transactionDate != null
-                && transactionAmount >= 0
+                && transactionAmount != null && !transactionAmount.isNegative()
                 && merchantName != null && !merchantName.isEmpty()
                 && transactionType != null && !transactionType.isEmpty()
-                && currency != null && !currency.isEmpty()
                 && authorizationCode != null && !authorizationCode.isEmpty();
     }
 
@@ -118,8 +113,8 @@ public class TransactionInfo {
         return "REFUND".equalsIgnoreCase(transactionType);
     }
 
-    public boolean isLargeTransaction(double threshold) {
-        return transactionAmount > threshold;
+    public boolean isLargeTransaction(Money threshold) {
+        return transactionAmount.isGreaterThan(threshold);
     }
 
     @Override
@@ -131,7 +126,6 @@ public class TransactionInfo {
                 ", transactionAmount=" + transactionAmount +
                 ", merchantName='" + merchantName + '\'' +
                 ", transactionType='" + transactionType + '\'' +
-                ", currency='" + currency + '\'' +
                 ", isInternational=" + isInternational +
                 ", authorizationCode='" + authorizationCode + '\'' +
                 '}';
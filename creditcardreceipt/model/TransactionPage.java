@@ -0,0 +1,43 @@
+package com.myinappbilling.creditcardreceipt.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Model class representing one page of transactions and the cursor of the page after it.
+ */
+public class TransactionPage {
+
+    private final List<TransactionInfo> transactions;
+    private final String nextCursor;
+
+    public TransactionPage(List<TransactionInfo> transactions, String nextCursor) {
+        this.transactions = Collections.unmodifiableList(transactions);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TransactionInfo> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Returns the cursor to pass to fetch the next page.
+     *
+     * @return the next cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionPage{" +
+                "size=" + transactions.size() +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
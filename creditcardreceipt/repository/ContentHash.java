@@ -0,0 +1,138 @@
+package com.myinappbilling.creditcardreceipt.repository;
+
+import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.financial.model.Money;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ContentHash identifies what a receipt records, independently of its receipt and item IDs: the
+ * transaction ID, the items and the total. Two receipts with the same content hash are
+ * duplicates.
+ *
+ * <p>Items are normalized before hashing: descriptions and categories are trimmed, case-folded
+ * and have their inner whitespace collapsed, prices are taken as exact minor units with their
+ * currency, and the items are sorted, so the order in which they were listed does not matter.
+ * Null items are skipped, as they are when a receipt is stored or rendered, so a receipt has the
+ * same hash before and after a round trip through the database.
+ * The normalized content is hashed with SHA-256, of which the first 128 bits are kept.</p>
+ */
+final class ContentHash {
+
+    private static final char FIELD_SEPARATOR = '\u001f';
+    private static final char RECORD_SEPARATOR = '\u001e';
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    final long high;
+    final long low;
+
+    private ContentHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Returns the content hash of a receipt, or null if it has no transaction ID. Identical
+     * items and totals alone do not make two purchases the same, so such receipts are never
+     * treated as duplicates.
+     */
+    static ContentHash of(Receipt receipt) {
+        String transactionId = receipt.getTransactionInfo() != null
+                ? receipt.getTransactionInfo().getTransactionId() : null;
+        if (transactionId == null || transactionId.trim().isEmpty()) {
+            return null;
+        }
+        List<String> items = new ArrayList<>();
+        if (receipt.getItems() != null) {
+            for (ReceiptItem item : receipt.getItems()) {
+                if (item == null) {
+                    continue;
+                }
+                StringBuilder line = new StringBuilder(64);
+                line.append(normalize(item.getDescription())).append(FIELD_SEPARATOR)
+                        .append(item.getQuantity()).append(FIELD_SEPARATOR);
+                appendAmount(line, item.getUnitPrice());
+                line.append(FIELD_SEPARATOR).append(normalize(item.getCategory()));
+                items.add(line.toString());
+            }
+            Collections.sort(items);
+        }
+        StringBuilder content = new StringBuilder(64 + items.size() * 64);
+        content.append(transactionId.trim()).append(RECORD_SEPARATOR);
+        appendAmount(content, receipt.getTotalAmount());
+        for (String item : items) {
+            content.append(RECORD_SEPARATOR).append(item);
+        }
+
+        MessageDigest digest = SHA_256.get();
+        byte[] bytes = digest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+        return new ContentHash(toLong(bytes, 0), toLong(bytes, 8));
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    out.append(' ');
+                    pendingSpace = false;
+                }
+                out.append(c);
+            }
+        }
+        return out.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static void appendAmount(StringBuilder out, Money amount) {
+        if (amount != null) {
+            out.append(amount.getMinorUnits()).append(' ').append(amount.getCurrencyCode());
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContentHash that = (ContentHash) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (high ^ (high >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%016x%016x", high, low);
+    }
+}
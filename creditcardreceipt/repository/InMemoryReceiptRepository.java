@@ -0,0 +1,390 @@
+package com.myinappbilling.creditcardreceipt.repository;
+
+import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.SpendRollup;
+import com.myinappbilling.financial.model.Money;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * ReceiptRepository that keeps receipts in memory.
+ * Receipts are indexed by case-folded merchant name (exact and trigram substring lookups) and,
+ * per currency, by total amount, so searches do not scan every receipt. The indexes are kept
+ * up to date by {@link #saveReceipt(Receipt)} and {@link #deleteReceipt(String)}, as are spend
+ * rollups per merchant and per item category per month.
+ * Receipts are also indexed by content hash (transaction ID, normalized items and total), so a
+ * duplicate of a stored receipt is found with one lookup when saving.
+ */
+public class InMemoryReceiptRepository implements ReceiptRepository {
+
+    private final Map<String, Receipt> receiptDatabase;
+    private final MerchantNameIndex merchantIndex = new MerchantNameIndex();
+    private final Map<String, NavigableMap<Long, Set<String>>> idsByAmount = new HashMap<>();
+    private final Map<ContentHash, Set<String>> idsByContentHash = new HashMap<>();
+    private final Map<String, IndexKeys> indexedKeys = new HashMap<>();
+    private final ReceiptRollupIndex rollups = new ReceiptRollupIndex(ZoneId.systemDefault());
+    private final Object indexLock = new Object();
+
+    public InMemoryReceiptRepository() {
+        this.receiptDatabase = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void saveReceipt(Receipt receipt) {
+        if (receipt != null && receipt.getReceiptId() != null) {
+            ContentHash hash = ContentHash.of(receipt);
+            synchronized (indexLock) {
+                receiptDatabase.put(receipt.getReceiptId(), receipt);
+                reindex(receipt, hash);
+            }
+        }
+    }
+
+    @Override
+    public Receipt saveReceiptIfAbsent(Receipt receipt) {
+        if (receipt == null || receipt.getReceiptId() == null) {
+            return null;
+        }
+        ContentHash hash = ContentHash.of(receipt);
+        synchronized (indexLock) {
+            Receipt duplicate = findDuplicate(receipt.getReceiptId(), hash);
+            if (duplicate == null) {
+                receiptDatabase.put(receipt.getReceiptId(), receipt);
+                reindex(receipt, hash);
+            }
+            return duplicate;
+        }
+    }
+
+    /**
+     * Saves the batch under a single lock acquisition.
+     */
+    @Override
+    public void saveReceipts(Collection<Receipt> receipts) {
+        List<ContentHash> hashes = contentHashes(receipts);
+        synchronized (indexLock) {
+            int i = 0;
+            for (Receipt receipt : receipts) {
+                ContentHash hash = hashes.get(i++);
+                if (receipt != null && receipt.getReceiptId() != null) {
+                    receiptDatabase.put(receipt.getReceiptId(), receipt);
+                    reindex(receipt, hash);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the batch under a single lock acquisition.
+     */
+    @Override
+    public List<Receipt> saveReceiptsIfAbsent(List<Receipt> receipts) {
+        List<ContentHash> hashes = contentHashes(receipts);
+        List<Receipt> duplicates = new ArrayList<>(receipts.size());
+        synchronized (indexLock) {
+            for (int i = 0; i < receipts.size(); i++) {
+                Receipt receipt = receipts.get(i);
+                Receipt duplicate = null;
+                if (receipt != null && receipt.getReceiptId() != null) {
+                    duplicate = findDuplicate(receipt.getReceiptId(), hashes.get(i));
+                    if (duplicate == null) {
+                        receiptDatabase.put(receipt.getReceiptId(), receipt);
+                        reindex(receipt, hashes.get(i));
+                    }
+                }
+                duplicates.add(duplicate);
+            }
+        }
+        return duplicates;
+    }
+
+    @Override
+    public Receipt findDuplicate(Receipt receipt) {
+        if (receipt == null) {
+            return null;
+        }
+        ContentHash hash = ContentHash.of(receipt);
+        synchronized (indexLock) {
+            return findDuplicate(receipt.getReceiptId(), hash);
+        }
+    }
+
+    @Override
+    public Receipt getReceiptById(String receiptId) {
+        return receiptId == null ? null : receiptDatabase.get(receiptId);
+    }
+
+    @Override
+    public List<Receipt> getAllReceipts() {
+        return new ArrayList<>(receiptDatabase.values());
+    }
+
+    /**
+     * Returns a live view of the stored receipts, which does not copy them.
+     */
+    @Override
+    public Collection<Receipt> getReceiptsView() {
+        return Collections.unmodifiableCollection(receiptDatabase.values());
+    }
+
+    @Override
+    public boolean deleteReceipt(String receiptId) {
+        if (receiptId == null) {
+            return false;
+        }
+        synchronized (indexLock) {
+            if (receiptDatabase.remove(receiptId) == null) {
+                return false;
+            }
+            unindex(receiptId);
+            return true;
+        }
+    }
+
+    @Override
+    public void clearAllReceipts() {
+        synchronized (indexLock) {
+            receiptDatabase.clear();
+            merchantIndex.clear();
+            idsByAmount.clear();
+            idsByContentHash.clear();
+            indexedKeys.clear();
+            rollups.clear();
+        }
+    }
+
+    @Override
+    public List<Receipt> searchReceiptsByMerchant(String merchantName) {
+        if (merchantName == null) {
+            return new ArrayList<>();
+        }
+        synchronized (indexLock) {
+            return resolve(merchantIndex.findExact(MerchantNameIndex.fold(merchantName)));
+        }
+    }
+
+    @Override
+    public List<Receipt> searchReceiptsByMerchantContaining(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return getAllReceipts();
+        }
+        synchronized (indexLock) {
+            return resolve(merchantIndex.findContaining(MerchantNameIndex.fold(query)));
+        }
+    }
+
+    @Override
+    public List<Receipt> getReceiptsByAmountRange(Money minAmount, Money maxAmount) {
+        if (!minAmount.isSameCurrency(maxAmount)) {
+            throw new IllegalArgumentException("Amount range bounds must use the same currency");
+        }
+        List<Receipt> result = new ArrayList<>();
+        if (minAmount.isGreaterThan(maxAmount)) {
+            return result;
+        }
+        synchronized (indexLock) {
+            NavigableMap<Long, Set<String>> amounts = idsByAmount.get(minAmount.getCurrencyCode());
+            if (amounts == null) {
+                return result;
+            }
+            for (Set<String> ids : amounts.subMap(minAmount.getMinorUnits(), true, maxAmount.getMinorUnits(), true).values()) {
+                result.addAll(resolve(ids));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<SpendRollup> getMonthlyMerchantSpend(YearMonth from, YearMonth to) {
+        synchronized (indexLock) {
+            return rollups.monthly(ReceiptRollupIndex.Dimension.MERCHANT, from, to);
+        }
+    }
+
+    @Override
+    public List<SpendRollup> getMonthlyCategorySpend(YearMonth from, YearMonth to) {
+        synchronized (indexLock) {
+            return rollups.monthly(ReceiptRollupIndex.Dimension.CATEGORY, from, to);
+        }
+    }
+
+    @Override
+    public List<SpendRollup> getTopMerchants(YearMonth from, YearMonth to, String currencyCode, int limit) {
+        synchronized (indexLock) {
+            return rollups.top(ReceiptRollupIndex.Dimension.MERCHANT, from, to, currencyCode, limit);
+        }
+    }
+
+    @Override
+    public List<SpendRollup> getTopCategories(YearMonth from, YearMonth to, String currencyCode, int limit) {
+        synchronized (indexLock) {
+            return rollups.top(ReceiptRollupIndex.Dimension.CATEGORY, from, to, currencyCode, limit);
+        }
+    }
+
+    /**
+     * Recomputes the rollups using parallel streams. Saves wait until it is done.
+     */
+    @Override
+    public void rebuildRollups() {
+        synchronized (indexLock) {
+            rollups.rebuild(receiptDatabase.values());
+        }
+    }
+
+    /**
+     * Reads the groups from the content hash index, copied under the index lock.
+     */
+    @Override
+    public List<List<String>> getDuplicateGroups() {
+        List<List<String>> groups = new ArrayList<>();
+        synchronized (indexLock) {
+            for (Set<String> ids : idsByContentHash.values()) {
+                if (ids.size() > 1) {
+                    groups.add(new ArrayList<>(ids));
+                }
+            }
+        }
+        return groups;
+    }
+
+    @Override
+    public boolean deleteDuplicate(String duplicateId, String keptId) {
+        synchronized (indexLock) {
+            IndexKeys duplicateKeys = indexedKeys.get(duplicateId);
+            IndexKeys keptKeys = indexedKeys.get(keptId);
+            if (duplicateKeys == null || keptKeys == null || duplicateKeys.contentHash == null
+                    || !duplicateKeys.contentHash.equals(keptKeys.contentHash)) {
+                return false;
+            }
+            receiptDatabase.remove(duplicateId);
+            unindex(duplicateId);
+            return true;
+        }
+    }
+
+    /**
+     * Must be called while holding the index lock.
+     */
+    private Receipt findDuplicate(String receiptId, ContentHash hash) {
+        Set<String> ids = hash != null ? idsByContentHash.get(hash) : null;
+        if (ids != null) {
+            for (String id : ids) {
+                if (!id.equals(receiptId)) {
+                    return receiptDatabase.get(id);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hashes the receipts in parallel, in order, before the index lock is taken, so saves do not
+     * hash under the lock.
+     */
+    private static List<ContentHash> contentHashes(Collection<Receipt> receipts) {
+        return receipts.parallelStream()
+                .map(receipt -> receipt != null && receipt.getReceiptId() != null ? ContentHash.of(receipt) : null)
+                .collect(Collectors.toList());
+    }
+
+    private List<Receipt> resolve(Collection<String> ids) {
+        List<Receipt> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Receipt receipt = receiptDatabase.get(id);
+            if (receipt != null) {
+                result.add(receipt);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the index entries of a receipt. Must be called while holding the index lock.
+     */
+    private void reindex(Receipt receipt, ContentHash contentHash) {
+        String id = receipt.getReceiptId();
+        unindex(id);
+        Money total = receipt.getTotalAmount();
+        IndexKeys keys = new IndexKeys(
+                MerchantNameIndex.fold(receipt.getMerchantName()),
+                total != null ? total.getCurrencyCode() : null,
+                total != null ? total.getMinorUnits() : 0L,
+                contentHash);
+        if (keys.merchant != null) {
+            merchantIndex.add(keys.merchant, id);
+        }
+        if (keys.currencyCode != null) {
+            idsByAmount.computeIfAbsent(keys.currencyCode, c -> new TreeMap<>())
+                    .computeIfAbsent(keys.amountMinorUnits, a -> new HashSet<>())
+                    .add(id);
+        }
+        if (keys.contentHash != null) {
+            idsByContentHash.computeIfAbsent(keys.contentHash, h -> new HashSet<>(2)).add(id);
+        }
+        indexedKeys.put(id, keys);
+        rollups.put(receipt);
+    }
+
+    /**
+     * Removes the index entries recorded for a receipt. Must be called while holding the index lock.
+     */
+    private void unindex(String id) {
+        rollups.remove(id);
+        IndexKeys keys = indexedKeys.remove(id);
+        if (keys == null) {
+            return;
+        }
+        if (keys.merchant != null) {
+            merchantIndex.remove(keys.merchant, id);
+        }
+        if (keys.currencyCode != null) {
+            NavigableMap<Long, Set<String>> amounts = idsByAmount.get(keys.currencyCode);
+            Set<String> ids = amounts.get(keys.amountMinorUnits);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                amounts.remove(keys.amountMinorUnits);
+                if (amounts.isEmpty()) {
+                    idsByAmount.remove(keys.currencyCode);
+                }
+            }
+        }
+        if (keys.contentHash != null) {
+            Set<String> ids = idsByContentHash.get(keys.contentHash);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByContentHash.remove(keys.contentHash);
+            }
+        }
+    }
+
+    /**
+     * Index keys of a receipt as they were when it was last saved.
+     */
+    private static class IndexKeys {
+        final String merchant;
+        final String currencyCode;
+        final long amountMinorUnits;
+        final ContentHash contentHash;
+
+        IndexKeys(String merchant, String currencyCode, long amountMinorUnits, ContentHash contentHash) {
+            this.merchant = merchant;
+            this.currencyCode = currencyCode;
+            this.amountMinorUnits = amountMinorUnits;
+            this.contentHash = contentHash;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.myinappbilling.creditcardreceipt.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MerchantNameIndex maps case-folded merchant names to receipt IDs, and trigrams of those names
+ * to the names containing them, so both exact and substring merchant searches avoid touching
+ * every receipt.
+ *
+ * <p>A substring query of three or more characters looks up the posting lists of its trigrams
+ * and confirms each name of the shortest list; a missing trigram means no match. Shorter
+ * queries check the distinct merchant names, which are far fewer than receipts.</p>
+ *
+ * <p>Not thread-safe; {@link InMemoryReceiptRepository} guards it with its own lock.</p>
+ */
+class MerchantNameIndex {
+
+    private static final int GRAM = 3;
+
+    private final Map<String, Set<String>> receiptIdsByMerchant = new HashMap<>();
+    private final Map<String, Set<String>> merchantsByTrigram = new HashMap<>();
+
+    static String fold(String merchantName) {
+        return merchantName == null ? null : merchantName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    void add(String foldedMerchant, String receiptId) {
+        Set<String> ids = receiptIdsByMerchant.get(foldedMerchant);
+        if (ids == null) {
+            ids = new HashSet<>();
+            receiptIdsByMerchant.put(foldedMerchant, ids);
+            for (String gram : trigrams(foldedMerchant)) {
+                merchantsByTrigram.computeIfAbsent(gram, g -> new HashSet<>()).add(foldedMerchant);
+            }
+        }
+        ids.add(receiptId);
+    }
+
+    void remove(String foldedMerchant, String receiptId) {
+        Set<String> ids = receiptIdsByMerchant.get(foldedMerchant);
+        if (ids == null || !ids.remove(receiptId) || !ids.isEmpty()) {
+            return;
+        }
+        receiptIdsByMerchant.remove(foldedMerchant);
+        for (String gram : trigrams(foldedMerchant)) {
+            Set<String> merchants = merchantsByTrigram.get(gram);
+            if (merchants != null) {
+                merchants.remove(foldedMerchant);
+                if (merchants.isEmpty()) {
+                    merchantsByTrigram.remove(gram);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        receiptIdsByMerchant.clear();
+        merchantsByTrigram.clear();
+    }
+
+    /**
+     * Returns the IDs of receipts whose folded merchant name equals the folded query.
+     */
+    Set<String> findExact(String foldedMerchant) {
+        Set<String> ids = receiptIdsByMerchant.get(foldedMerchant);
+        return ids == null ? Collections.emptySet() : ids;
+    }
+
+    /**
+     * Returns the IDs of receipts whose folded merchant name contains the folded query.
+     */
+    List<String> findContaining(String foldedQuery) {
+        List<String> result = new ArrayList<>();
+        for (String merchant : merchantsContaining(foldedQuery)) {
+            result.addAll(receiptIdsByMerchant.get(merchant));
+        }
+        return result;
+    }
+
+    private Set<String> merchantsContaining(String query) {
+        if (query.length() < GRAM) {
+            Set<String> matches = new HashSet<>();
+            for (String merchant : receiptIdsByMerchant.keySet()) {
+                if (merchant.contains(query)) {
+                    matches.add(merchant);
+                }
+            }
+            return matches;
+        }
+        List<Set<String>> postings = new ArrayList<>();
+        for (String gram : trigrams(query)) {
+            Set<String> merchants = merchantsByTrigram.get(gram);
+            if (merchants == null) {
+                return Collections.emptySet();
+            }
+            postings.add(merchants);
+        }
+        postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<String> matches = new HashSet<>();
+        for (String candidate : postings.get(0)) {
+            if (candidate.contains(query)) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,67 @@
+package com.myinappbilling.creditcardreceipt.repository;
+
+import com.myinappbilling.creditcardreceipt.model.ReceiptDedupeReport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * ReceiptDedupeSweep finds, and optionally removes, receipts stored before duplicates were
+ * rejected at save time: receipts with the same transaction ID, items and total under different
+ * receipt IDs.
+ *
+ * <p>The sweep does not hash any receipt: it reads the groups of receipt IDs that share a content
+ * hash from the repository, which indexes every receipt by content hash when it is saved. The
+ * groups are a snapshot, so saves go on during the sweep; a receipt is only removed if it still
+ * has the same content as the receipt kept in its place.</p>
+ *
+ * <p>In each group, the receipt with the smallest ID is kept, so repeated sweeps agree.</p>
+ */
+public class ReceiptDedupeSweep {
+
+    private final ReceiptRepository receiptRepository;
+
+    public ReceiptDedupeSweep(ReceiptRepository receiptRepository) {
+        this.receiptRepository = receiptRepository;
+    }
+
+    /**
+     * Runs the sweep on the given executor.
+     *
+     * @param removeDuplicates whether to delete the duplicates found, or only report them
+     * @param executor         the executor to run on, e.g. a background thread
+     * @return the report, once the sweep is done
+     */
+    public CompletableFuture<ReceiptDedupeReport> runAsync(boolean removeDuplicates, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> run(removeDuplicates), executor);
+    }
+
+    /**
+     * Runs the sweep on the calling thread.
+     *
+     * @param removeDuplicates whether to delete the duplicates found, or only report them
+     * @return the duplicate groups found and the number of receipts removed
+     */
+    public ReceiptDedupeReport run(boolean removeDuplicates) {
+        long startTime = System.currentTimeMillis();
+        List<ReceiptDedupeReport.DuplicateGroup> groups = new ArrayList<>();
+        long removed = 0;
+        for (List<String> ids : receiptRepository.getDuplicateGroups()) {
+            Collections.sort(ids);
+            String keptId = ids.get(0);
+            List<String> duplicateIds = new ArrayList<>(ids.subList(1, ids.size()));
+            groups.add(new ReceiptDedupeReport.DuplicateGroup(keptId, duplicateIds));
+            if (removeDuplicates) {
+                for (String duplicateId : duplicateIds) {
+                    if (receiptRepository.deleteDuplicate(duplicateId, keptId)) {
+                        removed++;
+                    }
+                }
+            }
+        }
+        return new ReceiptDedupeReport(groups, removed, System.currentTimeMillis() - startTime);
+    }
+}
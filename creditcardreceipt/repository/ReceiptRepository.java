@@ -1,34 +1,68 @@
 package com.myinappbilling.creditcardreceipt.repository;
 
 import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.SpendRollup;
+import com.myinappbilling.financial.model.Money;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
- * Repository class for managing Receipt data.
+ * Stores receipts and answers the searches, duplicate checks and spend rollups the app needs.
+ *
+ * <p>Two receipts are duplicates when they have the same content: the same transaction ID,
+ * items and total, ignoring receipt and item IDs, the order of the items and null items.
+ * Receipts without a transaction ID are never duplicates. Implementations must be safe to call
+ * from several threads.</p>
+ *
+ * @see InMemoryReceiptRepository
+ * @see SQLiteReceiptRepository
  */
-public class ReceiptRepository {
+public interface ReceiptRepository {
 
-    private final Map<String, Receipt> receiptDatabase;
-
-    public ReceiptRepository() {
-        this.receiptDatabase = new HashMap<>();
-    }
+    /**
+     * Saves a receipt, replacing any receipt stored under its ID.
+     *
+     * @param receipt the receipt to save; it is skipped if it has no ID
+     */
+    void saveReceipt(Receipt receipt);
 
     /**
-     * Saves a receipt into the repository.
+     * Saves a receipt unless another stored receipt has the same content. Saving a receipt
+     * again under its own ID replaces it as usual. Receipts without a transaction ID are always
+     * saved.
      *
      * @param receipt the receipt to save
+     * @return the stored duplicate if the receipt was not saved, or null if it was saved
+     */
+    Receipt saveReceiptIfAbsent(Receipt receipt);
+
+    /**
+     * Saves a batch of receipts.
+     *
+     * @param receipts the receipts to save; entries without an ID are skipped
+     */
+    void saveReceipts(Collection<Receipt> receipts);
+
+    /**
+     * Saves a batch of receipts, skipping every receipt that duplicates a stored receipt or an
+     * earlier receipt of the batch.
+     *
+     * @param receipts the receipts to save; entries without an ID are skipped
+     * @return for each receipt, in order, the stored duplicate if it was not saved, or null
+     * @see #saveReceiptIfAbsent(Receipt)
+     */
+    List<Receipt> saveReceiptsIfAbsent(List<Receipt> receipts);
+
+    /**
+     * Finds a stored receipt, other than the given one, with the same transaction ID, items
+     * and total.
+     *
+     * @param receipt the receipt to look for
+     * @return a stored duplicate, or null if there is none or the receipt has no transaction ID
      */
-    public void saveReceipt(Receipt receipt) {
-        if (receipt != null && receipt.getReceiptId() != null) {
-            receiptDatabase.put(receipt.getReceiptId(), receipt);
-        }
-    }
+    Receipt findDuplicate(Receipt receipt);
 
     /**
      * Retrieves a receipt by its ID.
@@ -36,18 +70,22 @@ public class ReceiptRepository {
      * @param receiptId the ID of the receipt
      * @return the found receipt, or null if not found
      */
-    public Receipt getReceiptById(String receiptId) {
-        return receiptDatabase.get(receiptId);
-    }
+    Receipt getReceiptById(String receiptId);
 
     /**
      * Retrieves all stored receipts.
      *
      * @return a list of all receipts
      */
-    public List<Receipt> getAllReceipts() {
-        return new ArrayList<>(receiptDatabase.values());
-    }
+    List<Receipt> getAllReceipts();
+
+    /**
+     * Returns a read-only view of the stored receipts. Iterating it does not copy all receipts
+     * first, and it does not fail if receipts are saved or deleted meanwhile.
+     *
+     * @return a view of all receipts
+     */
+    Collection<Receipt> getReceiptsView();
 
     /**
      * Deletes a receipt by its ID.
@@ -55,43 +93,101 @@ public class ReceiptRepository {
      * @param receiptId the ID of the receipt to delete
      * @return true if deleted, false otherwise
      */
-    public boolean deleteReceipt(String receiptId) {
-        if (receiptDatabase.containsKey(receiptId)) {
-            receiptDatabase.remove(receiptId);
-            return true;
-        }
-        return false;
-    }
+    boolean deleteReceipt(String receiptId);
 
     /**
      * Clears all stored receipts.
      */
-    public void clearAllReceipts() {
-        receiptDatabase.clear();
-    }
+    void clearAllReceipts();
 
     /**
-     * Searches receipts by merchant name.
+     * Searches receipts by merchant name, ignoring case and surrounding whitespace.
      *
      * @param merchantName the merchant name to search
      * @return list of receipts matching the merchant name
      */
-    public List<Receipt> searchReceiptsByMerchant(String merchantName) {
-        return receiptDatabase.values().stream()
-                .filter(receipt -> receipt.getMerchantName().equalsIgnoreCase(merchantName))
-                .collect(Collectors.toList());
-    }
+    List<Receipt> searchReceiptsByMerchant(String merchantName);
+
+    /**
+     * Searches receipts whose merchant name contains the query, ignoring case.
+     *
+     * @param query part of the merchant name
+     * @return list of receipts whose merchant name contains the query
+     */
+    List<Receipt> searchReceiptsByMerchantContaining(String query);
 
     /**
      * Retrieves receipts within a specific amount range.
      *
-     * @param minAmount minimum transaction amount
-     * @param maxAmount maximum transaction amount
-     * @return list of receipts within the amount range
+     * @param minAmount minimum transaction amount (inclusive)
+     * @param maxAmount maximum transaction amount (inclusive), in the same currency as minAmount
+     * @return list of receipts in that currency within the amount range, in ascending amount order
+     */
+    List<Receipt> getReceiptsByAmountRange(Money minAmount, Money maxAmount);
+
+    /**
+     * Returns the spend per merchant per month within a range of months. Merchant names are
+     * trimmed and lower-cased, so spellings that differ only in case are counted together.
+     *
+     * @param from the first month, inclusive
+     * @param to   the last month, inclusive
+     * @return one entry per merchant, month and currency, by month and then by descending total
+     */
+    List<SpendRollup> getMonthlyMerchantSpend(YearMonth from, YearMonth to);
+
+    /**
+     * Returns the spend per item category per month within a range of months. Items without a
+     * category are counted as "Uncategorized".
+     *
+     * @param from the first month, inclusive
+     * @param to   the last month, inclusive
+     * @return one entry per category, month and currency, by month and then by descending total
+     */
+    List<SpendRollup> getMonthlyCategorySpend(YearMonth from, YearMonth to);
+
+    /**
+     * Returns the merchants with the highest spend in one currency within a range of months.
+     *
+     * @param from         the first month, inclusive
+     * @param to           the last month, inclusive
+     * @param currencyCode the currency
+     * @param limit        the maximum number of merchants
+     * @return the top merchants, by descending total
+     */
+    List<SpendRollup> getTopMerchants(YearMonth from, YearMonth to, String currencyCode, int limit);
+
+    /**
+     * Returns the item categories with the highest spend in one currency within a range of months.
+     *
+     * @param from         the first month, inclusive
+     * @param to           the last month, inclusive
+     * @param currencyCode the currency
+     * @param limit        the maximum number of categories
+     * @return the top categories, by descending total
+     */
+    List<SpendRollup> getTopCategories(YearMonth from, YearMonth to, String currencyCode, int limit);
+
+    /**
+     * Recomputes all spend rollups from the stored receipts, e.g. after receipts were modified
+     * in place without being saved again.
+     */
+    void rebuildRollups();
+
+    /**
+     * Returns the IDs of the receipts that have the same content as another stored receipt,
+     * one group per content. Used by {@link ReceiptDedupeSweep}.
+     *
+     * @return the groups, each of at least two receipt IDs; the lists may be modified
+     */
+    List<List<String>> getDuplicateGroups();
+
+    /**
+     * Deletes a receipt found by a dedupe sweep, provided both it and the receipt kept in its
+     * place are still stored and still have the same content.
+     *
+     * @param duplicateId the ID of the receipt to delete
+     * @param keptId      the ID of the receipt kept in its place
+     * @return true if the duplicate was deleted
      */
-    public List<Receipt> getReceiptsByAmountRange(double minAmount, double maxAmount) {
-        return receiptDatabase.values().stream()
-                .filter(receipt -> receipt.getTotalAmount() >= minAmount && receipt.getTotalAmount() <= maxAmount)
-                .collect(Collectors.toList());
-    }
+    boolean deleteDuplicate(String duplicateId, String keptId);
 }
@@ -0,0 +1,297 @@
+package com.myinappbilling.creditcardreceipt.repository;
+
+import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.creditcardreceipt.model.SpendRollup;
+import com.myinappbilling.financial.model.Money;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * ReceiptRollupIndex keeps spend totals per (merchant, month) and per (category, month), per
+ * currency, so analytics read precomputed cells instead of walking every receipt and item.
+ *
+ * <p>A receipt contributes its total to its merchant's cell, and each line item contributes its
+ * price times quantity to its category's cell. Merchants are grouped by the same case-folded
+ * name as {@link MerchantNameIndex}, which is also the name of the merchant rollup. The
+ * contributions of every receipt are recorded when it is added, so it can be taken out again
+ * exactly when it is replaced or deleted. Months are taken from the transaction date in the
+ * index's time zone.</p>
+ *
+ * <p>Not thread-safe; {@link InMemoryReceiptRepository} guards it with its own lock.
+ * {@link SQLiteReceiptRepository} keeps the same cells in tables, from the same contributions.</p>
+ */
+class ReceiptRollupIndex {
+
+    static final String UNCATEGORIZED = "Uncategorized";
+
+    private static final Comparator<SpendRollup> BY_TOTAL_DESCENDING = Comparator
+            .comparing((SpendRollup rollup) -> rollup.getTotal().getCurrencyCode())
+            .thenComparing(rollup -> rollup.getTotal().getMinorUnits(), Comparator.reverseOrder())
+            .thenComparing(SpendRollup::getName);
+
+    enum Dimension {
+        MERCHANT, CATEGORY
+    }
+
+    private final ZoneId zone;
+    private final Map<Dimension, NavigableMap<YearMonth, Map<GroupKey, Cell>>> cubes = new EnumMap<>(Dimension.class);
+    private final Map<String, List<Contribution>> contributionsByReceiptId = new HashMap<>();
+
+    ReceiptRollupIndex(ZoneId zone) {
+        this.zone = zone;
+        for (Dimension dimension : Dimension.values()) {
+            cubes.put(dimension, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Adds a receipt, replacing its previous contributions if it was added before.
+     */
+    void put(Receipt receipt) {
+        remove(receipt.getReceiptId());
+        List<Contribution> contributions = contributionsOf(receipt, zone);
+        for (Contribution contribution : contributions) {
+            apply(contribution, 1);
+        }
+        if (!contributions.isEmpty()) {
+            contributionsByReceiptId.put(receipt.getReceiptId(), contributions);
+        }
+    }
+
+    void remove(String receiptId) {
+        List<Contribution> contributions = contributionsByReceiptId.remove(receiptId);
+        if (contributions != null) {
+            for (Contribution contribution : contributions) {
+                apply(contribution, -1);
+            }
+        }
+    }
+
+    void clear() {
+        contributionsByReceiptId.clear();
+        for (NavigableMap<YearMonth, Map<GroupKey, Cell>> cube : cubes.values()) {
+            cube.clear();
+        }
+    }
+
+    /**
+     * Rebuilds all cells from the given receipts, computing contributions and cell totals with
+     * parallel streams.
+     */
+    void rebuild(Collection<Receipt> receipts) {
+        // Each worker fills its own map and the partial maps are merged, so the few hot cells
+        // are not contended.
+        Map<String, List<Contribution>> contributions = receipts.parallelStream()
+                .filter(receipt -> receipt.getReceiptId() != null)
+                .collect(Collectors.toMap(Receipt::getReceiptId, receipt -> contributionsOf(receipt, zone)));
+        Map<CellKey, Cell> cells = contributions.values().parallelStream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(
+                        contribution -> new CellKey(contribution.dimension, contribution.month, contribution.group),
+                        contribution -> new Cell(contribution.minorUnits, 1),
+                        Cell::add));
+        clear();
+        for (Map.Entry<String, List<Contribution>> entry : contributions.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                contributionsByReceiptId.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<CellKey, Cell> entry : cells.entrySet()) {
+            CellKey key = entry.getKey();
+            cubes.get(key.dimension).computeIfAbsent(key.month, m -> new HashMap<>()).put(key.group, entry.getValue());
+        }
+    }
+
+    /**
+     * Returns one rollup per group and month within the range, ordered by month and then by
+     * descending total.
+     */
+    List<SpendRollup> monthly(Dimension dimension, YearMonth from, YearMonth to) {
+        List<SpendRollup> result = new ArrayList<>();
+        for (Map.Entry<YearMonth, Map<GroupKey, Cell>> month : range(dimension, from, to).entrySet()) {
+            List<SpendRollup> rows = new ArrayList<>(month.getValue().size());
+            for (Map.Entry<GroupKey, Cell> cell : month.getValue().entrySet()) {
+                rows.add(toRollup(cell.getKey(), month.getKey(), month.getKey(), cell.getValue()));
+            }
+            rows.sort(BY_TOTAL_DESCENDING);
+            result.addAll(rows);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the groups with the highest spend in one currency over the range, summed across
+     * months.
+     */
+    List<SpendRollup> top(Dimension dimension, YearMonth from, YearMonth to, String currencyCode, int limit) {
+        Map<String, Cell> totals = new HashMap<>();
+        for (Map<GroupKey, Cell> month : range(dimension, from, to).values()) {
+            for (Map.Entry<GroupKey, Cell> cell : month.entrySet()) {
+                if (cell.getKey().currencyCode.equals(currencyCode)) {
+                    totals.merge(cell.getKey().name, cell.getValue(), Cell::merge);
+                }
+            }
+        }
+        List<SpendRollup> result = new ArrayList<>(totals.size());
+        for (Map.Entry<String, Cell> total : totals.entrySet()) {
+            result.add(toRollup(new GroupKey(total.getKey(), currencyCode), from, to, total.getValue()));
+        }
+        result.sort(BY_TOTAL_DESCENDING);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, Math.max(0, limit))) : result;
+    }
+
+    private NavigableMap<YearMonth, Map<GroupKey, Cell>> range(Dimension dimension, YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            return Collections.emptyNavigableMap();
+        }
+        return cubes.get(dimension).subMap(from, true, to, true);
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        NavigableMap<YearMonth, Map<GroupKey, Cell>> cube = cubes.get(contribution.dimension);
+        Map<GroupKey, Cell> month = cube.computeIfAbsent(contribution.month, m -> new HashMap<>());
+        Cell cell = month.computeIfAbsent(contribution.group, g -> new Cell(0, 0));
+        cell.totalMinorUnits += sign * contribution.minorUnits;
+        cell.count += sign;
+        if (cell.count == 0) {
+            month.remove(contribution.group);
+            if (month.isEmpty()) {
+                cube.remove(contribution.month);
+            }
+        }
+    }
+
+    private static SpendRollup toRollup(GroupKey group, YearMonth from, YearMonth to, Cell cell) {
+        return new SpendRollup(group.name, from, to, Money.ofMinor(cell.totalMinorUnits, group.currencyCode), cell.count);
+    }
+
+    /**
+     * Returns what a receipt adds to the rollups: its total to its merchant's cell and each
+     * priced item to its category's cell, in the month of its transaction date.
+     */
+    static List<Contribution> contributionsOf(Receipt receipt, ZoneId zone) {
+        if (receipt.getTransactionDate() == null) {
+            return Collections.emptyList();
+        }
+        YearMonth month = YearMonth.from(receipt.getTransactionDate().toInstant().atZone(zone));
+        List<Contribution> contributions = new ArrayList<>();
+        Money total = receipt.getTotalAmount();
+        if (total != null && receipt.getMerchantName() != null) {
+            contributions.add(new Contribution(Dimension.MERCHANT, month,
+                    new GroupKey(MerchantNameIndex.fold(receipt.getMerchantName()), total.getCurrencyCode()), total.getMinorUnits()));
+        }
+        if (receipt.getItems() != null) {
+            for (ReceiptItem item : receipt.getItems()) {
+                Money unitPrice = item != null ? item.getUnitPrice() : null;
+                if (unitPrice == null) {
+                    continue;
+                }
+                String category = item.getCategory() == null || item.getCategory().trim().isEmpty()
+                        ? UNCATEGORIZED : item.getCategory().trim();
+                contributions.add(new Contribution(Dimension.CATEGORY, month,
+                        new GroupKey(category, unitPrice.getCurrencyCode()),
+                        Math.multiplyExact(unitPrice.getMinorUnits(), (long) item.getQuantity())));
+            }
+        }
+        return contributions;
+    }
+
+    static final class Contribution {
+        final Dimension dimension;
+        final YearMonth month;
+        final GroupKey group;
+        final long minorUnits;
+
+        Contribution(Dimension dimension, YearMonth month, GroupKey group, long minorUnits) {
+            this.dimension = dimension;
+            this.month = month;
+            this.group = group;
+            this.minorUnits = minorUnits;
+        }
+    }
+
+    private static final class Cell {
+        long totalMinorUnits;
+        int count;
+
+        Cell(long totalMinorUnits, int count) {
+            this.totalMinorUnits = totalMinorUnits;
+            this.count = count;
+        }
+
+        /**
+         * Adds another cell into this one. Only used on cells not yet published in the index.
+         */
+        Cell add(Cell other) {
+            totalMinorUnits = Math.addExact(totalMinorUnits, other.totalMinorUnits);
+            count += other.count;
+            return this;
+        }
+
+        static Cell merge(Cell a, Cell b) {
+            return new Cell(Math.addExact(a.totalMinorUnits, b.totalMinorUnits), a.count + b.count);
+        }
+    }
+
+    static final class GroupKey {
+        final String name;
+        final String currencyCode;
+
+        GroupKey(String name, String currencyCode) {
+            this.name = name;
+            this.currencyCode = currencyCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            GroupKey groupKey = (GroupKey) o;
+            return name.equals(groupKey.name) && currencyCode.equals(groupKey.currencyCode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, currencyCode);
+        }
+    }
+
+    private static final class CellKey {
+        final Dimension dimension;
+        final YearMonth month;
+        final GroupKey group;
+
+        CellKey(Dimension dimension, YearMonth month, GroupKey group) {
+            this.dimension = dimension;
+            this.month = month;
+            this.group = group;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CellKey cellKey = (CellKey) o;
+            return dimension == cellKey.dimension && month.equals(cellKey.month) && group.equals(cellKey.group);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dimension, month, group);
+        }
+    }
+}
@@ -0,0 +1,965 @@
+package com.myinappbilling.creditcardreceipt.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.creditcardreceipt.model.SpendRollup;
+import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
+import com.myinappbilling.databasesetup.util.DatabaseUtils;
+import com.myinappbilling.financial.model.Money;
+
+import java.io.Closeable;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+/**
+ * ReceiptRepository that keeps receipts in a SQLite database, so they survive restarts.
+ *
+ * <p>Receipts and their items are stored in two tables, {@code receipts} and
+ * {@code receipt_items}, with the transaction details as columns of the receipt row. Lookups by
+ * exact merchant name, date range and amount range, and duplicate checks, are served by SQLite
+ * indexes on the case-folded merchant name, the transaction date, the currency and total, and
+ * the content hash. A search for merchant names containing a substring cannot use an index,
+ * since the pattern starts with a wildcard, and scans the receipts table instead.</p>
+ *
+ * <p>Spend rollups are kept in {@code spend_rollups}, one row per dimension, month, currency
+ * and merchant or category, and are read without touching the receipts. Every write records
+ * what each receipt adds to them in {@code spend_contributions} and moves it in and out of the
+ * rollup rows in the same transaction, as {@link ReceiptRollupIndex} does in memory.</p>
+ *
+ * <p>A batch is written in a single transaction through statements compiled once for the
+ * batch. The most recently saved or fetched receipts are kept in an LRU cache, so they are
+ * returned without a query, as the same instances. Queries returning many receipts reuse cached
+ * instances but do not fill the cache.</p>
+ *
+ * <p>The instrumented ReceiptRepositoryBenchmark measures these paths against a database file
+ * on a device.</p>
+ */
+public class SQLiteReceiptRepository implements ReceiptRepository {
+
+    public static final String DATABASE_NAME = "receipts.db";
+    public static final int DEFAULT_HOT_CACHE_SIZE = 1_000;
+
+    private static final int PAGE_SIZE = 500;
+
+    private static final String RECEIPTS_TABLE = "receipts";
+    private static final String ITEMS_TABLE = "receipt_items";
+    private static final String CONTRIBUTIONS_TABLE = "spend_contributions";
+    private static final String ROLLUPS_TABLE = "spend_rollups";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS receipts ("
+                    + "receipt_id TEXT PRIMARY KEY NOT NULL, "
+                    + "transaction_date INTEGER, "
+                    + "merchant_name TEXT, "
+                    + "merchant_folded TEXT, "
+                    + "total_minor INTEGER, "
+                    + "currency TEXT, "
+                    + "payment_method TEXT, "
+                    + "content_hash TEXT, "
+                    + "txn_present INTEGER NOT NULL, "
+                    + "txn_id TEXT, "
+                    + "txn_card_last_four TEXT, "
+                    + "txn_date INTEGER, "
+                    + "txn_amount_minor INTEGER, "
+                    + "txn_currency TEXT, "
+                    + "txn_merchant_name TEXT, "
+                    + "txn_type TEXT, "
+                    + "txn_international INTEGER NOT NULL, "
+                    + "txn_authorization_code TEXT)",
+            "CREATE TABLE IF NOT EXISTS receipt_items ("
+                    + "receipt_id TEXT NOT NULL, "
+                    + "position INTEGER NOT NULL, "
+                    + "item_id TEXT, "
+                    + "description TEXT, "
+                    + "quantity INTEGER NOT NULL, "
+                    + "unit_price_minor INTEGER, "
+                    + "unit_price_currency TEXT, "
+                    + "category TEXT, "
+                    + "PRIMARY KEY (receipt_id, position))",
+            "CREATE TABLE IF NOT EXISTS spend_contributions ("
+                    + "receipt_id TEXT NOT NULL, "
+                    + "dimension TEXT NOT NULL, "
+                    + "month INTEGER NOT NULL, "
+                    + "currency TEXT NOT NULL, "
+                    + "name TEXT NOT NULL, "
+                    + "minor_units INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS spend_rollups ("
+                    + "dimension TEXT NOT NULL, "
+                    + "month INTEGER NOT NULL, "
+                    + "currency TEXT NOT NULL, "
+                    + "name TEXT NOT NULL, "
+                    + "total_minor INTEGER NOT NULL, "
+                    + "contribution_count INTEGER NOT NULL, "
+                    + "PRIMARY KEY (dimension, month, currency, name))",
+            "CREATE INDEX IF NOT EXISTS idx_receipts_merchant ON receipts (merchant_folded)",
+            "CREATE INDEX IF NOT EXISTS idx_receipts_date ON receipts (transaction_date)",
+            "CREATE INDEX IF NOT EXISTS idx_receipts_amount ON receipts (currency, total_minor)",
+            "CREATE INDEX IF NOT EXISTS idx_receipts_content_hash ON receipts (content_hash)",
+            "CREATE INDEX IF NOT EXISTS idx_spend_contributions_receipt ON spend_contributions (receipt_id)"
+    };
+
+    private static final String INSERT_RECEIPT = "INSERT OR REPLACE INTO receipts ("
+            + "receipt_id, transaction_date, merchant_name, merchant_folded, total_minor, currency, payment_method, "
+            + "content_hash, txn_present, txn_id, txn_card_last_four, txn_date, txn_amount_minor, txn_currency, "
+            + "txn_merchant_name, txn_type, txn_international, txn_authorization_code) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ITEM = "INSERT INTO receipt_items ("
+            + "receipt_id, position, item_id, description, quantity, unit_price_minor, unit_price_currency, category) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_ITEMS = "DELETE FROM receipt_items WHERE receipt_id = ?";
+    private static final String DELETE_RECEIPT = "DELETE FROM receipts WHERE receipt_id = ?";
+    private static final String FIND_DUPLICATE =
+            "SELECT receipt_id FROM receipts WHERE content_hash = ? AND receipt_id <> ? LIMIT 1";
+    private static final String IS_DUPLICATE = "SELECT COUNT(*) FROM receipts WHERE receipt_id = ? "
+            + "AND content_hash = (SELECT content_hash FROM receipts WHERE receipt_id = ?)";
+    private static final String SELECT_DUPLICATE_GROUPS = "SELECT content_hash, receipt_id FROM receipts "
+            + "WHERE content_hash IN (SELECT content_hash FROM receipts WHERE content_hash IS NOT NULL "
+            + "GROUP BY content_hash HAVING COUNT(*) > 1) ORDER BY content_hash, receipt_id";
+
+    // Receipt columns first, then item columns; the item columns are null for a receipt without items.
+    private static final String SELECT_RECEIPTS = "SELECT "
+            + "r.receipt_id, r.transaction_date, r.merchant_name, r.total_minor, r.currency, r.payment_method, "
+            + "r.txn_present, r.txn_id, r.txn_card_last_four, r.txn_date, r.txn_amount_minor, r.txn_currency, "
+            + "r.txn_merchant_name, r.txn_type, r.txn_international, r.txn_authorization_code, "
+            + "i.position, i.item_id, i.description, i.quantity, i.unit_price_minor, i.unit_price_currency, i.category "
+            + "FROM receipts r LEFT JOIN receipt_items i ON i.receipt_id = r.receipt_id";
+
+    private static final String SELECT_CONTRIBUTIONS =
+            "SELECT dimension, month, currency, name, minor_units FROM spend_contributions WHERE receipt_id = ?";
+    private static final String INSERT_CONTRIBUTION = "INSERT INTO spend_contributions ("
+            + "receipt_id, dimension, month, currency, name, minor_units) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_CONTRIBUTIONS = "DELETE FROM spend_contributions WHERE receipt_id = ?";
+    private static final String UPDATE_ROLLUP = "UPDATE spend_rollups "
+            + "SET total_minor = total_minor + ?, contribution_count = contribution_count + ? "
+            + "WHERE dimension = ? AND month = ? AND currency = ? AND name = ?";
+    private static final String INSERT_ROLLUP = "INSERT INTO spend_rollups ("
+            + "dimension, month, currency, name, total_minor, contribution_count) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_EMPTY_ROLLUP = "DELETE FROM spend_rollups "
+            + "WHERE dimension = ? AND month = ? AND currency = ? AND name = ? AND contribution_count = 0";
+    private static final String SELECT_MONTHLY_SPEND = "SELECT month, currency, name, total_minor, contribution_count "
+            + "FROM spend_rollups WHERE dimension = ? AND month BETWEEN ? AND ? "
+            + "ORDER BY month, currency, total_minor DESC, name";
+    private static final String SELECT_TOP_SPEND = "SELECT name, SUM(total_minor) AS total, SUM(contribution_count) "
+            + "FROM spend_rollups WHERE dimension = ? AND month BETWEEN ? AND ? AND currency = ? "
+            + "GROUP BY name ORDER BY total DESC, name LIMIT ?";
+
+    private static final int COLUMN_RECEIPT_ID = 0;
+    private static final int COLUMN_TRANSACTION_DATE = 1;
+    private static final int COLUMN_MERCHANT_NAME = 2;
+    private static final int COLUMN_TOTAL_MINOR = 3;
+    private static final int COLUMN_CURRENCY = 4;
+    private static final int COLUMN_PAYMENT_METHOD = 5;
+    private static final int COLUMN_TXN_PRESENT = 6;
+    private static final int COLUMN_TXN_ID = 7;
+    private static final int COLUMN_TXN_CARD_LAST_FOUR = 8;
+    private static final int COLUMN_TXN_DATE = 9;
+    private static final int COLUMN_TXN_AMOUNT_MINOR = 10;
+    private static final int COLUMN_TXN_CURRENCY = 11;
+    private static final int COLUMN_TXN_MERCHANT_NAME = 12;
+    private static final int COLUMN_TXN_TYPE = 13;
+    private static final int COLUMN_TXN_INTERNATIONAL = 14;
+    private static final int COLUMN_TXN_AUTHORIZATION_CODE = 15;
+    private static final int COLUMN_ITEM_POSITION = 16;
+    private static final int COLUMN_ITEM_ID = 17;
+    private static final int COLUMN_ITEM_DESCRIPTION = 18;
+    private static final int COLUMN_ITEM_QUANTITY = 19;
+    private static final int COLUMN_ITEM_UNIT_PRICE_MINOR = 20;
+    private static final int COLUMN_ITEM_UNIT_PRICE_CURRENCY = 21;
+    private static final int COLUMN_ITEM_CATEGORY = 22;
+
+    private final SQLiteDatabase database;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<String, Receipt> hotCache;
+    // Guarded by hotCache; bumped after every committed write
+    private long writeGeneration;
+
+    /**
+     * Opens, or creates, the app's receipt database.
+     *
+     * @param context the context whose database directory holds the database
+     */
+    public SQLiteReceiptRepository(Context context) {
+        this(context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null), DEFAULT_HOT_CACHE_SIZE);
+    }
+
+    /**
+     * @param database     an open database; the receipt tables are created in it if missing
+     * @param hotCacheSize the number of recently used receipts kept in memory
+     */
+    public SQLiteReceiptRepository(SQLiteDatabase database, int hotCacheSize) {
+        if (hotCacheSize <= 0) {
+            throw new IllegalArgumentException("Hot cache size must be positive");
+        }
+        this.database = database;
+        this.hotCache = new LinkedHashMap<String, Receipt>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Receipt> eldest) {
+                return size() > hotCacheSize;
+            }
+        };
+        // Lets queries run while a batch is being written.
+        database.enableWriteAheadLogging();
+        boolean hasRollups = DatabaseUtils.tableExists(database, ROLLUPS_TABLE)
+                && DatabaseUtils.tableExists(database, CONTRIBUTIONS_TABLE);
+        if (!hasRollups || !DatabaseUtils.tableExists(database, RECEIPTS_TABLE)
+                || !DatabaseUtils.tableExists(database, ITEMS_TABLE)) {
+            createSchema();
+        }
+        if (!hasRollups) {
+            // Receipts stored before the rollup tables existed are counted once.
+            rebuildRollups();
+        }
+    }
+
+    @Override
+    public void saveReceipt(Receipt receipt) {
+        if (receipt != null && receipt.getReceiptId() != null) {
+            write(Collections.singletonList(receipt), false);
+        }
+    }
+
+    @Override
+    public Receipt saveReceiptIfAbsent(Receipt receipt) {
+        if (receipt == null || receipt.getReceiptId() == null) {
+            return null;
+        }
+        return write(Collections.singletonList(receipt), true).get(0);
+    }
+
+    /**
+     * Saves a batch of receipts in a single transaction.
+     *
+     * @param receipts the receipts to save; entries without an ID are skipped
+     */
+    @Override
+    public void saveReceipts(Collection<Receipt> receipts) {
+        write(receipts, false);
+    }
+
+    /**
+     * Saves a batch of receipts in a single transaction, skipping every receipt that duplicates
+     * a stored receipt or an earlier receipt of the batch.
+     *
+     * @param receipts the receipts to save; entries without an ID are skipped
+     * @return for each receipt, in order, the stored duplicate if it was not saved, or null
+     */
+    @Override
+    public List<Receipt> saveReceiptsIfAbsent(List<Receipt> receipts) {
+        return write(receipts, true);
+    }
+
+    @Override
+    public Receipt findDuplicate(Receipt receipt) {
+        if (receipt == null) {
+            return null;
+        }
+        ContentHash hash = ContentHash.of(receipt);
+        if (hash == null) {
+            return null;
+        }
+        String duplicateId;
+        try (Cursor cursor = database.rawQuery(FIND_DUPLICATE, new String[]{
+                hash.toString(), receipt.getReceiptId() != null ? receipt.getReceiptId() : ""})) {
+            duplicateId = cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+        return duplicateId != null ? getReceiptById(duplicateId) : null;
+    }
+
+    @Override
+    public Receipt getReceiptById(String receiptId) {
+        if (receiptId == null) {
+            return null;
+        }
+        long generation;
+        synchronized (hotCache) {
+            Receipt cached = hotCache.get(receiptId);
+            if (cached != null) {
+                return cached;
+            }
+            generation = writeGeneration;
+        }
+        List<Receipt> found = query("r.receipt_id = ?", new String[]{receiptId}, "r.receipt_id");
+        if (found.isEmpty()) {
+            return null;
+        }
+        Receipt receipt = found.get(0);
+        synchronized (hotCache) {
+            // A receipt read before a write committed may be stale, so it is not cached.
+            if (generation == writeGeneration) {
+                hotCache.put(receiptId, receipt);
+            }
+        }
+        return receipt;
+    }
+
+    @Override
+    public List<Receipt> getAllReceipts() {
+        return query(null, null, "r.receipt_id");
+    }
+
+    /**
+     * Returns a read-only view of the stored receipts. Iterating it reads the receipts page by
+     * page, so they are never all in memory at once, and it does not fail if receipts are saved
+     * or deleted meanwhile.
+     *
+     * @return a view of all receipts
+     */
+    @Override
+    public Collection<Receipt> getReceiptsView() {
+        return new AbstractCollection<Receipt>() {
+            @Override
+            public Iterator<Receipt> iterator() {
+                return new PageIterator();
+            }
+
+            @Override
+            public int size() {
+                return DatabaseUtils.getTableRowCount(database, RECEIPTS_TABLE);
+            }
+        };
+    }
+
+    @Override
+    public boolean deleteReceipt(String receiptId) {
+        if (receiptId == null) {
+            return false;
+        }
+        boolean deleted;
+        database.beginTransaction();
+        try (WriteStatements statements = new WriteStatements(database, zone)) {
+            deleted = statements.delete(receiptId);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        evict(receiptId);
+        return deleted;
+    }
+
+    @Override
+    public void clearAllReceipts() {
+        database.beginTransaction();
+        try {
+            database.delete(ITEMS_TABLE, null, null);
+            database.delete(RECEIPTS_TABLE, null, null);
+            database.delete(CONTRIBUTIONS_TABLE, null, null);
+            database.delete(ROLLUPS_TABLE, null, null);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        synchronized (hotCache) {
+            hotCache.clear();
+            writeGeneration++;
+        }
+    }
+
+    @Override
+    public List<Receipt> searchReceiptsByMerchant(String merchantName) {
+        if (merchantName == null) {
+            return new ArrayList<>();
+        }
+        return query("r.merchant_folded = ?", new String[]{MerchantNameIndex.fold(merchantName)},
+                "r.transaction_date DESC");
+    }
+
+    /**
+     * Finds receipts whose merchant name contains the query. This scans the receipts table.
+     */
+    @Override
+    public List<Receipt> searchReceiptsByMerchantContaining(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return getAllReceipts();
+        }
+        return query("r.merchant_folded LIKE ? ESCAPE '\\'",
+                new String[]{"%" + escapeLike(MerchantNameIndex.fold(query)) + "%"}, "r.transaction_date DESC");
+    }
+
+    @Override
+    public List<Receipt> getReceiptsByAmountRange(Money minAmount, Money maxAmount) {
+        if (!minAmount.isSameCurrency(maxAmount)) {
+            throw new IllegalArgumentException("Amount range bounds must use the same currency");
+        }
+        if (minAmount.isGreaterThan(maxAmount)) {
+            return new ArrayList<>();
+        }
+        return query("r.currency = ? AND r.total_minor BETWEEN ? AND ?", new String[]{
+                minAmount.getCurrencyCode(),
+                Long.toString(minAmount.getMinorUnits()),
+                Long.toString(maxAmount.getMinorUnits())}, "r.total_minor");
+    }
+
+    /**
+     * Retrieves receipts within a range of transaction dates.
+     *
+     * @param from the earliest transaction date, inclusive
+     * @param to   the latest transaction date, inclusive
+     * @return the receipts within the range, in ascending date order
+     */
+    public List<Receipt> getReceiptsByDateRange(Date from, Date to) {
+        if (from.after(to)) {
+            return new ArrayList<>();
+        }
+        return query("r.transaction_date BETWEEN ? AND ?",
+                new String[]{Long.toString(from.getTime()), Long.toString(to.getTime())}, "r.transaction_date");
+    }
+
+    @Override
+    public List<SpendRollup> getMonthlyMerchantSpend(YearMonth from, YearMonth to) {
+        return monthly(ReceiptRollupIndex.Dimension.MERCHANT, from, to);
+    }
+
+    @Override
+    public List<SpendRollup> getMonthlyCategorySpend(YearMonth from, YearMonth to) {
+        return monthly(ReceiptRollupIndex.Dimension.CATEGORY, from, to);
+    }
+
+    @Override
+    public List<SpendRollup> getTopMerchants(YearMonth from, YearMonth to, String currencyCode, int limit) {
+        return top(ReceiptRollupIndex.Dimension.MERCHANT, from, to, currencyCode, limit);
+    }
+
+    @Override
+    public List<SpendRollup> getTopCategories(YearMonth from, YearMonth to, String currencyCode, int limit) {
+        return top(ReceiptRollupIndex.Dimension.CATEGORY, from, to, currencyCode, limit);
+    }
+
+    /**
+     * Recomputes the rollup tables from the stored rows, in one transaction. The receipts are
+     * read one at a time, bypassing the hot cache.
+     */
+    @Override
+    public void rebuildRollups() {
+        database.beginTransaction();
+        try (WriteStatements statements = new WriteStatements(database, zone);
+             Cursor cursor = database.rawQuery(SELECT_RECEIPTS + " ORDER BY r.receipt_id, i.position", null)) {
+            database.delete(CONTRIBUTIONS_TABLE, null, null);
+            database.delete(ROLLUPS_TABLE, null, null);
+            Receipt current = null;
+            while (cursor.moveToNext()) {
+                if (current == null || !current.getReceiptId().equals(cursor.getString(COLUMN_RECEIPT_ID))) {
+                    if (current != null) {
+                        statements.addContributions(current);
+                    }
+                    current = readReceipt(cursor);
+                }
+                if (!cursor.isNull(COLUMN_ITEM_POSITION)) {
+                    current.getItems().add(readItem(cursor));
+                }
+            }
+            if (current != null) {
+                statements.addContributions(current);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Closes the database. The repository cannot be used afterwards.
+     */
+    public void close() {
+        synchronized (hotCache) {
+            hotCache.clear();
+            writeGeneration++;
+        }
+        database.close();
+    }
+
+    /**
+     * Reads the groups from the content hash index; receipts without a duplicate are not read.
+     */
+    @Override
+    public List<List<String>> getDuplicateGroups() {
+        List<List<String>> groups = new ArrayList<>();
+        try (Cursor cursor = database.rawQuery(SELECT_DUPLICATE_GROUPS, null)) {
+            String currentHash = null;
+            List<String> group = null;
+            while (cursor.moveToNext()) {
+                String hash = cursor.getString(0);
+                if (!hash.equals(currentHash)) {
+                    currentHash = hash;
+                    group = new ArrayList<>(2);
+                    groups.add(group);
+                }
+                group.add(cursor.getString(1));
+            }
+        }
+        return groups;
+    }
+
+    @Override
+    public boolean deleteDuplicate(String duplicateId, String keptId) {
+        boolean deleted = false;
+        database.beginTransaction();
+        try (WriteStatements statements = new WriteStatements(database, zone);
+             SQLiteStatement isDuplicate = database.compileStatement(IS_DUPLICATE)) {
+            isDuplicate.bindString(1, duplicateId);
+            isDuplicate.bindString(2, keptId);
+            if (isDuplicate.simpleQueryForLong() > 0) {
+                deleted = statements.delete(duplicateId);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        evict(duplicateId);
+        return deleted;
+    }
+
+    private void createSchema() {
+        database.beginTransaction();
+        try {
+            for (String statement : SCHEMA) {
+                database.execSQL(statement);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Writes receipts in one transaction and then caches the most recent of them, unless another
+     * write committed meanwhile.
+     */
+    private List<Receipt> write(Collection<Receipt> receipts, boolean skipDuplicates) {
+        // Hashing happens before the transaction, so it does not hold the write lock.
+        List<ContentHash> hashes = receipts.size() > 1
+                ? receipts.parallelStream().map(SQLiteReceiptRepository::contentHash).collect(Collectors.toList())
+                : receipts.stream().map(SQLiteReceiptRepository::contentHash).collect(Collectors.toList());
+        List<String> duplicateIds = new ArrayList<>(receipts.size());
+        List<Receipt> saved = new ArrayList<>(receipts.size());
+        List<Receipt> duplicates = new ArrayList<>(receipts.size());
+        long generation;
+        synchronized (hotCache) {
+            generation = writeGeneration;
+        }
+        database.beginTransaction();
+        try (WriteStatements statements = new WriteStatements(database, zone)) {
+            int i = 0;
+            for (Receipt receipt : receipts) {
+                ContentHash hash = hashes.get(i++);
+                String duplicateId = null;
+                if (receipt != null && receipt.getReceiptId() != null) {
+                    if (skipDuplicates && hash != null) {
+                        duplicateId = statements.findDuplicate(receipt.getReceiptId(), hash);
+                    }
+                    if (duplicateId == null) {
+                        statements.insert(receipt, hash);
+                        saved.add(receipt);
+                    }
+                }
+                duplicateIds.add(duplicateId);
+            }
+            for (String duplicateId : duplicateIds) {
+                duplicates.add(duplicateId != null ? getReceiptById(duplicateId) : null);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        synchronized (hotCache) {
+            // Another write that committed meanwhile may have stored one of these receipts after
+            // this one did, so the saved instances are only cached if none did.
+            boolean current = generation == writeGeneration;
+            for (Receipt receipt : saved) {
+                if (current) {
+                    hotCache.put(receipt.getReceiptId(), receipt);
+                } else {
+                    hotCache.remove(receipt.getReceiptId());
+                }
+            }
+            writeGeneration++;
+        }
+        return duplicates;
+    }
+
+    private void evict(String receiptId) {
+        synchronized (hotCache) {
+            hotCache.remove(receiptId);
+            writeGeneration++;
+        }
+    }
+
+    /**
+     * Reads the receipts matching a condition with their items, in one query. Receipts found in
+     * the hot cache are returned as the cached instances.
+     */
+    private List<Receipt> query(String where, String[] args, String orderBy) {
+        String sql = SELECT_RECEIPTS + (where != null ? " WHERE " + where : "")
+                + " ORDER BY " + orderBy + ", r.receipt_id, i.position";
+        List<Receipt> result = new ArrayList<>();
+        try (Cursor cursor = database.rawQuery(sql, args)) {
+            String currentId = null;
+            Receipt current = null;
+            while (cursor.moveToNext()) {
+                String receiptId = cursor.getString(COLUMN_RECEIPT_ID);
+                if (!receiptId.equals(currentId)) {
+                    currentId = receiptId;
+                    Receipt cached;
+                    synchronized (hotCache) {
+                        cached = hotCache.get(receiptId);
+                    }
+                    current = cached != null ? null : readReceipt(cursor);
+                    result.add(cached != null ? cached : current);
+                }
+                if (current != null && !cursor.isNull(COLUMN_ITEM_POSITION)) {
+                    current.getItems().add(readItem(cursor));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<SpendRollup> monthly(ReceiptRollupIndex.Dimension dimension, YearMonth from, YearMonth to) {
+        List<SpendRollup> result = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+        try (Cursor cursor = database.rawQuery(SELECT_MONTHLY_SPEND, new String[]{
+                dimension.name(), Integer.toString(monthKey(from)), Integer.toString(monthKey(to))})) {
+            while (cursor.moveToNext()) {
+                YearMonth month = YearMonth.of(cursor.getInt(0) / 100, cursor.getInt(0) % 100);
+                result.add(new SpendRollup(cursor.getString(2), month, month,
+                        Money.ofMinor(cursor.getLong(3), cursor.getString(1)), cursor.getInt(4)));
+            }
+        }
+        return result;
+    }
+
+    private List<SpendRollup> top(ReceiptRollupIndex.Dimension dimension, YearMonth from, YearMonth to,
+                                  String currencyCode, int limit) {
+        List<SpendRollup> result = new ArrayList<>();
+        if (from.isAfter(to) || limit <= 0) {
+            return result;
+        }
+        try (Cursor cursor = database.rawQuery(SELECT_TOP_SPEND, new String[]{dimension.name(),
+                Integer.toString(monthKey(from)), Integer.toString(monthKey(to)), currencyCode, Integer.toString(limit)})) {
+            while (cursor.moveToNext()) {
+                result.add(new SpendRollup(cursor.getString(0), from, to,
+                        Money.ofMinor(cursor.getLong(1), currencyCode), cursor.getInt(2)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Months are stored as yyyymm, so they sort and compare as numbers.
+     */
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    private static ContentHash contentHash(Receipt receipt) {
+        return receipt != null && receipt.getReceiptId() != null ? ContentHash.of(receipt) : null;
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Receipt readReceipt(Cursor cursor) {
+        TransactionInfo transactionInfo = null;
+        if (cursor.getInt(COLUMN_TXN_PRESENT) != 0) {
+            transactionInfo = new TransactionInfo(
+                    cursor.getString(COLUMN_TXN_ID),
+                    cursor.getString(COLUMN_TXN_CARD_LAST_FOUR),
+                    readDate(cursor, COLUMN_TXN_DATE),
+                    readMoney(cursor, COLUMN_TXN_AMOUNT_MINOR, COLUMN_TXN_CURRENCY),
+                    cursor.getString(COLUMN_TXN_MERCHANT_NAME),
+                    cursor.getString(COLUMN_TXN_TYPE),
+                    cursor.getInt(COLUMN_TXN_INTERNATIONAL) != 0,
+                    cursor.getString(COLUMN_TXN_AUTHORIZATION_CODE));
+        }
+        return new Receipt(
+                cursor.getString(COLUMN_RECEIPT_ID),
+                readDate(cursor, COLUMN_TRANSACTION_DATE),
+                cursor.getString(COLUMN_MERCHANT_NAME),
+                new ArrayList<>(),
+                readMoney(cursor, COLUMN_TOTAL_MINOR, COLUMN_CURRENCY),
+                transactionInfo,
+                cursor.getString(COLUMN_PAYMENT_METHOD));
+    }
+
+    private static ReceiptItem readItem(Cursor cursor) {
+        return new ReceiptItem(
+                cursor.getString(COLUMN_ITEM_ID),
+                cursor.getString(COLUMN_ITEM_DESCRIPTION),
+                cursor.getInt(COLUMN_ITEM_QUANTITY),
+                readMoney(cursor, COLUMN_ITEM_UNIT_PRICE_MINOR, COLUMN_ITEM_UNIT_PRICE_CURRENCY),
+                cursor.getString(COLUMN_ITEM_CATEGORY));
+    }
+
+    private static Date readDate(Cursor cursor, int column) {
+        return cursor.isNull(column) ? null : new Date(cursor.getLong(column));
+    }
+
+    private static Money readMoney(Cursor cursor, int minorColumn, int currencyColumn) {
+        return cursor.isNull(minorColumn) || cursor.isNull(currencyColumn)
+                ? null : Money.ofMinor(cursor.getLong(minorColumn), cursor.getString(currencyColumn));
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static void bindDate(SQLiteStatement statement, int index, Date value) {
+        if (value != null) {
+            statement.bindLong(index, value.getTime());
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    private static void bindMoney(SQLiteStatement statement, int minorIndex, int currencyIndex, Money value) {
+        if (value != null) {
+            statement.bindLong(minorIndex, value.getMinorUnits());
+            statement.bindString(currencyIndex, value.getCurrencyCode());
+        } else {
+            statement.bindNull(minorIndex);
+            statement.bindNull(currencyIndex);
+        }
+    }
+
+    /**
+     * The statements of one write transaction, compiled on first use and rebound for every
+     * receipt. Every write also moves the receipt's spend contributions, so the rollup tables
+     * stay up to date.
+     */
+    private static final class WriteStatements implements Closeable {
+        private final SQLiteDatabase database;
+        private final ZoneId zone;
+        private final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+        WriteStatements(SQLiteDatabase database, ZoneId zone) {
+            this.database = database;
+            this.zone = zone;
+        }
+
+        /**
+         * @return the ID of another stored receipt with the same content hash, or null
+         */
+        String findDuplicate(String receiptId, ContentHash hash) {
+            SQLiteStatement findDuplicate = statement(FIND_DUPLICATE);
+            findDuplicate.bindString(1, hash.toString());
+            findDuplicate.bindString(2, receiptId);
+            try {
+                return findDuplicate.simpleQueryForString();
+            } catch (SQLiteDoneException e) {
+                return null;
+            }
+        }
+
+        void insert(Receipt receipt, ContentHash hash) {
+            String receiptId = receipt.getReceiptId();
+            removeContributions(receiptId);
+            TransactionInfo transaction = receipt.getTransactionInfo();
+            SQLiteStatement insertReceipt = statement(INSERT_RECEIPT);
+            insertReceipt.clearBindings();
+            insertReceipt.bindString(1, receiptId);
+            bindDate(insertReceipt, 2, receipt.getTransactionDate());
+            bindString(insertReceipt, 3, receipt.getMerchantName());
+            bindString(insertReceipt, 4, MerchantNameIndex.fold(receipt.getMerchantName()));
+            bindMoney(insertReceipt, 5, 6, receipt.getTotalAmount());
+            bindString(insertReceipt, 7, receipt.getPaymentMethod());
+            bindString(insertReceipt, 8, hash != null ? hash.toString() : null);
+            insertReceipt.bindLong(9, transaction != null ? 1 : 0);
+            if (transaction != null) {
+                bindString(insertReceipt, 10, transaction.getTransactionId());
+                bindString(insertReceipt, 11, transaction.getCardLastFourDigits());
+                bindDate(insertReceipt, 12, transaction.getTransactionDate());
+                bindMoney(insertReceipt, 13, 14, transaction.getTransactionAmount());
+                bindString(insertReceipt, 15, transaction.getMerchantName());
+                bindString(insertReceipt, 16, transaction.getTransactionType());
+                insertReceipt.bindLong(17, transaction.isInternational() ? 1 : 0);
+                bindString(insertReceipt, 18, transaction.getAuthorizationCode());
+            } else {
+                insertReceipt.bindLong(17, 0);
+            }
+            insertReceipt.executeInsert();
+
+            // Replacing the receipt row does not touch its items.
+            deleteItems(receiptId);
+            List<ReceiptItem> items = receipt.getItems();
+            if (items != null) {
+                SQLiteStatement insertItem = statement(INSERT_ITEM);
+                for (int position = 0; position < items.size(); position++) {
+                    ReceiptItem item = items.get(position);
+                    if (item == null) {
+                        continue;
+                    }
+                    insertItem.clearBindings();
+                    insertItem.bindString(1, receiptId);
+                    insertItem.bindLong(2, position);
+                    bindString(insertItem, 3, item.getItemId());
+                    bindString(insertItem, 4, item.getDescription());
+                    insertItem.bindLong(5, item.getQuantity());
+                    bindMoney(insertItem, 6, 7, item.getUnitPrice());
+                    bindString(insertItem, 8, item.getCategory());
+                    insertItem.executeInsert();
+                }
+            }
+            addContributions(receipt);
+        }
+
+        /**
+         * @return true if a receipt was stored under the ID
+         */
+        boolean delete(String receiptId) {
+            removeContributions(receiptId);
+            deleteItems(receiptId);
+            SQLiteStatement deleteReceipt = statement(DELETE_RECEIPT);
+            deleteReceipt.bindString(1, receiptId);
+            return deleteReceipt.executeUpdateDelete() > 0;
+        }
+
+        /**
+         * Records what the receipt adds to the rollups and adds it to their cells.
+         */
+        void addContributions(Receipt receipt) {
+            SQLiteStatement insertContribution = statement(INSERT_CONTRIBUTION);
+            for (ReceiptRollupIndex.Contribution contribution : ReceiptRollupIndex.contributionsOf(receipt, zone)) {
+                String dimension = contribution.dimension.name();
+                int month = monthKey(contribution.month);
+                insertContribution.bindString(1, receipt.getReceiptId());
+                insertContribution.bindString(2, dimension);
+                insertContribution.bindLong(3, month);
+                insertContribution.bindString(4, contribution.group.currencyCode);
+                insertContribution.bindString(5, contribution.group.name);
+                insertContribution.bindLong(6, contribution.minorUnits);
+                insertContribution.executeInsert();
+                addToRollup(dimension, month, contribution.group.currencyCode, contribution.group.name,
+                        contribution.minorUnits, 1);
+            }
+        }
+
+        /**
+         * Takes the contributions recorded for a receipt out of the rollup cells, as they were
+         * added, and forgets them.
+         */
+        private void removeContributions(String receiptId) {
+            try (Cursor cursor = database.rawQuery(SELECT_CONTRIBUTIONS, new String[]{receiptId})) {
+                while (cursor.moveToNext()) {
+                    addToRollup(cursor.getString(0), cursor.getInt(1), cursor.getString(2), cursor.getString(3),
+                            -cursor.getLong(4), -1);
+                }
+            }
+            SQLiteStatement deleteContributions = statement(DELETE_CONTRIBUTIONS);
+            deleteContributions.bindString(1, receiptId);
+            deleteContributions.executeUpdateDelete();
+        }
+
+        private void addToRollup(String dimension, int month, String currencyCode, String name,
+                                 long minorUnits, int count) {
+            SQLiteStatement updateRollup = statement(UPDATE_ROLLUP);
+            updateRollup.bindLong(1, minorUnits);
+            updateRollup.bindLong(2, count);
+            bindRollupKey(updateRollup, 3, dimension, month, currencyCode, name);
+            if (updateRollup.executeUpdateDelete() == 0) {
+                SQLiteStatement insertRollup = statement(INSERT_ROLLUP);
+                bindRollupKey(insertRollup, 1, dimension, month, currencyCode, name);
+                insertRollup.bindLong(5, minorUnits);
+                insertRollup.bindLong(6, count);
+                insertRollup.executeInsert();
+            } else if (count < 0) {
+                SQLiteStatement deleteEmptyRollup = statement(DELETE_EMPTY_ROLLUP);
+                bindRollupKey(deleteEmptyRollup, 1, dimension, month, currencyCode, name);
+                deleteEmptyRollup.executeUpdateDelete();
+            }
+        }
+
+        private void deleteItems(String receiptId) {
+            SQLiteStatement deleteItems = statement(DELETE_ITEMS);
+            deleteItems.bindString(1, receiptId);
+            deleteItems.executeUpdateDelete();
+        }
+
+        private SQLiteStatement statement(String sql) {
+            SQLiteStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = database.compileStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        private static void bindRollupKey(SQLiteStatement statement, int index, String dimension, int month,
+                                          String currencyCode, String name) {
+            statement.bindString(index, dimension);
+            statement.bindLong(index + 1, month);
+            statement.bindString(index + 2, currencyCode);
+            statement.bindString(index + 3, name);
+        }
+
+        @Override
+        public void close() {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Iterates all receipts in receipt ID order, reading one page at a time after the last ID
+     * returned.
+     */
+    private final class PageIterator implements Iterator<Receipt> {
+        private List<Receipt> page = Collections.emptyList();
+        private int index;
+        private String lastId;
+        private boolean exhausted;
+
+        @Override
+        public boolean hasNext() {
+            if (index < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            String pageIds = "SELECT receipt_id FROM receipts"
+                    + (lastId != null ? " WHERE receipt_id > ?" : "")
+                    + " ORDER BY receipt_id LIMIT " + PAGE_SIZE;
+            page = query("r.receipt_id IN (" + pageIds + ")",
+                    lastId != null ? new String[]{lastId} : null, "r.receipt_id");
+            index = 0;
+            exhausted = page.size() < PAGE_SIZE;
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getReceiptId();
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public Receipt next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(index++);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.myinappbilling.creditcardreceipt.service;
+
+import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
+import com.myinappbilling.creditcardreceipt.model.TransactionPage;
+import com.myinappbilling.financial.model.Money;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * FileTransactionSource reads transactions from a local JSON-lines file, one transaction per
+ * line, most recent first. It stands in for the card processor's API.
+ *
+ * <p>A cursor is the byte offset of the next line, so a page is read by seeking straight to it,
+ * without reading the pages before it. Lookups by ID use an index of line offsets that is built
+ * on first use and rebuilt whenever the file changes. Lines that cannot be parsed are
+ * skipped.</p>
+ */
+public class FileTransactionSource implements TransactionSource {
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final Path path;
+    private final Object indexLock = new Object();
+    private Map<String, Long> offsetsById;
+    private long indexedSize = -1;
+    private long indexedModified = -1;
+
+    /**
+     * @param file the transactions file; it does not need to exist yet
+     */
+    public FileTransactionSource(File file) {
+        this.path = file.toPath();
+    }
+
+    @Override
+    public TransactionPage fetchPage(String cursor, int pageSize) {
+        return readPage(null, cursor, pageSize);
+    }
+
+    @Override
+    public TransactionPage fetchPageByMerchant(String merchantName, String cursor, int pageSize) {
+        if (merchantName == null || merchantName.trim().isEmpty()) {
+            return new TransactionPage(new ArrayList<>(), null);
+        }
+        return readPage(merchantName.trim(), cursor, pageSize);
+    }
+
+    @Override
+    public TransactionInfo fetchById(String transactionId) {
+        if (transactionId == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Long offset = offsets(channel).get(transactionId);
+            if (offset == null) {
+                return null;
+            }
+            LineReader reader = new LineReader(channel, offset);
+            String line = reader.readLine();
+            TransactionInfo transaction = line != null ? parse(line) : null;
+            return transaction != null && transactionId.equals(transaction.getTransactionId()) ? transaction : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    /**
+     * Replaces the file contents with the given transactions, most recent first. The new file is
+     * written beside the old one and moved into place, so readers never see a partial file.
+     *
+     * @param transactions the transactions
+     */
+    public void writeAll(Collection<TransactionInfo> transactions) {
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "transactions-", ".tmp");
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (TransactionInfo transaction : transactions) {
+                    out.write(toJson(transaction).toString());
+                    out.write('\n');
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + path, e);
+        }
+    }
+
+    private TransactionPage readPage(String merchantName, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        long start = parseCursor(cursor);
+        List<TransactionInfo> transactions = new ArrayList<>(pageSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            LineReader reader = new LineReader(channel, start);
+            boolean exhausted = false;
+            while (transactions.size() < pageSize) {
+                String line = reader.readLine();
+                if (line == null) {
+                    exhausted = true;
+                    break;
+                }
+                TransactionInfo transaction = parse(line);
+                if (transaction != null && (merchantName == null || merchantName.equalsIgnoreCase(
+                        transaction.getMerchantName() != null ? transaction.getMerchantName().trim() : null))) {
+                    transactions.add(transaction);
+                }
+            }
+            String nextCursor = !exhausted && reader.getPosition() < channel.size()
+                    ? Long.toString(reader.getPosition()) : null;
+            return new TransactionPage(transactions, nextCursor);
+        } catch (NoSuchFileException e) {
+            return new TransactionPage(transactions, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    private Map<String, Long> offsets(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        synchronized (indexLock) {
+            if (offsetsById == null || size != indexedSize || modified != indexedModified) {
+                Map<String, Long> offsets = new HashMap<>();
+                LineReader reader = new LineReader(channel, 0);
+                long lineStart = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    TransactionInfo transaction = parse(line);
+                    if (transaction != null && transaction.getTransactionId() != null) {
+                        offsets.putIfAbsent(transaction.getTransactionId(), lineStart);
+                    }
+                    lineStart = reader.getPosition();
+                }
+                offsetsById = offsets;
+                indexedSize = size;
+                indexedModified = modified;
+            }
+            return offsetsById;
+        }
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            long offset = Long.parseLong(cursor);
+            if (offset >= 0) {
+                return offset;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    private static TransactionInfo parse(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(line);
+            String currency = json.getString("currency");
+            return new TransactionInfo(
+                    json.getString("transactionId"),
+                    optString(json, "cardLastFourDigits"),
+                    json.has("transactionDate") ? new Date(json.getLong("transactionDate")) : null,
+                    Money.ofMinor(json.getLong("amountMinor"), currency),
+                    optString(json, "merchantName"),
+                    optString(json, "transactionType"),
+                    json.optBoolean("international"),
+                    optString(json, "authorizationCode"));
+        } catch (JSONException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String optString(JSONObject json, String key) {
+        return json.has(key) && !json.isNull(key) ? json.optString(key) : null;
+    }
+
+    private static JSONObject toJson(TransactionInfo transaction) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("transactionId", transaction.getTransactionId());
+            json.put("cardLastFourDigits", transaction.getCardLastFourDigits());
+            if (transaction.getTransactionDate() != null) {
+                json.put("transactionDate", transaction.getTransactionDate().getTime());
+            }
+            json.put("amountMinor", transaction.getTransactionAmount().getMinorUnits());
+            json.put("currency", transaction.getTransactionAmount().getCurrencyCode());
+            json.put("merchantName", transaction.getMerchantName());
+            json.put("transactionType", transaction.getTransactionType());
+            json.put("international", transaction.isInternational());
+            json.put("authorizationCode", transaction.getAuthorizationCode());
+            return json;
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Cannot serialize transaction %s", transaction.getTransactionId()), e);
+        }
+    }
+
+    /**
+     * Reads UTF-8 lines from a channel starting at a byte offset, tracking the offset of the next
+     * line. A trailing line without a newline is treated as not yet fully written.
+     */
+    private static final class LineReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private long readPosition;
+        private long position;
+
+        LineReader(FileChannel channel, long start) {
+            this.channel = channel;
+            this.readPosition = start;
+            this.position = start;
+            buffer.limit(0);
+        }
+
+        String readLine() throws IOException {
+            line.reset();
+            long consumed = 0;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read = channel.read(buffer, readPosition);
+                    buffer.flip();
+                    if (read <= 0) {
+                        return null;
+                    }
+                    readPosition += read;
+                }
+                byte b = buffer.get();
+                consumed++;
+                if (b == '\n') {
+                    position += consumed;
+                    int length = line.size();
+                    byte[] bytes = line.toByteArray();
+                    if (length > 0 && bytes[length - 1] == '\r') {
+                        length--;
+                    }
+                    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+        }
+
+        long getPosition() {
+            return position;
+        }
+    }
+}
@@ -1,48 +1,189 @@
 package com.myinappbilling.creditcardreceipt.service;
 
 import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.ReceiptBatchResult;
 import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
 import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
 import com.myinappbilling.creditcardreceipt.repository.ReceiptRepository;
 import com.myinappbilling.creditcardreceipt.util.ReceiptUtils;
+import com.myinappbilling.financial.model.Money;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * Service class responsible for generating and managing receipts based on transaction information.
  */
 public class ReceiptGenerationService {
 
+    private static final int BATCH_SIZE = 1_000;
+
     private final ReceiptRepository receiptRepository;
+    private final int parallelism;
 
     public ReceiptGenerationService(ReceiptRepository receiptRepository) {
+        this(receiptRepository, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param receiptRepository the repository receipts are saved to
+     * @param parallelism       number of worker threads used by the bulk API
+     */
+    public ReceiptGenerationService(ReceiptRepository receiptRepository, int parallelism) {
         this.receiptRepository = receiptRepository;
+        this.parallelism = Math.max(1, parallelism);
     }
 
     /**
-     * Generates a receipt for the given transaction and saves it.
+     * Generates a receipt for the given transaction and saves it. If a receipt with the same
+     * transaction, items and total is already stored, that receipt is returned instead and
+     * nothing is saved.
      *
      * @param transactionInfo the transaction information
-     * @return the generated receipt
+     * @return the generated receipt, or the stored receipt it duplicates
      */
     public Receipt generateReceipt(TransactionInfo transactionInfo) {
+        Receipt receipt = buildReceipt(transactionInfo);
+        Receipt existing = receiptRepository.saveReceiptIfAbsent(receipt);
+        return existing != null ? existing : receipt;
+    }
+
+    /**
+     * Generates and saves receipts for many transactions, e.g. when re-issuing every receipt
+     * at month end.
+     *
+     * @param transactions the transactions
+     * @return counts, throughput and the failed transactions
+     * @see #generateReceipts(Stream)
+     */
+    public ReceiptBatchResult generateReceipts(Collection<TransactionInfo> transactions) {
+        return generateReceipts(transactions.stream());
+    }
+
+    /**
+     * Generates and saves receipts for a stream of transactions in parallel.
+     *
+     * <p>The stream is consumed on the calling thread in batches of {@value #BATCH_SIZE}. Each
+     * batch is validated and built on a fork-join pool, and the calling thread saves finished
+     * batches in input order with one repository call per batch. A bounded number of batches is
+     * in flight at a time, so memory use does not grow with the input. A transaction that fails
+     * validation is reported as a failure and does not stop the batch. A transaction that
+     * already has a receipt, or repeats an earlier transaction of the stream, is counted as a
+     * duplicate and not saved again.</p>
+     *
+     * @param transactions the transactions
+     * @return counts, throughput and the failed transactions
+     */
+    public ReceiptBatchResult generateReceipts(Stream<TransactionInfo> transactions) {
+        long startTime = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayDeque<Future<BatchOutcome>> inFlight = new ArrayDeque<>();
+        List<ReceiptBatchResult.ItemFailure> failures = new ArrayList<>();
+        long total = 0;
+        long generated = 0;
+        long duplicates = 0;
+        try {
+            Iterator<TransactionInfo> iterator = transactions.iterator();
+            List<TransactionInfo> batch = new ArrayList<>(BATCH_SIZE);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                total++;
+                if (batch.size() == BATCH_SIZE) {
+                    submitBatch(pool, inFlight, batch, total - batch.size());
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    while (inFlight.size() > parallelism * 2) {
+                        BatchOutcome outcome = saveBatch(inFlight.poll(), failures);
+                        generated += outcome.saved;
+                        duplicates += outcome.duplicates;
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                submitBatch(pool, inFlight, batch, total - batch.size());
+            }
+            while (!inFlight.isEmpty()) {
+                BatchOutcome outcome = saveBatch(inFlight.poll(), failures);
+                generated += outcome.saved;
+                duplicates += outcome.duplicates;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ReceiptBatchResult(total, generated, duplicates, failures, System.currentTimeMillis() - startTime);
+    }
+
+    private void submitBatch(ForkJoinPool pool, ArrayDeque<Future<BatchOutcome>> inFlight,
+                             List<TransactionInfo> batch, long firstPosition) {
+        inFlight.add(pool.submit(() -> buildBatch(batch, firstPosition)));
+    }
+
+    /**
+     * Builds the receipts of one batch. Runs on a worker thread.
+     */
+    private BatchOutcome buildBatch(List<TransactionInfo> batch, long firstPosition) {
+        BatchOutcome outcome = new BatchOutcome(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            TransactionInfo transactionInfo = batch.get(i);
+            try {
+                outcome.receipts.add(buildReceipt(transactionInfo));
+            } catch (RuntimeException e) {
+                outcome.failures.add(new ReceiptBatchResult.ItemFailure(firstPosition + i,
+                        transactionInfo != null ? transactionInfo.getTransactionId() : null, e.getMessage()));
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Saves a finished batch. Runs on the calling thread, in input order.
+     */
+    private BatchOutcome saveBatch(Future<BatchOutcome> future, List<ReceiptBatchResult.ItemFailure> failures) {
+        BatchOutcome outcome;
+        try {
+            outcome = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Receipt generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Receipt generation failed", e.getCause());
+        }
+        for (Receipt existing : receiptRepository.saveReceiptsIfAbsent(outcome.receipts)) {
+            if (existing == null) {
+                outcome.saved++;
+            } else {
+                outcome.duplicates++;
+            }
+        }
+        failures.addAll(outcome.failures);
+        return outcome;
+    }
+
+    /**
+     * Validates a transaction and builds its receipt without saving it.
+     */
+    private Receipt buildReceipt(TransactionInfo transactionInfo) {
         if (!validateTransaction(transactionInfo)) {
             throw new IllegalArgumentException("Invalid transaction information.");
         }
 
         List<ReceiptItem> receiptItems = createReceiptItems(transactionInfo);
-        Receipt receipt = new Receipt(
+        return new Receipt(
                 UUID.randomUUID().toString(),
-                transactionInfo,
+                transactionInfo.getTransactionDate(),
+                transactionInfo.getMerchantName(),
                 receiptItems,
-                new Date(),
-                ReceiptUtils.calculateTotalAmount(receiptItems)
+                ReceiptUtils.calculateTotalAmount(receiptItems, transactionInfo.getCurrency()),
+                transactionInfo,
+                transactionInfo.getTransactionType()
         );
-        receiptRepository.saveReceipt(receipt);
-        return receipt;
     }
 
     /**
@@ -54,9 +195,11 @@ public class ReceiptGenerationService {
     private List<ReceiptItem> createReceiptItems(TransactionInfo transactionInfo) {
         List<ReceiptItem> items = new ArrayList<>();
         items.add(new ReceiptItem(
+                UUID.randomUUID().toString(),
                 transactionInfo.getMerchantName() + " Purchase",
                 1,
-                transactionInfo.getTransactionAmount()
+                transactionInfo.getTransactionAmount(),
+                null
         ));
         return items;
     }
@@ -67,16 +210,24 @@ public class ReceiptGenerationService {
      * @param existingReceipt the existing receipt to modify
      * @param updatedItems updated receipt items
      * @return updated receipt
+     * @throws IllegalArgumentException if the updated receipt would duplicate another stored
+     *                                  receipt; the existing receipt is then left unchanged
      */
     public Receipt regenerateReceipt(Receipt existingReceipt, List<ReceiptItem> updatedItems) {
         Receipt updatedReceipt = new Receipt(
                 existingReceipt.getReceiptId(),
-                existingReceipt.getTransactionInfo(),
+                existingReceipt.getTransactionDate(),
+                existingReceipt.getMerchantName(),
                 updatedItems,
-                new Date(),
-                ReceiptUtils.calculateTotalAmount(updatedItems)
+                ReceiptUtils.calculateTotalAmount(updatedItems, existingReceipt.getCurrency()),
+                existingReceipt.getTransactionInfo(),
+                existingReceipt.getPaymentMethod()
         );
-        receiptRepository.updateReceipt(updatedReceipt);
+        Receipt duplicate = receiptRepository.saveReceiptIfAbsent(updatedReceipt);
+        if (duplicate != null) {
+            throw new IllegalArgumentException("Updated receipt " + existingReceipt.getReceiptId()
+                    + " would duplicate receipt " + duplicate.getReceiptId());
+        }
         return updatedReceipt;
     }
 
@@ -97,7 +248,7 @@ public class ReceiptGenerationService {
      * @return true if deleted successfully, false otherwise
      */
     public boolean deleteReceipt(String receiptId) {
-        return receiptRepository.deleteReceiptById(receiptId);
+        return receiptRepository.deleteReceipt(receiptId);
     }
 
     /**
@@ -123,13 +274,24 @@ public class ReceiptGenerationService {
      * Calculates total amount for a receipt by its ID.
      *
      * @param receiptId the receipt ID
-     * @return total amount or 0 if not found
+     * @return total amount or null if not found
      */
-    public double calculateTotalAmountForReceipt(String receiptId) {
+    public Money calculateTotalAmountForReceipt(String receiptId) {
         Receipt receipt = receiptRepository.getReceiptById(receiptId);
         if (receipt != null) {
-            return ReceiptUtils.calculateTotalAmount(receipt.getReceiptItems());
+            return ReceiptUtils.calculateTotalAmount(receipt.getItems(), receipt.getCurrency());
+        }
+        return null;
+    }
+
+    private static final class BatchOutcome {
+        final List<Receipt> receipts;
+        final List<ReceiptBatchResult.ItemFailure> failures = new ArrayList<>();
+        long saved;
+        long duplicates;
+
+        BatchOutcome(int size) {
+            this.receipts = new ArrayList<>(size);
         }
-        return 0.0;
     }
 }
@@ -1,29 +1,91 @@
 package com.myinappbilling.creditcardreceipt.service;
 
 import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
+import com.myinappbilling.creditcardreceipt.model.TransactionPage;
+import com.myinappbilling.financial.model.Money;
 
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Service class responsible for fetching and simulating transaction information.
+ * Service class responsible for fetching transaction information from a {@link TransactionSource}.
+ *
+ * <p>Transactions are fetched a page at a time. Whenever a page is returned, the page after it is
+ * prefetched in the background, so scrolling on to it does not wait for the source. Fetched
+ * transactions are kept in an LRU cache by ID, so opening one of them again does not go back to
+ * the source.</p>
  */
 public class TransactionFetchService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_CACHE_SIZE = 500;
+
+    private final TransactionSource transactionSource;
+    private final int pageSize;
+    private final Map<String, TransactionInfo> transactionCache;
+    private final ExecutorService fetchExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    private PageKey prefetchKey;
+    private Future<TransactionPage> prefetchedPage;
+
+    public TransactionFetchService(TransactionSource transactionSource) {
+        this(transactionSource, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param transactionSource the source transactions are fetched from
+     * @param pageSize          the number of transactions per page
+     * @param cacheSize         the number of transactions kept in the cache by ID
+     */
+    public TransactionFetchService(TransactionSource transactionSource, int pageSize, int cacheSize) {
+        if (pageSize <= 0 || cacheSize <= 0) {
+            throw new IllegalArgumentException("Page size and cache size must be positive");
+        }
+        this.transactionSource = transactionSource;
+        this.pageSize = pageSize;
+        this.transactionCache = new LinkedHashMap<String, TransactionInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TransactionInfo> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
     /**
-     * Fetches a list of recent transactions.
+     * Fetches the first page of recent transactions.
      *
      * @return a list of transaction information
      */
     public List<TransactionInfo> fetchRecentTransactions() {
-        List<TransactionInfo> transactions = new ArrayList<>();
-        transactions.add(createDummyTransaction("Merchant A", 49.99));
-        transactions.add(createDummyTransaction("Merchant B", 19.99));
-        transactions.add(createDummyTransaction("Merchant C", 5.49));
-        transactions.add(createDummyTransaction("Merchant D", 99.99));
-        return transactions;
+        return fetchPage(null).getTransactions();
+    }
+
+    /**
+     * Fetches a page of recent transactions and starts prefetching the page after it.
+     *
+     * @param cursor the cursor of the page, or null for the first page
+     * @return the page
+     */
+    public TransactionPage fetchPage(String cursor) {
+        return fetch(new PageKey(null, cursor));
+    }
+
+    /**
+     * Fetches a page of recent transactions on a background thread.
+     *
+     * @param cursor the cursor of the page, or null for the first page
+     * @return a future of the page
+     */
+    public CompletableFuture<TransactionPage> fetchPageAsync(String cursor) {
+        return CompletableFuture.supplyAsync(() -> fetchPage(cursor), fetchExecutor);
     }
 
     /**
@@ -33,43 +95,109 @@ public class TransactionFetchService {
      * @return the transaction information if found, null otherwise
      */
     public TransactionInfo fetchTransactionById(String transactionId) {
-        // Simulated lookup by transaction ID
-        if (transactionId != null && !transactionId.isEmpty()) {
-            return createDummyTransaction("Merchant Sample", 29.99);
+        if (transactionId == null || transactionId.isEmpty()) {
+            return null;
+        }
+        synchronized (transactionCache) {
+            TransactionInfo cached = transactionCache.get(transactionId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        TransactionInfo transaction = transactionSource.fetchById(transactionId);
+        if (transaction != null) {
+            synchronized (transactionCache) {
+                transactionCache.put(transactionId, transaction);
+            }
         }
-        return null;
+        return transaction;
     }
 
     /**
-     * Fetches transactions for a specific merchant.
+     * Fetches the first page of transactions for a specific merchant.
      *
      * @param merchantName the merchant name
      * @return list of transactions associated with the merchant
      */
     public List<TransactionInfo> fetchTransactionsByMerchant(String merchantName) {
-        List<TransactionInfo> merchantTransactions = new ArrayList<>();
-        if (merchantName != null && !merchantName.isEmpty()) {
-            merchantTransactions.add(createDummyTransaction(merchantName, 15.75));
-            merchantTransactions.add(createDummyTransaction(merchantName, 45.30));
-        }
-        return merchantTransactions;
+        return fetchPageByMerchant(merchantName, null).getTransactions();
     }
 
     /**
-     * Creates a dummy transaction.
+     * Fetches a page of transactions for a specific merchant and starts prefetching the page
+     * after it.
      *
-     * @param merchantName name of the merchant
-     * @param amount amount of the transaction
-     * @return a TransactionInfo object
+     * @param merchantName the merchant name
+     * @param cursor       the cursor of the page, or null for the first page
+     * @return the page
      */
-    private TransactionInfo createDummyTransaction(String merchantName, double amount) {
-        return new TransactionInfo(
-                UUID.randomUUID().toString(),
-                merchantName,
-                amount,
-                new Date(),
-                true
-        );
+    public TransactionPage fetchPageByMerchant(String merchantName, String cursor) {
+        return fetch(new PageKey(merchantName, cursor));
+    }
+
+    /**
+     * Stops background fetching. Call when the service is no longer used.
+     */
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+        prefetchExecutor.shutdownNow();
+    }
+
+    private TransactionPage fetch(PageKey key) {
+        Future<TransactionPage> prefetched = takePrefetched(key);
+        TransactionPage page = null;
+        if (prefetched != null) {
+            try {
+                page = prefetched.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while fetching transactions", e);
+            } catch (ExecutionException | CancellationException e) {
+                // The prefetch failed or was cancelled; fetch the page again so the caller sees the failure.
+            }
+        }
+        if (page == null) {
+            page = load(key);
+        }
+        if (page.hasMore()) {
+            prefetch(new PageKey(key.merchantName, page.getNextCursor()));
+        }
+        return page;
+    }
+
+    private synchronized Future<TransactionPage> takePrefetched(PageKey key) {
+        if (prefetchedPage == null || !key.equals(prefetchKey)) {
+            return null;
+        }
+        Future<TransactionPage> page = prefetchedPage;
+        prefetchKey = null;
+        prefetchedPage = null;
+        return page;
+    }
+
+    private synchronized void prefetch(PageKey key) {
+        if (key.equals(prefetchKey) || prefetchExecutor.isShutdown()) {
+            return;
+        }
+        if (prefetchedPage != null) {
+            prefetchedPage.cancel(false);
+        }
+        prefetchKey = key;
+        prefetchedPage = prefetchExecutor.submit(() -> load(key));
+    }
+
+    private TransactionPage load(PageKey key) {
+        TransactionPage page = key.merchantName == null
+                ? transactionSource.fetchPage(key.cursor, pageSize)
+                : transactionSource.fetchPageByMerchant(key.merchantName, key.cursor, pageSize);
+        synchronized (transactionCache) {
+            for (TransactionInfo transaction : page.getTransactions()) {
+                if (transaction.getTransactionId() != null) {
+                    transactionCache.put(transaction.getTransactionId(), transaction);
+                }
+            }
+        }
+        return page;
     }
 
     /**
@@ -79,7 +207,7 @@ public class TransactionFetchService {
      * @return true if eligible, false otherwise
      */
     public boolean isTransactionEligible(TransactionInfo transactionInfo) {
-        return transactionInfo != null && transactionInfo.isValidTransaction() && transactionInfo.getTransactionAmount() > 0;
+        return transactionInfo != null && transactionInfo.isValidTransaction() && transactionInfo.getTransactionAmount().isPositive();
     }
 
     /**
@@ -93,18 +221,47 @@ public class TransactionFetchService {
     }
 
     /**
-     * Calculates the total transaction amount for a list of transactions.
+     * Calculates the exact total transaction amount for a list of transactions.
      *
      * @param transactions the list of transactions
+     * @param currencyCode the currency all transactions are in
      * @return the total transaction amount
      */
-    public double calculateTotalTransactionAmount(List<TransactionInfo> transactions) {
-        double total = 0;
+    public Money calculateTotalTransactionAmount(List<TransactionInfo> transactions, String currencyCode) {
+        long total = 0;
         if (transactions != null) {
+            Money zero = Money.zero(currencyCode);
             for (TransactionInfo transaction : transactions) {
-                total += transaction.getTransactionAmount();
+                Money amount = transaction.getTransactionAmount();
+                if (!zero.isSameCurrency(amount)) {
+                    throw new IllegalArgumentException("Transaction " + transaction.getTransactionId() + " is not in " + currencyCode);
+                }
+                total = Math.addExact(total, amount.getMinorUnits());
             }
         }
-        return total;
+        return Money.ofMinor(total, currencyCode);
+    }
+
+    private static final class PageKey {
+        final String merchantName;
+        final String cursor;
+
+        PageKey(String merchantName, String cursor) {
+            this.merchantName = merchantName;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PageKey pageKey = (PageKey) o;
+            return Objects.equals(merchantName, pageKey.merchantName) && Objects.equals(cursor, pageKey.cursor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(merchantName, cursor);
+        }
     }
 }
@@ -0,0 +1,42 @@
+package com.myinappbilling.creditcardreceipt.service;
+
+import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
+import com.myinappbilling.creditcardreceipt.model.TransactionPage;
+
+/**
+ * Source of transaction data for {@link TransactionFetchService}.
+ *
+ * <p>Pages are addressed by opaque cursors: a null cursor requests the first page, and each page
+ * carries the cursor of the next one. Implementations must be safe to call from several threads,
+ * as the fetch service prefetches pages in the background. I/O failures are reported as
+ * {@link java.io.UncheckedIOException}.</p>
+ */
+public interface TransactionSource {
+
+    /**
+     * Fetches a page of transactions, most recent first.
+     *
+     * @param cursor   the cursor of the page, or null for the first page
+     * @param pageSize the maximum number of transactions to return
+     * @return the page
+     */
+    TransactionPage fetchPage(String cursor, int pageSize);
+
+    /**
+     * Fetches a page of the transactions of one merchant, most recent first.
+     *
+     * @param merchantName the merchant name, matched ignoring case and surrounding whitespace
+     * @param cursor       the cursor of the page, or null for the first page
+     * @param pageSize     the maximum number of transactions to return
+     * @return the page
+     */
+    TransactionPage fetchPageByMerchant(String merchantName, String cursor, int pageSize);
+
+    /**
+     * Fetches a transaction by its ID.
+     *
+     * @param transactionId the transaction ID
+     * @return the transaction, or null if not found
+     */
+    TransactionInfo fetchById(String transactionId);
+}
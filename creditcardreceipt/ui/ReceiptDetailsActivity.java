@@ -13,9 +13,11 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.myinappbilling.creditcardreceipt.R;
 import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.util.ReceiptFormatters;
+import com.myinappbilling.creditcardreceipt.util.ReceiptRenderer;
+import com.myinappbilling.creditcardreceipt.util.ReceiptUtils;
 import com.myinappbilling.creditcardreceipt.viewmodel.ReceiptViewModel;
 
-import java.text.SimpleDateFormat;
 import java.util.Locale;
 
 /**
@@ -23,6 +25,19 @@ import java.util.Locale;
  */
 public class ReceiptDetailsActivity extends AppCompatActivity {
 
+    private static final String DATE_PATTERN = "MMM dd, yyyy";
+    private static final ReceiptRenderer ITEMS_RENDERER = ReceiptRenderer.compile(
+            "${items}\u2022 ${item.description} (x${item.quantity}): ${item.unitPrice}\n${else}No items available.${/items}",
+            DATE_PATTERN);
+    private static final ReceiptRenderer SHARE_RENDERER = ReceiptRenderer.compile(
+            "Merchant: ${merchant}\n"
+                    + "Amount: ${total}\n"
+                    + "Date: ${date}\n"
+                    + "Items:\n"
+                    + "${items} - ${item.description} (x${item.quantity})\n${else}No items listed.\n${/items}"
+                    + "Transaction ID: ${transactionId}",
+            DATE_PATTERN);
+
     private ReceiptViewModel receiptViewModel;
     private TextView merchantNameTextView;
     private TextView amountTextView;
@@ -80,23 +95,12 @@ public class ReceiptDetailsActivity extends AppCompatActivity {
      */
     private void displayReceiptDetails(Receipt receipt) {
         merchantNameTextView.setText(receipt.getMerchantName());
-        amountTextView.setText(String.format(Locale.getDefault(), "$%.2f", receipt.getTotalAmount()));
-
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-        dateTextView.setText(sdf.format(receipt.getTransactionDate()));
+        amountTextView.setText(ReceiptUtils.formatCurrency(receipt.getTotalAmount()));
+        dateTextView.setText(ReceiptFormatters.formatDate(receipt.getTransactionDate(), DATE_PATTERN, Locale.getDefault()));
+        itemsTextView.setText(ITEMS_RENDERER.render(receipt));
 
-        StringBuilder itemsBuilder = new StringBuilder();
-        if (receipt.getItems() != null && !receipt.getItems().isEmpty()) {
-            for (String item : receipt.getItems()) {
-                itemsBuilder.append("\u2022 ").append(item).append("\n");
-            }
-        } else {
-            itemsBuilder.append("No items available.");
-        }
-        itemsTextView.setText(itemsBuilder.toString());
-
-        if (receipt.getTransactionId() != null) {
-            transactionIdTextView.setText(receipt.getTransactionId());
+        if (receipt.getTransactionInfo() != null && receipt.getTransactionInfo().getTransactionId() != null) {
+            transactionIdTextView.setText(receipt.getTransactionInfo().getTransactionId());
         } else {
             transactionIdTextView.setText("N/A");
         }
@@ -127,30 +131,11 @@ public class ReceiptDetailsActivity extends AppCompatActivity {
             return;
         }
 
-        StringBuilder shareContent = new StringBuilder();
-        shareContent.append("Merchant: ").append(currentReceipt.getMerchantName()).append("\n");
-        shareContent.append("Amount: $").append(String.format(Locale.getDefault(), "%.2f", currentReceipt.getTotalAmount())).append("\n");
-
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-        shareContent.append("Date: ").append(sdf.format(currentReceipt.getTransactionDate())).append("\n");
-
-        shareContent.append("Items:\n");
-        if (currentReceipt.getItems() != null && !currentReceipt.getItems().isEmpty()) {
-            for (String item : currentReceipt.getItems()) {
-                shareContent.append(" - ").append(item).append("\n");
-            }
-        } else {
-            shareContent.append("No items listed.\n");
-        }
-
-        shareContent.append("Transaction ID: ")
-                .append(currentReceipt.getTransactionId() != null ? currentReceipt.getTransactionId() : "N/A");
-
         ShareCompat.IntentBuilder
                 .from(this)
                 .setType("text/plain")
                 .setChooserTitle("Share Receipt")
-                .setText(shareContent.toString())
+                .setText(SHARE_RENDERER.render(currentReceipt))
                 .startChooser();
     }
 }
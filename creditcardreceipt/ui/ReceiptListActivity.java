@@ -17,8 +17,6 @@ import com.myinappbilling.creditcardreceipt.model.Receipt;
 import com.myinappbilling.creditcardreceipt.viewmodel.ReceiptViewModel;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -29,8 +27,8 @@ public class ReceiptListActivity extends AppCompatActivity implements ReceiptLis
     private ReceiptViewModel receiptViewModel;
     private RecyclerView recyclerView;
     private ReceiptListAdapter adapter;
-    private List<Receipt> receiptList = new ArrayList<>();
     private List<Receipt> displayedList = new ArrayList<>();
+    private long displayedVersion = ReceiptViewModel.ListUpdate.INITIAL_VERSION;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,20 +48,24 @@ public class ReceiptListActivity extends AppCompatActivity implements ReceiptLis
 
     private void setupViewModel() {
         receiptViewModel = new ViewModelProvider(this).get(ReceiptViewModel.class);
-        receiptViewModel.getAllReceipts().observe(this, receipts -> {
-            if (receipts != null) {
-                receiptList.clear();
-                receiptList.addAll(receipts);
+        receiptViewModel.getReceiptUpdates().observe(this, update -> {
+            if (update != null) {
                 displayedList.clear();
-                displayedList.addAll(receipts);
-                adapter.notifyDataSetChanged();
+                displayedList.addAll(update.getReceipts());
+                if (update.isBasedOn(displayedVersion)) {
+                    update.getDiff().dispatchUpdatesTo(adapter);
+                } else {
+                    // An intermediate update was dropped, so the diff does not start from what is shown.
+                    adapter.notifyDataSetChanged();
+                }
+                displayedVersion = update.getVersion();
             }
         });
     }
 
     @Override
     public void onReceiptClick(Receipt receipt) {
-        receiptViewModel.setSelectedReceipt(receipt);
+        receiptViewModel.selectReceipt(receipt);
         startActivity(new Intent(this, ReceiptDetailsActivity.class));
     }
 
@@ -79,13 +81,13 @@ public class ReceiptListActivity extends AppCompatActivity implements ReceiptLis
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                filterReceipts(query);
+                receiptViewModel.filterReceipts(query);
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                filterReceipts(newText);
+                receiptViewModel.filterReceipts(newText);
                 return true;
             }
         });
@@ -97,48 +99,16 @@ public class ReceiptListActivity extends AppCompatActivity implements ReceiptLis
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         switch (item.getItemId()) {
             case R.id.action_sort_date:
-                sortByDate();
+                receiptViewModel.sortReceiptsByDate(true);
                 return true;
             case R.id.action_sort_amount:
-                sortByAmount();
+                receiptViewModel.sortReceiptsByAmount(true);
                 return true;
             case R.id.action_group_merchant:
-                groupByMerchant();
+                receiptViewModel.sortReceipts(ReceiptViewModel.SortOrder.MERCHANT);
                 return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
-
-    private void filterReceipts(String query) {
-        List<Receipt> filteredList = new ArrayList<>();
-        for (Receipt receipt : receiptList) {
-            if (receipt.getMerchantName().toLowerCase().contains(query.toLowerCase()) ||
-                (receipt.getTransactionId() != null && receipt.getTransactionId().toLowerCase().contains(query.toLowerCase()))) {
-                filteredList.add(receipt);
-            }
-        }
-        updateDisplayedList(filteredList);
-    }
-
-    private void sortByDate() {
-        Collections.sort(displayedList, Comparator.comparing(Receipt::getTransactionDate));
-        adapter.notifyDataSetChanged();
-    }
-
-    private void sortByAmount() {
-        Collections.sort(displayedList, Comparator.comparingDouble(Receipt::getTotalAmount));
-        adapter.notifyDataSetChanged();
-    }
-
-    private void groupByMerchant() {
-        Collections.sort(displayedList, Comparator.comparing(Receipt::getMerchantName));
-        adapter.notifyDataSetChanged();
-    }
-
-    private void updateDisplayedList(List<Receipt> newList) {
-        displayedList.clear();
-        displayedList.addAll(newList);
-        adapter.notifyDataSetChanged();
-    }
 }
@@ -25,6 +25,8 @@ import java.util.List;
  */
 public class TransactionHistoryActivity extends AppCompatActivity implements TransactionListAdapter.OnTransactionClickListener {
 
+    private static final int LOAD_MORE_THRESHOLD = 10;
+
     private TransactionViewModel transactionViewModel;
     private RecyclerView recyclerView;
     private TransactionListAdapter adapter;
@@ -44,6 +46,16 @@ public class TransactionHistoryActivity extends AppCompatActivity implements Tra
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         adapter = new TransactionListAdapter(transactionList, this);
         recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) view.getLayoutManager();
+                if (dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= layoutManager.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    transactionViewModel.loadNextPage();
+                }
+            }
+        });
     }
 
     private void setupViewModel() {
@@ -93,7 +105,7 @@ public class TransactionHistoryActivity extends AppCompatActivity implements Tra
     }
 
     private void sortByAmount() {
-        Collections.sort(transactionList, Comparator.comparing(TransactionInfo::getAmount));
+        Collections.sort(transactionList, Comparator.comparing(TransactionInfo::getTransactionAmount));
         adapter.updateList(transactionList);
     }
 
@@ -0,0 +1,348 @@
+package com.myinappbilling.creditcardreceipt.util;
+
+import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.financial.model.Money;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * ReceiptExporter streams receipts to a file as CSV, JSON lines or formatted text.
+ *
+ * <p>Receipts are written one at a time through a buffered writer on a {@link FileChannel}, so
+ * memory use does not depend on the number of receipts exported. The text format is rendered
+ * with {@link ReceiptRenderer#RECEIPT_TEXT}, which reuses cached formatters. Every export goes to
+ * a new file with a unique name, so concurrent exports never overwrite each other.</p>
+ */
+public class ReceiptExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String FILE_PREFIX = "receipts-";
+    private static final String CSV_HEADER =
+            "receipt_id,transaction_id,date,merchant,payment_method,currency,total,item_count\n";
+
+    public enum Format {
+        CSV("csv"),
+        JSON_LINES("jsonl"),
+        TEXT("txt");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final File directory;
+
+    /**
+     * @param directory the directory export files are created in
+     */
+    public ReceiptExporter(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Exports receipts to a new file in the export directory.
+     *
+     * @param receipts the receipts to export
+     * @param format   the output format
+     * @param filter   the filter receipts must match, or null to export all of them
+     * @return the created file
+     * @throws IOException if the file cannot be created or written
+     */
+    public File export(Iterable<Receipt> receipts, Format format, Filter filter) throws IOException {
+        Files.createDirectories(directory.toPath());
+        Path path = Files.createTempFile(directory.toPath(), FILE_PREFIX, "." + format.getExtension());
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(receipts, format, filter, channel);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(path);
+            }
+        }
+        return path.toFile();
+    }
+
+    /**
+     * Deletes every export file in the export directory except the most recently written one,
+     * which a consumer may still be reading. Files written at the same time as it are kept too.
+     *
+     * @return the number of files deleted
+     */
+    public int deleteExportsExceptNewest() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX));
+        if (files == null) {
+            return 0;
+        }
+        long newest = Long.MIN_VALUE;
+        for (File file : files) {
+            newest = Math.max(newest, file.lastModified());
+        }
+        int deleted = 0;
+        for (File file : files) {
+            if (file.lastModified() < newest && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Writes receipts to a channel. The channel is left open.
+     *
+     * @param receipts the receipts to export
+     * @param format   the output format
+     * @param filter   the filter receipts must match, or null to export all of them
+     * @param channel  the channel to write to
+     * @return the number of receipts written
+     * @throws IOException if writing fails
+     */
+    public long write(Iterable<Receipt> receipts, Format format, Filter filter, WritableByteChannel channel)
+            throws IOException {
+        Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+        long count = 0;
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER);
+        }
+        for (Receipt receipt : receipts) {
+            if (receipt == null || (filter != null && !filter.matches(receipt))) {
+                continue;
+            }
+            switch (format) {
+                case CSV:
+                    writeCsv(out, receipt);
+                    break;
+                case JSON_LINES:
+                    writeJsonLine(out, receipt);
+                    break;
+                default:
+                    writeText(out, receipt);
+            }
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    private static void writeCsv(Writer out, Receipt receipt) throws IOException {
+        writeCsvField(out, receipt.getReceiptId());
+        out.write(',');
+        writeCsvField(out, receipt.getTransactionInfo() != null ? receipt.getTransactionInfo().getTransactionId() : null);
+        out.write(',');
+        writeCsvField(out, isoDate(receipt.getTransactionDate()));
+        out.write(',');
+        writeCsvField(out, receipt.getMerchantName());
+        out.write(',');
+        writeCsvField(out, receipt.getPaymentMethod());
+        out.write(',');
+        writeCsvField(out, receipt.getCurrency());
+        out.write(',');
+        writeCsvField(out, plainAmount(receipt.getTotalAmount()));
+        out.write(',');
+        out.write(Integer.toString(receipt.getItemCount()));
+        out.write('\n');
+    }
+
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private static void writeJsonLine(Writer out, Receipt receipt) throws IOException {
+        out.write("{\"receiptId\":");
+        writeJsonString(out, receipt.getReceiptId());
+        out.write(",\"transactionId\":");
+        writeJsonString(out, receipt.getTransactionInfo() != null ? receipt.getTransactionInfo().getTransactionId() : null);
+        out.write(",\"date\":");
+        writeJsonString(out, isoDate(receipt.getTransactionDate()));
+        out.write(",\"merchant\":");
+        writeJsonString(out, receipt.getMerchantName());
+        out.write(",\"paymentMethod\":");
+        writeJsonString(out, receipt.getPaymentMethod());
+        out.write(",\"currency\":");
+        writeJsonString(out, receipt.getCurrency());
+        out.write(",\"total\":");
+        writeJsonString(out, plainAmount(receipt.getTotalAmount()));
+        out.write(",\"items\":[");
+        if (receipt.getItems() != null) {
+            boolean first = true;
+            for (ReceiptItem item : receipt.getItems()) {
+                if (item == null) {
+                    continue;
+                }
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write("{\"itemId\":");
+                writeJsonString(out, item.getItemId());
+                out.write(",\"description\":");
+                writeJsonString(out, item.getDescription());
+                out.write(",\"quantity\":");
+                out.write(Integer.toString(item.getQuantity()));
+                out.write(",\"unitPrice\":");
+                writeJsonString(out, plainAmount(item.getUnitPrice()));
+                out.write(",\"category\":");
+                writeJsonString(out, item.getCategory());
+                out.write('}');
+            }
+        }
+        out.write("]}\n");
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    private static void writeText(Writer out, Receipt receipt) throws IOException {
+        out.write(ReceiptRenderer.RECEIPT_TEXT.render(receipt));
+        out.write('\n');
+    }
+
+    private static String plainAmount(Money amount) {
+        return amount != null ? amount.toBigDecimal().toPlainString() : null;
+    }
+
+    private static String isoDate(Date date) {
+        return date != null ? DateTimeFormatter.ISO_INSTANT.format(date.toInstant()) : null;
+    }
+
+    /**
+     * Selects the receipts to export. Unset criteria match every receipt.
+     */
+    public static class Filter {
+        private Date from;
+        private Date to;
+        private String merchantQuery;
+        private Money minAmount;
+        private Money maxAmount;
+
+        /**
+         * Matches receipts dated within the given range, both ends inclusive.
+         *
+         * @param from the earliest date, or null for no lower bound
+         * @param to   the latest date, or null for no upper bound
+         * @return this filter
+         */
+        public Filter dateRange(Date from, Date to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        /**
+         * Matches receipts whose merchant name contains the query, ignoring case.
+         *
+         * @param query the merchant name query
+         * @return this filter
+         */
+        public Filter merchant(String query) {
+            this.merchantQuery = query == null || query.trim().isEmpty() ? null : query.trim();
+            return this;
+        }
+
+        /**
+         * Matches receipts whose total is within the given range, both ends inclusive. Receipts in
+         * other currencies than the bounds do not match.
+         *
+         * @param min the lowest total, or null for no lower bound
+         * @param max the highest total, or null for no upper bound
+         * @return this filter
+         */
+        public Filter amountRange(Money min, Money max) {
+            if (min != null && max != null && !min.isSameCurrency(max)) {
+                throw new IllegalArgumentException("Amount bounds must be in the same currency");
+            }
+            this.minAmount = min;
+            this.maxAmount = max;
+            return this;
+        }
+
+        public boolean matches(Receipt receipt) {
+            Date date = receipt.getTransactionDate();
+            if ((from != null || to != null) && date == null) {
+                return false;
+            }
+            if ((from != null && date.before(from)) || (to != null && date.after(to))) {
+                return false;
+            }
+            if (merchantQuery != null && !ReceiptUtils.containsIgnoreCase(receipt.getMerchantName(), merchantQuery)) {
+                return false;
+            }
+            Money total = receipt.getTotalAmount();
+            if (minAmount != null && (total == null || !total.isSameCurrency(minAmount) || total.compareTo(minAmount) < 0)) {
+                return false;
+            }
+            return maxAmount == null || (total != null && total.isSameCurrency(maxAmount) && total.compareTo(maxAmount) <= 0);
+        }
+    }
+}
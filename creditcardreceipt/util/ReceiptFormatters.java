@@ -0,0 +1,105 @@
+package com.myinappbilling.creditcardreceipt.util;
+
+import com.myinappbilling.financial.model.Money;
+
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ReceiptFormatters caches the locale-specific currency and date formatters used to display
+ * receipts.
+ *
+ * <p>{@link NumberFormat} and {@link SimpleDateFormat} are expensive to create and not
+ * thread-safe, so each thread keeps its own formatters, per locale, per currency and per date
+ * pattern, and reuses them for every value it formats.</p>
+ */
+public final class ReceiptFormatters {
+
+    private static final ThreadLocal<Map<Locale, LocaleFormatters>> FORMATTERS =
+            ThreadLocal.withInitial(HashMap::new);
+
+    private ReceiptFormatters() {
+    }
+
+    /**
+     * Formats an exact amount in its own currency.
+     *
+     * @param amount the amount
+     * @param locale the locale to format for
+     * @return the formatted amount
+     */
+    public static String formatCurrency(Money amount, Locale locale) {
+        return forLocale(locale).currencyFormat(amount).format(amount.toBigDecimal());
+    }
+
+    /**
+     * Formats an amount in the locale's own currency.
+     *
+     * @param amount the amount
+     * @param locale the locale to format for
+     * @return the formatted amount
+     */
+    public static String formatCurrency(double amount, Locale locale) {
+        return forLocale(locale).defaultCurrencyFormat().format(amount);
+    }
+
+    /**
+     * Formats a date.
+     *
+     * @param date    the date
+     * @param pattern the {@link SimpleDateFormat} pattern
+     * @param locale  the locale to format for
+     * @return the formatted date
+     */
+    public static String formatDate(Date date, String pattern, Locale locale) {
+        return forLocale(locale).dateFormat(pattern).format(date);
+    }
+
+    private static LocaleFormatters forLocale(Locale locale) {
+        return FORMATTERS.get().computeIfAbsent(locale, LocaleFormatters::new);
+    }
+
+    private static final class LocaleFormatters {
+        private final Locale locale;
+        private final Map<String, NumberFormat> currencyFormats = new HashMap<>();
+        private final Map<String, SimpleDateFormat> dateFormats = new HashMap<>();
+        private NumberFormat defaultCurrencyFormat;
+
+        LocaleFormatters(Locale locale) {
+            this.locale = locale;
+        }
+
+        NumberFormat defaultCurrencyFormat() {
+            if (defaultCurrencyFormat == null) {
+                defaultCurrencyFormat = NumberFormat.getCurrencyInstance(locale);
+            }
+            return defaultCurrencyFormat;
+        }
+
+        NumberFormat currencyFormat(Money amount) {
+            NumberFormat format = currencyFormats.get(amount.getCurrencyCode());
+            if (format == null) {
+                format = NumberFormat.getCurrencyInstance(locale);
+                format.setCurrency(Currency.getInstance(amount.getCurrencyCode()));
+                format.setMinimumFractionDigits(amount.getFractionDigits());
+                format.setMaximumFractionDigits(amount.getFractionDigits());
+                currencyFormats.put(amount.getCurrencyCode(), format);
+            }
+            return format;
+        }
+
+        SimpleDateFormat dateFormat(String pattern) {
+            SimpleDateFormat format = dateFormats.get(pattern);
+            if (format == null) {
+                format = new SimpleDateFormat(pattern, locale);
+                dateFormats.put(pattern, format);
+            }
+            return format;
+        }
+    }
+}
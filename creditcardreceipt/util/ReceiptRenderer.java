@@ -0,0 +1,353 @@
+package com.myinappbilling.creditcardreceipt.util;
+
+import com.myinappbilling.creditcardreceipt.model.Receipt;
+import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.financial.model.Money;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ReceiptRenderer renders receipts from a layout template.
+ *
+ * <p>The template is compiled once into a sequence of fixed text and value segments, so
+ * rendering is a single pass that appends each segment to a buffer; the template is never parsed
+ * again. Currency and date values go through the cached {@link ReceiptFormatters}, and each
+ * thread renders into its own reusable buffer.</p>
+ *
+ * <p>Placeholders are written as {@code ${name}}:</p>
+ * <ul>
+ *     <li>{@code merchant}, {@code date}, {@code total}, {@code paymentMethod},
+ *     {@code transactionId} and {@code itemCount} for the receipt;</li>
+ *     <li>{@code ${items}...${/items}} repeats its body for every item, skipping null entries,
+ *     with an optional {@code ${else}} part used when the receipt has no items;</li>
+ *     <li>{@code item.description}, {@code item.quantity}, {@code item.unitPrice},
+ *     {@code item.total} and {@code item.category} inside the items block.</li>
+ * </ul>
+ * Missing values render as "N/A".
+ */
+public final class ReceiptRenderer {
+
+    public static final String DEFAULT_DATE_PATTERN = "dd MMM yyyy";
+
+    /**
+     * Plain-text layout used for shared receipt files and exports.
+     */
+    public static final ReceiptRenderer RECEIPT_TEXT = compile(
+            "Merchant: ${merchant}\n"
+                    + "Date: ${date}\n"
+                    + "Total: ${total}\n"
+                    + "Items:\n"
+                    + "${items}- ${item.description} (x${item.quantity}): ${item.unitPrice}\n${/items}",
+            DEFAULT_DATE_PATTERN);
+
+    private static final String MISSING = "N/A";
+    private static final int INITIAL_BUFFER_CAPACITY = 512;
+    private static final int MAX_RETAINED_BUFFER_CAPACITY = 16 * 1024;
+
+    private final Segment[] segments;
+    private final String datePattern;
+    private final ThreadLocal<StringBuilder> buffers =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_CAPACITY));
+
+    private ReceiptRenderer(Segment[] segments, String datePattern) {
+        this.segments = segments;
+        this.datePattern = datePattern;
+    }
+
+    /**
+     * Compiles a layout template.
+     *
+     * @param template    the template
+     * @param datePattern the {@link java.text.SimpleDateFormat} pattern for {@code ${date}}
+     * @return the compiled renderer
+     * @throws IllegalArgumentException if the template has an unknown placeholder or an
+     *                                  unbalanced items block
+     */
+    public static ReceiptRenderer compile(String template, String datePattern) {
+        List<Segment> main = new ArrayList<>();
+        List<Segment> itemBody = null;
+        List<Segment> elseBody = null;
+        List<Segment> current = main;
+        int position = 0;
+        while (position < template.length()) {
+            int start = template.indexOf("${", position);
+            if (start < 0) {
+                current.add(new TextSegment(template.substring(position)));
+                break;
+            }
+            if (start > position) {
+                current.add(new TextSegment(template.substring(position, start)));
+            }
+            int end = template.indexOf('}', start + 2);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated placeholder at " + start);
+            }
+            String name = template.substring(start + 2, end).trim();
+            position = end + 1;
+            switch (name) {
+                case "items":
+                    if (itemBody != null) {
+                        throw new IllegalArgumentException("Items blocks cannot be nested");
+                    }
+                    itemBody = new ArrayList<>();
+                    current = itemBody;
+                    break;
+                case "else":
+                    if (itemBody == null || elseBody != null) {
+                        throw new IllegalArgumentException("${else} outside an items block");
+                    }
+                    elseBody = new ArrayList<>();
+                    current = elseBody;
+                    break;
+                case "/items":
+                    if (itemBody == null) {
+                        throw new IllegalArgumentException("${/items} without ${items}");
+                    }
+                    main.add(new ItemsSegment(toArray(itemBody), elseBody == null ? new Segment[0] : toArray(elseBody)));
+                    itemBody = null;
+                    elseBody = null;
+                    current = main;
+                    break;
+                default:
+                    Field field = Field.forName(name);
+                    if (field.itemScoped && current != itemBody) {
+                        throw new IllegalArgumentException("${" + name + "} outside an items block");
+                    }
+                    current.add(new FieldSegment(field));
+            }
+        }
+        if (itemBody != null) {
+            throw new IllegalArgumentException("Unclosed items block");
+        }
+        return new ReceiptRenderer(toArray(main), datePattern);
+    }
+
+    /**
+     * Renders a receipt for the default locale.
+     *
+     * @param receipt the receipt
+     * @return the rendered text
+     */
+    public String render(Receipt receipt) {
+        return render(receipt, Locale.getDefault());
+    }
+
+    /**
+     * Renders a receipt.
+     *
+     * @param receipt the receipt
+     * @param locale  the locale to format amounts and dates for
+     * @return the rendered text
+     */
+    public String render(Receipt receipt, Locale locale) {
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        try {
+            renderTo(receipt, locale, buffer);
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_CAPACITY) {
+                buffers.remove();
+            } else {
+                buffer.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Renders a receipt into the given buffer.
+     *
+     * @param receipt the receipt
+     * @param locale  the locale to format amounts and dates for
+     * @param out     the buffer to append to
+     */
+    public void renderTo(Receipt receipt, Locale locale, StringBuilder out) {
+        Context context = new Context(receipt, locale, datePattern);
+        for (Segment segment : segments) {
+            segment.append(context, out);
+        }
+    }
+
+    private static Segment[] toArray(List<Segment> segments) {
+        return segments.toArray(new Segment[0]);
+    }
+
+    private static String formatAmount(Money amount, Locale locale) {
+        return amount != null ? ReceiptFormatters.formatCurrency(amount, locale) : MISSING;
+    }
+
+    private static String orMissing(String value) {
+        return value != null ? value : MISSING;
+    }
+
+    private static final class Context {
+        final Receipt receipt;
+        final Locale locale;
+        final String datePattern;
+        ReceiptItem item;
+
+        Context(Receipt receipt, Locale locale, String datePattern) {
+            this.receipt = receipt;
+            this.locale = locale;
+            this.datePattern = datePattern;
+        }
+    }
+
+    private interface Segment {
+        void append(Context context, StringBuilder out);
+    }
+
+    private static final class TextSegment implements Segment {
+        private final String text;
+
+        TextSegment(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void append(Context context, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private static final class FieldSegment implements Segment {
+        private final Field field;
+
+        FieldSegment(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public void append(Context context, StringBuilder out) {
+            field.append(context, out);
+        }
+    }
+
+    private static final class ItemsSegment implements Segment {
+        private final Segment[] body;
+        private final Segment[] elseBody;
+
+        ItemsSegment(Segment[] body, Segment[] elseBody) {
+            this.body = body;
+            this.elseBody = elseBody;
+        }
+
+        @Override
+        public void append(Context context, StringBuilder out) {
+            List<ReceiptItem> items = context.receipt.getItems();
+            boolean rendered = false;
+            if (items != null) {
+                for (ReceiptItem item : items) {
+                    if (item == null) {
+                        continue;
+                    }
+                    context.item = item;
+                    for (Segment segment : body) {
+                        segment.append(context, out);
+                    }
+                    rendered = true;
+                }
+                context.item = null;
+            }
+            if (!rendered) {
+                for (Segment segment : elseBody) {
+                    segment.append(context, out);
+                }
+            }
+        }
+    }
+
+    private enum Field {
+        MERCHANT("merchant", false) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(orMissing(context.receipt.getMerchantName()));
+            }
+        },
+        DATE("date", false) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                Date date = context.receipt.getTransactionDate();
+                out.append(date != null ? ReceiptFormatters.formatDate(date, context.datePattern, context.locale) : MISSING);
+            }
+        },
+        TOTAL("total", false) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(formatAmount(context.receipt.getTotalAmount(), context.locale));
+            }
+        },
+        PAYMENT_METHOD("paymentMethod", false) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(orMissing(context.receipt.getPaymentMethod()));
+            }
+        },
+        TRANSACTION_ID("transactionId", false) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(orMissing(context.receipt.getTransactionInfo() != null
+                        ? context.receipt.getTransactionInfo().getTransactionId() : null));
+            }
+        },
+        ITEM_COUNT("itemCount", false) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(context.receipt.getItemCount());
+            }
+        },
+        ITEM_DESCRIPTION("item.description", true) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(orMissing(context.item.getDescription()));
+            }
+        },
+        ITEM_QUANTITY("item.quantity", true) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(context.item.getQuantity());
+            }
+        },
+        ITEM_UNIT_PRICE("item.unitPrice", true) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(formatAmount(context.item.getUnitPrice(), context.locale));
+            }
+        },
+        ITEM_TOTAL("item.total", true) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(context.item.getUnitPrice() != null
+                        ? formatAmount(context.item.getTotalPrice(), context.locale) : MISSING);
+            }
+        },
+        ITEM_CATEGORY("item.category", true) {
+            @Override
+            void append(Context context, StringBuilder out) {
+                out.append(orMissing(context.item.getCategory()));
+            }
+        };
+
+        final String name;
+        final boolean itemScoped;
+
+        Field(String name, boolean itemScoped) {
+            this.name = name;
+            this.itemScoped = itemScoped;
+        }
+
+        abstract void append(Context context, StringBuilder out);
+
+        static Field forName(String name) {
+            for (Field field : values()) {
+                if (field.name.equals(name)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown placeholder ${" + name + "}");
+        }
+    }
+}
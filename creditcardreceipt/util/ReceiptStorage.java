@@ -0,0 +1,34 @@
+package com.myinappbilling.creditcardreceipt.util;
+
+import android.content.Context;
+
+import com.myinappbilling.creditcardreceipt.repository.ReceiptRepository;
+import com.myinappbilling.creditcardreceipt.repository.SQLiteReceiptRepository;
+
+/**
+ * ReceiptStorage holds the application-wide {@link ReceiptRepository}, backed by the app's
+ * receipt database, so every screen shares one database connection and one receipt cache.
+ *
+ * <p>The first call opens the database and creates its tables if needed, so it must not be
+ * made on the main thread. The repository stays open for the life of the process.</p>
+ */
+public final class ReceiptStorage {
+
+    private static ReceiptRepository repository;
+
+    private ReceiptStorage() {
+    }
+
+    /**
+     * Returns the shared repository, opening its database on first use.
+     *
+     * @param context any context of the application
+     * @return the application-wide receipt repository
+     */
+    public static synchronized ReceiptRepository getRepository(Context context) {
+        if (repository == null) {
+            repository = new SQLiteReceiptRepository(context.getApplicationContext());
+        }
+        return repository;
+    }
+}
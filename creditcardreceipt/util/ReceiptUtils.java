@@ -9,12 +9,10 @@ import androidx.core.content.FileProvider;
 
 import com.myinappbilling.creditcardreceipt.model.Receipt;
 import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.financial.model.Money;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -27,6 +25,7 @@ import java.util.Locale;
 public class ReceiptUtils {
 
     private static final String TAG = "ReceiptUtils";
+    private static final String SHARED_RECEIPTS_DIR = "shared_receipts";
 
     /**
      * Formats a given amount to the local currency format.
@@ -35,8 +34,39 @@ public class ReceiptUtils {
      * @return formatted currency string
      */
     public static String formatCurrency(double amount) {
-        NumberFormat format = NumberFormat.getCurrencyInstance(Locale.getDefault());
-        return format.format(amount);
+        return ReceiptFormatters.formatCurrency(amount, Locale.getDefault());
+    }
+
+    /**
+     * Formats an exact amount in its own currency using the local number format.
+     *
+     * @param amount the amount to format
+     * @return formatted currency string
+     */
+    public static String formatCurrency(Money amount) {
+        return ReceiptFormatters.formatCurrency(amount, Locale.getDefault());
+    }
+
+    /**
+     * Calculates the exact total of the given items (unit price times quantity).
+     *
+     * @param items the receipt items
+     * @param currencyCode the currency all item prices are in
+     * @return the total amount
+     */
+    public static Money calculateTotalAmount(List<ReceiptItem> items, String currencyCode) {
+        long total = 0;
+        if (items != null) {
+            Money zero = Money.zero(currencyCode);
+            for (ReceiptItem item : items) {
+                Money unitPrice = item.getUnitPrice();
+                if (!zero.isSameCurrency(unitPrice)) {
+                    throw new IllegalArgumentException("Item " + item.getItemId() + " is not priced in " + currencyCode);
+                }
+                total = Math.addExact(total, Math.multiplyExact(unitPrice.getMinorUnits(), (long) item.getQuantity()));
+            }
+        }
+        return Money.ofMinor(total, currencyCode);
     }
 
     /**
@@ -46,23 +76,35 @@ public class ReceiptUtils {
      * @return formatted date string
      */
     public static String formatDate(Date date) {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
-        return sdf.format(date);
+        return ReceiptFormatters.formatDate(date, ReceiptRenderer.DEFAULT_DATE_PATTERN, Locale.getDefault());
     }
 
     /**
-     * Creates a shareable file containing receipt details.
+     * Builds the plain-text representation of a receipt, as used in shared files and emails.
+     *
+     * @param receipt the receipt
+     * @return the receipt text
+     */
+    public static String buildReceiptContent(Receipt receipt) {
+        return ReceiptRenderer.RECEIPT_TEXT.render(receipt);
+    }
+
+    /**
+     * Creates a shareable file containing receipt details. Each call writes a new file, so
+     * sharing several receipts at once does not overwrite an earlier one. Files from before the
+     * previous share are deleted first; the previous file is kept, since the app it was shared
+     * with may still be reading it.
      *
      * @param context the application context
      * @param receipt the receipt to share
      * @return Uri of the created file
      */
     public static Uri createShareableReceiptFile(Context context, Receipt receipt) {
-        File file = new File(context.getCacheDir(), "shared_receipt.txt");
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            String content = buildReceiptContent(receipt);
-            fos.write(content.getBytes());
-            fos.flush();
+        ReceiptExporter exporter = new ReceiptExporter(new File(context.getCacheDir(), SHARED_RECEIPTS_DIR));
+        exporter.deleteExportsExceptNewest();
+        File file;
+        try {
+            file = exporter.export(Collections.singletonList(receipt), ReceiptExporter.Format.TEXT, null);
         } catch (IOException e) {
             Log.e(TAG, "Error writing receipt to file", e);
             return null;
@@ -71,30 +113,6 @@ public class ReceiptUtils {
         return FileProvider.getUriForFile(context, context.getPackageName() + ".provider", file);
     }
 
-    /**
-     * Builds a string representation of a receipt.
-     *
-     * @param receipt the receipt
-     * @return string content
-     */
-    private static String buildReceiptContent(Receipt receipt) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("Merchant: ").append(receipt.getMerchantName()).append("\n");
-        builder.append("Date: ").append(formatDate(receipt.getDate())).append("\n");
-        builder.append("Total: ").append(formatCurrency(receipt.getTotalAmount())).append("\n");
-        builder.append("Items:\n");
-        for (ReceiptItem item : receipt.getItems()) {
-            builder.append("- ")
-                    .append(item.getName())
-                    .append(" (x")
-                    .append(item.getQuantity())
-                    .append("): ")
-                    .append(formatCurrency(item.getPrice()))
-                    .append("\n");
-        }
-        return builder.toString();
-    }
-
     /**
      * Shares the receipt via available apps.
      *
@@ -119,7 +137,7 @@ public class ReceiptUtils {
      * @param ascending true for ascending, false for descending
      */
     public static void sortReceiptsByDate(List<Receipt> receipts, boolean ascending) {
-        Collections.sort(receipts, (r1, r2) -> ascending ? r1.getDate().compareTo(r2.getDate()) : r2.getDate().compareTo(r1.getDate()));
+        Collections.sort(receipts, (r1, r2) -> ascending ? r1.getTransactionDate().compareTo(r2.getTransactionDate()) : r2.getTransactionDate().compareTo(r1.getTransactionDate()));
     }
 
     /**
@@ -129,11 +147,14 @@ public class ReceiptUtils {
      * @param ascending true for ascending, false for descending
      */
     public static void sortReceiptsByAmount(List<Receipt> receipts, boolean ascending) {
-        Collections.sort(receipts, (r1, r2) -> ascending ? Double.compare(r1.getTotalAmount(), r2.getTotalAmount()) : Double.compare(r2.getTotalAmount(), r1.getTotalAmount()));
+        Collections.sort(receipts, (r1, r2) -> ascending ? r1.getTotalAmount().compareTo(r2.getTotalAmount()) : r2.getTotalAmount().compareTo(r1.getTotalAmount()));
     }
 
     /**
-     * Filters receipts by merchant name.
+     * Filters receipts by merchant name, ignoring case. Merchant names are matched in place,
+     * without creating lower-cased copies.
+     * For receipts held in a {@link com.myinappbilling.creditcardreceipt.repository.ReceiptRepository},
+     * prefer its indexed {@code searchReceiptsByMerchantContaining}.
      *
      * @param receipts the list of receipts
      * @param query the merchant name query
@@ -143,13 +164,33 @@ public class ReceiptUtils {
         if (query == null || query.isEmpty()) {
             return receipts;
         }
-        query = query.toLowerCase();
         List<Receipt> filtered = new java.util.ArrayList<>();
         for (Receipt receipt : receipts) {
-            if (receipt.getMerchantName().toLowerCase().contains(query)) {
+            if (containsIgnoreCase(receipt.getMerchantName(), query)) {
                 filtered.add(receipt);
             }
         }
         return filtered;
     }
+
+    /**
+     * Returns whether the text contains the query, ignoring case, without creating lower-cased
+     * copies of either.
+     *
+     * @param text  the text to search, may be null
+     * @param query the query
+     * @return true if the text contains the query
+     */
+    public static boolean containsIgnoreCase(String text, String query) {
+        if (text == null) {
+            return false;
+        }
+        int last = text.length() - query.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,17 @@
+package com.myinappbilling.creditcardreceipt.validator;
+
+/**
+ * Error codes reported by {@link ReceiptValidator}.
+ */
+public enum ReceiptError {
+    MISSING_RECEIPT,
+    MISSING_RECEIPT_ID,
+    MISSING_TRANSACTION,
+    MISSING_TRANSACTION_DATE,
+    MISSING_TOTAL,
+    NO_ITEMS,
+    INVALID_ITEM,
+    CURRENCY_MISMATCH,
+    TOTAL_MISMATCH,
+    DUPLICATE_ITEM_NAME
+}
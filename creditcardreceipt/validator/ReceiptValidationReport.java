@@ -0,0 +1,68 @@
+package com.myinappbilling.creditcardreceipt.validator;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ReceiptValidationReport summarizes the validation of a batch of receipts. Only the receipts
+ * that failed are listed, with their error codes.
+ */
+public final class ReceiptValidationReport {
+
+    private final int totalCount;
+    private final List<ReceiptValidationResult> invalidResults;
+    private final Map<ReceiptError, Integer> errorCounts;
+    private final long elapsedMillis;
+
+    ReceiptValidationReport(int totalCount, List<ReceiptValidationResult> invalidResults, long elapsedMillis) {
+        this.totalCount = totalCount;
+        this.invalidResults = Collections.unmodifiableList(invalidResults);
+        this.elapsedMillis = elapsedMillis;
+        Map<ReceiptError, Integer> counts = new EnumMap<>(ReceiptError.class);
+        for (ReceiptValidationResult result : invalidResults) {
+            for (ReceiptError error : result.getErrors()) {
+                counts.merge(error, 1, Integer::sum);
+            }
+        }
+        this.errorCounts = Collections.unmodifiableMap(counts);
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public int getValidCount() {
+        return totalCount - invalidResults.size();
+    }
+
+    public int getInvalidCount() {
+        return invalidResults.size();
+    }
+
+    public List<ReceiptValidationResult> getInvalidResults() {
+        return invalidResults;
+    }
+
+    /**
+     * Returns how many receipts failed with each error code.
+     *
+     * @return the number of receipts per error code
+     */
+    public Map<ReceiptError, Integer> getErrorCounts() {
+        return errorCounts;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "ReceiptValidationReport{total=%d, valid=%d, invalid=%d, errors=%s, elapsedMillis=%d}",
+                totalCount, getValidCount(), getInvalidCount(), errorCounts, elapsedMillis);
+    }
+}
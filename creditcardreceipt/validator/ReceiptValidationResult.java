@@ -0,0 +1,43 @@
+package com.myinappbilling.creditcardreceipt.validator;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * ReceiptValidationResult reports which checks, if any, a receipt failed.
+ */
+public final class ReceiptValidationResult {
+
+    private final String receiptId;
+    private final Set<ReceiptError> errors;
+
+    ReceiptValidationResult(String receiptId, EnumSet<ReceiptError> errors) {
+        this.receiptId = receiptId;
+        this.errors = Collections.unmodifiableSet(errors);
+    }
+
+    public String getReceiptId() {
+        return receiptId;
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    public Set<ReceiptError> getErrors() {
+        return errors;
+    }
+
+    public boolean hasError(ReceiptError error) {
+        return errors.contains(error);
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiptValidationResult{" +
+                "receiptId='" + receiptId + '\'' +
+                ", errors=" + errors +
+                '}';
+    }
+}
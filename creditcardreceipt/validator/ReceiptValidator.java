@@ -2,15 +2,129 @@ package com.myinappbilling.creditcardreceipt.validator;
 
 import com.myinappbilling.creditcardreceipt.model.Receipt;
 import com.myinappbilling.creditcardreceipt.model.ReceiptItem;
+import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
+import com.myinappbilling.financial.model.Money;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Validator class for validating Receipt data.
+ *
+ * <p>{@link #validate(Receipt)} runs every check in a single pass over the items and reports
+ * each failure as a {@link ReceiptError}; {@link #validateAll(Collection)} does so for a batch of
+ * receipts in parallel. Totals are compared in minor units, within a configurable tolerance.</p>
  */
 public class ReceiptValidator {
 
+    private final long toleranceMinorUnits;
+
+    /**
+     * Creates a validator that requires totals to match exactly.
+     */
+    public ReceiptValidator() {
+        this(0);
+    }
+
+    /**
+     * Creates a validator that accepts totals differing from the item sum by up to the given
+     * number of minor units, e.g. to allow for rounding by the card processor.
+     *
+     * @param toleranceMinorUnits the accepted difference in minor units
+     */
+    public ReceiptValidator(long toleranceMinorUnits) {
+        if (toleranceMinorUnits < 0) {
+            throw new IllegalArgumentException("Tolerance must not be negative");
+        }
+        this.toleranceMinorUnits = toleranceMinorUnits;
+    }
+
+    /**
+     * Validates a receipt, running every check in a single pass over its items.
+     *
+     * @param receipt the receipt to validate
+     * @return the result with every failed check
+     */
+    public ReceiptValidationResult validate(Receipt receipt) {
+        EnumSet<ReceiptError> errors = EnumSet.noneOf(ReceiptError.class);
+        if (receipt == null) {
+            errors.add(ReceiptError.MISSING_RECEIPT);
+            return new ReceiptValidationResult(null, errors);
+        }
+        if (isEmpty(receipt.getReceiptId())) {
+            errors.add(ReceiptError.MISSING_RECEIPT_ID);
+        }
+        TransactionInfo transactionInfo = receipt.getTransactionInfo();
+        if (transactionInfo == null) {
+            errors.add(ReceiptError.MISSING_TRANSACTION);
+        } else if (transactionInfo.getTransactionDate() == null) {
+            errors.add(ReceiptError.MISSING_TRANSACTION_DATE);
+        }
+        Money total = receipt.getTotalAmount();
+        if (total == null) {
+            errors.add(ReceiptError.MISSING_TOTAL);
+        }
+        List<ReceiptItem> items = receipt.getItems();
+        if (items == null || items.isEmpty()) {
+            errors.add(ReceiptError.NO_ITEMS);
+            return new ReceiptValidationResult(receipt.getReceiptId(), errors);
+        }
+
+        Set<String> names = items.size() > 1 ? new HashSet<>(items.size() * 2) : null;
+        boolean summing = total != null;
+        long sum = 0;
+        for (ReceiptItem item : items) {
+            if (item == null) {
+                errors.add(ReceiptError.INVALID_ITEM);
+                continue;
+            }
+            Money unitPrice = item.getUnitPrice();
+            String description = item.getDescription();
+            if (isEmpty(description) || unitPrice == null || unitPrice.isNegative() || item.getQuantity() <= 0) {
+                errors.add(ReceiptError.INVALID_ITEM);
+            }
+            if (names != null && description != null && !names.add(description)) {
+                errors.add(ReceiptError.DUPLICATE_ITEM_NAME);
+            }
+            if (summing && unitPrice != null) {
+                if (!total.isSameCurrency(unitPrice)) {
+                    errors.add(ReceiptError.CURRENCY_MISMATCH);
+                    summing = false;
+                } else {
+                    try {
+                        sum = Math.addExact(sum, Math.multiplyExact(unitPrice.getMinorUnits(), (long) item.getQuantity()));
+                    } catch (ArithmeticException e) {
+                        errors.add(ReceiptError.TOTAL_MISMATCH);
+                        summing = false;
+                    }
+                }
+            }
+        }
+        if (summing && !isWithinTolerance(sum, total.getMinorUnits())) {
+            errors.add(ReceiptError.TOTAL_MISMATCH);
+        }
+        return new ReceiptValidationResult(receipt.getReceiptId(), errors);
+    }
+
+    /**
+     * Validates a batch of receipts in parallel, e.g. for nightly reconciliation.
+     *
+     * @param receipts the receipts to validate
+     * @return the report, listing the receipts that failed with their error codes
+     */
+    public ReceiptValidationReport validateAll(Collection<Receipt> receipts) {
+        long startTime = System.currentTimeMillis();
+        List<ReceiptValidationResult> invalidResults = receipts.parallelStream()
+                .map(this::validate)
+                .filter(result -> !result.isValid())
+                .collect(Collectors.toList());
+        return new ReceiptValidationReport(receipts.size(), invalidResults, System.currentTimeMillis() - startTime);
+    }
+
     /**
      * Validates the given receipt.
      *
@@ -44,7 +158,7 @@ public class ReceiptValidator {
             return false;
         }
         for (ReceiptItem item : items) {
-            if (item == null || isEmpty(item.getItemName()) || item.getItemPrice() < 0 || item.getQuantity() <= 0) {
+            if (item == null || isEmpty(item.getDescription()) || item.getUnitPrice() == null || item.getUnitPrice().isNegative() || item.getQuantity() <= 0) {
                 return false;
             }
         }
@@ -53,19 +167,32 @@ public class ReceiptValidator {
 
     /**
      * Checks if the receipt total amount matches the sum of item prices multiplied by quantities.
+     * The comparison is in minor units, within the validator's tolerance; items priced in another
+     * currency fail the check, as does a sum too large to represent.
      *
      * @param receipt the receipt to check
      * @return true if total matches, false otherwise
      */
     public boolean isTotalAmountCorrect(Receipt receipt) {
-        if (receipt == null || receipt.getItems() == null || receipt.getTransactionInfo() == null) {
+        if (receipt == null || receipt.getItems() == null || receipt.getTotalAmount() == null) {
             return false;
         }
-        double sum = receipt.getItems().stream()
-                .filter(Objects::nonNull)
-                .mapToDouble(item -> item.getItemPrice() * item.getQuantity())
-                .sum();
-        return Double.compare(sum, receipt.getTransactionInfo().getTotalAmount()) == 0;
+        Money total = receipt.getTotalAmount();
+        long sum = 0;
+        for (ReceiptItem item : receipt.getItems()) {
+            if (item == null) {
+                continue;
+            }
+            if (!total.isSameCurrency(item.getUnitPrice())) {
+                return false;
+            }
+            try {
+                sum = Math.addExact(sum, Math.multiplyExact(item.getUnitPrice().getMinorUnits(), (long) item.getQuantity()));
+            } catch (ArithmeticException e) {
+                return false;
+            }
+        }
+        return isWithinTolerance(sum, total.getMinorUnits());
     }
 
     /**
@@ -88,7 +215,8 @@ public class ReceiptValidator {
      * @return true if all validations pass, false otherwise
      */
     public boolean performFullValidation(Receipt receipt) {
-        return isValid(receipt) && isTotalAmountCorrect(receipt) && isReceiptDateValid(receipt);
+        Set<ReceiptError> errors = validate(receipt).getErrors();
+        return errors.isEmpty() || (errors.size() == 1 && errors.contains(ReceiptError.DUPLICATE_ITEM_NAME));
     }
 
     /**
@@ -101,6 +229,15 @@ public class ReceiptValidator {
         return value == null || value.trim().isEmpty();
     }
 
+    private boolean isWithinTolerance(long actual, long expected) {
+        try {
+            long difference = Math.subtractExact(actual, expected);
+            return difference >= -toleranceMinorUnits && difference <= toleranceMinorUnits;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
     /**
      * Checks if all items in the receipt have a unique name.
      *
@@ -111,12 +248,13 @@ public class ReceiptValidator {
         if (receipt == null || receipt.getItems() == null) {
             return false;
         }
-        return receipt.getItems().stream()
-                .filter(Objects::nonNull)
-                .map(ReceiptItem::getItemName)
-                .filter(Objects::nonNull)
-                .distinct()
-                .count() == receipt.getItems().size();
+        Set<String> names = new HashSet<>(receipt.getItems().size() * 2);
+        for (ReceiptItem item : receipt.getItems()) {
+            if (item == null || item.getDescription() == null || !names.add(item.getDescription())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -126,6 +264,6 @@ public class ReceiptValidator {
      * @return true if all extended validations pass, false otherwise
      */
     public boolean performExtendedValidation(Receipt receipt) {
-        return performFullValidation(receipt) && areItemNamesUnique(receipt);
+        return validate(receipt).isValid();
     }
 }
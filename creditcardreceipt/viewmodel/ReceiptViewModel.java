@@ -1,38 +1,97 @@
 package com.myinappbilling.creditcardreceipt.viewmodel;
 
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
+import androidx.recyclerview.widget.DiffUtil;
 
 import com.myinappbilling.creditcardreceipt.model.Receipt;
 import com.myinappbilling.creditcardreceipt.repository.ReceiptRepository;
+import com.myinappbilling.creditcardreceipt.util.ReceiptStorage;
+import com.myinappbilling.creditcardreceipt.util.ReceiptUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * ViewModel for managing UI-related data for Receipts with advanced features.
+ *
+ * <p>Filtering and sorting run on a background thread. Each new query supersedes the previous
+ * one: a query still running when the user types again is cancelled, and its result is never
+ * published. Sorted orderings of all receipts are cached per sort order until the receipts
+ * change, and a keyword that extends the previous one only filters the previous result. Results
+ * are published with {@code postValue}, together with a {@link DiffUtil.DiffResult} against the
+ * list published before. Since {@code postValue} drops values the UI has not picked up yet, each
+ * update carries the version of the list its diff was computed against; see
+ * {@link ListUpdate#isBasedOn(long)}.</p>
+ *
+ * <p>Receipts are stored in the application-wide repository of {@link ReceiptStorage}, which
+ * every instance shares. It is opened on the background thread, since the first open creates the
+ * database, and saves and deletes also run there, ahead of the reload they trigger.</p>
  */
-public class ReceiptViewModel extends ViewModel {
+public class ReceiptViewModel extends AndroidViewModel {
+
+    public enum SortOrder {
+        NONE, DATE_ASCENDING, DATE_DESCENDING, AMOUNT_ASCENDING, AMOUNT_DESCENDING, MERCHANT
+    }
+
+    private static final int CANCELLATION_CHECK_INTERVAL = 256;
 
-    private final ReceiptRepository receiptRepository;
     private final MutableLiveData<List<Receipt>> receiptsLiveData = new MutableLiveData<>();
+    private final MutableLiveData<ListUpdate> receiptUpdatesLiveData = new MutableLiveData<>();
     private final MutableLiveData<Receipt> selectedReceiptLiveData = new MutableLiveData<>();
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicLong queryGeneration = new AtomicLong();
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    // Guarded by this
+    private String keyword = "";
+    private SortOrder sortOrder = SortOrder.NONE;
+    private Future<?> runningQuery;
 
-    public ReceiptViewModel() {
-        this.receiptRepository = new ReceiptRepository();
+    // Only accessed on the query thread
+    private ReceiptRepository receiptRepository;
+    private final Map<SortOrder, List<Receipt>> sortedReceipts = new EnumMap<>(SortOrder.class);
+    private long cachedDataVersion = -1;
+    private String lastKeyword;
+    private SortOrder lastSortOrder;
+    private List<Receipt> lastResult = Collections.emptyList();
+    private long lastResultVersion = ListUpdate.INITIAL_VERSION;
+
+    public ReceiptViewModel(@NonNull Application application) {
+        super(application);
+        queryExecutor.execute(() -> receiptRepository = ReceiptStorage.getRepository(application));
         loadReceipts();
     }
 
     /**
-     * Loads all receipts from the repository.
+     * @param receiptRepository the repository to use; it is not closed when the ViewModel is cleared
+     */
+    public ReceiptViewModel(@NonNull Application application, ReceiptRepository receiptRepository) {
+        super(application);
+        this.receiptRepository = receiptRepository;
+        loadReceipts();
+    }
+
+    /**
+     * Reloads the receipts from the repository, keeping the current keyword and sort order.
      */
     private void loadReceipts() {
-        List<Receipt> receipts = receiptRepository.getAllReceipts();
-        receiptsLiveData.setValue(receipts);
+        dataVersion.incrementAndGet();
+        submitQuery();
     }
 
     /**
@@ -44,6 +103,16 @@ public class ReceiptViewModel extends ViewModel {
         return receiptsLiveData;
     }
 
+    /**
+     * Returns LiveData containing each new list of receipts together with its diff against the
+     * previous one, for dispatching to a RecyclerView adapter.
+     *
+     * @return LiveData of list updates
+     */
+    public LiveData<ListUpdate> getReceiptUpdates() {
+        return receiptUpdatesLiveData;
+    }
+
     /**
      * Selects a specific receipt.
      *
@@ -68,8 +137,10 @@ public class ReceiptViewModel extends ViewModel {
      * @param receipt the new receipt to add
      */
     public void addReceipt(Receipt receipt) {
-        receiptRepository.saveReceipt(receipt);
-        loadReceipts();
+        queryExecutor.execute(() -> {
+            receiptRepository.saveReceipt(receipt);
+            loadReceipts();
+        });
     }
 
     /**
@@ -78,21 +149,24 @@ public class ReceiptViewModel extends ViewModel {
      * @param receipt the receipt to delete
      */
     public void deleteReceipt(Receipt receipt) {
-        receiptRepository.deleteReceipt(receipt);
-        loadReceipts();
+        String receiptId = receipt.getReceiptId();
+        queryExecutor.execute(() -> {
+            receiptRepository.deleteReceipt(receiptId);
+            loadReceipts();
+        });
     }
 
     /**
-     * Filters receipts by a keyword in receipt ID.
+     * Filters receipts by a keyword in the receipt ID, merchant name or transaction ID, ignoring
+     * case.
      *
      * @param keyword the keyword to search
      */
     public void filterReceipts(String keyword) {
-        List<Receipt> allReceipts = receiptRepository.getAllReceipts();
-        List<Receipt> filteredReceipts = allReceipts.stream()
-                .filter(receipt -> receipt.getReceiptId() != null && receipt.getReceiptId().toLowerCase().contains(keyword.toLowerCase()))
-                .collect(Collectors.toList());
-        receiptsLiveData.setValue(filteredReceipts);
+        synchronized (this) {
+            this.keyword = keyword == null ? "" : keyword.trim();
+        }
+        submitQuery();
     }
 
     /**
@@ -101,19 +175,7 @@ public class ReceiptViewModel extends ViewModel {
      * @param ascending true for ascending order, false for descending
      */
     public void sortReceiptsByDate(boolean ascending) {
-        List<Receipt> currentReceipts = receiptsLiveData.getValue();
-        if (currentReceipts == null) return;
-
-        List<Receipt> sortedReceipts = new ArrayList<>(currentReceipts);
-        sortedReceipts.sort((r1, r2) -> {
-            if (r1.getTransactionInfo() == null || r2.getTransactionInfo() == null) return 0;
-            if (ascending) {
-                return r1.getTransactionInfo().getTransactionDate().compareTo(r2.getTransactionInfo().getTransactionDate());
-            } else {
-                return r2.getTransactionInfo().getTransactionDate().compareTo(r1.getTransactionInfo().getTransactionDate());
-            }
-        });
-        receiptsLiveData.setValue(sortedReceipts);
+        sortReceipts(ascending ? SortOrder.DATE_ASCENDING : SortOrder.DATE_DESCENDING);
     }
 
     /**
@@ -122,18 +184,227 @@ public class ReceiptViewModel extends ViewModel {
      * @param ascending true for ascending order, false for descending
      */
     public void sortReceiptsByAmount(boolean ascending) {
-        List<Receipt> currentReceipts = receiptsLiveData.getValue();
-        if (currentReceipts == null) return;
-
-        List<Receipt> sortedReceipts = new ArrayList<>(currentReceipts);
-        sortedReceipts.sort((r1, r2) -> {
-            if (r1.getTransactionInfo() == null || r2.getTransactionInfo() == null) return 0;
-            if (ascending) {
-                return Double.compare(r1.getTransactionInfo().getTotalAmount(), r2.getTransactionInfo().getTotalAmount());
-            } else {
-                return Double.compare(r2.getTransactionInfo().getTotalAmount(), r1.getTransactionInfo().getTotalAmount());
+        sortReceipts(ascending ? SortOrder.AMOUNT_ASCENDING : SortOrder.AMOUNT_DESCENDING);
+    }
+
+    /**
+     * Sorts receipts in the given order.
+     *
+     * @param sortOrder the sort order
+     */
+    public void sortReceipts(SortOrder sortOrder) {
+        synchronized (this) {
+            this.sortOrder = sortOrder;
+        }
+        submitQuery();
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        synchronized (this) {
+            queryGeneration.incrementAndGet();
+            if (runningQuery != null) {
+                runningQuery.cancel(true);
+            }
+            // Pending saves and deletes still run.
+            queryExecutor.shutdown();
+        }
+    }
+
+    private synchronized void submitQuery() {
+        if (queryExecutor.isShutdown()) {
+            return;
+        }
+        long generation = queryGeneration.incrementAndGet();
+        if (runningQuery != null) {
+            runningQuery.cancel(true);
+        }
+        String queryKeyword = keyword;
+        SortOrder querySortOrder = sortOrder;
+        long queryDataVersion = dataVersion.get();
+        runningQuery = queryExecutor.submit(() -> {
+            try {
+                runQuery(generation, queryKeyword, querySortOrder, queryDataVersion);
+            } catch (CancellationException e) {
+                // Superseded by a newer query
             }
         });
-        receiptsLiveData.setValue(sortedReceipts);
+    }
+
+    /**
+     * Runs on the query thread.
+     */
+    private void runQuery(long generation, String queryKeyword, SortOrder querySortOrder, long queryDataVersion) {
+        if (queryDataVersion != cachedDataVersion) {
+            sortedReceipts.clear();
+            lastKeyword = null;
+            cachedDataVersion = queryDataVersion;
+        }
+        List<Receipt> source;
+        if (lastKeyword != null && querySortOrder == lastSortOrder && queryKeyword.length() > lastKeyword.length()
+                && containsIgnoreCase(queryKeyword, lastKeyword)) {
+            // The keyword only got longer, so every match is among the previous matches.
+            source = lastResult;
+        } else {
+            source = sorted(querySortOrder, generation);
+        }
+        List<Receipt> result = queryKeyword.isEmpty() ? source : filter(source, queryKeyword, generation);
+        checkCurrent(generation);
+
+        List<Receipt> previous = lastResult;
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ReceiptDiffCallback(previous, result));
+        checkCurrent(generation);
+        lastKeyword = queryKeyword;
+        lastSortOrder = querySortOrder;
+        lastResult = result;
+        ListUpdate update = new ListUpdate(lastResultVersion, lastResultVersion + 1, result, diff);
+        lastResultVersion = update.getVersion();
+        receiptsLiveData.postValue(result);
+        receiptUpdatesLiveData.postValue(update);
+    }
+
+    private List<Receipt> sorted(SortOrder order, long generation) {
+        List<Receipt> cached = sortedReceipts.get(order);
+        if (cached != null) {
+            return cached;
+        }
+        List<Receipt> receipts = new ArrayList<>(receiptRepository.getReceiptsView());
+        checkCurrent(generation);
+        Comparator<Receipt> comparator = comparator(order);
+        if (comparator != null) {
+            receipts.sort(comparator);
+        }
+        List<Receipt> ordering = Collections.unmodifiableList(receipts);
+        sortedReceipts.put(order, ordering);
+        return ordering;
+    }
+
+    private List<Receipt> filter(List<Receipt> receipts, String queryKeyword, long generation) {
+        List<Receipt> filtered = new ArrayList<>();
+        for (int i = 0; i < receipts.size(); i++) {
+            if (i % CANCELLATION_CHECK_INTERVAL == 0) {
+                checkCurrent(generation);
+            }
+            Receipt receipt = receipts.get(i);
+            if (containsIgnoreCase(receipt.getReceiptId(), queryKeyword)
+                    || containsIgnoreCase(receipt.getMerchantName(), queryKeyword)
+                    || (receipt.getTransactionInfo() != null
+                    && containsIgnoreCase(receipt.getTransactionInfo().getTransactionId(), queryKeyword))) {
+                filtered.add(receipt);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+
+    private void checkCurrent(long generation) {
+        if (generation != queryGeneration.get() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private static boolean containsIgnoreCase(String text, String query) {
+        return text != null && ReceiptUtils.containsIgnoreCase(text, query);
+    }
+
+    private static Comparator<Receipt> comparator(SortOrder order) {
+        switch (order) {
+            case DATE_ASCENDING:
+                return Comparator.comparing(ReceiptViewModel::transactionDate, Comparator.nullsLast(Comparator.naturalOrder()));
+            case DATE_DESCENDING:
+                return Comparator.comparing(ReceiptViewModel::transactionDate, Comparator.nullsLast(Comparator.reverseOrder()));
+            case AMOUNT_ASCENDING:
+                return Comparator.comparing(Receipt::getTotalAmount, Comparator.nullsLast(Comparator.naturalOrder()));
+            case AMOUNT_DESCENDING:
+                return Comparator.comparing(Receipt::getTotalAmount, Comparator.nullsLast(Comparator.reverseOrder()));
+            case MERCHANT:
+                return Comparator.comparing(Receipt::getMerchantName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            default:
+                return null;
+        }
+    }
+
+    private static Date transactionDate(Receipt receipt) {
+        return receipt.getTransactionInfo() != null ? receipt.getTransactionInfo().getTransactionDate() : null;
+    }
+
+    /**
+     * A new list of receipts and its diff against the list published before it. The diff only
+     * applies to a view that shows that earlier list; a view that missed an update, or shows
+     * nothing yet, must rebind in full.
+     */
+    public static class ListUpdate {
+        /**
+         * The version of the empty list shown before the first update.
+         */
+        public static final long INITIAL_VERSION = 0;
+
+        private final long baseVersion;
+        private final long version;
+        private final List<Receipt> receipts;
+        private final DiffUtil.DiffResult diff;
+
+        ListUpdate(long baseVersion, long version, List<Receipt> receipts, DiffUtil.DiffResult diff) {
+            this.baseVersion = baseVersion;
+            this.version = version;
+            this.receipts = receipts;
+            this.diff = diff;
+        }
+
+        /**
+         * @return the version of this list, to pass to {@link #isBasedOn(long)} for the next update
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns whether the diff was computed against the list with the given version.
+         *
+         * @param displayedVersion the version of the list the view shows
+         * @return true if {@link #getDiff()} may be dispatched to that view
+         */
+        public boolean isBasedOn(long displayedVersion) {
+            return baseVersion == displayedVersion;
+        }
+
+        public List<Receipt> getReceipts() {
+            return receipts;
+        }
+
+        public DiffUtil.DiffResult getDiff() {
+            return diff;
+        }
+    }
+
+    private static final class ReceiptDiffCallback extends DiffUtil.Callback {
+        private final List<Receipt> oldList;
+        private final List<Receipt> newList;
+
+        ReceiptDiffCallback(List<Receipt> oldList, List<Receipt> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            String oldId = oldList.get(oldItemPosition).getReceiptId();
+            return oldId != null && oldId.equals(newList.get(newItemPosition).getReceiptId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition) == newList.get(newItemPosition);
+        }
     }
 }
@@ -0,0 +1,92 @@
+package com.myinappbilling.creditcardreceipt.viewmodel;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.myinappbilling.creditcardreceipt.model.TransactionInfo;
+import com.myinappbilling.creditcardreceipt.service.FileTransactionSource;
+import com.myinappbilling.creditcardreceipt.service.TransactionFetchService;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ViewModel for the transaction history. Transactions are loaded a page at a time on a
+ * background thread as the list is scrolled; the fetch service prefetches the following page.
+ */
+public class TransactionViewModel extends AndroidViewModel {
+
+    private static final String TRANSACTIONS_FILE = "transactions.jsonl";
+
+    private final TransactionFetchService fetchService;
+    private final MutableLiveData<List<TransactionInfo>> transactionsLiveData = new MutableLiveData<>(new ArrayList<>());
+    private final MutableLiveData<TransactionInfo> selectedTransactionLiveData = new MutableLiveData<>();
+    private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    private final List<TransactionInfo> loadedTransactions = new ArrayList<>();
+    private String nextCursor;
+    private boolean loading;
+    private boolean endReached;
+
+    public TransactionViewModel(@NonNull Application application) {
+        super(application);
+        this.fetchService = new TransactionFetchService(
+                new FileTransactionSource(new File(application.getFilesDir(), TRANSACTIONS_FILE)));
+        loadNextPage();
+    }
+
+    /**
+     * Returns LiveData containing the transactions loaded so far.
+     *
+     * @return LiveData list of transactions
+     */
+    public LiveData<List<TransactionInfo>> getAllTransactions() {
+        return transactionsLiveData;
+    }
+
+    public LiveData<String> getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setSelectedTransaction(TransactionInfo transactionInfo) {
+        selectedTransactionLiveData.setValue(transactionInfo);
+    }
+
+    public LiveData<TransactionInfo> getSelectedTransaction() {
+        return selectedTransactionLiveData;
+    }
+
+    /**
+     * Loads the next page of transactions in the background, unless a page is already loading or
+     * every page has been loaded.
+     */
+    public synchronized void loadNextPage() {
+        if (loading || endReached) {
+            return;
+        }
+        loading = true;
+        fetchService.fetchPageAsync(nextCursor).whenComplete((page, error) -> {
+            synchronized (this) {
+                loading = false;
+                if (error != null) {
+                    errorMessage.postValue("Failed to load transactions.");
+                    return;
+                }
+                loadedTransactions.addAll(page.getTransactions());
+                nextCursor = page.getNextCursor();
+                endReached = !page.hasMore();
+                transactionsLiveData.postValue(new ArrayList<>(loadedTransactions));
+            }
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        fetchService.shutdown();
+    }
+}
@@ -0,0 +1,289 @@
+package com.myinappbilling.financial.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable monetary amount stored as a whole number of minor units (e.g. cents) plus a currency.
+ * Arithmetic is exact long arithmetic; {@link BigDecimal} is only used when converting from or to
+ * decimal text and when applying fractional rates. Currency metadata is looked up once per
+ * currency code and shared by every amount in that currency.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L
+    };
+
+    private static final Map<String, CurrencyInfo> CURRENCY_CACHE = new ConcurrentHashMap<>();
+
+    private final long minorUnits;
+    private final CurrencyInfo currency;
+
+    private Money(long minorUnits, CurrencyInfo currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    /**
+     * Creates an amount from a number of minor units, e.g. {@code ofMinor(1999, "USD")} for 19.99 USD.
+     *
+     * @param minorUnits   The amount in minor units.
+     * @param currencyCode ISO 4217 currency code.
+     * @return The amount.
+     */
+    public static Money ofMinor(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, currencyInfo(currencyCode));
+    }
+
+    /**
+     * Creates an amount from its decimal representation, e.g. {@code of("19.99", "USD")}.
+     * Values with more fraction digits than the currency allows are rounded half-even.
+     *
+     * @param amount       Decimal amount.
+     * @param currencyCode ISO 4217 currency code.
+     * @return The amount.
+     * @throws NumberFormatException if the text is not a decimal number.
+     */
+    public static Money of(String amount, String currencyCode) {
+        return of(new BigDecimal(amount.trim()), currencyCode);
+    }
+
+    /**
+     * Creates an amount from a {@link BigDecimal}, rounding half-even to the currency's fraction digits.
+     *
+     * @param amount       Decimal amount.
+     * @param currencyCode ISO 4217 currency code.
+     * @return The amount.
+     */
+    public static Money of(BigDecimal amount, String currencyCode) {
+        CurrencyInfo info = currencyInfo(currencyCode);
+        long minor = amount.setScale(info.fractionDigits, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+        return new Money(minor, info);
+    }
+
+    /**
+     * Creates an amount from a double, using the double's shortest decimal representation
+     * so that e.g. 0.1 becomes exactly 10 cents. Intended for values coming from legacy
+     * double-based APIs only.
+     *
+     * @param amount       Amount as a double.
+     * @param currencyCode ISO 4217 currency code.
+     * @return The amount.
+     */
+    public static Money of(double amount, String currencyCode) {
+        return of(BigDecimal.valueOf(amount), currencyCode);
+    }
+
+    /**
+     * Returns a zero amount in the given currency.
+     *
+     * @param currencyCode ISO 4217 currency code.
+     * @return Zero in that currency.
+     */
+    public static Money zero(String currencyCode) {
+        return currencyInfo(currencyCode).zero;
+    }
+
+    /**
+     * Sums amounts that must all be in the given currency, accumulating in a primitive long.
+     *
+     * @param amounts      The amounts to sum; null elements are skipped.
+     * @param currencyCode ISO 4217 currency code of the amounts.
+     * @return The total.
+     * @throws IllegalArgumentException if an amount is in a different currency.
+     * @throws ArithmeticException      if the total overflows.
+     */
+    public static Money sum(Iterable<Money> amounts, String currencyCode) {
+        CurrencyInfo info = currencyInfo(currencyCode);
+        long total = 0;
+        for (Money amount : amounts) {
+            if (amount != null) {
+                requireCurrency(info, amount);
+                total = Math.addExact(total, amount.minorUnits);
+            }
+        }
+        return new Money(total, info);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrencyCode() {
+        return currency.code;
+    }
+
+    public int getFractionDigits() {
+        return currency.fractionDigits;
+    }
+
+    /**
+     * Returns the number of minor units in one major unit, e.g. 100 for USD.
+     *
+     * @return The minor-unit scale factor.
+     */
+    public long getScaleFactor() {
+        return currency.scaleFactor;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money times(long multiplier) {
+        return new Money(Math.multiplyExact(minorUnits, multiplier), currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    /**
+     * Multiplies this amount by a decimal factor, rounding half-even to the currency's minor unit.
+     *
+     * @param factor The factor, e.g. an exchange or tax rate.
+     * @return The scaled amount.
+     */
+    public Money times(BigDecimal factor) {
+        BigDecimal scaled = BigDecimal.valueOf(minorUnits).multiply(factor).setScale(0, RoundingMode.HALF_EVEN);
+        return new Money(scaled.longValueExact(), currency);
+    }
+
+    /**
+     * Returns the given percentage of this amount, e.g. {@code percentage(7.5)} for 7.5% tax.
+     *
+     * @param percent The percentage.
+     * @return The rounded percentage amount.
+     */
+    public Money percentage(double percent) {
+        return times(BigDecimal.valueOf(percent).movePointLeft(2));
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public boolean isGreaterThan(Money other) {
+        requireSameCurrency(other);
+        return minorUnits > other.minorUnits;
+    }
+
+    public boolean isLessThan(Money other) {
+        requireSameCurrency(other);
+        return minorUnits < other.minorUnits;
+    }
+
+    public boolean isSameCurrency(Money other) {
+        return other != null && currency == other.currency;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.fractionDigits);
+    }
+
+    /**
+     * Returns this amount as a double in major units. For display and legacy APIs only.
+     *
+     * @return The approximate amount in major units.
+     */
+    public double toDouble() {
+        return (double) minorUnits / currency.scaleFactor;
+    }
+
+    /**
+     * Orders by currency code first and amount second, so mixed-currency lists sort deterministically.
+     */
+    @Override
+    public int compareTo(Money other) {
+        int byCurrency = currency.code.compareTo(other.currency.code);
+        return byCurrency != 0 ? byCurrency : Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return minorUnits == money.minorUnits && currency.code.equals(money.currency.code);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minorUnits, currency.code);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.code;
+    }
+
+    private Object readResolve() {
+        return new Money(minorUnits, currencyInfo(currency.code));
+    }
+
+    private void requireSameCurrency(Money other) {
+        requireCurrency(currency, other);
+    }
+
+    private static void requireCurrency(CurrencyInfo expected, Money amount) {
+        if (expected != amount.currency && !expected.code.equals(amount.currency.code)) {
+            throw new IllegalArgumentException("Currency mismatch: " + expected.code + " vs " + amount.currency.code);
+        }
+    }
+
+    private static CurrencyInfo currencyInfo(String currencyCode) {
+        if (currencyCode == null) {
+            throw new IllegalArgumentException("Currency code cannot be null");
+        }
+        CurrencyInfo info = CURRENCY_CACHE.get(currencyCode);
+        if (info == null) {
+            info = CURRENCY_CACHE.computeIfAbsent(currencyCode.toUpperCase(Locale.ROOT), CurrencyInfo::new);
+            CURRENCY_CACHE.putIfAbsent(currencyCode, info);
+        }
+        return info;
+    }
+
+    /**
+     * Cached per-currency metadata shared by all amounts in that currency.
+     */
+    private static final class CurrencyInfo implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final String code;
+        final int fractionDigits;
+        final long scaleFactor;
+        final transient Money zero;
+
+        CurrencyInfo(String code) {
+            int digits = Currency.getInstance(code).getDefaultFractionDigits();
+            this.code = code;
+            this.fractionDigits = digits < 0 ? 2 : digits;
+            this.scaleFactor = POWERS_OF_TEN[fractionDigits];
+            this.zero = new Money(0, this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.myinappbilling.financial.model;
+
+/**
+ * Enum representing the review decisions that can be applied to a batch of refund requests.
+ */
+public enum RefundBatchAction {
+
+    /**
+     * Approve every refund request in the batch.
+     */
+    APPROVE(RefundStatus.APPROVED),
+
+    /**
+     * Reject every refund request in the batch.
+     */
+    REJECT(RefundStatus.REJECTED),
+
+    /**
+     * Escalate every refund request in the batch for further review.
+     */
+    ESCALATE(RefundStatus.ESCALATED);
+
+    private final RefundStatus targetStatus;
+
+    RefundBatchAction(RefundStatus targetStatus) {
+        this.targetStatus = targetStatus;
+    }
+
+    /**
+     * Returns the status a refund request moves to when this action is applied.
+     *
+     * @return The target refund status.
+     */
+    public RefundStatus getTargetStatus() {
+        return targetStatus;
+    }
+}
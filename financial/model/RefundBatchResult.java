@@ -0,0 +1,117 @@
+package com.myinappbilling.financial.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the outcome of applying a review decision to a batch of refund requests.
+ */
+public class RefundBatchResult {
+
+    private final RefundBatchAction action;
+    private final List<ItemResult> itemResults;
+    private final long elapsedMillis;
+
+    public RefundBatchResult(RefundBatchAction action, List<ItemResult> itemResults, long elapsedMillis) {
+        this.action = action;
+        this.itemResults = Collections.unmodifiableList(itemResults);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public RefundBatchAction getAction() {
+        return action;
+    }
+
+    public List<ItemResult> getItemResults() {
+        return itemResults;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int getTotalCount() {
+        return itemResults.size();
+    }
+
+    public int getSuccessCount() {
+        int count = 0;
+        for (ItemResult itemResult : itemResults) {
+            if (itemResult.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getFailureCount() {
+        return getTotalCount() - getSuccessCount();
+    }
+
+    public boolean isFullySuccessful() {
+        return getFailureCount() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RefundBatchResult{" +
+                "action=" + action +
+                ", total=" + getTotalCount() +
+                ", succeeded=" + getSuccessCount() +
+                ", failed=" + getFailureCount() +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+
+    /**
+     * Outcome of the batch action for a single refund request.
+     */
+    public static class ItemResult {
+
+        private final String refundRequestId;
+        private final boolean success;
+        private final RefundStatus previousStatus;
+        private final String errorMessage;
+
+        private ItemResult(String refundRequestId, boolean success, RefundStatus previousStatus, String errorMessage) {
+            this.refundRequestId = refundRequestId;
+            this.success = success;
+            this.previousStatus = previousStatus;
+            this.errorMessage = errorMessage;
+        }
+
+        public static ItemResult success(String refundRequestId, RefundStatus previousStatus) {
+            return new ItemResult(refundRequestId, true, previousStatus, null);
+        }
+
+        public static ItemResult failure(String refundRequestId, RefundStatus previousStatus, String errorMessage) {
+            return new ItemResult(refundRequestId, false, previousStatus, errorMessage);
+        }
+
+        public String getRefundRequestId() {
+            return refundRequestId;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public RefundStatus getPreviousStatus() {
+            return previousStatus;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        @Override
+        public String toString() {
+            return "ItemResult{" +
+                    "refundRequestId='" + refundRequestId + '\'' +
+                    ", success=" + success +
+                    ", previousStatus=" + previousStatus +
+                    ", errorMessage='" + errorMessage + '\'' +
+                    '}';
+        }
+    }
+}
@@ -142,15 +142,3 @@ public class RefundRequest {
         return Objects.hash(refundRequestId);
     }
 }
-
-/**
- * Enum representing the status of a refund request.
- */
-enum RefundStatus {
-    PENDING,
-    APPROVED,
-    REJECTED,
-    PROCESSING,
-    COMPLETED,
-    ESCALATED
-}
@@ -1,5 +1,11 @@
 package com.myinappbilling.financial.model;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Enum representing the various statuses a refund request can have.
  */
@@ -40,6 +46,18 @@ public enum RefundStatus {
      */
     CANCELED;
 
+    private static final Map<RefundStatus, Set<RefundStatus>> ALLOWED_TRANSITIONS = new EnumMap<>(RefundStatus.class);
+
+    static {
+        ALLOWED_TRANSITIONS.put(PENDING, EnumSet.of(PROCESSING, APPROVED, REJECTED, ESCALATED, CANCELED));
+        ALLOWED_TRANSITIONS.put(PROCESSING, EnumSet.of(APPROVED, REJECTED, ESCALATED, CANCELED));
+        ALLOWED_TRANSITIONS.put(ESCALATED, EnumSet.of(PROCESSING, APPROVED, REJECTED, CANCELED));
+        ALLOWED_TRANSITIONS.put(APPROVED, EnumSet.of(COMPLETED, CANCELED));
+        ALLOWED_TRANSITIONS.put(REJECTED, EnumSet.noneOf(RefundStatus.class));
+        ALLOWED_TRANSITIONS.put(COMPLETED, EnumSet.noneOf(RefundStatus.class));
+        ALLOWED_TRANSITIONS.put(CANCELED, EnumSet.noneOf(RefundStatus.class));
+    }
+
     /**
      * Determines if the refund status represents a terminal state.
      *
@@ -66,4 +84,32 @@ public enum RefundStatus {
     public boolean isInProgress() {
         return this == PROCESSING || this == APPROVED;
     }
+
+    /**
+     * Checks whether a refund request in this status refunds its transaction.
+     *
+     * @return true if the status is APPROVED or COMPLETED; false otherwise.
+     */
+    public boolean isRefunding() {
+        return this == APPROVED || this == COMPLETED;
+    }
+
+    /**
+     * Determines if a refund request in this status may legally move to the given status.
+     *
+     * @param target The status to move to.
+     * @return true if the workflow allows the transition; false otherwise.
+     */
+    public boolean canTransitionTo(RefundStatus target) {
+        return target != null && ALLOWED_TRANSITIONS.get(this).contains(target);
+    }
+
+    /**
+     * Returns the statuses reachable from this status in a single step.
+     *
+     * @return An unmodifiable set of allowed next statuses.
+     */
+    public Set<RefundStatus> allowedTransitions() {
+        return Collections.unmodifiableSet(ALLOWED_TRANSITIONS.get(this));
+    }
 }
@@ -11,8 +11,7 @@ public class Transaction {
     private String transactionId;
     private String userId;
     private String productId;
-    private double amount;
-    private String currency;
+    private Money amount;
     private Date transactionDate;
     private TransactionType transactionType;
     private TransactionStatus transactionStatus;
@@ -29,13 +28,12 @@ public class Transaction {
         this.lastUpdated = new Date();
     }
 
-    public Transaction(String userId, String productId, double amount, String currency,
+    public Transaction(String userId, String productId, Money amount,
                        TransactionType transactionType, String paymentMethod, String description, boolean isRefundable) {
         this();
         this.userId = userId;
         this.productId = productId;
         this.amount = amount;
-        this.currency = currency;
         this.transactionType = transactionType;
         this.paymentMethod = paymentMethod;
         this.description = description;
@@ -66,22 +64,17 @@ public class Transaction {
         updateTimestamp();
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
         updateTimestamp();
     }
 
     public String getCurrency() {
-        return currency;
-    }
-
-    public void setCurrency(String currency) {
-        this.currency = currency;
-        updateTimestamp();
+        return amount != null ? amount.getCurrencyCode() : null;
     }
 
     public Date getTransactionDate() {
@@ -0,0 +1,262 @@
+package com.myinappbilling.financial.repository;
+
+import com.myinappbilling.financial.model.RefundRequest;
+import com.myinappbilling.financial.model.RefundStatus;
+import com.myinappbilling.financial.model.Transaction;
+
+import java.util.*;
+
+/**
+ * Bidirectional index between transactions and the refund requests raised against them.
+ * A single instance is shared by {@link TransactionRepository} and {@link RefundRepository},
+ * which keep it up to date on every write. Links come only from the refund side, i.e. from
+ * {@link RefundRequest#getTransactionId()}. On top of the links it maintains per-product and
+ * per-user refund-rate aggregates, so dashboards read precomputed counts instead of joining
+ * both repositories. A transaction counts as refunded while it has a refund request that
+ * {@linkplain RefundStatus#isRefunding() refunds it}; pending, rejected and canceled requests
+ * are linked but not counted.
+ */
+public class RefundLinkIndex {
+
+    private final Map<String, Set<String>> refundIdsByTransaction = new HashMap<>();
+    private final Map<String, String> transactionIdByRefund = new HashMap<>();
+    private final Map<String, Set<String>> refundingIdsByTransaction = new HashMap<>();
+    private final Map<String, IndexedTransaction> indexedTransactions = new HashMap<>();
+    private final Map<String, RefundRate> productRates = new HashMap<>();
+    private final Map<String, RefundRate> userRates = new HashMap<>();
+
+    /**
+     * Records a transaction, or re-records it after an update.
+     * @param transaction The transaction that was added or updated.
+     */
+    public synchronized void onTransactionSaved(Transaction transaction) {
+        String transactionId = transaction.getTransactionId();
+        IndexedTransaction previous = indexedTransactions.remove(transactionId);
+        if (previous != null) {
+            removeFromAggregates(transactionId, previous);
+        }
+        IndexedTransaction indexed = new IndexedTransaction(transaction.getProductId(), transaction.getUserId());
+        indexedTransactions.put(transactionId, indexed);
+        addToAggregates(transactionId, indexed);
+    }
+
+    /**
+     * Removes a transaction from the aggregates. Links to existing refund requests are kept
+     * so the refund side can still resolve its transaction ID.
+     * @param transactionId The ID of the deleted transaction.
+     */
+    public synchronized void onTransactionRemoved(String transactionId) {
+        IndexedTransaction previous = indexedTransactions.remove(transactionId);
+        if (previous != null) {
+            removeFromAggregates(transactionId, previous);
+        }
+    }
+
+    /**
+     * Records the link from a refund request to its transaction, or re-records it after an
+     * update or a status change.
+     * @param refundRequest The refund request that was added or updated.
+     */
+    public synchronized void onRefundSaved(RefundRequest refundRequest) {
+        String refundId = refundRequest.getRefundRequestId();
+        String transactionId = refundRequest.getTransactionId();
+        unlink(refundId);
+        if (transactionId != null) {
+            link(refundId, transactionId, refundRequest.getStatus() != null && refundRequest.getStatus().isRefunding());
+        }
+    }
+
+    /**
+     * Removes the link of a deleted refund request.
+     * @param refundId The ID of the deleted refund request.
+     */
+    public synchronized void onRefundRemoved(String refundId) {
+        unlink(refundId);
+    }
+
+    /**
+     * Clears all links and aggregates.
+     */
+    public synchronized void clear() {
+        refundIdsByTransaction.clear();
+        transactionIdByRefund.clear();
+        refundingIdsByTransaction.clear();
+        indexedTransactions.clear();
+        productRates.clear();
+        userRates.clear();
+    }
+
+    /**
+     * Returns the IDs of refund requests raised against a transaction.
+     * @param transactionId The transaction ID.
+     * @return Set of refund request IDs, empty if none.
+     */
+    public synchronized Set<String> getRefundIdsForTransaction(String transactionId) {
+        Set<String> refundIds = refundIdsByTransaction.get(transactionId);
+        return refundIds == null ? Collections.emptySet() : new HashSet<>(refundIds);
+    }
+
+    /**
+     * Returns the transaction ID a refund request refers to.
+     * @param refundId The refund request ID.
+     * @return Optional of the transaction ID.
+     */
+    public synchronized Optional<String> getTransactionIdForRefund(String refundId) {
+        return Optional.ofNullable(transactionIdByRefund.get(refundId));
+    }
+
+    /**
+     * Returns the refund-rate aggregate for a product.
+     * @param productId The product ID.
+     * @return Snapshot of the product's refund rate.
+     */
+    public synchronized RefundRate getProductRefundRate(String productId) {
+        return snapshot(productRates.get(productId));
+    }
+
+    /**
+     * Returns the refund-rate aggregate for a user.
+     * @param userId The user ID.
+     * @return Snapshot of the user's refund rate.
+     */
+    public synchronized RefundRate getUserRefundRate(String userId) {
+        return snapshot(userRates.get(userId));
+    }
+
+    /**
+     * Returns refund-rate aggregates for every product.
+     * @return Map of product ID to refund rate snapshot.
+     */
+    public synchronized Map<String, RefundRate> getAllProductRefundRates() {
+        return snapshotAll(productRates);
+    }
+
+    /**
+     * Returns refund-rate aggregates for every user.
+     * @return Map of user ID to refund rate snapshot.
+     */
+    public synchronized Map<String, RefundRate> getAllUserRefundRates() {
+        return snapshotAll(userRates);
+    }
+
+    private void link(String refundId, String transactionId, boolean refunding) {
+        transactionIdByRefund.put(refundId, transactionId);
+        refundIdsByTransaction.computeIfAbsent(transactionId, id -> new HashSet<>()).add(refundId);
+        if (refunding) {
+            Set<String> refundingIds = refundingIdsByTransaction.computeIfAbsent(transactionId, id -> new HashSet<>());
+            if (refundingIds.add(refundId) && refundingIds.size() == 1) {
+                adjustRefunded(transactionId, 1);
+            }
+        }
+    }
+
+    private void unlink(String refundId) {
+        String transactionId = transactionIdByRefund.remove(refundId);
+        if (transactionId == null) {
+            return;
+        }
+        Set<String> refundIds = refundIdsByTransaction.get(transactionId);
+        if (refundIds != null && refundIds.remove(refundId) && refundIds.isEmpty()) {
+            refundIdsByTransaction.remove(transactionId);
+        }
+        Set<String> refundingIds = refundingIdsByTransaction.get(transactionId);
+        if (refundingIds != null && refundingIds.remove(refundId) && refundingIds.isEmpty()) {
+            refundingIdsByTransaction.remove(transactionId);
+            adjustRefunded(transactionId, -1);
+        }
+    }
+
+    private void adjustRefunded(String transactionId, int delta) {
+        IndexedTransaction indexed = indexedTransactions.get(transactionId);
+        if (indexed != null) {
+            rateFor(productRates, indexed.productId).refundedTransactionCount += delta;
+            rateFor(userRates, indexed.userId).refundedTransactionCount += delta;
+        }
+    }
+
+    private void addToAggregates(String transactionId, IndexedTransaction indexed) {
+        int refunded = refundingIdsByTransaction.containsKey(transactionId) ? 1 : 0;
+        RefundRate productRate = rateFor(productRates, indexed.productId);
+        productRate.transactionCount++;
+        productRate.refundedTransactionCount += refunded;
+        RefundRate userRate = rateFor(userRates, indexed.userId);
+        userRate.transactionCount++;
+        userRate.refundedTransactionCount += refunded;
+    }
+
+    private void removeFromAggregates(String transactionId, IndexedTransaction indexed) {
+        int refunded = refundingIdsByTransaction.containsKey(transactionId) ? 1 : 0;
+        RefundRate productRate = rateFor(productRates, indexed.productId);
+        productRate.transactionCount--;
+        productRate.refundedTransactionCount -= refunded;
+        RefundRate userRate = rateFor(userRates, indexed.userId);
+        userRate.transactionCount--;
+        userRate.refundedTransactionCount -= refunded;
+    }
+
+    private static RefundRate rateFor(Map<String, RefundRate> rates, String key) {
+        return rates.computeIfAbsent(key == null ? "" : key, k -> new RefundRate());
+    }
+
+    private static RefundRate snapshot(RefundRate rate) {
+        return rate == null ? new RefundRate() : new RefundRate(rate.transactionCount, rate.refundedTransactionCount);
+    }
+
+    private static Map<String, RefundRate> snapshotAll(Map<String, RefundRate> rates) {
+        Map<String, RefundRate> result = new HashMap<>(rates.size());
+        for (Map.Entry<String, RefundRate> entry : rates.entrySet()) {
+            result.put(entry.getKey(), snapshot(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Fields of a transaction the index depends on, captured at save time.
+     */
+    private static class IndexedTransaction {
+        final String productId;
+        final String userId;
+
+        IndexedTransaction(String productId, String userId) {
+            this.productId = productId;
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * Number of transactions and of transactions with at least one approved or completed refund request.
+     */
+    public static class RefundRate {
+        private long transactionCount;
+        private long refundedTransactionCount;
+
+        RefundRate() {
+        }
+
+        RefundRate(long transactionCount, long refundedTransactionCount) {
+            this.transactionCount = transactionCount;
+            this.refundedTransactionCount = refundedTransactionCount;
+        }
+
+        public long getTransactionCount() {
+            return transactionCount;
+        }
+
+        public long getRefundedTransactionCount() {
+            return refundedTransactionCount;
+        }
+
+        public double getRate() {
+            return transactionCount == 0 ? 0.0 : (double) refundedTransactionCount / transactionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "RefundRate{" +
+                    "transactionCount=" + transactionCount +
+                    ", refundedTransactionCount=" + refundedTransactionCount +
+                    ", rate=" + getRate() +
+                    '}';
+        }
+    }
+}
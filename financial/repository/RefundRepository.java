@@ -4,24 +4,89 @@ import com.myinappbilling.financial.model.RefundRequest;
 import com.myinappbilling.financial.model.RefundStatus;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Repository class for managing refund requests.
+ * Refund requests are indexed by status in insertion-ordered queues with live counters,
+ * so that status lookups, counts and "next request to review" queries do not scan the store.
+ * All status changes go through {@link RefundStatus#canTransitionTo(RefundStatus)} and are
+ * applied atomically with their index updates.
  */
 public class RefundRepository {
 
-    private final Map<String, RefundRequest> refundDatabase = new HashMap<>();
+    private final Map<String, RefundRequest> refundDatabase = new ConcurrentHashMap<>();
+    private final Map<RefundStatus, LinkedHashSet<String>> statusQueues = new EnumMap<>(RefundStatus.class);
+    private final Map<String, RefundStatus> indexedStatuses = new HashMap<>();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(RefundStatus.values().length);
+    private final Object lock = new Object();
+    private final RefundLinkIndex refundLinkIndex;
+
+    /**
+     * Creates a repository that shares the refund link index of a transaction repository.
+     * @param transactionRepository The repository holding the transactions refunds are raised against.
+     */
+    public RefundRepository(TransactionRepository transactionRepository) {
+        this(transactionRepository.getRefundLinkIndex());
+    }
+
+    /**
+     * @param refundLinkIndex Index shared with the {@link TransactionRepository} that links refunds to transactions.
+     */
+    public RefundRepository(RefundLinkIndex refundLinkIndex) {
+        this.refundLinkIndex = refundLinkIndex;
+        for (RefundStatus status : RefundStatus.values()) {
+            statusQueues.put(status, new LinkedHashSet<>());
+        }
+    }
 
     /**
      * Adds a refund request to the repository.
      * @param refundRequest The refund request to add.
      */
     public void addRefundRequest(RefundRequest refundRequest) {
-        if (refundRequest == null || refundRequest.getRequestId() == null) {
+        if (refundRequest == null || refundRequest.getRefundRequestId() == null) {
             throw new IllegalArgumentException("RefundRequest or Request ID cannot be null");
         }
-        refundDatabase.put(refundRequest.getRequestId(), refundRequest);
+        if (refundRequest.getStatus() == null) {
+            refundRequest.setStatus(RefundStatus.PENDING);
+        }
+        synchronized (lock) {
+            String requestId = refundRequest.getRefundRequestId();
+            unindex(requestId);
+            refundDatabase.put(requestId, refundRequest);
+            index(requestId, refundRequest.getStatus());
+            refundLinkIndex.onRefundSaved(refundRequest);
+        }
+    }
+
+    /**
+     * Returns the refund-to-transaction index maintained by this repository.
+     * @return The shared refund link index.
+     */
+    public RefundLinkIndex getRefundLinkIndex() {
+        return refundLinkIndex;
+    }
+
+    /**
+     * Retrieves all refund requests raised against a transaction.
+     * @param transactionId The transaction ID.
+     * @return List of refund requests for the transaction.
+     */
+    public List<RefundRequest> getRefundRequestsByTransactionId(String transactionId) {
+        Set<String> refundIds = refundLinkIndex.getRefundIdsForTransaction(transactionId);
+        List<RefundRequest> result = new ArrayList<>(refundIds.size());
+        for (String refundId : refundIds) {
+            RefundRequest refundRequest = refundDatabase.get(refundId);
+            if (refundRequest != null) {
+                result.add(refundRequest);
+            }
+        }
+        return result;
     }
 
     /**
@@ -43,13 +108,176 @@ public class RefundRepository {
 
     /**
      * Updates an existing refund request.
+     * A change of status on the request must be a legal workflow transition.
      * @param refundRequest The refund request to update.
      */
     public void updateRefundRequest(RefundRequest refundRequest) {
-        if (!refundDatabase.containsKey(refundRequest.getRequestId())) {
-            throw new IllegalArgumentException("Refund request with ID " + refundRequest.getRequestId() + " does not exist.");
+        synchronized (lock) {
+            String requestId = refundRequest.getRefundRequestId();
+            RefundStatus currentStatus = indexedStatuses.get(requestId);
+            if (currentStatus == null) {
+                throw new IllegalArgumentException("Refund request with ID " + requestId + " does not exist.");
+            }
+            RefundStatus newStatus = refundRequest.getStatus();
+            if (newStatus != currentStatus && !currentStatus.canTransitionTo(newStatus)) {
+                throw new IllegalStateException("Illegal refund status transition from " + currentStatus + " to " + newStatus
+                        + " for request " + requestId);
+            }
+            refundDatabase.put(requestId, refundRequest);
+            if (newStatus != currentStatus) {
+                unindex(requestId);
+                index(requestId, newStatus);
+            }
+            refundLinkIndex.onRefundSaved(refundRequest);
+        }
+    }
+
+    /**
+     * Moves a refund request to a new status, enforcing the refund workflow.
+     * @param requestId The ID of the refund request.
+     * @param newStatus The status to move to.
+     * @return The updated refund request.
+     * @throws IllegalArgumentException if the request does not exist.
+     * @throws IllegalStateException if the transition is not allowed from the current status.
+     */
+    public RefundRequest updateRefundStatus(String requestId, RefundStatus newStatus) {
+        return updateRefundStatus(requestId, newStatus, null);
+    }
+
+    /**
+     * Moves a refund request to a new status, enforcing the refund workflow, and applies a
+     * further update to it while the lock is still held, so no reader sees one without the other.
+     * @param requestId The ID of the refund request.
+     * @param newStatus The status to move to.
+     * @param onApplied Update applied to the moved request, e.g. setting the escalation reason, or null.
+     * @return The updated refund request.
+     * @throws IllegalArgumentException if the request does not exist.
+     * @throws IllegalStateException if the transition is not allowed from the current status.
+     */
+    public RefundRequest updateRefundStatus(String requestId, RefundStatus newStatus, Consumer<RefundRequest> onApplied) {
+        synchronized (lock) {
+            RefundRequest refundRequest = refundDatabase.get(requestId);
+            if (refundRequest == null) {
+                throw new IllegalArgumentException("Refund request with ID " + requestId + " does not exist.");
+            }
+            RefundStatus currentStatus = refundRequest.getStatus();
+            if (!currentStatus.canTransitionTo(newStatus)) {
+                throw new IllegalStateException("Illegal refund status transition from " + currentStatus + " to " + newStatus
+                        + " for request " + requestId);
+            }
+            applyTransition(refundRequest, newStatus);
+            if (onApplied != null) {
+                onApplied.accept(refundRequest);
+            }
+            return refundRequest;
+        }
+    }
+
+    /**
+     * Moves a refund request to a new status only if it is currently in the expected status.
+     * @param requestId The ID of the refund request.
+     * @param expectedStatus The status the request must currently have.
+     * @param newStatus The status to move to.
+     * @return True if the transition was applied, false if the request is missing, not in the
+     *         expected status, or the transition is not allowed.
+     */
+    public boolean compareAndSetStatus(String requestId, RefundStatus expectedStatus, RefundStatus newStatus) {
+        synchronized (lock) {
+            RefundRequest refundRequest = refundDatabase.get(requestId);
+            if (refundRequest == null || refundRequest.getStatus() != expectedStatus
+                    || !expectedStatus.canTransitionTo(newStatus)) {
+                return false;
+            }
+            applyTransition(refundRequest, newStatus);
+            return true;
+        }
+    }
+
+    /**
+     * Moves a batch of refund requests to a new status under a single lock acquisition.
+     * Requests that are missing or whose current status does not allow the transition are skipped.
+     * @param requestIds The IDs of the refund requests.
+     * @param newStatus The status to move to.
+     * @return Map of applied request IDs to the status they had before the transition.
+     */
+    public Map<String, RefundStatus> applyStatusTransitions(Collection<String> requestIds, RefundStatus newStatus) {
+        return applyStatusTransitions(requestIds, newStatus, null);
+    }
+
+    /**
+     * Moves a batch of refund requests to a new status under a single lock acquisition, applying
+     * a further update to each request that was moved while the lock is still held.
+     * @param requestIds The IDs of the refund requests.
+     * @param newStatus The status to move to.
+     * @param onApplied Update applied to each moved request, e.g. setting the reviewer comment, or null.
+     * @return Map of applied request IDs to the status they had before the transition.
+     */
+    public Map<String, RefundStatus> applyStatusTransitions(Collection<String> requestIds, RefundStatus newStatus,
+                                                            Consumer<RefundRequest> onApplied) {
+        Map<String, RefundStatus> applied = new HashMap<>();
+        synchronized (lock) {
+            for (String requestId : requestIds) {
+                RefundRequest refundRequest = refundDatabase.get(requestId);
+                if (refundRequest == null || applied.containsKey(requestId)) {
+                    continue;
+                }
+                RefundStatus currentStatus = refundRequest.getStatus();
+                if (currentStatus.canTransitionTo(newStatus)) {
+                    applyTransition(refundRequest, newStatus);
+                    if (onApplied != null) {
+                        onApplied.accept(refundRequest);
+                    }
+                    applied.put(requestId, currentStatus);
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Finds the IDs of refund requests matching a predicate, evaluated in parallel.
+     * @param predicate The condition to match.
+     * @return List of matching refund request IDs.
+     */
+    public List<String> findRefundRequestIds(Predicate<RefundRequest> predicate) {
+        return refundDatabase.values().parallelStream()
+                .filter(predicate)
+                .map(RefundRequest::getRefundRequestId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the oldest refund request waiting in the given status without changing it.
+     * @param status The status queue to look at.
+     * @return Optional of the oldest refund request in that status.
+     */
+    public Optional<RefundRequest> peekNextRefundRequest(RefundStatus status) {
+        synchronized (lock) {
+            Iterator<String> iterator = statusQueues.get(status).iterator();
+            return iterator.hasNext() ? Optional.of(refundDatabase.get(iterator.next())) : Optional.empty();
+        }
+    }
+
+    /**
+     * Atomically takes the oldest refund request in one status and moves it to another,
+     * so concurrent reviewers never receive the same request.
+     * @param fromStatus The status queue to take from, e.g. PENDING.
+     * @param toStatus The status to move the request to, e.g. PROCESSING.
+     * @return Optional of the claimed refund request, empty if the queue is empty.
+     */
+    public Optional<RefundRequest> claimNextRefundRequest(RefundStatus fromStatus, RefundStatus toStatus) {
+        if (!fromStatus.canTransitionTo(toStatus)) {
+            throw new IllegalStateException("Illegal refund status transition from " + fromStatus + " to " + toStatus);
+        }
+        synchronized (lock) {
+            Iterator<String> iterator = statusQueues.get(fromStatus).iterator();
+            if (!iterator.hasNext()) {
+                return Optional.empty();
+            }
+            RefundRequest refundRequest = refundDatabase.get(iterator.next());
+            applyTransition(refundRequest, toStatus);
+            return Optional.of(refundRequest);
         }
-        refundDatabase.put(refundRequest.getRequestId(), refundRequest);
     }
 
     /**
@@ -58,7 +286,14 @@ public class RefundRepository {
      * @return True if deleted, false if not found.
      */
     public boolean deleteRefundRequest(String requestId) {
-        return refundDatabase.remove(requestId) != null;
+        synchronized (lock) {
+            unindex(requestId);
+            boolean removed = refundDatabase.remove(requestId) != null;
+            if (removed) {
+                refundLinkIndex.onRefundRemoved(requestId);
+            }
+            return removed;
+        }
     }
 
     /**
@@ -73,14 +308,19 @@ public class RefundRepository {
     }
 
     /**
-     * Retrieves refund requests by status.
+     * Retrieves refund requests by status, oldest first.
      * @param status The refund status to filter by.
      * @return List of refund requests with the given status.
      */
     public List<RefundRequest> getRefundRequestsByStatus(RefundStatus status) {
-        return refundDatabase.values().stream()
-                .filter(r -> r.getStatus() == status)
-                .collect(Collectors.toList());
+        synchronized (lock) {
+            Set<String> queue = statusQueues.get(status);
+            List<RefundRequest> result = new ArrayList<>(queue.size());
+            for (String requestId : queue) {
+                result.add(refundDatabase.get(requestId));
+            }
+            return result;
+        }
     }
 
     /**
@@ -101,15 +341,60 @@ public class RefundRepository {
      * @return The count of refund requests with the specified status.
      */
     public long countRefundRequestsByStatus(RefundStatus status) {
-        return refundDatabase.values().stream()
-                .filter(r -> r.getStatus() == status)
-                .count();
+        return statusCounts.get(status.ordinal());
     }
 
     /**
      * Clears all refund requests (for testing or reset purposes).
      */
     public void clearAllRefundRequests() {
-        refundDatabase.clear();
+        synchronized (lock) {
+            for (String requestId : refundDatabase.keySet()) {
+                refundLinkIndex.onRefundRemoved(requestId);
+            }
+            refundDatabase.clear();
+            indexedStatuses.clear();
+            for (RefundStatus status : RefundStatus.values()) {
+                statusQueues.get(status).clear();
+                statusCounts.set(status.ordinal(), 0);
+            }
+        }
+    }
+
+    /**
+     * Applies a validated status change to a request, moves it between status queues and
+     * updates the refund link index, which counts only refunding statuses.
+     * Must be called while holding the lock.
+     */
+    private void applyTransition(RefundRequest refundRequest, RefundStatus newStatus) {
+        Date now = new Date();
+        refundRequest.setStatus(newStatus);
+        if (newStatus == RefundStatus.ESCALATED) {
+            refundRequest.setEscalated(true);
+        }
+        if (newStatus == RefundStatus.APPROVED || newStatus == RefundStatus.REJECTED) {
+            refundRequest.setReviewedDate(now);
+        }
+        if (newStatus.isTerminal()) {
+            refundRequest.setResolvedDate(now);
+        }
+        String requestId = refundRequest.getRefundRequestId();
+        unindex(requestId);
+        index(requestId, newStatus);
+        refundLinkIndex.onRefundSaved(refundRequest);
+    }
+
+    private void index(String requestId, RefundStatus status) {
+        statusQueues.get(status).add(requestId);
+        indexedStatuses.put(requestId, status);
+        statusCounts.incrementAndGet(status.ordinal());
+    }
+
+    private void unindex(String requestId) {
+        RefundStatus previousStatus = indexedStatuses.remove(requestId);
+        if (previousStatus != null) {
+            statusQueues.get(previousStatus).remove(requestId);
+            statusCounts.decrementAndGet(previousStatus.ordinal());
+        }
     }
 }
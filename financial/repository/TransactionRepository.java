@@ -1,5 +1,6 @@
 package com.myinappbilling.financial.repository;
 
+import com.myinappbilling.financial.model.Money;
 import com.myinappbilling.financial.model.Transaction;
 
 import java.util.*;
@@ -11,6 +12,22 @@ import java.util.stream.Collectors;
 public class TransactionRepository {
 
     private final Map<String, Transaction> transactionDatabase = new HashMap<>();
+    private final RefundLinkIndex refundLinkIndex;
+
+    /**
+     * @param refundLinkIndex Index shared with the {@link RefundRepository} that links transactions to refunds.
+     */
+    public TransactionRepository(RefundLinkIndex refundLinkIndex) {
+        this.refundLinkIndex = refundLinkIndex;
+    }
+
+    /**
+     * Returns the transaction-to-refund index maintained by this repository.
+     * @return The shared refund link index.
+     */
+    public RefundLinkIndex getRefundLinkIndex() {
+        return refundLinkIndex;
+    }
 
     /**
      * Adds a transaction to the repository.
@@ -21,6 +38,7 @@ public class TransactionRepository {
             throw new IllegalArgumentException("Transaction or Transaction ID cannot be null");
         }
         transactionDatabase.put(transaction.getTransactionId(), transaction);
+        refundLinkIndex.onTransactionSaved(transaction);
     }
 
     /**
@@ -49,6 +67,7 @@ public class TransactionRepository {
             throw new IllegalArgumentException("Transaction with ID " + transaction.getTransactionId() + " does not exist.");
         }
         transactionDatabase.put(transaction.getTransactionId(), transaction);
+        refundLinkIndex.onTransactionSaved(transaction);
     }
 
     /**
@@ -57,7 +76,11 @@ public class TransactionRepository {
      * @return True if deleted, false if not found.
      */
     public boolean deleteTransaction(String transactionId) {
-        return transactionDatabase.remove(transactionId) != null;
+        if (transactionDatabase.remove(transactionId) == null) {
+            return false;
+        }
+        refundLinkIndex.onTransactionRemoved(transactionId);
+        return true;
     }
 
     /**
@@ -98,19 +121,57 @@ public class TransactionRepository {
     }
 
     /**
-     * Calculates the total amount of all transactions.
-     * @return The total transaction amount.
+     * Filters transactions with an amount greater than the given amount in the same currency.
+     * @param amount The exclusive lower bound.
+     * @return List of transactions above the amount.
      */
-    public double getTotalTransactionAmount() {
+    public List<Transaction> getTransactionsAboveAmount(Money amount) {
         return transactionDatabase.values().stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+                .filter(t -> amount.isSameCurrency(t.getAmount()) && t.getAmount().isGreaterThan(amount))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Calculates the total amount of all transactions in the given currency.
+     * Transactions in other currencies are not included; use
+     * {@link com.myinappbilling.financial.service.CurrencyAggregationService} to total across currencies.
+     * @param currencyCode ISO 4217 currency code.
+     * @return The exact total transaction amount in that currency.
+     */
+    public Money getTotalTransactionAmount(String currencyCode) {
+        Money zero = Money.zero(currencyCode);
+        long total = 0;
+        for (Transaction transaction : transactionDatabase.values()) {
+            Money amount = transaction.getAmount();
+            if (zero.isSameCurrency(amount)) {
+                total = Math.addExact(total, amount.getMinorUnits());
+            }
+        }
+        return Money.ofMinor(total, currencyCode);
+    }
+
+    /**
+     * Calculates the total amount of all transactions per currency.
+     * @return Map of currency code to the exact total in that currency.
+     */
+    public Map<String, Money> getTotalTransactionAmountsByCurrency() {
+        Map<String, Money> totals = new HashMap<>();
+        for (Transaction transaction : transactionDatabase.values()) {
+            Money amount = transaction.getAmount();
+            if (amount != null) {
+                totals.merge(amount.getCurrencyCode(), amount, Money::plus);
+            }
+        }
+        return totals;
     }
 
     /**
      * Clears all transactions (for testing or reset purposes).
      */
     public void clearAllTransactions() {
+        for (String transactionId : transactionDatabase.keySet()) {
+            refundLinkIndex.onTransactionRemoved(transactionId);
+        }
         transactionDatabase.clear();
     }
 }
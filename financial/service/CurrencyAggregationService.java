@@ -0,0 +1,102 @@
+package com.myinappbilling.financial.service;
+
+import com.myinappbilling.financial.model.Money;
+import com.myinappbilling.financial.model.Transaction;
+import com.myinappbilling.financial.repository.TransactionRepository;
+import com.myinappbilling.financial.util.FxRateTable;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Service class that totals transactions across currencies in a single reporting currency.
+ * Each transaction is converted with the FX rate of its transaction date.
+ */
+public class CurrencyAggregationService {
+
+    private final TransactionRepository transactionRepository;
+    private final FxRateTable fxRateTable;
+
+    public CurrencyAggregationService(TransactionRepository transactionRepository, FxRateTable fxRateTable) {
+        this.transactionRepository = transactionRepository;
+        this.fxRateTable = fxRateTable;
+    }
+
+    /**
+     * Totals all stored transactions in the reporting currency.
+     *
+     * @param reportingCurrency ISO 4217 code of the currency to report in.
+     * @return The converted total.
+     * @throws IllegalStateException if a transaction has no FX rate for its currency and date.
+     */
+    public Money getTotalTransactionAmount(String reportingCurrency) {
+        return aggregate(transactionRepository.getAllTransactions(), reportingCurrency);
+    }
+
+    /**
+     * Totals the given transactions in the reporting currency.
+     * The transactions are walked once to resolve each amount and its conversion factor into
+     * primitive arrays; the total is then computed by a branch-free loop over those arrays and
+     * rounded to the reporting currency once, at the end.
+     *
+     * @param transactions      The transactions to total; entries without an amount or a transaction
+     *                          date are skipped, since there is no rate to convert them at.
+     * @param reportingCurrency ISO 4217 code of the currency to report in.
+     * @return The converted total.
+     * @throws IllegalStateException if a transaction has no FX rate for its currency and date.
+     */
+    public Money aggregate(Collection<Transaction> transactions, String reportingCurrency) {
+        Money reportingZero = Money.zero(reportingCurrency);
+        int count = transactions.size();
+        long[] minorUnits = new long[count];
+        double[] factors = new double[count];
+
+        String lastCurrency = null;
+        long lastDay = Long.MIN_VALUE;
+        double lastFactor = 0;
+        int n = 0;
+        for (Transaction transaction : transactions) {
+            Money amount = transaction.getAmount();
+            Date date = transaction.getTransactionDate();
+            if (amount == null || date == null) {
+                continue;
+            }
+            long day = Math.floorDiv(date.getTime(), 86_400_000L);
+            String currency = amount.getCurrencyCode();
+            if (day != lastDay || !currency.equals(lastCurrency)) {
+                double rate = fxRateTable.getRate(day, currency, reportingCurrency);
+                if (Double.isNaN(rate)) {
+                    throw new IllegalStateException("No FX rate from " + currency + " to " + reportingCurrency
+                            + " for transaction " + transaction.getTransactionId());
+                }
+                lastFactor = rate * reportingZero.getScaleFactor() / amount.getScaleFactor();
+                lastCurrency = currency;
+                lastDay = day;
+            }
+            minorUnits[n] = amount.getMinorUnits();
+            factors[n] = lastFactor;
+            n++;
+        }
+        // Rounded half-even, as Money rounds its conversions.
+        return Money.ofMinor((long) Math.rint(sumProducts(minorUnits, factors, n)), reportingCurrency);
+    }
+
+    /**
+     * Sums {@code minorUnits[i] * factors[i]} with four independent accumulators, which keeps the
+     * loop free of dependencies between consecutive iterations so it can be unrolled and vectorized.
+     */
+    static double sumProducts(long[] minorUnits, double[] factors, int length) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += minorUnits[i] * factors[i];
+            s1 += minorUnits[i + 1] * factors[i + 1];
+            s2 += minorUnits[i + 2] * factors[i + 2];
+            s3 += minorUnits[i + 3] * factors[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += minorUnits[i] * factors[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -1,12 +1,22 @@
 package com.myinappbilling.financial.service;
 
+import com.myinappbilling.financial.model.RefundBatchAction;
+import com.myinappbilling.financial.model.RefundBatchResult;
 import com.myinappbilling.financial.model.RefundRequest;
 import com.myinappbilling.financial.model.RefundStatus;
+import com.myinappbilling.financial.repository.RefundLinkIndex;
 import com.myinappbilling.financial.repository.RefundRepository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Service class for handling business logic related to refund requests.
@@ -70,6 +80,45 @@ public class RefundService {
         return refundRepository.getRefundRequestsByDateRange(startDate, endDate);
     }
 
+    /**
+     * Retrieves all refund requests raised against a transaction.
+     *
+     * @param transactionId The transaction ID.
+     * @return List of refund requests for the transaction.
+     */
+    public List<RefundRequest> getRefundRequestsByTransactionId(String transactionId) {
+        return refundRepository.getRefundRequestsByTransactionId(transactionId);
+    }
+
+    /**
+     * Returns the refund rate of a product, i.e. the share of its transactions with an approved or completed refund request.
+     *
+     * @param productId The product ID.
+     * @return The product's refund-rate aggregate.
+     */
+    public RefundLinkIndex.RefundRate getProductRefundRate(String productId) {
+        return refundRepository.getRefundLinkIndex().getProductRefundRate(productId);
+    }
+
+    /**
+     * Returns the refund rate of a user, i.e. the share of their transactions with an approved or completed refund request.
+     *
+     * @param userId The user ID.
+     * @return The user's refund-rate aggregate.
+     */
+    public RefundLinkIndex.RefundRate getUserRefundRate(String userId) {
+        return refundRepository.getRefundLinkIndex().getUserRefundRate(userId);
+    }
+
+    /**
+     * Returns refund-rate aggregates for every product, for fraud and refund dashboards.
+     *
+     * @return Map of product ID to refund rate.
+     */
+    public Map<String, RefundLinkIndex.RefundRate> getAllProductRefundRates() {
+        return refundRepository.getRefundLinkIndex().getAllProductRefundRates();
+    }
+
     /**
      * Updates an existing refund request.
      *
@@ -123,7 +172,144 @@ public class RefundService {
      * @param requestId The ID of the refund request.
      */
     public void cancelRefundRequest(String requestId) {
-        refundRepository.updateRefundStatus(requestId, RefundStatus.CANCELLED);
+        refundRepository.updateRefundStatus(requestId, RefundStatus.CANCELED);
+    }
+
+    /**
+     * Escalates a refund request for further review.
+     *
+     * @param requestId The ID of the refund request.
+     * @param escalationReason The reason for escalating.
+     */
+    public void escalateRefundRequest(String requestId, String escalationReason) {
+        refundRepository.updateRefundStatus(requestId, RefundStatus.ESCALATED,
+                refundRequest -> refundRequest.setEscalationReason(escalationReason));
+    }
+
+    /**
+     * Claims the oldest pending refund request for review by moving it to PROCESSING.
+     * Concurrent reviewers never receive the same request.
+     *
+     * @return Optional containing the claimed refund request, empty if none are pending.
+     */
+    public Optional<RefundRequest> claimNextPendingRefundRequest() {
+        return refundRepository.claimNextRefundRequest(RefundStatus.PENDING, RefundStatus.PROCESSING);
+    }
+
+    /**
+     * Returns the oldest refund request in the given status without claiming it.
+     *
+     * @param status The refund status.
+     * @return Optional containing the oldest refund request in that status.
+     */
+    public Optional<RefundRequest> peekNextRefundRequest(RefundStatus status) {
+        return refundRepository.peekNextRefundRequest(status);
+    }
+
+    /**
+     * Counts refund requests in the given status.
+     *
+     * @param status The refund status.
+     * @return The number of refund requests with that status.
+     */
+    public long countRefundRequestsByStatus(RefundStatus status) {
+        return refundRepository.countRefundRequestsByStatus(status);
+    }
+
+    /**
+     * Applies a review decision to a batch of refund requests.
+     * Requests are validated in parallel, then all legal transitions are applied in a single
+     * repository batch. Every requested ID gets an entry in the result; a null ID is reported as
+     * an invalid entry.
+     *
+     * @param requestIds The IDs of the refund requests.
+     * @param action The decision to apply.
+     * @param comment Reviewer comment for approvals and rejections, or escalation reason for escalations.
+     * @return Per-item results of the batch.
+     */
+    public RefundBatchResult processRefundBatch(Collection<String> requestIds, RefundBatchAction action, String comment) {
+        long startTime = System.currentTimeMillis();
+        RefundStatus targetStatus = action.getTargetStatus();
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(requestIds));
+
+        Map<String, RefundBatchResult.ItemResult> rejected = distinctIds.parallelStream()
+                .filter(id -> id != null)
+                .map(id -> validateBatchItem(id, targetStatus))
+                .filter(itemResult -> itemResult != null)
+                .collect(Collectors.toConcurrentMap(RefundBatchResult.ItemResult::getRefundRequestId, itemResult -> itemResult));
+
+        List<String> candidates = new ArrayList<>(distinctIds.size() - rejected.size());
+        for (String requestId : distinctIds) {
+            if (requestId != null && !rejected.containsKey(requestId)) {
+                candidates.add(requestId);
+            }
+        }
+        Map<String, RefundStatus> applied = refundRepository.applyStatusTransitions(candidates, targetStatus,
+                batchComment(action, comment));
+
+        List<RefundBatchResult.ItemResult> itemResults = new ArrayList<>(distinctIds.size());
+        for (String requestId : distinctIds) {
+            if (requestId == null) {
+                itemResults.add(RefundBatchResult.ItemResult.failure(null, null, "Refund request ID is missing"));
+                continue;
+            }
+            RefundBatchResult.ItemResult itemResult = rejected.get(requestId);
+            if (itemResult == null) {
+                RefundStatus previousStatus = applied.get(requestId);
+                if (previousStatus != null) {
+                    itemResult = RefundBatchResult.ItemResult.success(requestId, previousStatus);
+                } else {
+                    itemResult = RefundBatchResult.ItemResult.failure(requestId, null,
+                            "Refund request changed status before the batch was applied");
+                }
+            }
+            itemResults.add(itemResult);
+        }
+        return new RefundBatchResult(action, itemResults, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Applies a review decision to every refund request matching a predicate.
+     *
+     * @param predicate The condition selecting refund requests, e.g. all PENDING requests older than a day.
+     * @param action The decision to apply.
+     * @param comment Reviewer comment or escalation reason.
+     * @return Per-item results of the batch.
+     */
+    public RefundBatchResult processRefundBatch(Predicate<RefundRequest> predicate, RefundBatchAction action, String comment) {
+        return processRefundBatch(refundRepository.findRefundRequestIds(predicate), action, comment);
+    }
+
+    /**
+     * Checks a single batch item without modifying it.
+     *
+     * @return A failure result if the item cannot be processed, or null if it is a candidate.
+     */
+    private RefundBatchResult.ItemResult validateBatchItem(String requestId, RefundStatus targetStatus) {
+        Optional<RefundRequest> refundRequest = refundRepository.getRefundRequestById(requestId);
+        if (!refundRequest.isPresent()) {
+            return RefundBatchResult.ItemResult.failure(requestId, null, "Refund request does not exist");
+        }
+        RefundStatus currentStatus = refundRequest.get().getStatus();
+        if (!currentStatus.canTransitionTo(targetStatus)) {
+            return RefundBatchResult.ItemResult.failure(requestId, currentStatus,
+                    "Illegal refund status transition from " + currentStatus + " to " + targetStatus);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the update that records the batch comment on a request, applied by the repository
+     * under its lock together with the status change.
+     */
+    private static Consumer<RefundRequest> batchComment(RefundBatchAction action, String comment) {
+        if (comment == null) {
+            return null;
+        }
+        if (action == RefundBatchAction.ESCALATE) {
+            return refundRequest -> refundRequest.setEscalationReason(comment);
+        }
+        return refundRequest -> refundRequest.setReviewerComments(comment);
     }
 
     /**
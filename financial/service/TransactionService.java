@@ -1,5 +1,6 @@
 package com.myinappbilling.financial.service;
 
+import com.myinappbilling.financial.model.Money;
 import com.myinappbilling.financial.model.Transaction;
 import com.myinappbilling.financial.repository.TransactionRepository;
 
@@ -64,10 +65,10 @@ public class TransactionService {
 
     /**
      * Returns transactions above a certain amount.
-     * @param amount Minimum amount.
+     * @param amount Minimum amount; only transactions in the same currency are compared.
      * @return List of transactions above the specified amount.
      */
-    public List<Transaction> getTransactionsAboveAmount(double amount) {
+    public List<Transaction> getTransactionsAboveAmount(Money amount) {
         return transactionRepository.getTransactionsAboveAmount(amount);
     }
 
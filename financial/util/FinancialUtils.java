@@ -1,5 +1,7 @@
 package com.myinappbilling.financial.util;
 
+import com.myinappbilling.financial.model.Money;
+
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -67,6 +69,32 @@ public class FinancialUtils {
         return amount > 0;
     }
 
+    /**
+     * Validates if the amount is a positive value.
+     *
+     * @param amount The amount to validate.
+     * @return True if valid, false otherwise.
+     */
+    public static boolean isValidAmount(Money amount) {
+        return amount != null && amount.isPositive();
+    }
+
+    /**
+     * Parses a decimal string into an exact amount in the given currency.
+     *
+     * @param amountStr The amount string to convert.
+     * @param currencyCode ISO 4217 currency code.
+     * @return Parsed amount or null if invalid.
+     */
+    public static Money parseMoney(String amountStr, String currencyCode) {
+        if (amountStr == null) return null;
+        try {
+            return Money.of(amountStr, currencyCode);
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
     /**
      * Converts a string to double with fallback in case of error.
      *
@@ -98,7 +126,9 @@ public class FinancialUtils {
      *
      * @param value The double value.
      * @return Rounded double.
+     * @deprecated Binary doubles cannot represent most cent values; use {@link Money} for amounts.
      */
+    @Deprecated
     public static double roundToTwoDecimals(double value) {
         return Math.round(value * 100.0) / 100.0;
     }
@@ -0,0 +1,197 @@
+package com.myinappbilling.financial.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * FxRateTable holds daily exchange rates loaded from a local file.
+ * Rates are stored in an open-addressing table keyed by a primitive long that packs the
+ * epoch day and the two currency indexes, so a lookup never allocates.
+ *
+ * <p>File format, one rate per line: {@code yyyy-MM-dd,BASE,QUOTE,rate}, meaning
+ * one unit of BASE buys {@code rate} units of QUOTE. Blank lines, lines starting with
+ * {@code #} and a {@code date,...} header line are ignored.</p>
+ */
+public class FxRateTable {
+
+    /**
+     * How many days back a lookup may fall back to when no rate exists for the exact date,
+     * e.g. for weekends and bank holidays.
+     */
+    public static final int MAX_LOOKBACK_DAYS = 7;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final Map<String, Integer> currencyIndexes = new HashMap<>();
+    private long[] keys = new long[64];
+    private double[] rates = new double[64];
+    private int size;
+
+    /**
+     * Loads a rate table from a local file.
+     *
+     * @param file The rate file.
+     * @return The loaded table.
+     * @throws IOException if the file cannot be read or a line is malformed.
+     */
+    public static FxRateTable load(File file) throws IOException {
+        FxRateTable table = new FxRateTable();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.toLowerCase(Locale.ROOT).startsWith("date")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length != 4) {
+                    throw new IOException("Malformed FX rate at line " + lineNumber + ": " + line);
+                }
+                try {
+                    table.putRate(LocalDate.parse(parts[0].trim()), parts[1].trim(), parts[2].trim(),
+                            Double.parseDouble(parts[3].trim()));
+                } catch (DateTimeParseException | IllegalArgumentException e) {
+                    throw new IOException("Malformed FX rate at line " + lineNumber + ": " + line, e);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Adds or replaces a rate.
+     *
+     * @param date         The date the rate applies to.
+     * @param baseCurrency Currency being converted from.
+     * @param quoteCurrency Currency being converted to.
+     * @param rate         Units of quote currency per unit of base currency.
+     */
+    public void putRate(LocalDate date, String baseCurrency, String quoteCurrency, double rate) {
+        if (!(rate > 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("FX rate must be positive: " + rate);
+        }
+        long key = key(date.toEpochDay(), indexOf(baseCurrency, true), indexOf(quoteCurrency, true));
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int slot = slot(key, keys);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        rates[slot] = rate;
+    }
+
+    /**
+     * Returns the rate for converting between two currencies on a given day, falling back to
+     * the inverse rate and to up to {@link #MAX_LOOKBACK_DAYS} earlier days.
+     *
+     * @param epochDay      Day as days since 1970-01-01 (UTC).
+     * @param baseCurrency  Currency being converted from.
+     * @param quoteCurrency Currency being converted to.
+     * @return The rate, or {@code Double.NaN} if none is known.
+     */
+    public double getRate(long epochDay, String baseCurrency, String quoteCurrency) {
+        if (baseCurrency.equalsIgnoreCase(quoteCurrency)) {
+            return 1.0;
+        }
+        int base = indexOf(baseCurrency, false);
+        int quote = indexOf(quoteCurrency, false);
+        if (base == 0 || quote == 0) {
+            return Double.NaN;
+        }
+        for (long day = epochDay; day >= epochDay - MAX_LOOKBACK_DAYS; day--) {
+            double direct = lookup(key(day, base, quote));
+            if (!Double.isNaN(direct)) {
+                return direct;
+            }
+            double inverse = lookup(key(day, quote, base));
+            if (!Double.isNaN(inverse)) {
+                return 1.0 / inverse;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the rate for converting between two currencies on the UTC day containing the timestamp.
+     *
+     * @see #getRate(long, String, String)
+     */
+    public double getRateAt(long epochMillis, String baseCurrency, String quoteCurrency) {
+        return getRate(Math.floorDiv(epochMillis, MILLIS_PER_DAY), baseCurrency, quoteCurrency);
+    }
+
+    /**
+     * Returns the number of stored rates.
+     *
+     * @return The rate count.
+     */
+    public int size() {
+        return size;
+    }
+
+    private double lookup(long key) {
+        int slot = slot(key, keys);
+        return keys[slot] == key ? rates[slot] : Double.NaN;
+    }
+
+    private int indexOf(String currencyCode, boolean create) {
+        String code = currencyCode.toUpperCase(Locale.ROOT);
+        Integer index = currencyIndexes.get(code);
+        if (index == null) {
+            if (!create) {
+                return 0;
+            }
+            if (currencyIndexes.size() >= 0xFFFF) {
+                throw new IllegalStateException("Too many currencies in FX rate table");
+            }
+            index = currencyIndexes.size() + 1;
+            currencyIndexes.put(code, index);
+        }
+        return index;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        double[] oldRates = rates;
+        keys = new long[oldKeys.length * 2];
+        rates = new double[oldRates.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i], keys);
+                keys[slot] = oldKeys[i];
+                rates[slot] = oldRates[i];
+            }
+        }
+    }
+
+    /**
+     * Finds the slot holding the key, or the empty slot where it would be inserted (linear probing).
+     */
+    private static int slot(long key, long[] table) {
+        int mask = table.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (table[slot] != 0 && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Packs a day and two 1-based currency indexes into a non-zero key.
+     */
+    private static long key(long epochDay, int base, int quote) {
+        return (epochDay << 32) | ((long) base << 16) | quote;
+    }
+}
@@ -4,14 +4,20 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.myinappbilling.financial.model.RefundBatchAction;
+import com.myinappbilling.financial.model.RefundBatchResult;
 import com.myinappbilling.financial.model.RefundRequest;
 import com.myinappbilling.financial.model.RefundStatus;
 import com.myinappbilling.financial.model.Transaction;
 import com.myinappbilling.financial.service.RefundService;
 import com.myinappbilling.financial.service.TransactionService;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 /**
  * ViewModel for financial operations, managing UI-related data
@@ -27,6 +33,8 @@ public class FinancialViewModel extends ViewModel {
     private final MutableLiveData<List<RefundRequest>> approvedRefunds = new MutableLiveData<>();
     private final MutableLiveData<List<RefundRequest>> pendingRefunds = new MutableLiveData<>();
     private final MutableLiveData<List<RefundRequest>> rejectedRefunds = new MutableLiveData<>();
+    private final MutableLiveData<RefundBatchResult> lastBatchResult = new MutableLiveData<>();
+    private final ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
 
     public FinancialViewModel(TransactionService transactionService, RefundService refundService) {
         this.transactionService = transactionService;
@@ -54,6 +62,10 @@ public class FinancialViewModel extends ViewModel {
         return rejectedRefunds;
     }
 
+    public LiveData<RefundBatchResult> getLastBatchResult() {
+        return lastBatchResult;
+    }
+
     public void loadAllTransactions() {
         transactions.setValue(transactionService.getAllTransactions());
     }
@@ -81,6 +93,28 @@ public class FinancialViewModel extends ViewModel {
         loadAllRefundRequests();
     }
 
+    /**
+     * Applies a review decision to a batch of refund requests in the background, then publishes
+     * the result and refreshes the refund lists once.
+     */
+    public void processRefundBatch(Collection<String> requestIds, RefundBatchAction action, String comment) {
+        batchExecutor.execute(() -> {
+            lastBatchResult.postValue(refundService.processRefundBatch(requestIds, action, comment));
+            postAllRefundRequests();
+        });
+    }
+
+    /**
+     * Applies a review decision to every refund request matching the predicate in the background,
+     * then publishes the result and refreshes the refund lists once.
+     */
+    public void processRefundBatch(Predicate<RefundRequest> predicate, RefundBatchAction action, String comment) {
+        batchExecutor.execute(() -> {
+            lastBatchResult.postValue(refundService.processRefundBatch(predicate, action, comment));
+            postAllRefundRequests();
+        });
+    }
+
     public Optional<RefundRequest> getRefundRequestById(String requestId) {
         return refundService.getRefundRequestById(requestId);
     }
@@ -98,4 +132,17 @@ public class FinancialViewModel extends ViewModel {
         loadAllTransactions();
         loadAllRefundRequests();
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        batchExecutor.shutdown();
+    }
+
+    private void postAllRefundRequests() {
+        refundRequests.postValue(refundService.getAllRefundRequests());
+        pendingRefunds.postValue(refundService.getRefundRequestsByStatus(RefundStatus.PENDING));
+        approvedRefunds.postValue(refundService.getRefundRequestsByStatus(RefundStatus.APPROVED));
+        rejectedRefunds.postValue(refundService.getRefundRequestsByStatus(RefundStatus.REJECTED));
+    }
 } 
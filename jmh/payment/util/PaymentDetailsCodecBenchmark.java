@@ -0,0 +1,77 @@
+package com.myinappbilling.payment.util;
+
+import com.myinappbilling.payment.model.CardInfo;
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PersonalInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PaymentDetailsCodec} with Java serialization of the same tokenized payment
+ * profile, as stored by PaymentSegmentStore. Both sides encode to and decode from a byte array.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentDetailsCodecBenchmark {
+
+    private PaymentDetails details;
+    private byte[] encoded;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        PersonalInfo personalInfo = new PersonalInfo("ID-48213", "Jane", "O'Neil", "+14165550123",
+                "jane.oneil@example.com", "married", "master", "Engineer", "12 King Street West",
+                "Toronto", "Ontario", "M5H1A1", "Canada");
+        CardInfo cardInfo = CardInfo.tokenized("ACC-10023", 11, 2028, "tok_3f9a0c5e8d7b41a2b6c0e1f2a3b4c5d6", "453957", "1486");
+        details = new PaymentDetails(personalInfo, cardInfo, "CAD", "CARD", false);
+        encoded = PaymentDetailsCodec.encode(details);
+        serialized = javaSerialize();
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        return PaymentDetailsCodec.encode(details);
+    }
+
+    @Benchmark
+    public PaymentDetails codecDecode() {
+        return PaymentDetailsCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(details);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public PaymentDetails javaDeserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return (PaymentDetails) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.myinappbilling.payment.validator;
+
+import com.myinappbilling.payment.model.CardInfo;
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PersonalInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PaymentValidationEngine} with the sequential checks it replaced, where
+ * IdentityValidator, CardValidator and PaymentValidator each walked the payment details and
+ * re-checked the fields they share. The sequential path calls the validators' uncached field
+ * checks, as it did before their outcomes were memoized, so both sides match every pattern.
+ *
+ * <p>{@code valid} selects complete, valid details, which both sides check in full, or details
+ * with an invalid email, where fail-fast validation stops early.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentValidationBenchmark {
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private PaymentValidationEngine engine;
+    private PaymentDetails details;
+
+    @Setup
+    public void setUp() {
+        engine = PaymentValidationEngine.getDefault();
+        YearMonth expiry = YearMonth.now().plusYears(2);
+        PersonalInfo personalInfo = new PersonalInfo("ID-48213", "Jane", "O'Neil", "+14165550123",
+                valid ? "jane.oneil@example.com" : "jane.oneil@example", "married", "master", "Engineer",
+                "12 King Street West", "Toronto", "Ontario", "M5H1A1", "Canada");
+        CardInfo cardInfo = new CardInfo("ACC-10023", "4539578763621486", expiry.getMonthValue(), expiry.getYear(), "123");
+        details = new PaymentDetails(personalInfo, cardInfo, "CAD", "CARD", false);
+    }
+
+    @Benchmark
+    public boolean engineFailFast() {
+        return engine.isValid(details);
+    }
+
+    @Benchmark
+    public ValidationResult engineCollectAll() {
+        return engine.validate(details, ValidationMode.COLLECT_ALL);
+    }
+
+    @Benchmark
+    public boolean sequentialValidators() {
+        PersonalInfo info = details.getPersonalInfo();
+        CardInfo card = details.getCardInfo();
+        return IdentityValidator.isValidIdentityCardNumber(info.getIdentityCardNumber())
+                && IdentityValidator.isValidName(info.getFirstName())
+                && IdentityValidator.isValidName(info.getLastName())
+                && IdentityValidator.isValidMaritalStatus(info.getMaritalStatus())
+                && IdentityValidator.isValidEducationLevel(info.getEducationLevel())
+                && IdentityValidator.isValidOccupation(info.getOccupation())
+                && IdentityValidator.isValidPhoneNumber(info.getCellphoneNumber())
+                && IdentityValidator.isValidEmail(info.getEmail())
+                && IdentityValidator.isValidCity(info.getCity())
+                && IdentityValidator.isValidProvince(info.getProvince())
+                && IdentityValidator.isValidCountry(info.getCountry())
+                && IdentityValidator.isValidPostalCode(info.getPostalCode())
+                && CardValidator.isValidCardNumber(card.getCardNumber())
+                && CardValidator.isValidExpirationDate(card.getExpirationMonth(), card.getExpirationYear())
+                && CardValidator.isValidCVV(card.getCvv())
+                && CardValidator.isValidCardHolderName(info.getFirstName() + " " + info.getLastName().replace("'", ""))
+                && CardValidator.isValidAddress(info.getAddress())
+                && CardValidator.isValidCityOrProvince(info.getCity())
+                && CardValidator.isValidCityOrProvince(info.getProvince())
+                && CardValidator.isValidPostalCode(info.getPostalCode())
+                && CardValidator.isValidCountry(info.getCountry())
+                && PaymentValidator.isValidName(info.getFirstName())
+                && PaymentValidator.isValidName(info.getLastName())
+                && PaymentValidator.isValidEmail(info.getEmail())
+                && PaymentValidator.isValidPhoneNumber(info.getCellphoneNumber())
+                && PaymentValidator.isValidCardNumber(card.getCardNumber())
+                && PaymentValidator.isValidExpiryDate(card.getExpirationMonth(), card.getExpirationYear())
+                && PaymentValidator.isValidCvv(card.getCvv())
+                && PaymentValidator.isNotEmpty(info.getAddress());
+    }
+}
@@ -0,0 +1,80 @@
+package com.myinappbilling.payment.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * CardBinInfo describes what a card's BIN/IIN prefix identifies: the card network,
+ * the issuing institution when known, and the card type.
+ */
+public class CardBinInfo implements Serializable {
+
+    /**
+     * Funding type of a card.
+     */
+    public enum CardType {
+        CREDIT,
+        DEBIT,
+        PREPAID,
+        UNKNOWN
+    }
+
+    private final String network;
+    private final String issuer;
+    private final CardType cardType;
+
+    public CardBinInfo(String network, String issuer, CardType cardType) {
+        this.network = network;
+        this.issuer = issuer;
+        this.cardType = cardType != null ? cardType : CardType.UNKNOWN;
+    }
+
+    public String getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return the issuing institution, or null if the prefix identifies only the network, as
+     * for every entry of {@link com.myinappbilling.payment.util.CardEngine#getDefault()}
+     */
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public CardType getCardType() {
+        return cardType;
+    }
+
+    /**
+     * @param name a network or issuer name
+     * @return true if the name matches the network or the issuer, ignoring case; only the
+     * network when the issuer is not known
+     */
+    public boolean matches(String name) {
+        return name != null && (name.equalsIgnoreCase(network) || name.equalsIgnoreCase(issuer));
+    }
+
+    @Override
+    public String toString() {
+        return "CardBinInfo{" +
+                "network='" + network + '\'' +
+                ", issuer='" + issuer + '\'' +
+                ", cardType=" + cardType +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CardBinInfo that = (CardBinInfo) o;
+        return Objects.equals(network, that.network) &&
+                Objects.equals(issuer, that.issuer) &&
+                cardType == that.cardType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(network, issuer, cardType);
+    }
+}
@@ -6,6 +6,8 @@ import java.util.Objects;
 
 /**
  * CardInfo stores credit/debit card-related information for payment processing.
+ * Once a card has been stored in the card vault, the full card number and CVV are dropped and
+ * only the vault token, the BIN and the last four digits are kept.
  */
 public class CardInfo implements Serializable {
 
@@ -14,6 +16,9 @@ public class CardInfo implements Serializable {
     private int expirationMonth;
     private int expirationYear;
     private String cvv;
+    private String cardToken;
+    private String bin;
+    private String lastFourDigits;
 
     public CardInfo() {
     }
@@ -26,6 +31,18 @@ public class CardInfo implements Serializable {
         this.cvv = cvv;
     }
 
+    /**
+     * Creates a tokenized card, e.g. when restoring one that was persisted after tokenization.
+     */
+    public static CardInfo tokenized(String accountNumber, int expirationMonth, int expirationYear,
+                                     String cardToken, String bin, String lastFourDigits) {
+        CardInfo tokenized = new CardInfo(accountNumber, null, expirationMonth, expirationYear, null);
+        tokenized.cardToken = cardToken;
+        tokenized.bin = bin;
+        tokenized.lastFourDigits = lastFourDigits;
+        return tokenized;
+    }
+
     // Getters and Setters
 
     public String getAccountNumber() {
@@ -68,8 +85,69 @@ public class CardInfo implements Serializable {
         this.cvv = cvv;
     }
 
+    public String getCardToken() {
+        return cardToken;
+    }
+
+    /**
+     * Returns the first six digits of the card number, which identify the network and issuer.
+     */
+    public String getBin() {
+        return bin != null ? bin : digitsOf(cardNumber, true);
+    }
+
+    public String getLastFourDigits() {
+        return lastFourDigits != null ? lastFourDigits : digitsOf(cardNumber, false);
+    }
+
     // Utility Methods
 
+    /**
+     * Returns whether the card number and CVV have been replaced by a vault token.
+     */
+    public boolean isTokenized() {
+        return cardToken != null && cardNumber == null;
+    }
+
+    /**
+     * Returns a copy of this card that references the given vault token instead of carrying the
+     * card number and CVV.
+     *
+     * @param token the vault token of this card
+     * @return the tokenized copy
+     */
+    public CardInfo toTokenized(String token) {
+        return tokenized(accountNumber, expirationMonth, expirationYear, token, getBin(), getLastFourDigits());
+    }
+
+    private static String digitsOf(String cardNumber, boolean leading) {
+        if (cardNumber == null) {
+            return null;
+        }
+        int count = leading ? 6 : 4;
+        char[] digits = new char[count];
+        int found = 0;
+        for (int i = 0; i < cardNumber.length() && found < count; i++) {
+            char c = cardNumber.charAt(leading ? i : cardNumber.length() - 1 - i);
+            if (c >= '0' && c <= '9') {
+                digits[leading ? found : count - 1 - found] = c;
+                found++;
+            }
+        }
+        if (found < count) {
+            return null;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Returns the expiration as a single month count, {@code year * 12 + month}, so expirations
+     * can be compared and bucketed as plain integers.
+     */
+    public int getExpirationMonthIndex() {
+        return expirationYear * 12 + expirationMonth;
+    }
+
     public boolean isCardValid() {
         Calendar now = Calendar.getInstance();
         int currentYear = now.get(Calendar.YEAR);
@@ -82,8 +160,9 @@ public class CardInfo implements Serializable {
     }
 
     public String getMaskedCardNumber() {
-        if (cardNumber != null && cardNumber.length() >= 4) {
-            return "**** **** **** " + cardNumber.substring(cardNumber.length() - 4);
+        String lastFour = getLastFourDigits();
+        if (lastFour != null) {
+            return "**** **** **** " + lastFour;
         }
         return "Invalid Card";
     }
@@ -105,6 +184,7 @@ public class CardInfo implements Serializable {
                 ", cardNumber='" + getMaskedCardNumber() + '\'' +
                 ", expirationMonth=" + expirationMonth +
                 ", expirationYear=" + expirationYear +
+                ", cardToken='" + cardToken + '\'' +
                 '}';
     }
 
@@ -117,11 +197,12 @@ public class CardInfo implements Serializable {
                 expirationYear == cardInfo.expirationYear &&
                 Objects.equals(accountNumber, cardInfo.accountNumber) &&
                 Objects.equals(cardNumber, cardInfo.cardNumber) &&
-                Objects.equals(cvv, cardInfo.cvv);
+                Objects.equals(cvv, cardInfo.cvv) &&
+                Objects.equals(cardToken, cardInfo.cardToken);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(accountNumber, cardNumber, expirationMonth, expirationYear, cvv);
+        return Objects.hash(accountNumber, cardNumber, expirationMonth, expirationYear, cvv, cardToken);
     }
 }
\ No newline at end of file
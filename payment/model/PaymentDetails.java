@@ -36,6 +36,21 @@ public class PaymentDetails implements Serializable {
         this.updatedAt = LocalDateTime.now();
     }
 
+    /**
+     * Restores persisted payment details with their original ID and timestamps.
+     */
+    public PaymentDetails(String paymentId, PersonalInfo personalInfo, CardInfo cardInfo, String currency,
+                          String paymentMethod, boolean isRecurring, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.paymentId = paymentId;
+        this.personalInfo = personalInfo;
+        this.cardInfo = cardInfo;
+        this.currency = currency;
+        this.paymentMethod = paymentMethod;
+        this.isRecurring = isRecurring;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     public String getPaymentId() {
         return paymentId;
     }
@@ -0,0 +1,70 @@
+package com.myinappbilling.payment.model;
+
+import java.util.Locale;
+
+/**
+ * PaymentImportReport summarizes a bulk import of payment profiles.
+ */
+public class PaymentImportReport {
+
+    private final long totalRecords;
+    private final long importedRecords;
+    private final long invalidRecords;
+    private final long duplicateRecords;
+    private final long elapsedMillis;
+
+    public PaymentImportReport(long totalRecords, long importedRecords, long invalidRecords,
+                               long duplicateRecords, long elapsedMillis) {
+        this.totalRecords = totalRecords;
+        this.importedRecords = importedRecords;
+        this.invalidRecords = invalidRecords;
+        this.duplicateRecords = duplicateRecords;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getTotalRecords() {
+        return totalRecords;
+    }
+
+    public long getImportedRecords() {
+        return importedRecords;
+    }
+
+    /**
+     * @return records that could not be parsed or failed validation
+     */
+    public long getInvalidRecords() {
+        return invalidRecords;
+    }
+
+    /**
+     * @return records skipped because their card or email already exists
+     */
+    public long getDuplicateRecords() {
+        return duplicateRecords;
+    }
+
+    public long getRejectedRecords() {
+        return invalidRecords + duplicateRecords;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedMillis == 0 ? totalRecords : totalRecords * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentImportReport{" +
+                "totalRecords=" + totalRecords +
+                ", importedRecords=" + importedRecords +
+                ", invalidRecords=" + invalidRecords +
+                ", duplicateRecords=" + duplicateRecords +
+                ", elapsedMillis=" + elapsedMillis +
+                ", recordsPerSecond=" + String.format(Locale.ROOT, "%.1f", getRecordsPerSecond()) +
+                '}';
+    }
+}
@@ -0,0 +1,199 @@
+package com.myinappbilling.payment.repository;
+
+import com.myinappbilling.payment.model.CardInfo;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * CardVault keeps the sensitive card data (card number and CVV) in one place and hands out
+ * opaque tokens for it. Expiration dates and account numbers stay on each profile's tokenized
+ * copy, since profiles sharing a card number share its token.
+ *
+ * <p>Cards are indexed by an HMAC-SHA256 fingerprint of their digits, keyed with a secret that
+ * never leaves the vault, so the same card number always maps to the same token and duplicate
+ * detection is a single hash lookup. Everything outside the vault works with tokenized
+ * {@link CardInfo} copies.</p>
+ * In a real application, the vault would live in a separate, hardened store.
+ */
+public class CardVault {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String TOKEN_PREFIX = "tok_";
+
+    private final Map<String, CardInfo> cardsByToken = new ConcurrentHashMap<>();
+    private final Map<String, String> tokensByFingerprint = new ConcurrentHashMap<>();
+    private final SecretKeySpec fingerprintKey;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Creates a vault with a random fingerprint key.
+     */
+    public CardVault() {
+        this(newRandomKey());
+    }
+
+    /**
+     * Creates a vault with the given fingerprint key, so fingerprints stay stable across restarts.
+     *
+     * @param fingerprintKey the HMAC key, at least 32 bytes
+     */
+    public CardVault(byte[] fingerprintKey) {
+        if (fingerprintKey == null || fingerprintKey.length < 32) {
+            throw new IllegalArgumentException("Fingerprint key must be at least 32 bytes");
+        }
+        this.fingerprintKey = new SecretKeySpec(fingerprintKey.clone(), HMAC_ALGORITHM);
+    }
+
+    /**
+     * Stores a card and returns its tokenized copy. A card number that is already in the vault
+     * keeps its token and its stored data, which other profiles may rely on; only a missing CVV
+     * is filled in.
+     *
+     * @param cardInfo the card with its full card number
+     * @return a copy of the card without card number and CVV, or the card itself if it is already
+     *         tokenized or has no card number
+     */
+    public CardInfo tokenize(CardInfo cardInfo) {
+        if (cardInfo == null || cardInfo.isTokenized()) {
+            return cardInfo;
+        }
+        String fingerprint = fingerprint(cardInfo.getCardNumber());
+        if (fingerprint == null) {
+            return cardInfo;
+        }
+        String token;
+        synchronized (this) {
+            token = tokensByFingerprint.get(fingerprint);
+            CardInfo stored = token == null ? null : cardsByToken.get(token);
+            if (stored == null) {
+                token = newToken();
+                // The card goes in before its token, so a token found by fingerprint always resolves.
+                cardsByToken.put(token, vaultEntry(cardInfo.getCardNumber(), cardInfo.getCvv()));
+                tokensByFingerprint.put(fingerprint, token);
+            } else if (stored.getCvv() == null && cardInfo.getCvv() != null) {
+                cardsByToken.put(token, vaultEntry(stored.getCardNumber(), cardInfo.getCvv()));
+            }
+        }
+        return cardInfo.toTokenized(token);
+    }
+
+    /**
+     * Returns the card number and CVV behind a token. The expiration date and account number are
+     * not kept in the vault; take them from the tokenized copy.
+     *
+     * @param token the vault token
+     * @return an Optional of the stored card
+     */
+    public Optional<CardInfo> detokenize(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        CardInfo stored = cardsByToken.get(token);
+        if (stored == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new CardInfo(stored.getAccountNumber(), stored.getCardNumber(),
+                stored.getExpirationMonth(), stored.getExpirationYear(), stored.getCvv()));
+    }
+
+    /**
+     * Returns the token of a card number if it is in the vault.
+     *
+     * @param cardNumber the card number, spaces and dashes are ignored
+     * @return an Optional of the token
+     */
+    public Optional<String> findToken(String cardNumber) {
+        String fingerprint = fingerprint(cardNumber);
+        return fingerprint == null ? Optional.empty() : Optional.ofNullable(tokensByFingerprint.get(fingerprint));
+    }
+
+    /**
+     * Removes a card from the vault.
+     *
+     * @param token the vault token
+     * @return true if the card was removed
+     */
+    public synchronized boolean remove(String token) {
+        CardInfo stored = token == null ? null : cardsByToken.get(token);
+        if (stored == null) {
+            return false;
+        }
+        // The token goes before its card, the reverse of tokenize.
+        tokensByFingerprint.remove(fingerprint(stored.getCardNumber()), token);
+        cardsByToken.remove(token);
+        return true;
+    }
+
+    public int size() {
+        return cardsByToken.size();
+    }
+
+    public synchronized void clear() {
+        tokensByFingerprint.clear();
+        cardsByToken.clear();
+    }
+
+    /**
+     * Returns the keyed fingerprint of a card number's digits, or null if it has no digits.
+     *
+     * @param cardNumber the card number
+     * @return the hex-encoded HMAC-SHA256 of the digits
+     */
+    public String fingerprint(String cardNumber) {
+        if (cardNumber == null) {
+            return null;
+        }
+        byte[] digits = new byte[cardNumber.length()];
+        int length = 0;
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits[length++] = (byte) c;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        byte[] hash;
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(fingerprintKey);
+            mac.update(digits, 0, length);
+            hash = mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " not available", e);
+        }
+        return toHex(hash);
+    }
+
+    private static CardInfo vaultEntry(String cardNumber, String cvv) {
+        return new CardInfo(null, cardNumber, 0, 0, cvv);
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return TOKEN_PREFIX + toHex(bytes);
+    }
+
+    private static byte[] newRandomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -1,33 +1,124 @@
 package com.myinappbilling.payment.repository;
 
+import com.myinappbilling.payment.model.CardInfo;
 import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PersonalInfo;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * A simple in-memory repository for storing PaymentDetails.
+ * Records are kept in a concurrent hash store keyed by payment ID, with secondary indexes on
+ * normalized email, account number, card token and full name, so lookups do not depend
+ * on the number of stored profiles. Cards are also bucketed by expiration month
+ * ({@link CardInfo#getExpirationMonthIndex()}), so expiry queries read a range of buckets.
+ * Card numbers and CVVs are moved into a {@link CardVault} on save; stored records only carry
+ * the card token, which is removed from the vault once no record refers to it. Location and payment attributes are kept in a {@link PaymentFacetIndex} for
+ * combined facet queries and counts.
+ *
+ * <p>When given a {@link PaymentSegmentStore}, every change is also written to encrypted segment
+ * files, with the card number taken from the vault; the CVV is never persisted. After a restart,
+ * records are decrypted and loaded on first access by ID. The first query that needs the
+ * secondary indexes rebuilds them from the store's record summaries, which hold no card number,
+ * so its result agrees with {@link #count()}; only the records a query returns are then
+ * decrypted in full. {@link #findAll()} and the card number and card token queries need every
+ * card in the vault and load all records first; call {@link #loadAll()} up front to take that
+ * cost at a time of your choosing.</p>
  * In a real application, this would connect to a database.
  */
 public class PaymentDetailsRepository {
 
-    private final List<PaymentDetails> paymentDetailsStore = new ArrayList<>();
+    private final Map<String, PaymentDetails> paymentDetailsStore = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByAccountNumber = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByCardToken = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByFullName = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Set<String>> idsByExpirationMonth = new ConcurrentSkipListMap<>();
+    private final Map<String, IndexKeys> indexedKeys = new HashMap<>();
+    private final PaymentFacetIndex facetIndex = new PaymentFacetIndex();
+    private final Object writeLock = new Object();
+    private final CardVault cardVault;
+    private final PaymentSegmentStore segmentStore;
+    private volatile boolean indexed;
+    private volatile boolean allLoaded;
+
+    public PaymentDetailsRepository() {
+        this(new CardVault());
+    }
+
+    public PaymentDetailsRepository(CardVault cardVault) {
+        this(cardVault, null);
+    }
+
+    /**
+     * @param cardVault    the vault holding card numbers and CVVs
+     * @param segmentStore the persistent store, or null to keep records in memory only
+     */
+    public PaymentDetailsRepository(CardVault cardVault, PaymentSegmentStore segmentStore) {
+        this.cardVault = cardVault;
+        this.segmentStore = segmentStore;
+        this.indexed = segmentStore == null;
+        this.allLoaded = segmentStore == null;
+    }
+
+    public CardVault getCardVault() {
+        return cardVault;
+    }
 
     /**
-     * Saves a new PaymentDetails object.
+     * Saves a PaymentDetails object, replacing any stored record with the same ID.
+     * A card that is not tokenized yet is stored in the vault and replaced by its tokenized copy.
      *
      * @param details the payment details to save
-     * @return the saved object with assigned ID
+     * @return the saved object
      */
     public PaymentDetails save(PaymentDetails details) {
-        details.setId(UUID.randomUUID().toString());
-        paymentDetailsStore.add(details);
+        if (details == null || details.getPaymentId() == null) {
+            throw new IllegalArgumentException("PaymentDetails or payment ID cannot be null");
+        }
+        synchronized (writeLock) {
+            tokenizeCard(details);
+            persist(Collections.singletonList(details));
+            paymentDetailsStore.put(details.getPaymentId(), details);
+            reindex(details);
+        }
         return details;
     }
 
+    /**
+     * Saves a batch of PaymentDetails objects under a single lock acquisition.
+     *
+     * @param batch the payment details to save
+     */
+    public void saveAll(List<PaymentDetails> batch) {
+        synchronized (writeLock) {
+            for (PaymentDetails details : batch) {
+                if (details == null || details.getPaymentId() == null) {
+                    throw new IllegalArgumentException("PaymentDetails or payment ID cannot be null");
+                }
+                tokenizeCard(details);
+            }
+            persist(batch);
+            for (PaymentDetails details : batch) {
+                paymentDetailsStore.put(details.getPaymentId(), details);
+                reindex(details);
+            }
+        }
+    }
+
     /**
      * Retrieves a PaymentDetails object by ID.
      *
@@ -35,9 +126,37 @@ public class PaymentDetailsRepository {
      * @return an Optional of PaymentDetails
      */
     public Optional<PaymentDetails> findById(String id) {
-        return paymentDetailsStore.stream()
-                .filter(details -> id.equals(details.getId()))
-                .findFirst();
+        if (id == null) {
+            return Optional.empty();
+        }
+        PaymentDetails details = paymentDetailsStore.get(id);
+        return details != null ? Optional.of(details) : loadFromStore(id);
+    }
+
+    /**
+     * Decrypts and loads every persisted record that is not in memory yet, so that
+     * {@link #findAll()} and the card queries cover all of them. Those queries call this on
+     * first use.
+     *
+     * @return the number of records loaded
+     */
+    public int loadAll() {
+        if (segmentStore == null) {
+            return 0;
+        }
+        int loaded = 0;
+        try {
+            for (String id : segmentStore.getPaymentIds()) {
+                if (!paymentDetailsStore.containsKey(id) && loadFromStore(id).isPresent()) {
+                    loaded++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load payment details", e);
+        }
+        indexed = true;
+        allLoaded = true;
+        return loaded;
     }
 
     /**
@@ -46,7 +165,8 @@ public class PaymentDetailsRepository {
      * @return list of all PaymentDetails
      */
     public List<PaymentDetails> findAll() {
-        return new ArrayList<>(paymentDetailsStore);
+        ensureAllLoaded();
+        return new ArrayList<>(paymentDetailsStore.values());
     }
 
     /**
@@ -56,10 +176,8 @@ public class PaymentDetailsRepository {
      * @return list of matching PaymentDetails
      */
     public List<PaymentDetails> findByEmail(String email) {
-        return paymentDetailsStore.stream()
-                .filter(details -> details.getPersonalInfo() != null &&
-                                   email.equalsIgnoreCase(details.getPersonalInfo().getEmail()))
-                .collect(Collectors.toList());
+        ensureIndexed();
+        return resolve(idsByEmail.get(normalizeEmail(email)));
     }
 
     /**
@@ -70,11 +188,8 @@ public class PaymentDetailsRepository {
      * @return list of matching PaymentDetails
      */
     public List<PaymentDetails> findByFullName(String firstName, String lastName) {
-        return paymentDetailsStore.stream()
-                .filter(details -> details.getPersonalInfo() != null &&
-                        firstName.equalsIgnoreCase(details.getPersonalInfo().getFirstName()) &&
-                        lastName.equalsIgnoreCase(details.getPersonalInfo().getLastName()))
-                .collect(Collectors.toList());
+        ensureIndexed();
+        return resolve(idsByFullName.get(fullNameKey(firstName, lastName)));
     }
 
     /**
@@ -84,9 +199,65 @@ public class PaymentDetailsRepository {
      * @return Optional of matching PaymentDetails
      */
     public Optional<PaymentDetails> findByAccountNumber(String accountNumber) {
-        return paymentDetailsStore.stream()
-                .filter(details -> accountNumber.equals(details.getAccountNumber()))
-                .findFirst();
+        ensureIndexed();
+        List<PaymentDetails> matches = resolve(idsByAccountNumber.get(normalizeAccountNumber(accountNumber)));
+        return matches.isEmpty() ? Optional.empty() : Optional.of(matches.get(0));
+    }
+
+    /**
+     * Finds payment details whose card expires within a range of months.
+     *
+     * @param fromMonthIndex first expiration month, inclusive, as {@code year * 12 + month}
+     * @param toMonthIndex   last expiration month, inclusive, as {@code year * 12 + month}
+     * @return list of matching PaymentDetails, ordered by expiration month
+     */
+    public List<PaymentDetails> findByExpirationRange(int fromMonthIndex, int toMonthIndex) {
+        if (fromMonthIndex > toMonthIndex) {
+            return Collections.emptyList();
+        }
+        ensureIndexed();
+        List<String> ids = new ArrayList<>();
+        for (Set<String> monthIds : idsByExpirationMonth.subMap(fromMonthIndex, true, toMonthIndex, true).values()) {
+            ids.addAll(monthIds);
+        }
+        return resolve(ids);
+    }
+
+    /**
+     * Counts cards that expire before a given month.
+     *
+     * @param monthIndex the month, exclusive, as {@code year * 12 + month}
+     * @return number of cards expiring before that month
+     */
+    public long countExpiringBefore(int monthIndex) {
+        ensureIndexed();
+        long count = 0;
+        for (Set<String> ids : idsByExpirationMonth.headMap(monthIndex, false).values()) {
+            count += ids.size();
+        }
+        return count;
+    }
+
+    /**
+     * Finds payment details matching every given facet value.
+     *
+     * @param criteria facet values to match, compared case-insensitively
+     * @return list of matching PaymentDetails
+     */
+    public List<PaymentDetails> findByFacets(Map<PaymentFacet, String> criteria) {
+        ensureIndexed();
+        return resolve(facetIndex.findPaymentIds(criteria));
+    }
+
+    /**
+     * Counts the values of every facet among the payment details matching a filter.
+     *
+     * @param filter facet values to filter by; an empty map counts all records
+     * @return counts per normalized facet value, per facet
+     */
+    public Map<PaymentFacet, Map<String, Integer>> countFacets(Map<PaymentFacet, String> filter) {
+        ensureIndexed();
+        return facetIndex.countFacets(filter);
     }
 
     /**
@@ -96,11 +267,20 @@ public class PaymentDetailsRepository {
      * @return true if update was successful
      */
     public boolean update(PaymentDetails updatedDetails) {
-        return findById(updatedDetails.getId()).map(existing -> {
-            paymentDetailsStore.remove(existing);
-            paymentDetailsStore.add(updatedDetails);
+        // A persisted record that is not loaded yet is loaded first, so its old index entries are replaced.
+        if (!findById(updatedDetails.getPaymentId()).isPresent()) {
+            return false;
+        }
+        synchronized (writeLock) {
+            if (!paymentDetailsStore.containsKey(updatedDetails.getPaymentId())) {
+                return false;
+            }
+            tokenizeCard(updatedDetails);
+            persist(Collections.singletonList(updatedDetails));
+            paymentDetailsStore.put(updatedDetails.getPaymentId(), updatedDetails);
+            reindex(updatedDetails);
             return true;
-        }).orElse(false);
+        }
     }
 
     /**
@@ -110,14 +290,44 @@ public class PaymentDetailsRepository {
      * @return true if deletion was successful
      */
     public boolean deleteById(String id) {
-        return paymentDetailsStore.removeIf(details -> id.equals(details.getId()));
+        if (id == null) {
+            return false;
+        }
+        synchronized (writeLock) {
+            boolean removed = paymentDetailsStore.remove(id) != null;
+            // A persisted record may be indexed from its summary without being loaded.
+            IndexKeys keys = unindex(id);
+            releaseCardToken(keys != null ? keys.cardToken : null);
+            try {
+                return (segmentStore != null && segmentStore.delete(id)) || removed;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete payment details " + id, e);
+            }
+        }
     }
 
     /**
      * Clears all stored payment details.
      */
     public void clearAll() {
-        paymentDetailsStore.clear();
+        synchronized (writeLock) {
+            paymentDetailsStore.clear();
+            idsByEmail.clear();
+            idsByAccountNumber.clear();
+            idsByCardToken.clear();
+            idsByFullName.clear();
+            idsByExpirationMonth.clear();
+            indexedKeys.clear();
+            facetIndex.clear();
+            cardVault.clear();
+            if (segmentStore != null) {
+                try {
+                    segmentStore.clear();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to clear payment details", e);
+                }
+            }
+        }
     }
 
     /**
@@ -126,7 +336,14 @@ public class PaymentDetailsRepository {
      * @return total number of records
      */
     public int count() {
-        return paymentDetailsStore.size();
+        if (segmentStore == null) {
+            return paymentDetailsStore.size();
+        }
+        try {
+            return segmentStore.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to count payment details", e);
+        }
     }
 
     /**
@@ -136,9 +353,8 @@ public class PaymentDetailsRepository {
      * @return true if email already exists
      */
     public boolean existsByEmail(String email) {
-        return paymentDetailsStore.stream()
-                .anyMatch(details -> details.getPersonalInfo() != null &&
-                        email.equalsIgnoreCase(details.getPersonalInfo().getEmail()));
+        ensureIndexed();
+        return containsAny(idsByEmail.get(normalizeEmail(email)));
     }
 
     /**
@@ -148,8 +364,270 @@ public class PaymentDetailsRepository {
      * @return true if the card number exists
      */
     public boolean existsByCardNumber(String cardNumber) {
-        return paymentDetailsStore.stream()
-                .anyMatch(details -> details.getCardInfo() != null &&
-                        cardNumber.equals(details.getCardInfo().getCardNumber()));
+        ensureAllLoaded();
+        return cardVault.findToken(cardNumber).map(token -> containsAny(idsByCardToken.get(token))).orElse(false);
+    }
+
+    /**
+     * Checks if a card token is referenced by any stored payment record.
+     *
+     * @param cardToken the vault token to check
+     * @return true if the token is in use
+     */
+    public boolean existsByCardToken(String cardToken) {
+        ensureAllLoaded();
+        return cardToken != null && containsAny(idsByCardToken.get(cardToken));
+    }
+
+    /**
+     * Finds payment details by card token.
+     *
+     * @param cardToken the vault token
+     * @return list of matching PaymentDetails
+     */
+    public List<PaymentDetails> findByCardToken(String cardToken) {
+        ensureAllLoaded();
+        return cardToken == null ? Collections.emptyList() : resolve(idsByCardToken.get(cardToken));
+    }
+
+    private void ensureAllLoaded() {
+        if (!allLoaded) {
+            loadAll();
+        }
+    }
+
+    /**
+     * Indexes every persisted record that is not indexed yet from its summary, without
+     * decrypting the records themselves.
+     */
+    private void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (indexed) {
+                return;
+            }
+            try {
+                for (PaymentDetails summary : segmentStore.getSummaries()) {
+                    if (!indexedKeys.containsKey(summary.getPaymentId())) {
+                        reindex(summary);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to index payment details", e);
+            }
+            indexed = true;
+        }
+    }
+
+    /**
+     * Returns the records with the given IDs, decrypting and loading those that are only indexed.
+     */
+    private List<PaymentDetails> resolve(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Copied first, since loading a record re-indexes it.
+        List<String> snapshot = new ArrayList<>(ids);
+        List<PaymentDetails> result = new ArrayList<>(snapshot.size());
+        for (String id : snapshot) {
+            PaymentDetails details = paymentDetailsStore.get(id);
+            if (details == null) {
+                details = loadFromStore(id).orElse(null);
+            }
+            if (details != null) {
+                result.add(details);
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsAny(Set<String> ids) {
+        return ids != null && !ids.isEmpty();
+    }
+
+    /**
+     * Replaces the index entries of a record. Must be called while holding the write lock.
+     */
+    private void reindex(PaymentDetails details) {
+        String id = details.getPaymentId();
+        IndexKeys previous = unindex(id);
+        PersonalInfo personalInfo = details.getPersonalInfo();
+        CardInfo cardInfo = details.getCardInfo();
+        IndexKeys keys = new IndexKeys(
+                personalInfo != null ? normalizeEmail(personalInfo.getEmail()) : null,
+                personalInfo != null ? fullNameKey(personalInfo.getFirstName(), personalInfo.getLastName()) : null,
+                cardInfo != null ? normalizeAccountNumber(cardInfo.getAccountNumber()) : null,
+                cardInfo != null ? cardInfo.getCardToken() : null,
+                cardInfo != null ? cardInfo.getExpirationMonthIndex() : null);
+        addToIndex(idsByEmail, keys.email, id);
+        addToIndex(idsByFullName, keys.fullName, id);
+        addToIndex(idsByAccountNumber, keys.accountNumber, id);
+        addToIndex(idsByCardToken, keys.cardToken, id);
+        addToIndex(idsByExpirationMonth, keys.expirationMonth, id);
+        indexedKeys.put(id, keys);
+        facetIndex.index(details);
+        if (previous != null && previous.cardToken != null && !previous.cardToken.equals(keys.cardToken)) {
+            releaseCardToken(previous.cardToken);
+        }
+    }
+
+    /**
+     * Removes the index entries recorded for a record. Must be called while holding the write lock.
+     *
+     * @return the keys the record was indexed under, or null if it was not indexed
+     */
+    private IndexKeys unindex(String id) {
+        IndexKeys keys = indexedKeys.remove(id);
+        if (keys != null) {
+            removeFromIndex(idsByEmail, keys.email, id);
+            removeFromIndex(idsByFullName, keys.fullName, id);
+            removeFromIndex(idsByAccountNumber, keys.accountNumber, id);
+            removeFromIndex(idsByCardToken, keys.cardToken, id);
+            removeFromIndex(idsByExpirationMonth, keys.expirationMonth, id);
+        }
+        facetIndex.remove(id);
+        return keys;
+    }
+
+    /**
+     * Removes a card from the vault once no loaded record refers to its token. A persisted record
+     * that is not loaded yet is tokenized again when it is. Must be called while holding the write lock.
+     */
+    private void releaseCardToken(String cardToken) {
+        if (cardToken != null && !containsAny(idsByCardToken.get(cardToken))) {
+            cardVault.remove(cardToken);
+        }
+    }
+
+    private static <K> void addToIndex(Map<K, Set<String>> index, K key, String id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<String>> index, K key, String id) {
+        if (key == null) {
+            return;
+        }
+        Set<String> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeAccountNumber(String accountNumber) {
+        return accountNumber == null ? null : accountNumber.trim();
+    }
+
+    private static String fullNameKey(String firstName, String lastName) {
+        if (firstName == null || lastName == null) {
+            return null;
+        }
+        return firstName.trim().toLowerCase(Locale.ROOT) + '\u0000' + lastName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Writes records to the segment store, with the card data from the vault.
+     * Must be called while holding the write lock.
+     */
+    private void persist(List<PaymentDetails> batch) {
+        if (segmentStore == null) {
+            return;
+        }
+        List<PaymentDetails> persistent = new ArrayList<>(batch.size());
+        for (PaymentDetails details : batch) {
+            persistent.add(withVaultedCard(details));
+        }
+        try {
+            segmentStore.putAll(persistent);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist payment details", e);
+        }
+    }
+
+    private PaymentDetails withVaultedCard(PaymentDetails details) {
+        CardInfo cardInfo = details.getCardInfo();
+        if (cardInfo == null || !cardInfo.isTokenized()) {
+            return details;
+        }
+        CardInfo vaulted = cardVault.detokenize(cardInfo.getCardToken()).orElse(null);
+        if (vaulted == null) {
+            return details;
+        }
+        CardInfo fullCard = new CardInfo(cardInfo.getAccountNumber(), vaulted.getCardNumber(),
+                cardInfo.getExpirationMonth(), cardInfo.getExpirationYear(), null);
+        return new PaymentDetails(details.getPaymentId(), details.getPersonalInfo(), fullCard, details.getCurrency(),
+                details.getPaymentMethod(), details.isRecurring(), details.getCreatedAt(), details.getUpdatedAt());
+    }
+
+    /**
+     * Decrypts a persisted record, moves its card into the vault and adds it to memory.
+     */
+    private Optional<PaymentDetails> loadFromStore(String id) {
+        if (segmentStore == null) {
+            return Optional.empty();
+        }
+        Optional<PaymentDetails> persisted;
+        try {
+            persisted = segmentStore.get(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load payment details " + id, e);
+        }
+        if (!persisted.isPresent()) {
+            return Optional.empty();
+        }
+        PaymentDetails restored = persisted.get();
+        PaymentDetails details;
+        synchronized (writeLock) {
+            PaymentDetails current = paymentDetailsStore.get(id);
+            if (current != null) {
+                return Optional.of(current);
+            }
+            // Tokenized under the lock, so a concurrent delete cannot release the token before it is indexed.
+            details = new PaymentDetails(id, restored.getPersonalInfo(),
+                    cardVault.tokenize(restored.getCardInfo()), restored.getCurrency(), restored.getPaymentMethod(),
+                    restored.isRecurring(), restored.getCreatedAt(), restored.getUpdatedAt());
+            paymentDetailsStore.put(id, details);
+            reindex(details);
+        }
+        return Optional.of(details);
+    }
+
+    /**
+     * Replaces a raw card with its vault token before the record is stored.
+     */
+    private void tokenizeCard(PaymentDetails details) {
+        CardInfo cardInfo = details.getCardInfo();
+        if (cardInfo != null && !cardInfo.isTokenized()) {
+            details.setCardInfo(cardVault.tokenize(cardInfo));
+        }
+    }
+
+    /**
+     * Index keys of a record as they were when it was last saved.
+     */
+    private static class IndexKeys {
+        final String email;
+        final String fullName;
+        final String accountNumber;
+        final String cardToken;
+        final Integer expirationMonth;
+
+        IndexKeys(String email, String fullName, String accountNumber, String cardToken, Integer expirationMonth) {
+            this.email = email;
+            this.fullName = fullName;
+            this.accountNumber = accountNumber;
+            this.cardToken = cardToken;
+            this.expirationMonth = expirationMonth;
+        }
     }
-} 
+}
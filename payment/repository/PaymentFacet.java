@@ -0,0 +1,82 @@
+package com.myinappbilling.payment.repository;
+
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PersonalInfo;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * PaymentFacet enumerates the attributes of a {@link PaymentDetails} object that can be used to
+ * filter and count payment profiles, together with how each one is read and normalized.
+ * Facet values are compared trimmed and lower-cased.
+ */
+public enum PaymentFacet {
+
+    COUNTRY(personal(PersonalInfo::getCountry)),
+    PROVINCE(personal(PersonalInfo::getProvince)),
+    CITY(personal(PersonalInfo::getCity)),
+    /**
+     * The first {@value #POSTAL_PREFIX_LENGTH} characters of the postal code, spaces removed.
+     */
+    POSTAL_PREFIX(personal(info -> postalPrefix(info.getPostalCode()))),
+    CURRENCY(PaymentDetails::getCurrency),
+    PAYMENT_METHOD(PaymentDetails::getPaymentMethod),
+    /**
+     * {@code "true"} or {@code "false"}.
+     */
+    RECURRING(details -> String.valueOf(details.isRecurring()));
+
+    public static final int POSTAL_PREFIX_LENGTH = 3;
+
+    private final Function<PaymentDetails, String> extractor;
+
+    PaymentFacet(Function<PaymentDetails, String> extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * Reads the normalized facet value from the payment details.
+     *
+     * @param details the payment details
+     * @return the normalized value, or null if it or its parent object is missing
+     */
+    public String extract(PaymentDetails details) {
+        return details == null ? null : normalize(extractor.apply(details));
+    }
+
+    /**
+     * Normalizes a value given in a query the same way stored values are normalized.
+     *
+     * @param value the raw value
+     * @return the normalized value, or null if the value is null or blank
+     */
+    public String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        if (this == POSTAL_PREFIX) {
+            normalized = postalPrefix(normalized);
+        }
+        return normalized == null || normalized.isEmpty() ? null : normalized;
+    }
+
+    private static String postalPrefix(String postalCode) {
+        if (postalCode == null) {
+            return null;
+        }
+        StringBuilder prefix = new StringBuilder(POSTAL_PREFIX_LENGTH);
+        for (int i = 0; i < postalCode.length() && prefix.length() < POSTAL_PREFIX_LENGTH; i++) {
+            char c = postalCode.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                prefix.append(c);
+            }
+        }
+        return prefix.toString();
+    }
+
+    private static Function<PaymentDetails, String> personal(Function<PersonalInfo, String> getter) {
+        return details -> details.getPersonalInfo() == null ? null : getter.apply(details.getPersonalInfo());
+    }
+}
@@ -0,0 +1,301 @@
+package com.myinappbilling.payment.repository;
+
+import com.myinappbilling.payment.model.PaymentDetails;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PaymentFacetIndex is a bitmap index over the {@link PaymentFacet}s of stored payment profiles.
+ *
+ * <p>Every indexed profile gets a dense row number; row numbers of deleted profiles are reused.
+ * For each facet value the index keeps the rows having that value: a sorted int array while the
+ * value is rare, switching to a {@link BitSet} once the array would outgrow it. Facets with many
+ * distinct values, such as city or postal prefix, thus cost memory in proportion to their rows
+ * rather than to values times rows. A query combining several facets walks the smallest row set
+ * and probes the others. Facet values are also kept per row, column by column, so the counts
+ * of every facet for a filtered set come back in one pass over the matching rows.</p>
+ *
+ * <p>All methods are synchronized; callers that mutate the index from the repository do so
+ * while holding the repository's write lock.</p>
+ */
+public class PaymentFacetIndex {
+
+    private static final PaymentFacet[] FACETS = PaymentFacet.values();
+
+    private final Map<String, Integer> rowsByPaymentId = new HashMap<>();
+    private final List<String> paymentIdsByRow = new ArrayList<>();
+    private final BitSet liveRows = new BitSet();
+    private final BitSet freeRows = new BitSet();
+    private final Map<PaymentFacet, Map<String, RowSet>> rowSets = new EnumMap<>(PaymentFacet.class);
+    private final Map<PaymentFacet, List<String>> columns = new EnumMap<>(PaymentFacet.class);
+
+    public PaymentFacetIndex() {
+        for (PaymentFacet facet : FACETS) {
+            rowSets.put(facet, new HashMap<>());
+            columns.put(facet, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Adds a profile to the index, replacing its previous facet values if it is already indexed.
+     *
+     * @param details the payment details
+     */
+    public synchronized void index(PaymentDetails details) {
+        String paymentId = details.getPaymentId();
+        Integer existing = rowsByPaymentId.get(paymentId);
+        int row;
+        if (existing != null) {
+            row = existing;
+            clearRow(row);
+        } else {
+            row = allocateRow(paymentId);
+        }
+        for (PaymentFacet facet : FACETS) {
+            String value = facet.extract(details);
+            columns.get(facet).set(row, value);
+            if (value != null) {
+                rowSets.get(facet).computeIfAbsent(value, v -> new RowSet()).add(row, paymentIdsByRow.size());
+            }
+        }
+        liveRows.set(row);
+    }
+
+    /**
+     * Removes a profile from the index.
+     *
+     * @param paymentId the payment ID
+     */
+    public synchronized void remove(String paymentId) {
+        Integer row = rowsByPaymentId.remove(paymentId);
+        if (row == null) {
+            return;
+        }
+        clearRow(row);
+        liveRows.clear(row);
+        paymentIdsByRow.set(row, null);
+        freeRows.set(row);
+    }
+
+    public synchronized void clear() {
+        rowsByPaymentId.clear();
+        paymentIdsByRow.clear();
+        liveRows.clear();
+        freeRows.clear();
+        for (PaymentFacet facet : FACETS) {
+            rowSets.get(facet).clear();
+            columns.get(facet).clear();
+        }
+    }
+
+    /**
+     * Returns the payment IDs matching every given facet value.
+     *
+     * @param criteria the facet values to match; an empty map matches every profile
+     * @return the matching payment IDs, in row order
+     */
+    public synchronized List<String> findPaymentIds(Map<PaymentFacet, String> criteria) {
+        BitSet rows = match(criteria);
+        List<String> paymentIds = new ArrayList<>(rows.cardinality());
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            paymentIds.add(paymentIdsByRow.get(row));
+        }
+        return paymentIds;
+    }
+
+    /**
+     * Counts the profiles matching every given facet value.
+     *
+     * @param criteria the facet values to match
+     * @return the number of matching profiles
+     */
+    public synchronized int count(Map<PaymentFacet, String> criteria) {
+        return match(criteria).cardinality();
+    }
+
+    /**
+     * Counts, for every facet, how many of the profiles matching the filter have each value.
+     * All facets are counted in a single pass over the matching rows.
+     *
+     * @param filter the facet values to filter by; an empty map counts every profile
+     * @return counts per normalized facet value, per facet
+     */
+    public synchronized Map<PaymentFacet, Map<String, Integer>> countFacets(Map<PaymentFacet, String> filter) {
+        BitSet rows = match(filter);
+        Map<PaymentFacet, Map<String, Integer>> counts = new EnumMap<>(PaymentFacet.class);
+        List<List<String>> facetColumns = new ArrayList<>(FACETS.length);
+        List<Map<String, Integer>> facetCounts = new ArrayList<>(FACETS.length);
+        for (PaymentFacet facet : FACETS) {
+            Map<String, Integer> facetCount = new HashMap<>();
+            facetColumns.add(columns.get(facet));
+            facetCounts.add(facetCount);
+            counts.put(facet, facetCount);
+        }
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            for (int i = 0; i < FACETS.length; i++) {
+                String value = facetColumns.get(i).get(row);
+                if (value != null) {
+                    facetCounts.get(i).merge(value, 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Intersects the row sets of the given facet values, starting from the smallest.
+     * Must be called while holding the monitor.
+     */
+    private BitSet match(Map<PaymentFacet, String> criteria) {
+        if (criteria == null || criteria.isEmpty()) {
+            return (BitSet) liveRows.clone();
+        }
+        List<RowSet> sets = new ArrayList<>(criteria.size());
+        for (Map.Entry<PaymentFacet, String> criterion : criteria.entrySet()) {
+            PaymentFacet facet = criterion.getKey();
+            RowSet rows = rowSets.get(facet).get(facet.normalize(criterion.getValue()));
+            if (rows == null) {
+                return new BitSet();
+            }
+            sets.add(rows);
+        }
+        sets.sort(Comparator.comparingInt(RowSet::size));
+        BitSet result = sets.get(0).toBitSet();
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            sets.get(i).retainIn(result);
+        }
+        return result;
+    }
+
+    private int allocateRow(String paymentId) {
+        int row = freeRows.nextSetBit(0);
+        if (row >= 0) {
+            freeRows.clear(row);
+            paymentIdsByRow.set(row, paymentId);
+        } else {
+            row = paymentIdsByRow.size();
+            paymentIdsByRow.add(paymentId);
+            for (PaymentFacet facet : FACETS) {
+                columns.get(facet).add(null);
+            }
+        }
+        rowsByPaymentId.put(paymentId, row);
+        return row;
+    }
+
+    private void clearRow(int row) {
+        for (PaymentFacet facet : FACETS) {
+            String value = columns.get(facet).set(row, null);
+            if (value == null) {
+                continue;
+            }
+            Map<String, RowSet> valueRows = rowSets.get(facet);
+            RowSet rows = valueRows.get(value);
+            if (rows != null) {
+                rows.remove(row, paymentIdsByRow.size());
+                if (rows.size() == 0) {
+                    valueRows.remove(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * The rows having one facet value: a sorted array while it holds fewer rows than a bitmap
+     * over all rows has bits, a {@link BitSet} beyond that. A bitmap turns back into an array
+     * once it is down to half that size, so a value near the threshold does not flip each time.
+     */
+    private static final class RowSet {
+        private int[] rows = new int[4];
+        private BitSet bits;
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(int row, int rowCount) {
+            if (bits != null) {
+                if (!bits.get(row)) {
+                    bits.set(row);
+                    size++;
+                }
+                return;
+            }
+            int at = Arrays.binarySearch(rows, 0, size, row);
+            if (at >= 0) {
+                return;
+            }
+            if ((long) (size + 1) * Integer.SIZE > rowCount) {
+                bits = toBitSet();
+                bits.set(row);
+                rows = null;
+                size++;
+                return;
+            }
+            at = -at - 1;
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(rows, at, rows, at + 1, size - at);
+            rows[at] = row;
+            size++;
+        }
+
+        void remove(int row, int rowCount) {
+            if (bits != null) {
+                if (bits.get(row)) {
+                    bits.clear(row);
+                    size--;
+                    if ((long) size * Integer.SIZE * 2 <= rowCount) {
+                        rows = new int[Math.max(4, size)];
+                        int i = 0;
+                        for (int r = bits.nextSetBit(0); r >= 0; r = bits.nextSetBit(r + 1)) {
+                            rows[i++] = r;
+                        }
+                        bits = null;
+                    }
+                }
+                return;
+            }
+            int at = Arrays.binarySearch(rows, 0, size, row);
+            if (at >= 0) {
+                System.arraycopy(rows, at + 1, rows, at, size - at - 1);
+                size--;
+            }
+        }
+
+        BitSet toBitSet() {
+            if (bits != null) {
+                return (BitSet) bits.clone();
+            }
+            BitSet result = new BitSet(size == 0 ? 0 : rows[size - 1] + 1);
+            for (int i = 0; i < size; i++) {
+                result.set(rows[i]);
+            }
+            return result;
+        }
+
+        /**
+         * Clears the bits of the target that are not in this set.
+         */
+        void retainIn(BitSet target) {
+            if (bits != null) {
+                target.and(bits);
+                return;
+            }
+            for (int row = target.nextSetBit(0); row >= 0; row = target.nextSetBit(row + 1)) {
+                if (Arrays.binarySearch(rows, 0, size, row) < 0) {
+                    target.clear(row);
+                }
+            }
+        }
+    }
+}
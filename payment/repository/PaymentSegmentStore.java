@@ -0,0 +1,562 @@
+package com.myinappbilling.payment.repository;
+
+import com.myinappbilling.payment.model.CardInfo;
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PersonalInfo;
+import com.myinappbilling.payment.util.PaymentDetailsCodec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * PaymentSegmentStore persists payment details in append-only, encrypted segment files.
+ *
+ * <p>Each record is encoded with {@link PaymentDetailsCodec} and encrypted with AES-GCM under a
+ * fresh IV chosen by the cipher, so keys that only allow randomized encryption, such as Android
+ * Keystore keys, work as well. Next to it the store keeps a separately encrypted summary holding
+ * only the fields {@link PaymentDetailsRepository} indexes and never the card number, so the
+ * indexes can be rebuilt without decrypting full records; see {@link #getSummaries()}. The
+ * payment ID and which of the two a ciphertext is are bound to it as associated data, so
+ * ciphertexts cannot be swapped between IDs or between record and summary. Only the record
+ * header is stored in the clear. Updates append a new version and deletes append a tombstone;
+ * {@link #compact()} rewrites the live records into fresh segments without decrypting them.
+ * Every write is synced to the device before it returns.</p>
+ *
+ * <p>The in-memory index from payment ID to file position is built on first use by scanning the
+ * record headers, and records are only decrypted when they are read.</p>
+ *
+ * <p>Segment layout: the magic bytes {@code PDS} and a format version byte, then records of
+ * {@code [type][varint id length][id][varint summary length][varint payload length][summary][payload]},
+ * where summary and payload are each the 12-byte IV followed by the ciphertext.</p>
+ */
+public class PaymentSegmentStore {
+
+    private static final byte[] MAGIC = {'P', 'D', 'S', 1};
+    private static final int RECORD_PUT = 1;
+    private static final int RECORD_DELETE = 2;
+    private static final int PART_RECORD = 0;
+    private static final int PART_SUMMARY = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 4L * 1024 * 1024;
+
+    private final File directory;
+    private final SecretKey key;
+    private final long maxSegmentBytes;
+    private final Map<Integer, RandomAccessFile> openSegments = new HashMap<>();
+    private Map<String, Location> index;
+    private int activeSegment;
+
+    /**
+     * @param directory the directory holding the segment files; created if missing
+     * @param key       the AES key records are encrypted with
+     */
+    public PaymentSegmentStore(File directory, SecretKey key) {
+        this(directory, key, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    public PaymentSegmentStore(File directory, SecretKey key, long maxSegmentBytes) {
+        this.directory = directory;
+        this.key = key;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Appends the current version of a record.
+     *
+     * @param details the payment details
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized void put(PaymentDetails details) throws IOException {
+        putAll(Collections.singletonList(details));
+    }
+
+    /**
+     * Appends the current version of several records with a single write.
+     *
+     * @param batch the payment details
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized void putAll(Collection<PaymentDetails> batch) throws IOException {
+        ensureIndexLoaded();
+        RecordBuffer records = new RecordBuffer();
+        List<String> ids = new ArrayList<>(batch.size());
+        List<int[]> extents = new ArrayList<>(batch.size());
+        for (PaymentDetails details : batch) {
+            String id = details.getPaymentId();
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            byte[] summary = encrypt(PaymentDetailsCodec.encode(summarize(details)), associatedData(idBytes, PART_SUMMARY));
+            byte[] payload = encrypt(PaymentDetailsCodec.encode(details), associatedData(idBytes, PART_RECORD));
+            int bodyOffset = records.appendHeader(RECORD_PUT, idBytes, summary.length, payload.length);
+            records.append(summary);
+            records.append(payload);
+            ids.add(id);
+            extents.add(new int[]{bodyOffset, summary.length, payload.length});
+        }
+        long base = append(records);
+        for (int i = 0; i < ids.size(); i++) {
+            int[] extent = extents.get(i);
+            index.put(ids.get(i), new Location(activeSegment, base + extent[0], extent[1], extent[2]));
+        }
+    }
+
+    /**
+     * Appends a tombstone for a record.
+     *
+     * @param paymentId the payment ID
+     * @return true if the record existed
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized boolean delete(String paymentId) throws IOException {
+        ensureIndexLoaded();
+        if (!index.containsKey(paymentId)) {
+            return false;
+        }
+        RecordBuffer records = new RecordBuffer();
+        records.appendHeader(RECORD_DELETE, paymentId.getBytes(StandardCharsets.UTF_8), 0, 0);
+        append(records);
+        index.remove(paymentId);
+        return true;
+    }
+
+    /**
+     * Reads and decrypts a record.
+     *
+     * @param paymentId the payment ID
+     * @return an Optional of the stored payment details
+     * @throws IOException if the segment cannot be read or the record fails authentication
+     */
+    public synchronized Optional<PaymentDetails> get(String paymentId) throws IOException {
+        ensureIndexLoaded();
+        Location location = paymentId == null ? null : index.get(paymentId);
+        if (location == null) {
+            return Optional.empty();
+        }
+        byte[] payload = new byte[location.payloadLength];
+        RandomAccessFile file = segment(location.segment);
+        file.seek(location.offset + location.summaryLength);
+        file.readFully(payload);
+        byte[] associatedData = associatedData(paymentId.getBytes(StandardCharsets.UTF_8), PART_RECORD);
+        return Optional.of(PaymentDetailsCodec.decode(decrypt(payload, associatedData)));
+    }
+
+    /**
+     * Reads and decrypts the summaries of all live records, in file order. A summary carries the
+     * payment ID, names, email, city, province, postal code, country, account number, expiration
+     * date, currency, payment method and recurring flag; all other fields are null.
+     *
+     * @return the summaries
+     * @throws IOException if a segment cannot be read or a summary fails authentication
+     */
+    public synchronized List<PaymentDetails> getSummaries() throws IOException {
+        ensureIndexLoaded();
+        List<Map.Entry<String, Location>> entries = new ArrayList<>(index.entrySet());
+        entries.sort((a, b) -> a.getValue().segment != b.getValue().segment
+                ? Integer.compare(a.getValue().segment, b.getValue().segment)
+                : Long.compare(a.getValue().offset, b.getValue().offset));
+        List<PaymentDetails> summaries = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Location> entry : entries) {
+            Location location = entry.getValue();
+            byte[] summary = new byte[location.summaryLength];
+            RandomAccessFile file = segment(location.segment);
+            file.seek(location.offset);
+            file.readFully(summary);
+            byte[] associatedData = associatedData(entry.getKey().getBytes(StandardCharsets.UTF_8), PART_SUMMARY);
+            summaries.add(PaymentDetailsCodec.decode(decrypt(summary, associatedData)));
+        }
+        return summaries;
+    }
+
+    public synchronized boolean contains(String paymentId) throws IOException {
+        ensureIndexLoaded();
+        return index.containsKey(paymentId);
+    }
+
+    /**
+     * @return the IDs of all live records, without decrypting them
+     */
+    public synchronized Set<String> getPaymentIds() throws IOException {
+        ensureIndexLoaded();
+        return new HashSet<>(index.keySet());
+    }
+
+    public synchronized int size() throws IOException {
+        ensureIndexLoaded();
+        return index.size();
+    }
+
+    /**
+     * Deletes every segment file.
+     */
+    public synchronized void clear() throws IOException {
+        closeSegments();
+        for (int segment : listSegments()) {
+            deleteSegment(segment);
+        }
+        index = null;
+    }
+
+    /**
+     * Rewrites the live records into new segments and deletes the old ones. Encrypted payloads
+     * are copied as they are.
+     */
+    public synchronized void compact() throws IOException {
+        ensureIndexLoaded();
+        List<Integer> oldSegments = listSegments();
+        Map<String, Location> live = new LinkedHashMap<>(index);
+        activeSegment++;
+        RecordBuffer records = new RecordBuffer();
+        Map<String, int[]> pending = new HashMap<>();
+        for (Map.Entry<String, Location> entry : live.entrySet()) {
+            Location location = entry.getValue();
+            byte[] body = new byte[location.summaryLength + location.payloadLength];
+            RandomAccessFile file = segment(location.segment);
+            file.seek(location.offset);
+            file.readFully(body);
+            int bodyOffset = records.appendHeader(RECORD_PUT, entry.getKey().getBytes(StandardCharsets.UTF_8),
+                    location.summaryLength, location.payloadLength);
+            records.append(body);
+            pending.put(entry.getKey(), new int[]{bodyOffset, location.summaryLength, location.payloadLength});
+            if (records.size() >= maxSegmentBytes) {
+                flushCompacted(records, pending);
+                records = new RecordBuffer();
+                pending.clear();
+                activeSegment++;
+            }
+        }
+        flushCompacted(records, pending);
+        for (int segment : oldSegments) {
+            closeSegment(segment);
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * Closes the open segment files. The store reopens them on the next access.
+     */
+    public synchronized void close() throws IOException {
+        closeSegments();
+    }
+
+    private void flushCompacted(RecordBuffer records, Map<String, int[]> pending) throws IOException {
+        RandomAccessFile file = segment(activeSegment);
+        if (file.length() == 0) {
+            file.write(MAGIC);
+        }
+        long base = file.length();
+        file.seek(base);
+        file.write(records.bytes(), 0, records.size());
+        file.getFD().sync();
+        for (Map.Entry<String, int[]> entry : pending.entrySet()) {
+            int[] extent = entry.getValue();
+            index.put(entry.getKey(), new Location(activeSegment, base + extent[0], extent[1], extent[2]));
+        }
+    }
+
+    /**
+     * Appends the buffered records to the active segment, rolling over to a new segment when
+     * the active one is full. Returns the file offset the records were written at.
+     */
+    private long append(RecordBuffer records) throws IOException {
+        RandomAccessFile file = segment(activeSegment);
+        if (file.length() > MAGIC.length && file.length() + records.size() > maxSegmentBytes) {
+            activeSegment++;
+            file = segment(activeSegment);
+        }
+        if (file.length() == 0) {
+            file.write(MAGIC);
+        }
+        long base = file.length();
+        file.seek(base);
+        file.write(records.bytes(), 0, records.size());
+        file.getFD().sync();
+        return base;
+    }
+
+    private void ensureIndexLoaded() throws IOException {
+        if (index != null) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        Map<String, Location> loaded = new HashMap<>();
+        List<Integer> segments = listSegments();
+        for (int segment : segments) {
+            scanSegment(segment, loaded);
+        }
+        index = loaded;
+        activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+    }
+
+    /**
+     * Reads the record headers of a segment into the index, skipping over the payloads.
+     * A record cut short by a crash ends the scan, and the segment is truncated before it.
+     */
+    private void scanSegment(int segment, Map<String, Location> loaded) throws IOException {
+        File file = segmentFile(segment);
+        long fileLength = file.length();
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a payment segment: " + file);
+            }
+            long position = MAGIC.length;
+            validLength = position;
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                int[] consumed = new int[1];
+                int idLength = (int) readVarint(in, consumed);
+                byte[] idBytes = new byte[idLength];
+                in.readFully(idBytes);
+                int summaryLength = (int) readVarint(in, consumed);
+                int payloadLength = (int) readVarint(in, consumed);
+                long bodyOffset = position + 1 + consumed[0] + idLength;
+                long end = bodyOffset + summaryLength + payloadLength;
+                if (end > fileLength) {
+                    throw new EOFException();
+                }
+                skipFully(in, summaryLength + (long) payloadLength);
+                String id = new String(idBytes, StandardCharsets.UTF_8);
+                if (type == RECORD_PUT) {
+                    loaded.put(id, new Location(segment, bodyOffset, summaryLength, payloadLength));
+                } else if (type == RECORD_DELETE) {
+                    loaded.remove(id);
+                }
+                position = end;
+                validLength = position;
+            }
+        } catch (EOFException e) {
+            RandomAccessFile writable = segment(segment);
+            writable.setLength(validLength);
+        }
+    }
+
+    private static void skipFully(DataInputStream in, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static long readVarint(DataInputStream in, int[] consumed) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            consumed[0]++;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Returns the fields of a record that the repository indexes, without any card data beyond
+     * the account number and expiration date.
+     */
+    private static PaymentDetails summarize(PaymentDetails details) {
+        PersonalInfo info = details.getPersonalInfo();
+        PersonalInfo personalSummary = info == null ? null : new PersonalInfo(null, info.getFirstName(),
+                info.getLastName(), null, info.getEmail(), null, null, null, null, info.getCity(),
+                info.getProvince(), info.getPostalCode(), info.getCountry());
+        CardInfo card = details.getCardInfo();
+        CardInfo cardSummary = card == null ? null : new CardInfo(card.getAccountNumber(), null,
+                card.getExpirationMonth(), card.getExpirationYear(), null);
+        return new PaymentDetails(details.getPaymentId(), personalSummary, cardSummary, details.getCurrency(),
+                details.getPaymentMethod(), details.isRecurring(), null, null);
+    }
+
+    private static byte[] associatedData(byte[] idBytes, int part) {
+        byte[] associatedData = Arrays.copyOf(idBytes, idBytes.length + 1);
+        associatedData[idBytes.length] = (byte) part;
+        return associatedData;
+    }
+
+    private byte[] encrypt(byte[] plaintext, byte[] associatedData) {
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            byte[] iv = cipher.getIV();
+            if (iv == null || iv.length != IV_LENGTH) {
+                throw new IllegalStateException(CIPHER + " did not generate a " + IV_LENGTH + "-byte IV");
+            }
+            cipher.updateAAD(associatedData);
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            byte[] payload = new byte[IV_LENGTH + ciphertext.length];
+            System.arraycopy(iv, 0, payload, 0, IV_LENGTH);
+            System.arraycopy(ciphertext, 0, payload, IV_LENGTH, ciphertext.length);
+            return payload;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(CIPHER + " not available", e);
+        }
+    }
+
+    private byte[] decrypt(byte[] payload, byte[] associatedData) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, payload, 0, IV_LENGTH));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(payload, IV_LENGTH, payload.length - IV_LENGTH);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Record failed authentication", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(CIPHER + " not available", e);
+        }
+    }
+
+    private RandomAccessFile segment(int segment) throws IOException {
+        RandomAccessFile file = openSegments.get(segment);
+        if (file == null) {
+            file = new RandomAccessFile(segmentFile(segment), "rw");
+            openSegments.put(segment, file);
+        }
+        return file;
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, String.format(Locale.ROOT, "segment-%06d.seg", segment));
+    }
+
+    private List<Integer> listSegments() {
+        List<Integer> segments = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith("segment-") && name.endsWith(".seg")) {
+                    segments.add(Integer.parseInt(name.substring(8, name.length() - 4)));
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private void closeSegment(int segment) throws IOException {
+        RandomAccessFile file = openSegments.remove(segment);
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private void closeSegments() throws IOException {
+        for (RandomAccessFile file : openSegments.values()) {
+            file.close();
+        }
+        openSegments.clear();
+    }
+
+    private void deleteSegment(int segment) throws IOException {
+        File file = segmentFile(segment);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+    /**
+     * Where the encrypted summary of a record lives; the encrypted record follows it.
+     */
+    private static final class Location {
+        final int segment;
+        final long offset;
+        final int summaryLength;
+        final int payloadLength;
+
+        Location(int segment, long offset, int summaryLength, int payloadLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.summaryLength = summaryLength;
+            this.payloadLength = payloadLength;
+        }
+    }
+
+    /**
+     * A growable buffer of encoded records, written to a segment in one call.
+     */
+    private static final class RecordBuffer {
+        private byte[] buffer = new byte[512];
+        private int size;
+
+        /**
+         * Appends a record header and returns the buffer offset its summary will start at.
+         */
+        int appendHeader(int type, byte[] idBytes, int summaryLength, int payloadLength) {
+            append(new byte[]{(byte) type});
+            appendVarint(idBytes.length);
+            append(idBytes);
+            appendVarint(summaryLength);
+            appendVarint(payloadLength);
+            return size;
+        }
+
+        void append(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void appendVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        byte[] bytes() {
+            return buffer;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.myinappbilling.payment.service;
+
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.repository.PaymentDetailsRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * CardExpiryScheduler emits expiring-card events once per month.
+ *
+ * <p>Instead of recomputing expirations on every query, the scheduler wakes up at each month
+ * boundary, reads the expiry buckets of {@link PaymentDetailsRepository} for the cards expiring
+ * within the look-ahead window and notifies its listeners. An instance never reports a month
+ * twice, even if it is stopped and started again within the same month. The last reported
+ * month is kept only in memory, so a new instance, e.g. after a process restart, reports the
+ * current month again.</p>
+ *
+ * <p>The scheduler runs on a daemon thread, so it does not keep the process alive.</p>
+ */
+public class CardExpiryScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(CardExpiryScheduler.class.getName());
+
+    /**
+     * Receives the monthly expiring-card event.
+     */
+    public interface ExpiringCardsListener {
+        /**
+         * @param month         the month that has just started
+         * @param expiringCards cards expiring between {@code month} and the end of the look-ahead window
+         * @param expiredCount  number of cards that expired before {@code month}
+         */
+        void onExpiringCards(YearMonth month, List<PaymentDetails> expiringCards, long expiredCount);
+    }
+
+    private final PaymentDetailsRepository repository;
+    private final int monthsAhead;
+    private final List<ExpiringCardsListener> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> nextRun;
+    private YearMonth lastEmittedMonth;
+
+    public CardExpiryScheduler(PaymentDetailsRepository repository, int monthsAhead) {
+        this.repository = repository;
+        this.monthsAhead = monthsAhead;
+    }
+
+    public void addListener(ExpiringCardsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ExpiringCardsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts the scheduler. The current month is reported right away if it has not been yet.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "card-expiry-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleAt(0);
+    }
+
+    /**
+     * Stops the scheduler. Already emitted months are remembered if this instance is started again.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        if (nextRun != null) {
+            nextRun.cancel(false);
+            nextRun = null;
+        }
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    public synchronized YearMonth getLastEmittedMonth() {
+        return lastEmittedMonth;
+    }
+
+    private synchronized void scheduleAt(long delayMillis) {
+        if (executor != null) {
+            nextRun = executor.schedule(this::runMonthlyCheck, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runMonthlyCheck() {
+        try {
+            YearMonth month = YearMonth.now();
+            if (markEmitted(month)) {
+                int monthIndex = month.getYear() * 12 + month.getMonthValue();
+                List<PaymentDetails> expiring = repository.findByExpirationRange(monthIndex, monthIndex + monthsAhead);
+                long expiredCount = repository.countExpiringBefore(monthIndex);
+                for (ExpiringCardsListener listener : listeners) {
+                    notifyListener(listener, month, expiring, expiredCount);
+                }
+            }
+        } finally {
+            // Always schedule the next month, so a failed check does not end the schedule.
+            scheduleAt(millisUntilNextMonth());
+        }
+    }
+
+    private static void notifyListener(ExpiringCardsListener listener, YearMonth month,
+                                       List<PaymentDetails> expiring, long expiredCount) {
+        try {
+            listener.onExpiringCards(month, expiring, expiredCount);
+        } catch (RuntimeException e) {
+            // A failing listener must not keep the others from receiving the event.
+            LOGGER.log(Level.WARNING, "Expiring-card listener failed for " + month, e);
+        }
+    }
+
+    private synchronized boolean markEmitted(YearMonth month) {
+        if (month.equals(lastEmittedMonth)) {
+            return false;
+        }
+        lastEmittedMonth = month;
+        return true;
+    }
+
+    private static long millisUntilNextMonth() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextMonth = YearMonth.from(now).plusMonths(1).atDay(1).atStartOfDay();
+        return Math.max(0, Duration.between(now, nextMonth).toMillis());
+    }
+}
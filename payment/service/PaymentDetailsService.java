@@ -1,12 +1,18 @@
 package com.myinappbilling.payment.service;
 
+import com.myinappbilling.payment.model.CardBinInfo;
 import com.myinappbilling.payment.model.PaymentDetails;
 import com.myinappbilling.payment.repository.PaymentDetailsRepository;
-import com.myinappbilling.payment.validator.CardValidator;
-import com.myinappbilling.payment.validator.IdentityValidator;
-import com.myinappbilling.payment.validator.PaymentValidator;
-
+import com.myinappbilling.payment.repository.PaymentFacet;
+import com.myinappbilling.payment.util.CardEngine;
+import com.myinappbilling.payment.validator.PaymentValidationEngine;
+import com.myinappbilling.payment.validator.ValidationMode;
+import com.myinappbilling.payment.validator.ValidationResult;
+
+import java.time.YearMonth;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -15,9 +21,15 @@ import java.util.stream.Collectors;
 public class PaymentDetailsService {
 
     private final PaymentDetailsRepository repository;
+    private final PaymentValidationEngine validationEngine;
 
     public PaymentDetailsService(PaymentDetailsRepository repository) {
+        this(repository, PaymentValidationEngine.getDefault());
+    }
+
+    public PaymentDetailsService(PaymentDetailsRepository repository, PaymentValidationEngine validationEngine) {
         this.repository = repository;
+        this.validationEngine = validationEngine;
     }
 
     public boolean savePaymentDetails(PaymentDetails paymentDetails) {
@@ -29,7 +41,7 @@ public class PaymentDetailsService {
     }
 
     public PaymentDetails getPaymentDetailsById(String id) {
-        return repository.findById(id);
+        return repository.findById(id).orElse(null);
     }
 
     public List<PaymentDetails> getAllPaymentDetails() {
@@ -37,68 +49,91 @@ public class PaymentDetailsService {
     }
 
     public List<PaymentDetails> findPaymentsByCountry(String country) {
-        return repository.findAll().stream()
-            .filter(pd -> country.equalsIgnoreCase(pd.getPersonalInfo().getCountry()))
-            .collect(Collectors.toList());
+        return repository.findByFacets(Collections.singletonMap(PaymentFacet.COUNTRY, country));
+    }
+
+    /**
+     * Finds payments matching every given facet value, e.g. country, province and currency.
+     */
+    public List<PaymentDetails> findPaymentsByFacets(Map<PaymentFacet, String> criteria) {
+        return repository.findByFacets(criteria);
+    }
+
+    /**
+     * Counts the values of every facet among the payments matching the filter.
+     */
+    public Map<PaymentFacet, Map<String, Integer>> countPaymentFacets(Map<PaymentFacet, String> filter) {
+        return repository.countFacets(filter);
     }
 
+    /**
+     * Finds payments whose card belongs to the given network or issuer (e.g. "Visa"),
+     * or, when a digit string of up to six digits is given, whose BIN starts with that prefix.
+     */
     public List<PaymentDetails> findPaymentsByCardIssuer(String issuer) {
+        boolean isPrefix = !issuer.isEmpty() && issuer.chars().allMatch(Character::isDigit);
+        CardEngine cardEngine = CardEngine.getDefault();
         return repository.findAll().stream()
-            .filter(pd -> pd.getCardInfo().getCardNumber().startsWith(issuer))
+            .filter(pd -> pd.getCardInfo() != null && pd.getCardInfo().getBin() != null)
+            .filter(pd -> {
+                String bin = pd.getCardInfo().getBin();
+                if (isPrefix) {
+                    return bin.regionMatches(0, issuer, 0, issuer.length());
+                }
+                CardBinInfo binInfo = cardEngine.classify(bin);
+                return binInfo != null && binInfo.matches(issuer);
+            })
             .collect(Collectors.toList());
     }
 
     public boolean updatePaymentDetails(String id, PaymentDetails updatedDetails) {
-        if (!validatePaymentDetails(updatedDetails)) {
+        if (!id.equals(updatedDetails.getPaymentId()) || !validatePaymentDetails(updatedDetails)) {
             return false;
         }
-        repository.update(id, updatedDetails);
-        return true;
+        return repository.update(updatedDetails);
     }
 
     public boolean deletePaymentDetails(String id) {
-        return repository.delete(id);
+        return repository.deleteById(id);
     }
 
     public boolean isCardExpiringSoon(PaymentDetails paymentDetails, int monthsThreshold) {
-        int currentYear = java.time.Year.now().getValue();
-        int currentMonth = java.time.LocalDate.now().getMonthValue();
-
-        int expirationYear = paymentDetails.getCardInfo().getExpirationYear();
-        int expirationMonth = paymentDetails.getCardInfo().getExpirationMonth();
+        return paymentDetails.getCardInfo().getExpirationMonthIndex() - currentMonthIndex() <= monthsThreshold;
+    }
 
-        int totalCurrentMonths = currentYear * 12 + currentMonth;
-        int totalExpirationMonths = expirationYear * 12 + expirationMonth;
+    public long countExpiredCards() {
+        return repository.countExpiringBefore(currentMonthIndex());
+    }
 
-        return (totalExpirationMonths - totalCurrentMonths) <= monthsThreshold;
+    /**
+     * Finds cards that have not expired yet but expire within the given number of months.
+     *
+     * @param monthsThreshold number of months ahead of the current month
+     * @return matching payment details, ordered by expiration month
+     */
+    public List<PaymentDetails> findCardsExpiringWithin(int monthsThreshold) {
+        int currentMonth = currentMonthIndex();
+        return repository.findByExpirationRange(currentMonth, currentMonth + monthsThreshold);
     }
 
-    public long countExpiredCards() {
-        int currentYear = java.time.Year.now().getValue();
-        int currentMonth = java.time.LocalDate.now().getMonthValue();
-        return repository.findAll().stream()
-            .filter(pd -> {
-                int expirationYear = pd.getCardInfo().getExpirationYear();
-                int expirationMonth = pd.getCardInfo().getExpirationMonth();
-                return expirationYear < currentYear || (expirationYear == currentYear && expirationMonth < currentMonth);
-            })
-            .count();
+    /**
+     * Returns the current month as {@code year * 12 + month}, the same scale as
+     * {@link com.myinappbilling.payment.model.CardInfo#getExpirationMonthIndex()}.
+     */
+    static int currentMonthIndex() {
+        YearMonth now = YearMonth.now();
+        return now.getYear() * 12 + now.getMonthValue();
     }
 
     public List<PaymentDetails> searchByEmail(String email) {
-        return repository.findAll().stream()
-            .filter(pd -> pd.getPersonalInfo().getEmail().equalsIgnoreCase(email))
-            .collect(Collectors.toList());
+        return repository.findByEmail(email);
+    }
+
+    public ValidationResult validate(PaymentDetails details, ValidationMode mode) {
+        return validationEngine.validate(details, mode);
     }
 
     private boolean validatePaymentDetails(PaymentDetails details) {
-        return IdentityValidator.validatePersonalInfo(details.getPersonalInfo()) &&
-               CardValidator.validateCardInfo(
-                   details.getCardInfo().getCardNumber(),
-                   details.getCardInfo().getExpirationMonth(),
-                   details.getCardInfo().getExpirationYear(),
-                   details.getCardInfo().getCvv()
-               ) &&
-               PaymentValidator.validatePaymentDetails(details);
+        return validationEngine.isValid(details);
     }
 }
@@ -0,0 +1,330 @@
+package com.myinappbilling.payment.service;
+
+import com.myinappbilling.payment.model.CardInfo;
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PaymentImportReport;
+import com.myinappbilling.payment.model.PersonalInfo;
+import com.myinappbilling.payment.repository.PaymentDetailsRepository;
+import com.myinappbilling.payment.validator.PaymentValidationEngine;
+import com.myinappbilling.payment.validator.ValidationMode;
+import com.myinappbilling.payment.validator.ValidationResult;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PaymentImportService bulk-imports payment profiles from CSV or JSON-lines files.
+ *
+ * <p>The file is streamed in chunks. Each chunk is parsed and validated on a worker pool sized to
+ * the available cores, while the calling thread reads ahead. Validated chunks are then
+ * deduplicated in file order by card number and email, against both the repository and earlier
+ * records of the same file, and saved to the repository one batch per chunk. Rejected lines are
+ * written to a reject file by line number and reason. The original line is not copied, since it
+ * holds the card number and CVV; records that could be parsed add only their masked card number.</p>
+ *
+ * <p>CSV files must start with a header row. Column names, and JSON-lines keys, are the
+ * {@link PersonalInfo}, {@link CardInfo} and {@link PaymentDetails} property names, e.g.
+ * {@code firstName}, {@code cardNumber}, {@code expirationMonth}, {@code currency}, {@code isRecurring}.</p>
+ */
+public class PaymentImportService {
+
+    /**
+     * Input file format.
+     */
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    private static final int CHUNK_SIZE = 2_000;
+
+    private final PaymentDetailsRepository repository;
+    private final PaymentValidationEngine validationEngine;
+    private final int parallelism;
+
+    public PaymentImportService(PaymentDetailsRepository repository) {
+        this(repository, PaymentValidationEngine.getDefault(), Runtime.getRuntime().availableProcessors());
+    }
+
+    public PaymentImportService(PaymentDetailsRepository repository, PaymentValidationEngine validationEngine, int parallelism) {
+        this.repository = repository;
+        this.validationEngine = validationEngine;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Imports every record of the input file.
+     *
+     * @param input      the CSV or JSON-lines file
+     * @param format     the input format
+     * @param rejectFile file that receives one line per rejected record: line number, reason and, for
+     *                   parsed records, the masked card number
+     * @return counts and throughput of the import
+     * @throws IOException if the input cannot be read or the reject file cannot be written
+     */
+    public PaymentImportReport importFile(File input, Format format, File rejectFile) throws IOException {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        ArrayDeque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+        ImportState state = new ImportState();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(input));
+             BufferedWriter rejects = new BufferedWriter(new FileWriter(rejectFile))) {
+            String[] header = null;
+            if (format == Format.CSV) {
+                String headerLine = reader.readLine();
+                if (headerLine == null) {
+                    return new PaymentImportReport(0, 0, 0, 0, System.currentTimeMillis() - startTime);
+                }
+                header = splitCsv(headerLine).toArray(new String[0]);
+                state.lineNumber = 1;
+            }
+
+            List<RawRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                state.lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                chunk.add(new RawRecord(state.lineNumber, line));
+                if (chunk.size() == CHUNK_SIZE) {
+                    submit(executor, inFlight, chunk, format, header);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                    while (inFlight.size() > parallelism * 2) {
+                        complete(inFlight.poll(), state, rejects);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                submit(executor, inFlight, chunk, format, header);
+            }
+            while (!inFlight.isEmpty()) {
+                complete(inFlight.poll(), state, rejects);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new PaymentImportReport(state.total, state.imported, state.invalid, state.duplicates,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private void submit(ExecutorService executor, ArrayDeque<Future<ChunkResult>> inFlight,
+                        List<RawRecord> chunk, Format format, String[] header) {
+        inFlight.add(executor.submit(() -> parseAndValidate(chunk, format, header)));
+    }
+
+    /**
+     * Parses and validates one chunk. Runs on a worker thread.
+     */
+    private ChunkResult parseAndValidate(List<RawRecord> chunk, Format format, String[] header) {
+        ChunkResult result = new ChunkResult(chunk.size());
+        for (RawRecord raw : chunk) {
+            PaymentDetails details;
+            try {
+                details = format == Format.CSV ? parseCsv(raw.line, header) : parseJson(raw.line);
+            } catch (IllegalArgumentException e) {
+                result.rejects.add(raw.reject("parse error: " + e.getMessage()));
+                continue;
+            } catch (JSONException e) {
+                // The message of a JSON syntax error quotes the input, card number included.
+                result.rejects.add(raw.reject("parse error: malformed JSON"));
+                continue;
+            }
+            ValidationResult validation = validationEngine.validate(details, ValidationMode.FAIL_FAST);
+            if (validation.isValid()) {
+                result.valid.add(new ValidRecord(raw, details));
+            } else {
+                result.rejects.add(raw.reject("invalid " + validation.getFirstViolation().getRuleId(), details));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deduplicates and saves one validated chunk. Runs on the calling thread, in file order.
+     */
+    private void complete(Future<ChunkResult> future, ImportState state, BufferedWriter rejects) throws IOException {
+        ChunkResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import chunk failed", e.getCause());
+        }
+
+        state.total += result.valid.size() + result.rejects.size();
+        state.invalid += result.rejects.size();
+        for (String reject : result.rejects) {
+            rejects.write(reject);
+            rejects.newLine();
+        }
+
+        List<PaymentDetails> batch = new ArrayList<>(result.valid.size());
+        Set<String> chunkCards = new HashSet<>();
+        Set<String> chunkEmails = new HashSet<>();
+        for (ValidRecord record : result.valid) {
+            String cardNumber = record.details.getCardInfo().getCardNumber();
+            String cardFingerprint = repository.getCardVault().fingerprint(cardNumber);
+            String email = record.details.getPersonalInfo().getEmail().trim().toLowerCase(Locale.ROOT);
+            if (chunkCards.contains(cardFingerprint) || repository.existsByCardNumber(cardNumber)) {
+                state.duplicates++;
+                rejects.write(record.raw.reject("duplicate card", record.details));
+                rejects.newLine();
+            } else if (chunkEmails.contains(email) || repository.existsByEmail(email)) {
+                state.duplicates++;
+                rejects.write(record.raw.reject("duplicate email", record.details));
+                rejects.newLine();
+            } else {
+                // Only accepted records claim their card and email, so a record rejected for
+                // its email does not make a later record with the same card a duplicate.
+                chunkCards.add(cardFingerprint);
+                chunkEmails.add(email);
+                batch.add(record.details);
+            }
+        }
+        repository.saveAll(batch);
+        state.imported += batch.size();
+    }
+
+    private static PaymentDetails parseCsv(String line, String[] header) {
+        List<String> values = splitCsv(line);
+        if (values.size() != header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " columns but found " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>(header.length * 2);
+        for (int i = 0; i < header.length; i++) {
+            fields.put(header[i].trim(), values.get(i));
+        }
+        return toPaymentDetails(fields::get);
+    }
+
+    private static PaymentDetails parseJson(String line) throws JSONException {
+        JSONObject json = new JSONObject(line);
+        return toPaymentDetails(key -> json.has(key) && !json.isNull(key) ? json.optString(key) : null);
+    }
+
+    private static PaymentDetails toPaymentDetails(FieldSource source) {
+        PersonalInfo personalInfo = new PersonalInfo(
+                source.get("identityCardNumber"), source.get("firstName"), source.get("lastName"),
+                source.get("cellphoneNumber"), source.get("email"), source.get("maritalStatus"),
+                source.get("educationLevel"), source.get("occupation"), source.get("address"),
+                source.get("city"), source.get("province"), source.get("postalCode"), source.get("country"));
+        CardInfo cardInfo = new CardInfo(
+                source.get("accountNumber"), source.get("cardNumber"),
+                parseInt(source.get("expirationMonth"), "expirationMonth"),
+                parseInt(source.get("expirationYear"), "expirationYear"),
+                source.get("cvv"));
+        return new PaymentDetails(personalInfo, cardInfo, source.get("currency"), source.get("paymentMethod"),
+                Boolean.parseBoolean(source.get("isRecurring")));
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a number");
+        }
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted values and doubled quotes inside them.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private interface FieldSource {
+        String get(String key);
+    }
+
+    private static final class RawRecord {
+        final long lineNumber;
+        final String line;
+
+        RawRecord(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        String reject(String reason) {
+            return lineNumber + "\t" + reason;
+        }
+
+        String reject(String reason, PaymentDetails details) {
+            return lineNumber + "\t" + reason + "\t" + details.getCardInfo().getMaskedCardNumber();
+        }
+    }
+
+    private static final class ValidRecord {
+        final RawRecord raw;
+        final PaymentDetails details;
+
+        ValidRecord(RawRecord raw, PaymentDetails details) {
+            this.raw = raw;
+            this.details = details;
+        }
+    }
+
+    private static final class ChunkResult {
+        final List<ValidRecord> valid;
+        final List<String> rejects = new ArrayList<>();
+
+        ChunkResult(int size) {
+            this.valid = new ArrayList<>(size);
+        }
+    }
+
+    private static final class ImportState {
+        long lineNumber;
+        long total;
+        long imported;
+        long invalid;
+        long duplicates;
+    }
+}
@@ -3,26 +3,55 @@ package com.myinappbilling.payment.service;
 import com.myinappbilling.payment.model.PaymentDetails;
 import com.myinappbilling.payment.validator.CardValidator;
 import com.myinappbilling.payment.validator.IdentityValidator;
+import com.myinappbilling.payment.validator.PaymentField;
+import com.myinappbilling.payment.validator.PaymentValidationEngine;
 import com.myinappbilling.payment.validator.PaymentValidator;
+import com.myinappbilling.payment.validator.ValidationMode;
+import com.myinappbilling.payment.validator.ValidationResult;
 
 import java.util.Optional;
+import java.util.regex.Pattern;
 
 /**
  * ValidationService provides centralized validation logic
  * for various aspects of payment processing.
+ * Field checks delegate to the precompiled rules of {@link PaymentValidationEngine}, except the
+ * name and address checks, which keep their own, more lenient, rules.
  */
 public class ValidationService {
 
+    private static final Pattern NAME_PATTERN = Pattern.compile("^[A-Za-z\\s'-]{2,50}$");
+    private static final int MAX_ADDRESS_LENGTH = 100;
+
+    private final PaymentValidationEngine engine;
+
+    public ValidationService() {
+        this(PaymentValidationEngine.getDefault());
+    }
+
+    public ValidationService(PaymentValidationEngine engine) {
+        this.engine = engine;
+    }
+
     /**
-     * Validates the entire payment details object.
+     * Validates the entire payment details object in a single pass.
      *
      * @param details the PaymentDetails object to validate
      * @return true if valid, false otherwise
      */
     public boolean validateAll(PaymentDetails details) {
-        return validatePersonalInfo(details) &&
-               validateCardInfo(details) &&
-               validatePaymentData(details);
+        return engine.isValid(details);
+    }
+
+    /**
+     * Validates the entire payment details object and reports which rules failed.
+     *
+     * @param details the PaymentDetails object to validate
+     * @param mode whether to stop at the first failure or collect all failures
+     * @return the validation result
+     */
+    public ValidationResult validate(PaymentDetails details, ValidationMode mode) {
+        return engine.validate(details, mode);
     }
 
     /**
@@ -71,7 +100,7 @@ public class ValidationService {
      * @return true if the email is in valid format
      */
     public boolean isEmailValid(String email) {
-        return email != null && email.matches("^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,6}$");
+        return engine.isFieldValid(PaymentField.EMAIL, email);
     }
 
     /**
@@ -81,7 +110,7 @@ public class ValidationService {
      * @return true if valid
      */
     public boolean isCellphoneValid(String cellphoneNumber) {
-        return cellphoneNumber != null && cellphoneNumber.matches("^\\+?[0-9]{7,15}$");
+        return engine.isFieldValid(PaymentField.CELLPHONE_NUMBER, cellphoneNumber);
     }
 
     /**
@@ -91,7 +120,7 @@ public class ValidationService {
      * @return true if valid
      */
     public boolean isPostalCodeValid(String postalCode) {
-        return postalCode != null && postalCode.matches("^[A-Za-z0-9\\s-]{3,10}$");
+        return engine.isFieldValid(PaymentField.POSTAL_CODE, postalCode);
     }
 
     /**
@@ -111,7 +140,7 @@ public class ValidationService {
      * @return true if format is correct
      */
     public boolean isCvvValid(String cvv) {
-        return cvv != null && cvv.matches("^[0-9]{3,4}$");
+        return engine.isFieldValid(PaymentField.CVV, cvv);
     }
 
     /**
@@ -121,7 +150,7 @@ public class ValidationService {
      * @return true if not empty and alphabetic
      */
     public boolean isNameValid(String name) {
-        return name != null && name.matches("^[A-Za-z\\s'-]{2,50}$");
+        return name != null && NAME_PATTERN.matcher(name).matches();
     }
 
     /**
@@ -131,6 +160,6 @@ public class ValidationService {
      * @return true if not null and length within limit
      */
     public boolean isAddressValid(String address) {
-        return address != null && address.length() <= 100;
+        return address != null && address.length() <= MAX_ADDRESS_LENGTH;
     }
 } 
@@ -1,6 +1,8 @@
 package com.myinappbilling.payment.ui;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -13,8 +15,13 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.myinappbilling.payment.R;
 import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.validator.PaymentField;
+import com.myinappbilling.payment.validator.ValidationResult;
 import com.myinappbilling.payment.viewmodel.PaymentDetailsViewModel;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Activity for displaying and managing payment details form.
  */
@@ -25,6 +32,7 @@ public class PaymentDetailsActivity extends AppCompatActivity {
     private EditText etEmail, etAddress, etCity, etPostalCode, etCountry, etProvince, etIdentityCardNumber;
     private Button btnSave, btnClear, btnAutoFill;
     private ProgressBar progressBar;
+    private final Map<EditText, PaymentField> validatedFields = new LinkedHashMap<>();
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -36,6 +44,7 @@ public class PaymentDetailsActivity extends AppCompatActivity {
         initViews();
         observeViewModel();
         setupListeners();
+        setupFieldValidation();
     }
 
     private void initViews() {
@@ -78,6 +87,71 @@ public class PaymentDetailsActivity extends AppCompatActivity {
         btnAutoFill.setOnClickListener(v -> autoFillDemoData());
     }
 
+    /**
+     * Validates each field as it is edited, debounced and off the main thread, and shows the
+     * result once it arrives. Losing focus validates the field right away; the view model only
+     * re-runs the rules of a field whose value changed since it was last validated.
+     */
+    private void setupFieldValidation() {
+        validatedFields.put(etFirstName, PaymentField.FIRST_NAME);
+        validatedFields.put(etLastName, PaymentField.LAST_NAME);
+        validatedFields.put(etCardNumber, PaymentField.CARD_NUMBER);
+        validatedFields.put(etCvv, PaymentField.CVV);
+        validatedFields.put(etEmail, PaymentField.EMAIL);
+        validatedFields.put(etAddress, PaymentField.ADDRESS);
+        validatedFields.put(etCity, PaymentField.CITY);
+        validatedFields.put(etPostalCode, PaymentField.POSTAL_CODE);
+        validatedFields.put(etCountry, PaymentField.COUNTRY);
+        validatedFields.put(etProvince, PaymentField.PROVINCE);
+        validatedFields.put(etIdentityCardNumber, PaymentField.IDENTITY_CARD_NUMBER);
+
+        for (Map.Entry<EditText, PaymentField> entry : validatedFields.entrySet()) {
+            EditText editText = entry.getKey();
+            PaymentField field = entry.getValue();
+            editText.setOnFocusChangeListener((v, hasFocus) -> {
+                if (!hasFocus) {
+                    validateField(editText, field);
+                }
+            });
+            editText.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    viewModel.onFieldChanged(field, s.toString().trim());
+                }
+            });
+            viewModel.getFieldValidation(field).observe(this, result -> showFieldResult(editText, result));
+        }
+        viewModel.setFormFields(validatedFields.values());
+    }
+
+    private void showFieldResult(EditText editText, ValidationResult result) {
+        if (result != null) {
+            editText.setError(result.isValid() ? null : result.getFirstViolation().getMessage());
+        }
+    }
+
+    private boolean validateField(EditText editText, PaymentField field) {
+        ValidationResult result = viewModel.validateField(field, editText.getText().toString().trim());
+        showFieldResult(editText, result);
+        return result.isValid();
+    }
+
+    private boolean validateForm() {
+        boolean valid = true;
+        for (Map.Entry<EditText, PaymentField> entry : validatedFields.entrySet()) {
+            valid &= validateField(entry.getKey(), entry.getValue());
+        }
+        return valid;
+    }
+
     private void savePaymentDetails() {
         String firstName = etFirstName.getText().toString().trim();
         String lastName = etLastName.getText().toString().trim();
@@ -98,6 +172,11 @@ public class PaymentDetailsActivity extends AppCompatActivity {
             return;
         }
 
+        if (!validateForm()) {
+            Toast.makeText(this, "Please correct the highlighted fields", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         PaymentDetails paymentDetails = new PaymentDetails();
         paymentDetails.setFirstName(firstName);
         paymentDetails.setLastName(lastName);
@@ -126,6 +205,10 @@ public class PaymentDetailsActivity extends AppCompatActivity {
         etCountry.setText("");
         etProvince.setText("");
         etIdentityCardNumber.setText("");
+        for (EditText editText : validatedFields.keySet()) {
+            editText.setError(null);
+        }
+        viewModel.resetValidation();
     }
 
     private void autoFillDemoData() {
@@ -11,6 +11,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.myinappbilling.payment.R;
+import com.myinappbilling.payment.model.CardInfo;
 import com.myinappbilling.payment.model.PaymentDetails;
 import com.myinappbilling.payment.viewmodel.PaymentDetailsViewModel;
 
@@ -78,14 +79,12 @@ public class PaymentSummaryActivity extends AppCompatActivity {
                 + details.getProvince() + ", " + details.getCountry() + "\n"
                 + "Postal Code: " + details.getPostalCode() + "\n"
                 + "Account: " + details.getAccountNumber() + "\n"
-                + "Card: **** **** **** " + getLast4Digits(details.getCardNumber()) + "\n"
+                + "Card: **** **** **** " + getLast4Digits(details.getCardInfo()) + "\n"
                 + "Expiration: " + details.getExpirationMonth() + "/" + details.getExpirationYear();
     }
 
-    private String getLast4Digits(String cardNumber) {
-        if (cardNumber != null && cardNumber.length() >= 4) {
-            return cardNumber.substring(cardNumber.length() - 4);
-        }
-        return "0000";
+    private String getLast4Digits(CardInfo cardInfo) {
+        String lastFour = cardInfo != null ? cardInfo.getLastFourDigits() : null;
+        return lastFour != null ? lastFour : "0000";
     }
 }
@@ -0,0 +1,193 @@
+package com.myinappbilling.payment.util;
+
+import com.myinappbilling.payment.model.CardBinInfo;
+
+import java.util.stream.IntStream;
+
+/**
+ * CardEngine checks card numbers and classifies them by BIN/IIN prefix.
+ * The Luhn check works on characters directly and allocates nothing. Classification walks a
+ * digit trie built from registered prefixes, so it costs O(prefix length) regardless of how
+ * many prefixes are registered; the longest registered prefix wins. Prefixes should be
+ * registered before an engine is shared between threads.
+ */
+public class CardEngine {
+
+    private static final int MIN_CARD_LENGTH = 13;
+    private static final int MAX_CARD_LENGTH = 19;
+    private static final int PARALLEL_BATCH_THRESHOLD = 10_000;
+
+    private static final CardEngine DEFAULT = createDefault();
+
+    private final Node root = new Node();
+
+    /**
+     * Returns a shared engine preloaded with the major card networks' prefixes. These ranges
+     * identify only the network: the issuing bank is not known from them, so the issuer of
+     * every default entry is null and {@link CardBinInfo#matches(String)} matches only the
+     * network name. Register issuer-level prefixes on an engine of your own to match issuers.
+     *
+     * @return the default engine
+     */
+    public static CardEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Runs the Luhn checksum over a string of digits.
+     *
+     * @param cardNumber the digits to check
+     * @return true if all characters are digits and the checksum is valid
+     */
+    public static boolean luhnCheck(CharSequence cardNumber) {
+        int length = cardNumber.length();
+        if (length == 0) {
+            return false;
+        }
+        int sum = 0;
+        boolean alternate = false;
+        for (int i = length - 1; i >= 0; i--) {
+            int n = cardNumber.charAt(i) - '0';
+            if (n < 0 || n > 9) {
+                return false;
+            }
+            if (alternate) {
+                n *= 2;
+                if (n > 9) {
+                    n -= 9;
+                }
+            }
+            sum += n;
+            alternate = !alternate;
+        }
+        return sum % 10 == 0;
+    }
+
+    /**
+     * Checks that a card number has 13 to 19 digits and a valid Luhn checksum.
+     *
+     * @param cardNumber the card number
+     * @return true if valid
+     */
+    public static boolean isValidCardNumber(CharSequence cardNumber) {
+        return cardNumber != null
+                && cardNumber.length() >= MIN_CARD_LENGTH
+                && cardNumber.length() <= MAX_CARD_LENGTH
+                && luhnCheck(cardNumber);
+    }
+
+    /**
+     * Validates many card numbers at once, in parallel for large batches.
+     *
+     * @param cardNumbers the card numbers; null entries are invalid
+     * @return validity per input position
+     */
+    public static boolean[] validateAll(String[] cardNumbers) {
+        boolean[] results = new boolean[cardNumbers.length];
+        IntStream indexes = IntStream.range(0, cardNumbers.length);
+        if (cardNumbers.length >= PARALLEL_BATCH_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> results[i] = isValidCardNumber(cardNumbers[i]));
+        return results;
+    }
+
+    /**
+     * Registers a BIN/IIN prefix. A longer prefix overrides a shorter one it starts with.
+     *
+     * @param prefix the digit prefix, e.g. "4" or "2221"
+     * @param info   what the prefix identifies
+     */
+    public synchronized void registerPrefix(String prefix, CardBinInfo info) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            int digit = prefix.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("BIN prefix must contain digits only: " + prefix);
+            }
+            if (node.children[digit] == null) {
+                node.children[digit] = new Node();
+            }
+            node = node.children[digit];
+        }
+        node.info = info;
+    }
+
+    /**
+     * Registers every prefix in an inclusive numeric range of equal-length prefixes, e.g. 2221 to 2720.
+     *
+     * @param from the first prefix
+     * @param to   the last prefix
+     * @param info what the prefixes identify
+     */
+    public void registerPrefixRange(int from, int to, CardBinInfo info) {
+        for (int prefix = from; prefix <= to; prefix++) {
+            registerPrefix(Integer.toString(prefix), info);
+        }
+    }
+
+    /**
+     * Classifies a card number by its longest registered prefix.
+     *
+     * @param cardNumber the card number
+     * @return what the prefix identifies, or null if no prefix matches
+     */
+    public CardBinInfo classify(CharSequence cardNumber) {
+        if (cardNumber == null) {
+            return null;
+        }
+        Node node = root;
+        CardBinInfo match = null;
+        for (int i = 0; i < cardNumber.length(); i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            node = node.children[digit];
+            if (node == null) {
+                break;
+            }
+            if (node.info != null) {
+                match = node.info;
+            }
+        }
+        return match;
+    }
+
+    private static CardEngine createDefault() {
+        CardEngine engine = new CardEngine();
+        CardBinInfo visa = new CardBinInfo("Visa", null, CardBinInfo.CardType.UNKNOWN);
+        CardBinInfo mastercard = new CardBinInfo("Mastercard", null, CardBinInfo.CardType.UNKNOWN);
+        CardBinInfo amex = new CardBinInfo("American Express", null, CardBinInfo.CardType.CREDIT);
+        CardBinInfo discover = new CardBinInfo("Discover", null, CardBinInfo.CardType.UNKNOWN);
+        CardBinInfo diners = new CardBinInfo("Diners Club", null, CardBinInfo.CardType.CREDIT);
+        CardBinInfo jcb = new CardBinInfo("JCB", null, CardBinInfo.CardType.UNKNOWN);
+        CardBinInfo unionPay = new CardBinInfo("UnionPay", null, CardBinInfo.CardType.UNKNOWN);
+        CardBinInfo maestro = new CardBinInfo("Maestro", null, CardBinInfo.CardType.DEBIT);
+
+        engine.registerPrefix("4", visa);
+        engine.registerPrefixRange(51, 55, mastercard);
+        engine.registerPrefixRange(2221, 2720, mastercard);
+        engine.registerPrefix("34", amex);
+        engine.registerPrefix("37", amex);
+        engine.registerPrefix("6011", discover);
+        engine.registerPrefixRange(644, 649, discover);
+        engine.registerPrefix("65", discover);
+        engine.registerPrefixRange(300, 305, diners);
+        engine.registerPrefix("36", diners);
+        engine.registerPrefix("38", diners);
+        engine.registerPrefixRange(3528, 3589, jcb);
+        engine.registerPrefix("62", unionPay);
+        engine.registerPrefix("50", maestro);
+        engine.registerPrefixRange(56, 58, maestro);
+        return engine;
+    }
+
+    /**
+     * Trie node with one child per decimal digit.
+     */
+    private static final class Node {
+        final Node[] children = new Node[10];
+        volatile CardBinInfo info;
+    }
+}
@@ -0,0 +1,365 @@
+package com.myinappbilling.payment.util;
+
+import com.myinappbilling.payment.model.CardInfo;
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PersonalInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * PaymentDetailsCodec converts {@link PaymentDetails} to and from a compact binary form.
+ *
+ * <p>An encoded record starts with a schema version byte, followed by field-tagged values. Each
+ * tag is a varint holding {@code fieldNumber << 3 | wireType}; wire type 0 is a varint, wire
+ * type 2 a length-prefixed byte string (UTF-8 text or a nested record). Null fields are left out
+ * and unknown fields are skipped when decoding, so fields can be added without breaking older
+ * data. Timestamps are stored as zig-zag encoded epoch milliseconds in UTC. The CVV is never
+ * encoded.</p>
+ */
+public final class PaymentDetailsCodec {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_BYTES = 2;
+
+    // PaymentDetails fields
+    private static final int PAYMENT_ID = 1;
+    private static final int PERSONAL_INFO = 2;
+    private static final int CARD_INFO = 3;
+    private static final int CURRENCY = 4;
+    private static final int PAYMENT_METHOD = 5;
+    private static final int RECURRING = 6;
+    private static final int CREATED_AT = 7;
+    private static final int UPDATED_AT = 8;
+
+    // PersonalInfo fields, in constructor order
+    private static final int PERSONAL_FIELD_COUNT = 13;
+
+    // CardInfo fields
+    private static final int ACCOUNT_NUMBER = 1;
+    private static final int CARD_NUMBER = 2;
+    private static final int EXPIRATION_MONTH = 3;
+    private static final int EXPIRATION_YEAR = 4;
+    private static final int CARD_TOKEN = 5;
+    private static final int BIN = 6;
+    private static final int LAST_FOUR_DIGITS = 7;
+
+    private PaymentDetailsCodec() {
+    }
+
+    /**
+     * Encodes payment details.
+     *
+     * @param details the payment details
+     * @return the encoded bytes
+     */
+    public static byte[] encode(PaymentDetails details) {
+        Writer out = new Writer(256);
+        out.writeByte(SCHEMA_VERSION);
+        out.writeString(PAYMENT_ID, details.getPaymentId());
+        if (details.getPersonalInfo() != null) {
+            out.writeBytes(PERSONAL_INFO, encodePersonalInfo(details.getPersonalInfo()));
+        }
+        if (details.getCardInfo() != null) {
+            out.writeBytes(CARD_INFO, encodeCardInfo(details.getCardInfo()));
+        }
+        out.writeString(CURRENCY, details.getCurrency());
+        out.writeString(PAYMENT_METHOD, details.getPaymentMethod());
+        out.writeVarintField(RECURRING, details.isRecurring() ? 1 : 0);
+        writeTimestamp(out, CREATED_AT, details.getCreatedAt());
+        writeTimestamp(out, UPDATED_AT, details.getUpdatedAt());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes payment details.
+     *
+     * @param data the encoded bytes
+     * @return the payment details
+     * @throws IllegalArgumentException if the data is malformed or has an unsupported schema version
+     */
+    public static PaymentDetails decode(byte[] data) {
+        Reader in = new Reader(data, 0, data.length);
+        int version = in.readByte();
+        if (version != SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Unsupported schema version " + version);
+        }
+        String paymentId = null;
+        PersonalInfo personalInfo = null;
+        CardInfo cardInfo = null;
+        String currency = null;
+        String paymentMethod = null;
+        boolean recurring = false;
+        LocalDateTime createdAt = null;
+        LocalDateTime updatedAt = null;
+        while (in.hasRemaining()) {
+            int tag = (int) in.readVarint();
+            switch (tag >>> 3) {
+                case PAYMENT_ID:
+                    paymentId = in.readString(tag);
+                    break;
+                case PERSONAL_INFO:
+                    personalInfo = decodePersonalInfo(in.readNested(tag));
+                    break;
+                case CARD_INFO:
+                    cardInfo = decodeCardInfo(in.readNested(tag));
+                    break;
+                case CURRENCY:
+                    currency = in.readString(tag);
+                    break;
+                case PAYMENT_METHOD:
+                    paymentMethod = in.readString(tag);
+                    break;
+                case RECURRING:
+                    recurring = in.readVarintField(tag) != 0;
+                    break;
+                case CREATED_AT:
+                    createdAt = toDateTime(in.readVarintField(tag));
+                    break;
+                case UPDATED_AT:
+                    updatedAt = toDateTime(in.readVarintField(tag));
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        if (paymentId == null) {
+            throw new IllegalArgumentException("Record has no payment ID");
+        }
+        return new PaymentDetails(paymentId, personalInfo, cardInfo, currency, paymentMethod, recurring, createdAt, updatedAt);
+    }
+
+    private static byte[] encodePersonalInfo(PersonalInfo info) {
+        String[] values = {
+                info.getIdentityCardNumber(), info.getFirstName(), info.getLastName(), info.getCellphoneNumber(),
+                info.getEmail(), info.getMaritalStatus(), info.getEducationLevel(), info.getOccupation(),
+                info.getAddress(), info.getCity(), info.getProvince(), info.getPostalCode(), info.getCountry()
+        };
+        Writer out = new Writer(160);
+        for (int i = 0; i < values.length; i++) {
+            out.writeString(i + 1, values[i]);
+        }
+        return out.toByteArray();
+    }
+
+    private static PersonalInfo decodePersonalInfo(Reader in) {
+        String[] values = new String[PERSONAL_FIELD_COUNT];
+        while (in.hasRemaining()) {
+            int tag = (int) in.readVarint();
+            int field = tag >>> 3;
+            if (field >= 1 && field <= PERSONAL_FIELD_COUNT) {
+                values[field - 1] = in.readString(tag);
+            } else {
+                in.skip(tag);
+            }
+        }
+        return new PersonalInfo(values[0], values[1], values[2], values[3], values[4], values[5], values[6],
+                values[7], values[8], values[9], values[10], values[11], values[12]);
+    }
+
+    private static byte[] encodeCardInfo(CardInfo card) {
+        Writer out = new Writer(64);
+        out.writeString(ACCOUNT_NUMBER, card.getAccountNumber());
+        out.writeString(CARD_NUMBER, card.getCardNumber());
+        out.writeVarintField(EXPIRATION_MONTH, card.getExpirationMonth());
+        out.writeVarintField(EXPIRATION_YEAR, card.getExpirationYear());
+        if (card.isTokenized()) {
+            out.writeString(CARD_TOKEN, card.getCardToken());
+            out.writeString(BIN, card.getBin());
+            out.writeString(LAST_FOUR_DIGITS, card.getLastFourDigits());
+        }
+        return out.toByteArray();
+    }
+
+    private static CardInfo decodeCardInfo(Reader in) {
+        String accountNumber = null;
+        String cardNumber = null;
+        int expirationMonth = 0;
+        int expirationYear = 0;
+        String cardToken = null;
+        String bin = null;
+        String lastFourDigits = null;
+        while (in.hasRemaining()) {
+            int tag = (int) in.readVarint();
+            switch (tag >>> 3) {
+                case ACCOUNT_NUMBER:
+                    accountNumber = in.readString(tag);
+                    break;
+                case CARD_NUMBER:
+                    cardNumber = in.readString(tag);
+                    break;
+                case EXPIRATION_MONTH:
+                    expirationMonth = (int) in.readVarintField(tag);
+                    break;
+                case EXPIRATION_YEAR:
+                    expirationYear = (int) in.readVarintField(tag);
+                    break;
+                case CARD_TOKEN:
+                    cardToken = in.readString(tag);
+                    break;
+                case BIN:
+                    bin = in.readString(tag);
+                    break;
+                case LAST_FOUR_DIGITS:
+                    lastFourDigits = in.readString(tag);
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        if (cardToken != null && cardNumber == null) {
+            return CardInfo.tokenized(accountNumber, expirationMonth, expirationYear, cardToken, bin, lastFourDigits);
+        }
+        return new CardInfo(accountNumber, cardNumber, expirationMonth, expirationYear, null);
+    }
+
+    private static void writeTimestamp(Writer out, int field, LocalDateTime timestamp) {
+        if (timestamp != null) {
+            long millis = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+            out.writeVarintField(field, (millis << 1) ^ (millis >> 63));
+        }
+    }
+
+    private static LocalDateTime toDateTime(long zigZag) {
+        long millis = (zigZag >>> 1) ^ -(zigZag & 1);
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        Writer(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarintField(int field, long value) {
+            writeVarint((field << 3) | WIRE_VARINT);
+            writeVarint(value);
+        }
+
+        void writeString(int field, String value) {
+            if (value != null) {
+                writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        void writeBytes(int field, byte[] bytes) {
+            writeVarint((field << 3) | WIRE_BYTES);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+
+        Reader(byte[] data, int offset, int limit) {
+            this.data = data;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        boolean hasRemaining() {
+            return position < limit;
+        }
+
+        int readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Truncated record");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readVarintField(int tag) {
+            expectWireType(tag, WIRE_VARINT);
+            return readVarint();
+        }
+
+        String readString(int tag) {
+            expectWireType(tag, WIRE_BYTES);
+            int length = readLength();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        Reader readNested(int tag) {
+            expectWireType(tag, WIRE_BYTES);
+            int length = readLength();
+            Reader nested = new Reader(data, position, position + length);
+            position += length;
+            return nested;
+        }
+
+        void skip(int tag) {
+            int wireType = tag & 0x7;
+            if (wireType == WIRE_VARINT) {
+                readVarint();
+            } else if (wireType == WIRE_BYTES) {
+                position += readLength();
+            } else {
+                throw new IllegalArgumentException("Unknown wire type " + wireType);
+            }
+        }
+
+        private int readLength() {
+            long length = readVarint();
+            if (length < 0 || length > limit - position) {
+                throw new IllegalArgumentException("Truncated record");
+            }
+            return (int) length;
+        }
+
+        private void expectWireType(int tag, int wireType) {
+            if ((tag & 0x7) != wireType) {
+                throw new IllegalArgumentException("Unexpected wire type for field " + (tag >>> 3));
+            }
+        }
+    }
+}
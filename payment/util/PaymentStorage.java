@@ -0,0 +1,72 @@
+package com.myinappbilling.payment.util;
+
+import android.content.Context;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import com.myinappbilling.payment.repository.CardVault;
+import com.myinappbilling.payment.repository.PaymentDetailsRepository;
+import com.myinappbilling.payment.repository.PaymentSegmentStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+/**
+ * PaymentStorage holds the application-wide {@link PaymentDetailsRepository}, backed by a
+ * {@link PaymentSegmentStore} in the app's private files directory.
+ *
+ * <p>The segments are encrypted with an AES key that is generated in the Android Keystore on
+ * first use and never leaves it, so the segment files cannot be read off the device.</p>
+ */
+public final class PaymentStorage {
+
+    private static final String KEYSTORE_PROVIDER = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "payment_segments";
+    private static final String SEGMENT_DIRECTORY = "payment_segments";
+
+    private static PaymentDetailsRepository repository;
+
+    private PaymentStorage() {
+    }
+
+    /**
+     * Returns the shared repository, creating it and its storage key on first use.
+     *
+     * @param context any context of the application
+     * @return the application-wide payment details repository
+     */
+    public static synchronized PaymentDetailsRepository getRepository(Context context) {
+        if (repository == null) {
+            File directory = new File(context.getApplicationContext().getFilesDir(), SEGMENT_DIRECTORY);
+            repository = new PaymentDetailsRepository(new CardVault(), new PaymentSegmentStore(directory, getOrCreateKey()));
+        }
+        return repository;
+    }
+
+    private static SecretKey getOrCreateKey() {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE_PROVIDER);
+            keyStore.load(null);
+            Key existing = keyStore.getKey(KEY_ALIAS, null);
+            if (existing instanceof SecretKey) {
+                return (SecretKey) existing;
+            }
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE_PROVIDER);
+            generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            return generator.generateKey();
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException("Payment storage key is not available", e);
+        }
+    }
+}
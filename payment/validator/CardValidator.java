@@ -1,5 +1,7 @@
 package com.myinappbilling.payment.validator;
 
+import com.myinappbilling.payment.util.CardEngine;
+
 import java.util.regex.Pattern;
 import java.time.YearMonth;
 
@@ -15,7 +17,7 @@ public class CardValidator {
     private static final Pattern COUNTRY_PATTERN = Pattern.compile("^[A-Za-z ]{2,50}$");
     private static final Pattern POSTAL_CODE_PATTERN = Pattern.compile("^\\d{4,10}$");
     private static final Pattern ADDRESS_PATTERN = Pattern.compile("^[A-Za-z0-9\\s,\\-']{5,100}$");
-    private static final Pattern CITY_PROVINCE_PATTERN = Pattern.compile("^[A-Za-z\\s\-']{2,50}$");
+    private static final Pattern CITY_PROVINCE_PATTERN = Pattern.compile("^[A-Za-z\\s\\-']{2,50}$");
     private static final Pattern CARD_HOLDER_NAME_PATTERN = Pattern.compile("^[A-Za-z\\s]{2,50}$");
 
     public static boolean isValidCardNumber(String cardNumber) {
@@ -72,19 +74,6 @@ public class CardValidator {
     }
 
     private static boolean luhnCheck(String cardNumber) {
-        int sum = 0;
-        boolean alternate = false;
-        for (int i = cardNumber.length() - 1; i >= 0; i--) {
-            int n = Integer.parseInt(cardNumber.substring(i, i + 1));
-            if (alternate) {
-                n *= 2;
-                if (n > 9) {
-                    n = (n % 10) + 1;
-                }
-            }
-            sum += n;
-            alternate = !alternate;
-        }
-        return (sum % 10 == 0);
+        return CardEngine.luhnCheck(cardNumber);
     }
 }
@@ -0,0 +1,140 @@
+package com.myinappbilling.payment.validator;
+
+import com.myinappbilling.payment.model.PaymentDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * FormValidationState remembers the last validated value and result of every field of a form,
+ * so each validation pass only re-runs the rules of fields whose value changed since the
+ * previous pass. Combined with a memoizing {@link PaymentValidationEngine}, switching back to a
+ * value that was seen before is a cache lookup as well.
+ *
+ * <p>Values are not kept: each field remembers an HMAC-SHA256 fingerprint of its last value,
+ * keyed with a random secret of this instance, so the card number and CVV a user typed do not
+ * linger in memory and cannot be recovered by hashing candidate numbers.</p>
+ *
+ * <p>Each screen keeps its own instance. Methods are synchronized, so fields may be validated
+ * on a background thread while the screen reads the combined state.</p>
+ */
+public class FormValidationState {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final PaymentValidationEngine engine;
+    private final Mac fingerprintMac;
+    private final byte[][] lastFingerprints;
+    private final ValidationResult[] lastResults;
+
+    public FormValidationState(PaymentValidationEngine engine) {
+        this.engine = engine;
+        int fieldCount = PaymentField.values().length;
+        this.lastFingerprints = new byte[fieldCount][];
+        this.lastResults = new ValidationResult[fieldCount];
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        try {
+            this.fingerprintMac = Mac.getInstance(HMAC_ALGORITHM);
+            fingerprintMac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " not available", e);
+        }
+    }
+
+    /**
+     * Validates one field, reusing the previous result if the value has not changed.
+     *
+     * @param field the field
+     * @param value the current value
+     * @return the result for that field
+     */
+    public synchronized ValidationResult validateField(PaymentField field, String value) {
+        int index = field.ordinal();
+        byte[] fingerprint = fingerprint(value);
+        ValidationResult previous = lastResults[index];
+        if (previous != null && Arrays.equals(lastFingerprints[index], fingerprint)) {
+            return previous;
+        }
+        ValidationResult result = engine.validateField(field, value);
+        lastFingerprints[index] = fingerprint;
+        lastResults[index] = result;
+        return result;
+    }
+
+    /**
+     * Validates every planned field of the payment details, re-running only changed fields.
+     * The card number and CVV of a vaulted card are skipped, as in {@link PaymentValidationEngine}.
+     *
+     * @param details the payment details
+     * @return the combined result with one violation per failing field
+     */
+    public synchronized ValidationResult validate(PaymentDetails details) {
+        List<ValidationResult.Violation> violations = null;
+        boolean vaulted = PaymentValidationEngine.isVaulted(details);
+        for (PaymentField field : engine.getPlannedFields()) {
+            if (vaulted && PaymentValidationEngine.isCardSecret(field)) {
+                continue;
+            }
+            ValidationResult result = validateField(field, field.extract(details));
+            if (!result.isValid()) {
+                if (violations == null) {
+                    violations = new ArrayList<>();
+                }
+                violations.addAll(result.getViolations());
+            }
+        }
+        return violations == null ? ValidationResult.valid() : ValidationResult.of(violations);
+    }
+
+    /**
+     * Returns the last result of a field, or null if it has not been validated yet.
+     */
+    public synchronized ValidationResult getLastResult(PaymentField field) {
+        return lastResults[field.ordinal()];
+    }
+
+    /**
+     * Combines the remembered per-field results without running any rule.
+     *
+     * @param fields the fields of the form
+     * @return true if every field has been validated and its last result is valid
+     */
+    public synchronized boolean isValid(Collection<PaymentField> fields) {
+        for (PaymentField field : fields) {
+            ValidationResult result = lastResults[field.ordinal()];
+            if (result == null || !result.isValid()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets all remembered values, e.g. when the form is cleared, and clears the engine's
+     * outcome cache along with them.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < lastFingerprints.length; i++) {
+            lastFingerprints[i] = null;
+            lastResults[i] = null;
+        }
+        engine.clearCache();
+    }
+
+    /**
+     * Returns the keyed fingerprint of a value, or null for a null value. Must be called while
+     * holding the monitor, since the MAC is not thread-safe.
+     */
+    private byte[] fingerprint(String value) {
+        return value == null ? null : fingerprintMac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -4,20 +4,24 @@ import java.util.regex.Pattern;
 
 /**
  * IdentityValidator provides utility methods for validating identity-related fields.
+ * The composite checks memoize per-field outcomes in a shared {@link ValidationCache};
+ * since that holds personal data, call {@link #clearCache()} once the form it came from is done.
  */
 public class IdentityValidator {
 
-    private static final Pattern IDENTITY_CARD_PATTERN = Pattern.compile("^[A-Za-z0-9\-]{5,20}$");
-    private static final Pattern NAME_PATTERN = Pattern.compile("^[A-Za-z\-' ]{2,50}$");
+    private static final ValidationCache CACHE = new ValidationCache(512);
+
+    private static final Pattern IDENTITY_CARD_PATTERN = Pattern.compile("^[A-Za-z0-9\\-]{5,20}$");
+    private static final Pattern NAME_PATTERN = Pattern.compile("^[A-Za-z\\-' ]{2,50}$");
     private static final Pattern MARITAL_STATUS_PATTERN = Pattern.compile("^(single|married|divorced|widowed)$", Pattern.CASE_INSENSITIVE);
     private static final Pattern EDUCATION_LEVEL_PATTERN = Pattern.compile("^(high school|associate|bachelor|master|doctorate)$", Pattern.CASE_INSENSITIVE);
-    private static final Pattern OCCUPATION_PATTERN = Pattern.compile("^[\w\s\-']{2,50}$");
-    private static final Pattern CITY_PATTERN = Pattern.compile("^[A-Za-z\s\-]{2,50}$");
-    private static final Pattern PROVINCE_PATTERN = Pattern.compile("^[A-Za-z\s\-]{2,50}$");
-    private static final Pattern COUNTRY_PATTERN = Pattern.compile("^[A-Za-z\s\-]{2,50}$");
-    private static final Pattern POSTAL_CODE_PATTERN = Pattern.compile("^[A-Za-z0-9\s\-]{3,10}$");
-    private static final Pattern PHONE_PATTERN = Pattern.compile("^\+?[0-9]{7,15}$");
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\w.-]+@[\w.-]+\.[A-Za-z]{2,6}$");
+    private static final Pattern OCCUPATION_PATTERN = Pattern.compile("^[\\w\\s\\-']{2,50}$");
+    private static final Pattern CITY_PATTERN = Pattern.compile("^[A-Za-z\\s\\-]{2,50}$");
+    private static final Pattern PROVINCE_PATTERN = Pattern.compile("^[A-Za-z\\s\\-]{2,50}$");
+    private static final Pattern COUNTRY_PATTERN = Pattern.compile("^[A-Za-z\\s\\-]{2,50}$");
+    private static final Pattern POSTAL_CODE_PATTERN = Pattern.compile("^[A-Za-z0-9\\s\\-]{3,10}$");
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^\\+?[0-9]{7,15}$");
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\\w.-]+@[\\w.-]+\\.[A-Za-z]{2,6}$");
 
     public static boolean isValidIdentityCardNumber(String identityCardNumber) {
         return identityCardNumber != null && IDENTITY_CARD_PATTERN.matcher(identityCardNumber).matches();
@@ -75,25 +79,32 @@ public class IdentityValidator {
         return value != null && !value.trim().isEmpty();
     }
 
+    /**
+     * Drops the memoized outcomes of the composite checks and the values they are keyed by.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
     public static boolean validateIdentityInfo(String identityCardNumber, String firstName, String lastName) {
-        return isValidIdentityCardNumber(identityCardNumber) &&
-               isValidFirstName(firstName) &&
-               isValidLastName(lastName);
+        return CACHE.test("identity.identityCard", identityCardNumber, IdentityValidator::isValidIdentityCardNumber) &&
+               CACHE.test("identity.name", firstName, IdentityValidator::isValidName) &&
+               CACHE.test("identity.name", lastName, IdentityValidator::isValidName);
     }
 
     public static boolean validateExtendedIdentityInfo(String identityCardNumber, String firstName, String lastName, String maritalStatus, String educationLevel, String occupation) {
         return validateIdentityInfo(identityCardNumber, firstName, lastName) &&
-               isValidMaritalStatus(maritalStatus) &&
-               isValidEducationLevel(educationLevel) &&
-               isValidOccupation(occupation);
+               CACHE.test("identity.maritalStatus", maritalStatus, IdentityValidator::isValidMaritalStatus) &&
+               CACHE.test("identity.educationLevel", educationLevel, IdentityValidator::isValidEducationLevel) &&
+               CACHE.test("identity.occupation", occupation, IdentityValidator::isValidOccupation);
     }
 
     public static boolean validateContactInfo(String phone, String email, String city, String province, String country, String postalCode) {
-        return isValidPhoneNumber(phone) &&
-               isValidEmail(email) &&
-               isValidCity(city) &&
-               isValidProvince(province) &&
-               isValidCountry(country) &&
-               isValidPostalCode(postalCode);
+        return CACHE.test("identity.phone", phone, IdentityValidator::isValidPhoneNumber) &&
+               CACHE.test("identity.email", email, IdentityValidator::isValidEmail) &&
+               CACHE.test("identity.city", city, IdentityValidator::isValidCity) &&
+               CACHE.test("identity.province", province, IdentityValidator::isValidProvince) &&
+               CACHE.test("identity.country", country, IdentityValidator::isValidCountry) &&
+               CACHE.test("identity.postalCode", postalCode, IdentityValidator::isValidPostalCode);
     }
 } 
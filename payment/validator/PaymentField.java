@@ -0,0 +1,62 @@
+package com.myinappbilling.payment.validator;
+
+import com.myinappbilling.payment.model.CardInfo;
+import com.myinappbilling.payment.model.PaymentDetails;
+import com.myinappbilling.payment.model.PersonalInfo;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * PaymentField enumerates the validated fields of a {@link PaymentDetails} object and knows
+ * how to read each one, so a validation plan can be indexed by field.
+ */
+public enum PaymentField {
+
+    IDENTITY_CARD_NUMBER(personal(PersonalInfo::getIdentityCardNumber)),
+    FIRST_NAME(personal(PersonalInfo::getFirstName)),
+    LAST_NAME(personal(PersonalInfo::getLastName)),
+    CELLPHONE_NUMBER(personal(PersonalInfo::getCellphoneNumber)),
+    EMAIL(personal(PersonalInfo::getEmail)),
+    MARITAL_STATUS(personal(PersonalInfo::getMaritalStatus)),
+    EDUCATION_LEVEL(personal(PersonalInfo::getEducationLevel)),
+    OCCUPATION(personal(PersonalInfo::getOccupation)),
+    ADDRESS(personal(PersonalInfo::getAddress)),
+    CITY(personal(PersonalInfo::getCity)),
+    PROVINCE(personal(PersonalInfo::getProvince)),
+    POSTAL_CODE(personal(PersonalInfo::getPostalCode)),
+    COUNTRY(personal(PersonalInfo::getCountry)),
+    ACCOUNT_NUMBER(card(CardInfo::getAccountNumber)),
+    CARD_NUMBER(card(CardInfo::getCardNumber)),
+    /**
+     * Card expiration as {@code yyyy-MM}, e.g. {@code 2027-04}.
+     */
+    EXPIRATION_DATE(card(c -> String.format(Locale.ROOT, "%04d-%02d", c.getExpirationYear(), c.getExpirationMonth()))),
+    CVV(card(CardInfo::getCvv)),
+    CURRENCY(PaymentDetails::getCurrency),
+    PAYMENT_METHOD(PaymentDetails::getPaymentMethod);
+
+    private final Function<PaymentDetails, String> extractor;
+
+    PaymentField(Function<PaymentDetails, String> extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * Reads this field from the payment details.
+     *
+     * @param details the payment details
+     * @return the field value, or null if it or its parent object is missing
+     */
+    public String extract(PaymentDetails details) {
+        return details == null ? null : extractor.apply(details);
+    }
+
+    private static Function<PaymentDetails, String> personal(Function<PersonalInfo, String> getter) {
+        return details -> details.getPersonalInfo() == null ? null : getter.apply(details.getPersonalInfo());
+    }
+
+    private static Function<PaymentDetails, String> card(Function<CardInfo, String> getter) {
+        return details -> details.getCardInfo() == null ? null : getter.apply(details.getCardInfo());
+    }
+}
@@ -0,0 +1,232 @@
+package com.myinappbilling.payment.validator;
+
+import com.myinappbilling.payment.model.CardInfo;
+import com.myinappbilling.payment.model.PaymentDetails;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PaymentValidationEngine validates {@link PaymentDetails} against a set of field rules compiled
+ * once into a plan indexed by {@link PaymentField}. Each field is read exactly once and checked
+ * against its own rules; checking a field stops at its first failed rule.
+ *
+ * <p>The default rule set consolidates the checks of {@link IdentityValidator},
+ * {@link CardValidator} and {@link PaymentValidator}, so payment details no longer need to
+ * pass through all three in sequence.</p>
+ *
+ * <p>An engine may be given a {@link ValidationCache}, in which case rule outcomes are memoized
+ * by rule and field value. The card number and CVV rules are never cached, so the cache does not
+ * hold card data. Since it does hold other field values, a memoizing engine belongs to one form
+ * and is cleared when that form is reset.</p>
+ *
+ * <p>A card that carries a vault token was checked when it was entered and vaulted. Its card
+ * number and CVV rules are skipped: the stored copy has neither, and the CVV is never kept.</p>
+ */
+public class PaymentValidationEngine {
+
+    private static final ValidationRule[] NO_RULES = new ValidationRule[0];
+
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final PaymentValidationEngine DEFAULT = new PaymentValidationEngine(defaultRules());
+
+    private final ValidationRule[][] rulesByField;
+    private final PaymentField[] plannedFields;
+    private final ValidationCache cache;
+
+    /**
+     * Compiles the given rules into a field-indexed plan. Rules for a field run in the given order.
+     *
+     * @param rules the rules to enforce
+     */
+    public PaymentValidationEngine(List<ValidationRule> rules) {
+        this(rules, null);
+    }
+
+    /**
+     * Compiles the given rules into a field-indexed plan whose outcomes are memoized in the cache.
+     *
+     * @param rules the rules to enforce
+     * @param cache the outcome cache, or null to disable memoization
+     */
+    public PaymentValidationEngine(List<ValidationRule> rules, ValidationCache cache) {
+        this.cache = cache;
+        PaymentField[] fields = PaymentField.values();
+        List<List<ValidationRule>> grouped = new ArrayList<>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            grouped.add(new ArrayList<>());
+        }
+        for (ValidationRule rule : rules) {
+            grouped.get(rule.getField().ordinal()).add(rule);
+        }
+        rulesByField = new ValidationRule[fields.length][];
+        List<PaymentField> planned = new ArrayList<>();
+        for (PaymentField field : fields) {
+            List<ValidationRule> fieldRules = grouped.get(field.ordinal());
+            rulesByField[field.ordinal()] = fieldRules.isEmpty() ? NO_RULES : fieldRules.toArray(NO_RULES);
+            if (!fieldRules.isEmpty()) {
+                planned.add(field);
+            }
+        }
+        plannedFields = planned.toArray(new PaymentField[0]);
+    }
+
+    /**
+     * Returns the shared engine with the default payment rules.
+     *
+     * @return the default engine
+     */
+    public static PaymentValidationEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates an engine with the default payment rules and its own bounded outcome cache, for a
+     * form screen that validates the same values repeatedly.
+     *
+     * @return a new memoizing engine
+     */
+    public static PaymentValidationEngine newCachedDefault() {
+        return new PaymentValidationEngine(defaultRules(), new ValidationCache(DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * Drops the memoized rule outcomes, and with them the field values they are keyed by.
+     */
+    public void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the fields that have at least one rule, in declaration order
+     */
+    public PaymentField[] getPlannedFields() {
+        return plannedFields.clone();
+    }
+
+    /**
+     * Validates payment details in a single pass over the planned fields.
+     *
+     * @param details the payment details to validate
+     * @param mode    whether to stop at the first failure or collect all of them
+     * @return the validation result
+     */
+    public ValidationResult validate(PaymentDetails details, ValidationMode mode) {
+        List<ValidationResult.Violation> violations = null;
+        boolean vaulted = isVaulted(details);
+        for (PaymentField field : plannedFields) {
+            if (vaulted && isCardSecret(field)) {
+                continue;
+            }
+            ValidationRule failed = firstFailedRule(field, field.extract(details));
+            if (failed != null) {
+                if (violations == null) {
+                    violations = new ArrayList<>();
+                }
+                violations.add(new ValidationResult.Violation(failed));
+                if (mode == ValidationMode.FAIL_FAST) {
+                    break;
+                }
+            }
+        }
+        return violations == null ? ValidationResult.valid() : ValidationResult.of(violations);
+    }
+
+    /**
+     * Validates payment details, stopping at the first failed rule.
+     *
+     * @param details the payment details to validate
+     * @return true if every rule passes
+     */
+    public boolean isValid(PaymentDetails details) {
+        return validate(details, ValidationMode.FAIL_FAST).isValid();
+    }
+
+    /**
+     * Validates a single field value against that field's rules.
+     *
+     * @param field the field
+     * @param value the raw value
+     * @return the result for that field only
+     */
+    public ValidationResult validateField(PaymentField field, String value) {
+        ValidationRule failed = firstFailedRule(field, value);
+        return failed == null ? ValidationResult.valid()
+                : ValidationResult.of(Collections.singletonList(new ValidationResult.Violation(failed)));
+    }
+
+    /**
+     * Checks a single field value against that field's rules.
+     *
+     * @param field the field
+     * @param value the raw value
+     * @return true if every rule of the field passes
+     */
+    public boolean isFieldValid(PaymentField field, String value) {
+        return firstFailedRule(field, value) == null;
+    }
+
+    /**
+     * @return true if the details carry a vault token, so their card number and CVV rules are skipped
+     */
+    static boolean isVaulted(PaymentDetails details) {
+        CardInfo cardInfo = details.getCardInfo();
+        return cardInfo != null && cardInfo.getCardToken() != null;
+    }
+
+    static boolean isCardSecret(PaymentField field) {
+        return field == PaymentField.CARD_NUMBER || field == PaymentField.CVV;
+    }
+
+    private ValidationRule firstFailedRule(PaymentField field, String value) {
+        for (ValidationRule rule : rulesByField[field.ordinal()]) {
+            if (!(cache != null ? cache.test(rule, value) : rule.test(value))) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The consolidated rule set. Where the legacy validators disagreed, the stricter format wins.
+     */
+    private static List<ValidationRule> defaultRules() {
+        List<ValidationRule> rules = new ArrayList<>();
+        rules.add(ValidationRule.pattern("identity.format", PaymentField.IDENTITY_CARD_NUMBER, "^[A-Za-z0-9\\-]{5,20}$", "Invalid identity card number"));
+        rules.add(ValidationRule.pattern("firstName.format", PaymentField.FIRST_NAME, "^[A-Za-z\\-' ]{2,50}$", "Invalid first name"));
+        rules.add(ValidationRule.pattern("lastName.format", PaymentField.LAST_NAME, "^[A-Za-z\\-' ]{2,50}$", "Invalid last name"));
+        rules.add(ValidationRule.pattern("phone.format", PaymentField.CELLPHONE_NUMBER, "^\\+?[0-9]{7,15}$", "Invalid cellphone number"));
+        rules.add(ValidationRule.pattern("email.format", PaymentField.EMAIL, "^[\\w.-]+@[\\w.-]+\\.[A-Za-z]{2,6}$", "Invalid email address"));
+        rules.add(ValidationRule.required("occupation.required", PaymentField.OCCUPATION, "Occupation is required"));
+        rules.add(ValidationRule.required("address.required", PaymentField.ADDRESS, "Address is required"));
+        rules.add(ValidationRule.check("address.length", PaymentField.ADDRESS, value -> value.length() <= 100, "Address is too long"));
+        rules.add(ValidationRule.pattern("city.format", PaymentField.CITY, "^[A-Za-z\\s\\-]{2,50}$", "Invalid city"));
+        rules.add(ValidationRule.pattern("province.format", PaymentField.PROVINCE, "^[A-Za-z\\s\\-]{2,50}$", "Invalid province"));
+        rules.add(ValidationRule.pattern("postalCode.format", PaymentField.POSTAL_CODE, "^[A-Za-z0-9\\s\\-]{3,10}$", "Invalid postal code"));
+        rules.add(ValidationRule.pattern("country.format", PaymentField.COUNTRY, "^[A-Za-z\\s\\-]{2,50}$", "Invalid country"));
+        rules.add(ValidationRule.pattern("cardNumber.format", PaymentField.CARD_NUMBER, "^\\d{13,19}$", "Card number must be 13 to 19 digits").uncached());
+        rules.add(ValidationRule.check("cardNumber.luhn", PaymentField.CARD_NUMBER, CardValidator::isValidCardNumber, "Card number failed the checksum").uncached());
+        rules.add(ValidationRule.check("expiration.notExpired", PaymentField.EXPIRATION_DATE, PaymentValidationEngine::isNotExpired, "Card has expired").uncached());
+        rules.add(ValidationRule.pattern("cvv.format", PaymentField.CVV, "^\\d{3,4}$", "CVV must be 3 or 4 digits").uncached());
+        rules.add(ValidationRule.required("currency.required", PaymentField.CURRENCY, "Currency is required"));
+        rules.add(ValidationRule.required("paymentMethod.required", PaymentField.PAYMENT_METHOD, "Payment method is required"));
+        return rules;
+    }
+
+    private static boolean isNotExpired(String yearMonth) {
+        if (yearMonth == null) {
+            return false;
+        }
+        try {
+            return !YearMonth.parse(yearMonth).isBefore(YearMonth.now());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
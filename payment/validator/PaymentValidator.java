@@ -8,9 +8,13 @@ import java.time.YearMonth;
 
 /**
  * PaymentValidator provides utility methods for validating payment and personal information.
+ * {@link #validatePersonalInfo(PersonalInfo)} memoizes per-field outcomes in a shared {@link ValidationCache};
+ * since that holds personal data, call {@link #clearCache()} once the form it came from is done.
  */
 public class PaymentValidator {
 
+    private static final ValidationCache CACHE = new ValidationCache(512);
+
     private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\\w-\\.+]+@[\\w-]+\\.[a-z]{2,4}$", Pattern.CASE_INSENSITIVE);
     private static final Pattern PHONE_PATTERN = Pattern.compile("^\\+?[0-9. ()-]{7,25}$");
     private static final Pattern CARD_NUMBER_PATTERN = Pattern.compile("^[0-9]{12,19}$");
@@ -60,19 +64,26 @@ public class PaymentValidator {
 
     public static boolean validatePersonalInfo(PersonalInfo info) {
         return info != null &&
-                isValidName(info.getFirstName()) &&
-                isValidName(info.getLastName()) &&
-                isValidEmail(info.getEmail()) &&
-                isValidPhoneNumber(info.getCellphoneNumber()) &&
+                CACHE.test("payment.name", info.getFirstName(), PaymentValidator::isValidName) &&
+                CACHE.test("payment.name", info.getLastName(), PaymentValidator::isValidName) &&
+                CACHE.test("payment.email", info.getEmail(), PaymentValidator::isValidEmail) &&
+                CACHE.test("payment.phone", info.getCellphoneNumber(), PaymentValidator::isValidPhoneNumber) &&
                 isNotEmpty(info.getIdentityCardNumber()) &&
                 isNotEmpty(info.getOccupation()) &&
                 isNotEmpty(info.getCity()) &&
-                isValidPostalCode(info.getPostalCode()) &&
+                CACHE.test("payment.postalCode", info.getPostalCode(), PaymentValidator::isValidPostalCode) &&
                 isNotEmpty(info.getCountry()) &&
                 isNotEmpty(info.getAddress()) &&
                 isNotEmpty(info.getProvince());
     }
 
+    /**
+     * Drops the memoized outcomes of {@link #validatePersonalInfo(PersonalInfo)} and the values they are keyed by.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
     public static boolean isNotEmpty(String value) {
         return value != null && !value.trim().isEmpty();
     }
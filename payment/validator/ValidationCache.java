@@ -0,0 +1,127 @@
+package com.myinappbilling.payment.validator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * ValidationCache memoizes the outcome of validation rules by rule and field value, so a value
+ * that was already checked, e.g. when a form field loses focus and again at submit, is not
+ * matched against the same pattern twice. The cache is bounded and evicts the least recently
+ * used entry first.
+ *
+ * <p>Only rules whose outcome depends on nothing but the value may be cached; see
+ * {@link ValidationRule#isCacheable()}.</p>
+ */
+public class ValidationCache {
+
+    private final Map<Key, Boolean> results;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param maxEntries the maximum number of cached outcomes
+     */
+    public ValidationCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.results = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Tests a value against a rule, reusing a cached outcome when there is one.
+     *
+     * @param rule  the rule
+     * @param value the field value, may be null
+     * @return true if the value passes the rule
+     */
+    public boolean test(ValidationRule rule, String value) {
+        if (!rule.isCacheable()) {
+            return rule.test(value);
+        }
+        return test(rule.getRuleId(), value, rule::test);
+    }
+
+    /**
+     * Tests a value against a check identified by ruleId, reusing a cached outcome when there is one.
+     *
+     * @param ruleId identifies the check; different checks must use different IDs
+     * @param value  the field value, may be null
+     * @param check  the check to run on a cache miss
+     * @return true if the value passes the check
+     */
+    public boolean test(String ruleId, String value, Predicate<String> check) {
+        Key key = new Key(ruleId, value);
+        synchronized (results) {
+            Boolean cached = results.get(key);
+            if (cached != null) {
+                hitCount++;
+                return cached;
+            }
+            missCount++;
+        }
+        boolean outcome = check.test(value);
+        synchronized (results) {
+            results.put(key, outcome);
+        }
+        return outcome;
+    }
+
+    public int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (results) {
+            return hitCount;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (results) {
+            return missCount;
+        }
+    }
+
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+            hitCount = 0;
+            missCount = 0;
+        }
+    }
+
+    private static final class Key {
+        final String ruleId;
+        final String value;
+        final int hash;
+
+        Key(String ruleId, String value) {
+            this.ruleId = ruleId;
+            this.value = value;
+            this.hash = 31 * ruleId.hashCode() + Objects.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && ruleId.equals(other.ruleId) && Objects.equals(value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
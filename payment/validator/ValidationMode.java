@@ -0,0 +1,17 @@
+package com.myinappbilling.payment.validator;
+
+/**
+ * ValidationMode controls whether validation stops at the first failed rule.
+ */
+public enum ValidationMode {
+
+    /**
+     * Stop at the first failed rule.
+     */
+    FAIL_FAST,
+
+    /**
+     * Validate every field and report every failed field.
+     */
+    COLLECT_ALL
+}
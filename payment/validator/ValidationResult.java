@@ -0,0 +1,90 @@
+package com.myinappbilling.payment.validator;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ValidationResult reports which rules, if any, failed while validating payment details.
+ */
+public final class ValidationResult {
+
+    private static final ValidationResult VALID = new ValidationResult(Collections.emptyList());
+
+    private final List<Violation> violations;
+
+    private ValidationResult(List<Violation> violations) {
+        this.violations = violations;
+    }
+
+    static ValidationResult valid() {
+        return VALID;
+    }
+
+    static ValidationResult of(List<Violation> violations) {
+        return violations.isEmpty() ? VALID : new ValidationResult(Collections.unmodifiableList(violations));
+    }
+
+    public boolean isValid() {
+        return violations.isEmpty();
+    }
+
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    /**
+     * @return the first failed rule, or null if the details are valid
+     */
+    public Violation getFirstViolation() {
+        return violations.isEmpty() ? null : violations.get(0);
+    }
+
+    public boolean hasViolation(PaymentField field) {
+        for (Violation violation : violations) {
+            if (violation.getField() == field) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationResult{" +
+                "violations=" + violations +
+                '}';
+    }
+
+    /**
+     * A failed rule on a field.
+     */
+    public static final class Violation {
+
+        private final PaymentField field;
+        private final String ruleId;
+        private final String message;
+
+        Violation(ValidationRule rule) {
+            this.field = rule.getField();
+            this.ruleId = rule.getRuleId();
+            this.message = rule.getMessage();
+        }
+
+        public PaymentField getField() {
+            return field;
+        }
+
+        public String getRuleId() {
+            return ruleId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return field + ":" + ruleId;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.myinappbilling.payment.validator;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * ValidationRule is a single named check on one {@link PaymentField}.
+ * Patterns are compiled once when the rule is created.
+ */
+public final class ValidationRule {
+
+    private final String ruleId;
+    private final PaymentField field;
+    private final Predicate<String> check;
+    private final String message;
+    private final boolean cacheable;
+
+    private ValidationRule(String ruleId, PaymentField field, Predicate<String> check, String message) {
+        this(ruleId, field, check, message, true);
+    }
+
+    private ValidationRule(String ruleId, PaymentField field, Predicate<String> check, String message, boolean cacheable) {
+        this.ruleId = ruleId;
+        this.field = field;
+        this.check = check;
+        this.message = message;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Creates a rule that requires a non-blank value.
+     */
+    public static ValidationRule required(String ruleId, PaymentField field, String message) {
+        return new ValidationRule(ruleId, field, value -> value != null && !value.trim().isEmpty(), message);
+    }
+
+    /**
+     * Creates a rule that requires the whole value to match a regular expression.
+     */
+    public static ValidationRule pattern(String ruleId, PaymentField field, String regex, String message) {
+        return pattern(ruleId, field, Pattern.compile(regex), message);
+    }
+
+    /**
+     * Creates a rule that requires the whole value to match a compiled pattern.
+     */
+    public static ValidationRule pattern(String ruleId, PaymentField field, Pattern pattern, String message) {
+        return new ValidationRule(ruleId, field, value -> value != null && pattern.matcher(value).matches(), message);
+    }
+
+    /**
+     * Creates a rule from an arbitrary check; the check receives null for missing values.
+     */
+    public static ValidationRule check(String ruleId, PaymentField field, Predicate<String> check, String message) {
+        return new ValidationRule(ruleId, field, check, message);
+    }
+
+    /**
+     * Returns a copy of this rule whose outcome is never cached, for checks that depend on
+     * more than the value, such as the current date, or whose values must not be retained,
+     * such as card numbers.
+     */
+    public ValidationRule uncached() {
+        return new ValidationRule(ruleId, field, check, message, false);
+    }
+
+    public String getRuleId() {
+        return ruleId;
+    }
+
+    public PaymentField getField() {
+        return field;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return true if the outcome depends only on the value and may be kept in a {@link ValidationCache}
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public boolean test(String value) {
+        return check.test(value);
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationRule{" +
+                "ruleId='" + ruleId + '\'' +
+                ", field=" + field +
+                '}';
+    }
+}
@@ -1,20 +1,47 @@
 package com.myinappbilling.payment.viewmodel;
 
+import android.app.Application;
+
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
 import com.myinappbilling.payment.model.PaymentDetails;
 import com.myinappbilling.payment.repository.PaymentDetailsRepository;
+import com.myinappbilling.payment.util.PaymentStorage;
+import com.myinappbilling.payment.validator.FormValidationState;
+import com.myinappbilling.payment.validator.IdentityValidator;
+import com.myinappbilling.payment.validator.PaymentField;
+import com.myinappbilling.payment.validator.PaymentValidationEngine;
+import com.myinappbilling.payment.validator.PaymentValidator;
+import com.myinappbilling.payment.validator.ValidationResult;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * ViewModel for handling UI-related data for PaymentDetails.
+ * ViewModel for handling UI-related data for PaymentDetails. Records are kept in the
+ * application-wide, encrypted repository from {@link PaymentStorage}.
+ *
+ * <p>Form fields are validated one at a time: {@link #onFieldChanged(PaymentField, String)}
+ * debounces edits per field and validates the latest value on a background executor, publishing
+ * the result on that field's LiveData. Overall form validity is recombined from the cached
+ * per-field results, without running any rule.</p>
  */
-public class PaymentDetailsViewModel extends ViewModel {
+public class PaymentDetailsViewModel extends AndroidViewModel {
+
+    private static final long FIELD_DEBOUNCE_MILLIS = 300;
 
-    private final PaymentDetailsRepository repository = new PaymentDetailsRepository();
+    private final PaymentDetailsRepository repository;
     private final MutableLiveData<List<PaymentDetails>> paymentDetailsList = new MutableLiveData<>();
     private final MutableLiveData<PaymentDetails> selectedPaymentDetails = new MutableLiveData<>();
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
@@ -22,6 +49,21 @@ public class PaymentDetailsViewModel extends ViewModel {
     private final MutableLiveData<Boolean> isSaveSuccessful = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isUpdateSuccessful = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isDeleteSuccessful = new MutableLiveData<>();
+    private final PaymentValidationEngine formEngine = PaymentValidationEngine.newCachedDefault();
+    private final FormValidationState formValidation = new FormValidationState(formEngine);
+    private final Map<PaymentField, MutableLiveData<ValidationResult>> fieldResults = new EnumMap<>(PaymentField.class);
+    private final Map<PaymentField, ScheduledFuture<?>> pendingValidations = new EnumMap<>(PaymentField.class);
+    // Incremented by resetValidation; guarded by pendingValidations.
+    private int validationGeneration;
+    private final MutableLiveData<Boolean> isFormValid = new MutableLiveData<>(false);
+    private final ScheduledExecutorService validationExecutor = Executors.newSingleThreadScheduledExecutor();
+    private volatile Set<PaymentField> formFields =
+            EnumSet.copyOf(Arrays.asList(formEngine.getPlannedFields()));
+
+    public PaymentDetailsViewModel(Application application) {
+        super(application);
+        repository = PaymentStorage.getRepository(application);
+    }
 
     public LiveData<List<PaymentDetails>> getPaymentDetailsList() {
         return paymentDetailsList;
@@ -99,7 +141,7 @@ public class PaymentDetailsViewModel extends ViewModel {
                 selectedPaymentDetails.setValue(details);
                 isUpdateSuccessful.setValue(true);
             } else {
-                errorMessage.setValue("Update failed. Payment details not found for ID: " + details.getId());
+                errorMessage.setValue("Update failed. Payment details not found for ID: " + details.getPaymentId());
                 isUpdateSuccessful.setValue(false);
             }
         } catch (Exception e) {
@@ -129,6 +171,117 @@ public class PaymentDetailsViewModel extends ViewModel {
         }
     }
 
+    /**
+     * Returns the validation result stream of a form field.
+     *
+     * @param field the field
+     * @return LiveData that receives the field's result after each debounced validation
+     */
+    public LiveData<ValidationResult> getFieldValidation(PaymentField field) {
+        return fieldResult(field);
+    }
+
+    private MutableLiveData<ValidationResult> fieldResult(PaymentField field) {
+        synchronized (fieldResults) {
+            return fieldResults.computeIfAbsent(field, f -> new MutableLiveData<>());
+        }
+    }
+
+    /**
+     * @return LiveData that is true when every field of the form has a valid result
+     */
+    public LiveData<Boolean> getIsFormValid() {
+        return isFormValid;
+    }
+
+    /**
+     * Declares which fields make up the form, so overall validity only considers those.
+     *
+     * @param fields the fields of the form
+     */
+    public void setFormFields(Collection<PaymentField> fields) {
+        formFields = fields.isEmpty() ? EnumSet.noneOf(PaymentField.class) : EnumSet.copyOf(fields);
+        isFormValid.setValue(formValidation.isValid(formFields));
+    }
+
+    /**
+     * Schedules validation of a field after the user stops editing it for a short while.
+     * A newer edit of the same field cancels the pending validation of the previous value.
+     *
+     * @param field the edited field
+     * @param value the current value
+     */
+    public void onFieldChanged(PaymentField field, String value) {
+        synchronized (pendingValidations) {
+            ScheduledFuture<?> pending = pendingValidations.get(field);
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            int generation = validationGeneration;
+            pendingValidations.put(field, validationExecutor.schedule(
+                    () -> publishFieldValidation(field, value, generation), FIELD_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Validates and publishes a field, unless the form was reset after the validation was
+     * scheduled; cancelling does not stop a validation that has already started.
+     */
+    private void publishFieldValidation(PaymentField field, String value, int generation) {
+        synchronized (pendingValidations) {
+            if (generation != validationGeneration) {
+                return;
+            }
+            ValidationResult result = formValidation.validateField(field, value);
+            fieldResult(field).postValue(result);
+            isFormValid.postValue(formValidation.isValid(formFields));
+        }
+    }
+
+    /**
+     * Validates a single form field. The rules only run again if the value changed since the
+     * last time this field was validated.
+     *
+     * @param field the field
+     * @param value the current value
+     * @return the result for that field
+     */
+    public ValidationResult validateField(PaymentField field, String value) {
+        return formValidation.validateField(field, value);
+    }
+
+    /**
+     * Validates all fields of the payment details, re-running only the fields that changed
+     * since the previous pass.
+     *
+     * @param details the payment details
+     * @return true if every field is valid
+     */
+    public boolean validateAll(PaymentDetails details) {
+        boolean valid = formValidation.validate(details).isValid();
+        // Saved details are vaulted and skip the card number and CVV fields, so the pass decides.
+        isFormValid.setValue(valid);
+        return valid;
+    }
+
+    /**
+     * Forgets remembered field values and cached rule outcomes, e.g. after the form is cleared.
+     */
+    public void resetValidation() {
+        synchronized (pendingValidations) {
+            validationGeneration++;
+            for (ScheduledFuture<?> pending : pendingValidations.values()) {
+                pending.cancel(false);
+            }
+            pendingValidations.clear();
+            formValidation.reset();
+        }
+        PaymentValidator.clearCache();
+        IdentityValidator.clearCache();
+        // Posted rather than set, so it lands after any result a finished validation already posted.
+        isFormValid.postValue(false);
+    }
+
     public void clearError() {
         errorMessage.setValue(null);
     }
@@ -141,6 +294,15 @@ public class PaymentDetailsViewModel extends ViewModel {
         return repository.count();
     }
 
+    @Override
+    protected void onCleared() {
+        validationExecutor.shutdownNow();
+        formValidation.reset();
+        PaymentValidator.clearCache();
+        IdentityValidator.clearCache();
+        super.onCleared();
+    }
+
     public void clearStatusFlags() {
         isSaveSuccessful.setValue(null);
         isUpdateSuccessful.setValue(null);